@@ -0,0 +1,49 @@
+package com.logarythm.bench;
+
+import java.io.File;
+import java.nio.file.Path;
+
+/**
+ * Small file helpers for benchmark setup / teardown.
+ * All benchmark data lives under the working directory of the JMH run.
+ *
+ * The engine classes hard-code data/... relative to the working directory,
+ * so a benchmark started from backend/ (e.g. its main from an IDE) would
+ * wipe the real WAL and segments. freshDir refuses to run unless the
+ * working directory is under a build/ directory (./gradlew jmh runs in
+ * build/jmh-work).
+ */
+final class BenchFiles {
+
+    private BenchFiles() {
+    }
+
+    static void deleteRecursively(File file) {
+        File[] children = file.listFiles();
+        if (children != null) {
+            for (File child : children) {
+                deleteRecursively(child);
+            }
+        }
+        file.delete();
+    }
+
+    static String freshDir(String path) {
+        requireScratchWorkingDir();
+
+        File dir = new File(path);
+        deleteRecursively(dir);
+        dir.mkdirs();
+        return path;
+    }
+
+    private static void requireScratchWorkingDir() {
+        Path cwd = Path.of("").toAbsolutePath();
+        for (Path p = cwd; p != null; p = p.getParent()) {
+            if (p.getFileName() != null && p.getFileName().toString().equals("build"))
+                return;
+        }
+        throw new IllegalStateException("Benchmarks delete ./data: run them with ./gradlew jmh, or from a working "
+                + "directory under build/ (e.g. build/jmh-work), not from " + cwd);
+    }
+}
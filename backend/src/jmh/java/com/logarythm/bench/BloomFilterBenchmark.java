@@ -0,0 +1,64 @@
+package com.logarythm.bench;
+
+import com.logarythm.core.bloom.BloomFilter;
+import com.logarythm.core.bloom.SegmentBloomBuilder;
+import com.logarythm.model.LogEntry;
+import org.openjdk.jmh.annotations.*;
+
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * BloomFilter.add / mightContain, plus tokenizing a full log line
+ * into a segment Bloom filter (what the segment stage pays per record).
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Benchmark)
+public class BloomFilterBenchmark {
+
+    private static final int BITS = 16 * 1024 * 8;
+    private static final int HASHES = 4;
+
+    private BloomFilter filter;
+    private SegmentBloomBuilder builder;
+    private List<LogEntry> entries;
+    private String[] tokens;
+    private int cursor;
+
+    @Setup
+    public void setUp() {
+        filter = new BloomFilter(BITS, HASHES);
+        entries = new LogGenerator(3, 0).batch(4096);
+
+        tokens = new String[4096];
+        for (int i = 0; i < tokens.length; i++) {
+            tokens[i] = "user-" + i;
+            if (i % 2 == 0)
+                filter.add(tokens[i]);
+        }
+    }
+
+    @Setup(Level.Iteration)
+    public void freshBuilder() {
+        builder = new SegmentBloomBuilder(BITS, HASHES);
+    }
+
+    @Benchmark
+    public void add() {
+        filter.add(tokens[cursor++ & 4095]);
+    }
+
+    @Benchmark
+    public boolean mightContain() {
+        return filter.mightContain(tokens[cursor++ & 4095]);
+    }
+
+    @Benchmark
+    public void addLogEntryTokens() {
+        builder.add(entries.get(cursor++ & 4095));
+    }
+}
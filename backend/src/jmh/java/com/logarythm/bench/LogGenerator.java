@@ -0,0 +1,133 @@
+package com.logarythm.bench;
+
+import com.logarythm.model.LogEntry;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.SplittableRandom;
+
+/**
+ * Deterministic synthetic log generator for benchmarks.
+ *
+ * Distributions roughly follow a busy web service:
+ * - levels: INFO 70%, DEBUG 15%, WARN 10%, ERROR 5%
+ * - message templates are picked with a skewed (Zipf-like) distribution,
+ *   so a few templates dominate and the rest form a long tail
+ * - template parameters (ids, paths, latencies, status codes) vary per line
+ * - RARE_TOKEN shows up in about 1 of 10_000 lines (selective keyword)
+ * - COMMON_TOKEN shows up in most INFO lines (non-selective keyword)
+ */
+public class LogGenerator {
+
+    public static final String RARE_TOKEN = "OutOfMemoryError";
+    public static final String COMMON_TOKEN = "request";
+
+    private static final String[] PATHS = {
+            "/api/orders", "/api/users", "/api/cart", "/api/search", "/health", "/api/payments", "/login"
+    };
+
+    private static final String[] SERVICES = {
+            "checkout", "inventory", "auth", "gateway", "billing", "search"
+    };
+
+    private final SplittableRandom random;
+    private long timestamp;
+
+    public LogGenerator(long seed, long startTimestamp) {
+        this.random = new SplittableRandom(seed);
+        this.timestamp = startTimestamp;
+    }
+
+    public LogEntry next() {
+        // ~1000 logs per second of event time
+        timestamp += random.nextInt(2);
+
+        if (random.nextInt(10_000) == 0) {
+            return new LogEntry(timestamp, "ERROR",
+                    "java.lang." + RARE_TOKEN + ": Java heap space in " + service());
+        }
+
+        int roll = random.nextInt(100);
+        if (roll < 70)
+            return new LogEntry(timestamp, "INFO", infoMessage());
+        if (roll < 85)
+            return new LogEntry(timestamp, "DEBUG", debugMessage());
+        if (roll < 95)
+            return new LogEntry(timestamp, "WARN", warnMessage());
+        return new LogEntry(timestamp, "ERROR", errorMessage());
+    }
+
+    public List<LogEntry> batch(int size) {
+        List<LogEntry> batch = new ArrayList<>(size);
+        for (int i = 0; i < size; i++) {
+            batch.add(next());
+        }
+        return batch;
+    }
+
+    private String infoMessage() {
+        return switch (skewed(4)) {
+            case 0 -> COMMON_TOKEN + " completed method=GET path=" + path()
+                    + " status=200 latencyMs=" + latency() + " user=" + userId();
+            case 1 -> COMMON_TOKEN + " completed method=POST path=" + path()
+                    + " status=201 latencyMs=" + latency() + " user=" + userId();
+            case 2 -> "cache hit key=product:" + random.nextInt(50_000) + " service=" + service();
+            default -> "scheduled job finished job=reindex-" + random.nextInt(20)
+                    + " durationMs=" + random.nextInt(60_000);
+        };
+    }
+
+    private String debugMessage() {
+        return switch (skewed(3)) {
+            case 0 -> "db query took " + random.nextInt(50) + "ms sql=SELECT * FROM orders WHERE id=" + userId();
+            case 1 -> "outgoing call service=" + service() + " attempt=" + (1 + random.nextInt(3));
+            default -> "feature flag evaluated flag=new-checkout user=" + userId()
+                    + " value=" + random.nextBoolean();
+        };
+    }
+
+    private String warnMessage() {
+        return switch (skewed(3)) {
+            case 0 -> "slow " + COMMON_TOKEN + " path=" + path() + " latencyMs=" + (1000 + random.nextInt(4000));
+            case 1 -> "retrying call to " + service() + " after timeout attempt=" + (1 + random.nextInt(5));
+            default -> "connection pool usage high active=" + (80 + random.nextInt(20)) + " max=100";
+        };
+    }
+
+    private String errorMessage() {
+        return switch (skewed(3)) {
+            case 0 -> COMMON_TOKEN + " failed path=" + path() + " status=" + (500 + random.nextInt(4))
+                    + " error=upstream timeout service=" + service();
+            case 1 -> "payment declined order=" + random.nextInt(1_000_000) + " reason=insufficient_funds";
+            default -> "connection refused host=db-" + random.nextInt(8) + ".internal port=5432";
+        };
+    }
+
+    /**
+     * Pick 0..n-1 where 0 is most likely, 1 half as likely, and so on.
+     */
+    private int skewed(int n) {
+        for (int i = 0; i < n - 1; i++) {
+            if (random.nextBoolean())
+                return i;
+        }
+        return n - 1;
+    }
+
+    private String path() {
+        return PATHS[skewed(PATHS.length)];
+    }
+
+    private String service() {
+        return SERVICES[random.nextInt(SERVICES.length)];
+    }
+
+    private String userId() {
+        return "u" + random.nextInt(100_000);
+    }
+
+    private int latency() {
+        // mostly fast, with a long tail
+        return random.nextInt(10) == 0 ? 200 + random.nextInt(2000) : 5 + random.nextInt(80);
+    }
+}
@@ -0,0 +1,116 @@
+package com.logarythm.bench;
+
+import com.logarythm.core.bloom.BloomFilterManager;
+import com.logarythm.core.storage.BlockCache;
+import com.logarythm.core.storage.SegmentCatalog;
+import com.logarythm.core.ingestion.IngestionService;
+import com.logarythm.core.ingestion.ShardManager;
+import com.logarythm.core.metrics.EngineMetrics;
+import com.logarythm.core.query.QueryAdmission;
+import com.logarythm.core.storage.SegmentReader;
+import com.logarythm.core.storage.SegmentWriter;
+import com.logarythm.core.storage.StreamDictionary;
+import com.logarythm.core.storage.TieredStorage;
+import com.logarythm.core.wal.CheckpointManager;
+import com.logarythm.core.wal.WalCleaner;
+import com.logarythm.core.wal.WalPosition;
+import com.logarythm.core.wal.WalWriter;
+import com.logarythm.model.LogEntry;
+import org.openjdk.jmh.annotations.*;
+
+import java.io.IOException;
+import java.time.Duration;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * SegmentReader.queryLogs over a synthetic data set written through
+ * SegmentWriter (several sealed segments + one active segment).
+ *
+ * Query shapes:
+ * - timeOnly:            last ~10% of the time range
+ * - levelOnly:           level=ERROR
+ * - selectiveKeyword:    a token present in ~0.01% of lines
+ * - nonSelectiveKeyword: a token present in most lines
+ * - keywordNoMatch:      a token present in no line (worst case full scan)
+ *
+ * Each shape runs with and without the decoded block cache.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+@State(Scope.Benchmark)
+public class SegmentReaderBenchmark {
+
+    private static final long START_TS = 1_700_000_000_000L;
+
+    @Param({"300000"})
+    public int entries;
+
+    @Param({"100"})
+    public int limit;
+
+    /** Decoded block cache budget; 0 = every query decodes from disk. */
+    @Param({"0", "67108864"})
+    public long cacheBytes;
+
+    private final EngineMetrics metrics = new EngineMetrics();
+    private SegmentReader reader;
+    private long lastTs;
+
+    @Setup(Level.Trial)
+    public void setUp() throws IOException {
+        BenchFiles.freshDir("data");
+
+        CheckpointManager checkpoint = new CheckpointManager();
+        SegmentCatalog catalog = new SegmentCatalog(new BloomFilterManager());
+        StreamDictionary dictionary = new StreamDictionary();
+        SegmentWriter segmentWriter = new SegmentWriter(checkpoint, catalog, dictionary);
+        WalWriter walWriter = new WalWriter(checkpoint, false);
+
+        ShardManager shardManager = new ShardManager(
+                new IngestionService(1, "round-robin", false, false, metrics),
+                walWriter, segmentWriter, checkpoint,
+                new WalCleaner(checkpoint), catalog, dictionary, false);
+
+        LogGenerator generator = new LogGenerator(11, START_TS);
+        for (int written = 0; written < entries; written += 1000) {
+            List<LogEntry> batch = generator.batch(1000);
+            segmentWriter.writeBatchToSegment(new WalPosition(1, written), batch);
+            lastTs = batch.get(batch.size() - 1).timestamp();
+        }
+
+        TieredStorage tier = new TieredStorage(catalog, metrics, false, "7d", "local",
+                "data/archive", "", 256L * 1024 * 1024, "60s");
+        reader = new SegmentReader(catalog, tier, new BlockCache(cacheBytes), shardManager, dictionary,
+                new QueryAdmission(Duration.ofSeconds(30), 4, 64L * 1024 * 1024), metrics);
+    }
+
+    @Benchmark
+    public List<LogEntry> timeOnly() throws IOException {
+        long start = lastTs - (lastTs - START_TS) / 10;
+        return reader.queryLogs(limit, start, lastTs, null, null);
+    }
+
+    @Benchmark
+    public List<LogEntry> levelOnly() throws IOException {
+        return reader.queryLogs(limit, null, null, "ERROR", null);
+    }
+
+    @Benchmark
+    public List<LogEntry> selectiveKeyword() throws IOException {
+        return reader.queryLogs(limit, null, null, null, LogGenerator.RARE_TOKEN);
+    }
+
+    @Benchmark
+    public List<LogEntry> nonSelectiveKeyword() throws IOException {
+        return reader.queryLogs(limit, null, null, null, LogGenerator.COMMON_TOKEN);
+    }
+
+    @Benchmark
+    public List<LogEntry> keywordNoMatch() throws IOException {
+        return reader.queryLogs(limit, null, null, null, "no-such-token-anywhere");
+    }
+}
@@ -0,0 +1,55 @@
+package com.logarythm.bench;
+
+import com.logarythm.core.bloom.BloomFilterManager;
+import com.logarythm.core.storage.SegmentCatalog;
+import com.logarythm.core.storage.SegmentWriter;
+import com.logarythm.core.storage.StreamDictionary;
+import com.logarythm.core.wal.CheckpointManager;
+import com.logarythm.core.wal.WalPosition;
+import com.logarythm.model.LogEntry;
+import org.openjdk.jmh.annotations.*;
+
+import java.io.IOException;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * SegmentWriter.writeBatchToSegment: encode + append + Bloom update
+ * (+ the occasional seal when a segment rotates). Scores are per log entry.
+ */
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+@State(Scope.Benchmark)
+public class SegmentWriterBenchmark {
+
+    private static final String BENCH_DIR = "data/bench-segment-writer";
+    private static final int BATCH_SIZE = 1000;
+
+    private SegmentWriter segmentWriter;
+    private List<LogEntry> batch;
+    private int walOffset;
+
+    @Setup(Level.Iteration)
+    public void setUp() throws IOException {
+        BenchFiles.freshDir(BENCH_DIR);
+        segmentWriter = new SegmentWriter(BENCH_DIR + "/segments",
+                new CheckpointManager(BENCH_DIR + "/checkpoint.meta"),
+                new SegmentCatalog(new BloomFilterManager()),
+                new StreamDictionary(BENCH_DIR + "/streams.dict"));
+        batch = new LogGenerator(7, 1_700_000_000_000L).batch(BATCH_SIZE);
+    }
+
+    @TearDown(Level.Iteration)
+    public void tearDown() {
+        BenchFiles.freshDir(BENCH_DIR);
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(BATCH_SIZE)
+    public void writeBatchToSegment() throws IOException {
+        segmentWriter.writeBatchToSegment(new WalPosition(1, ++walOffset), batch);
+    }
+}
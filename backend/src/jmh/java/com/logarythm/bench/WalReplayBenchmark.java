@@ -0,0 +1,73 @@
+package com.logarythm.bench;
+
+import com.logarythm.core.bloom.BloomFilterManager;
+import com.logarythm.core.storage.SegmentCatalog;
+import com.logarythm.core.ingestion.IngestionService;
+import com.logarythm.core.ingestion.ShardManager;
+import com.logarythm.core.metrics.EngineMetrics;
+import com.logarythm.core.storage.RecordCodec;
+import com.logarythm.core.storage.SegmentWriter;
+import com.logarythm.core.storage.StreamDictionary;
+import com.logarythm.core.wal.CheckpointManager;
+import com.logarythm.core.wal.WalCleaner;
+import com.logarythm.core.wal.WalReplayer;
+import com.logarythm.core.wal.WalWriter;
+import org.openjdk.jmh.annotations.*;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * WalReplayer.replayPendingWalFiles: crash recovery of one full WAL file
+ * (decode + segment write + Bloom update + checkpoint).
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 5, batchSize = 1)
+@Measurement(iterations = 10, batchSize = 1)
+@Fork(1)
+@State(Scope.Benchmark)
+public class WalReplayBenchmark {
+
+    @Param({"10000"})
+    public int entries;
+
+    private byte[] walBytes;
+    private final EngineMetrics metrics = new EngineMetrics();
+    private WalReplayer replayer;
+
+    @Setup(Level.Trial)
+    public void generateWal() throws IOException {
+        walBytes = RecordCodec.encode(new LogGenerator(5, 1_700_000_000_000L).batch(entries));
+    }
+
+    @Setup(Level.Invocation)
+    public void crash() throws IOException {
+        BenchFiles.freshDir("data");
+        new File("data/wal").mkdirs();
+        Files.write(new File("data/wal/wal-000001.log").toPath(), walBytes);
+
+        CheckpointManager checkpoint = new CheckpointManager();
+        SegmentCatalog catalog = new SegmentCatalog(new BloomFilterManager());
+        StreamDictionary dictionary = new StreamDictionary();
+
+        ShardManager shardManager = new ShardManager(
+                new IngestionService(1, "round-robin", false, false, metrics),
+                new WalWriter(checkpoint, false),
+                new SegmentWriter(checkpoint, catalog, dictionary),
+                checkpoint,
+                new WalCleaner(checkpoint),
+                catalog,
+                dictionary,
+                false);
+
+        replayer = new WalReplayer(shardManager);
+    }
+
+    @Benchmark
+    public void replayPendingWalFiles() {
+        replayer.replayPendingWalFiles();
+    }
+}
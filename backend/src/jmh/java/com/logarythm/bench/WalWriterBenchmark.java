@@ -0,0 +1,51 @@
+package com.logarythm.bench;
+
+import com.logarythm.core.wal.CheckpointManager;
+import com.logarythm.core.wal.WalPosition;
+import com.logarythm.core.wal.WalWriter;
+import com.logarythm.model.LogEntry;
+import org.openjdk.jmh.annotations.*;
+
+import java.io.IOException;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * WalWriter.appendBatch: encode + append + flush of one ingest batch.
+ * Scores are per log entry.
+ */
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+@State(Scope.Benchmark)
+public class WalWriterBenchmark {
+
+    private static final String WAL_DIR = "data/bench-wal";
+    private static final int BATCH_SIZE = 1000;
+
+    @Param({"false", "true"})
+    public boolean fsync;
+
+    private WalWriter walWriter;
+    private List<LogEntry> batch;
+
+    @Setup(Level.Iteration)
+    public void setUp() throws IOException {
+        BenchFiles.freshDir(WAL_DIR);
+        walWriter = new WalWriter(WAL_DIR, new CheckpointManager(WAL_DIR + "/checkpoint.meta"), fsync);
+        batch = new LogGenerator(42, 1_700_000_000_000L).batch(BATCH_SIZE);
+    }
+
+    @TearDown(Level.Iteration)
+    public void tearDown() {
+        BenchFiles.freshDir(WAL_DIR);
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(BATCH_SIZE)
+    public WalPosition appendBatch() throws IOException {
+        return walWriter.appendBatch(batch);
+    }
+}
@@ -0,0 +1,66 @@
+package com.logarythm.api;
+
+import com.logarythm.core.metrics.EngineMetrics;
+import com.logarythm.core.query.QueryAdmission;
+import com.logarythm.core.storage.BlockCache;
+import com.logarythm.core.storage.SegmentCatalog;
+import org.springframework.web.bind.annotation.GetMapping;
+import org.springframework.web.bind.annotation.RestController;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * Engine metrics: ingest rate, queue depth, per-stage flush latency,
+ * WAL / segment volume, query latency by type, pruning, block cache and
+ * query admission stats.
+ *
+ * GET /metrics
+ */
+@RestController
+public class MetricsController {
+
+    private final EngineMetrics metrics;
+    private final SegmentCatalog catalog;
+    private final BlockCache blockCache;
+    private final QueryAdmission admission;
+
+    public MetricsController(EngineMetrics metrics, SegmentCatalog catalog, BlockCache blockCache,
+                             QueryAdmission admission) {
+        this.metrics = metrics;
+        this.catalog = catalog;
+        this.blockCache = blockCache;
+        this.admission = admission;
+    }
+
+    @GetMapping("/metrics")
+    public Map<String, Object> metrics() {
+        Map<String, Object> out = metrics.snapshot();
+        out.put("segments", segmentStats());
+        out.put("blockCache", blockCache.snapshot());
+        out.put("admission", admission.snapshot());
+        return out;
+    }
+
+    /**
+     * Segment count / bytes on disk across all shards (from the catalog).
+     */
+    private Map<String, Object> segmentStats() {
+        long count = 0;
+        long sealed = 0;
+        long bytes = 0;
+
+        for (SegmentCatalog.SegmentInfo info : catalog.segments()) {
+            count++;
+            bytes += info.file().length();
+            if (info.sealed())
+                sealed++;
+        }
+
+        Map<String, Object> stats = new LinkedHashMap<>();
+        stats.put("count", count);
+        stats.put("sealed", sealed);
+        stats.put("bytes", bytes);
+        return stats;
+    }
+}
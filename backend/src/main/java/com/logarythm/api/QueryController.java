@@ -1,40 +1,191 @@
 package com.logarythm.api;
 
+import com.logarythm.core.metrics.EngineMetrics;
+import com.logarythm.core.query.MessageQuery;
+import com.logarythm.core.query.QueryAdmission;
+import com.logarythm.core.query.QueryContext;
+import com.logarythm.core.query.QueryFederation;
+import com.logarythm.core.replication.WalReceiver;
+import com.logarythm.core.storage.QueryCursor;
 import com.logarythm.core.storage.SegmentReader;
+import com.logarythm.core.storage.StreamDictionary;
 import com.logarythm.model.LogEntry;
+import com.logarythm.model.QueryProfile;
 import com.logarythm.model.QueryResponse;
 
+import org.springframework.http.HttpStatus;
 import org.springframework.web.bind.annotation.*;
+import org.springframework.web.server.ResponseStatusException;
+import reactor.core.publisher.Mono;
+import reactor.core.scheduler.Schedulers;
+
+import java.time.Duration;
+import java.util.ArrayList;
 import java.util.List;
+import java.util.Map;
 
 @RestController
 public class QueryController {
 
     private final SegmentReader segmentReader;
+    private final QueryAdmission admission;
+    private final QueryFederation federation;
+    private final WalReceiver replica;
+    private final EngineMetrics metrics;
 
-    public QueryController(SegmentReader segmentReader) {
+    public QueryController(SegmentReader segmentReader, QueryAdmission admission,
+                           QueryFederation federation, WalReceiver replica, EngineMetrics metrics) {
         this.segmentReader = segmentReader;
+        this.admission = admission;
+        this.federation = federation;
+        this.replica = replica;
+        this.metrics = metrics;
     }
 
+    /**
+     * GET /query?limit=&start=&end=&level=&labels=&message=&q=&cursor=&timeoutMs=&explain=&local=&positions=&maxStalenessMs=
+     *
+     * labels= selects streams by label, e.g. labels=service=api,env=prod
+     * (every label must match). Only blocks holding those streams are read.
+     *
+     * message= is a single case-insensitive keyword. q= is a message query:
+     * words, "phrases" and /regexes/ combined with AND, OR, NOT and
+     * parentheses (adjacent terms are ANDed), e.g.
+     *   q=timeout AND (/status=5\d\d/ OR "connection reset") NOT healthcheck
+     * When both are given, rows must match both.
+     *
+     * Results are paged newest first. When the page is full the response
+     * carries nextCursor; sending it back as cursor= (with the same filters)
+     * returns the next page without re-reading the previous ones.
+     *
+     * Every query has a deadline (logarythm.query.timeout, timeoutMs= can only
+     * shorten it) and is cancelled when the client disconnects. A query that
+     * runs out of time returns what it found with partial=true (and a
+     * nextCursor to continue from). Scans run on the boundedElastic pool
+     * behind QueryAdmission; a query that gets no scan slot before its
+     * deadline is rejected with 503.
+     *
+     * explain=true adds a "profile" to the response: every segment with
+     * pruned / scanned and why, bytes + records read, matches and time spent.
+     *
+     * With logarythm.federation.peers set, the query also runs on every peer
+     * and the pages are merged (see QueryFederation): nodes reports how each
+     * node answered, nextCursor continues on all of them, and a peer that
+     * fails or times out makes the response partial. explain covers this
+     * node only. local=true queries this node alone (what peers receive);
+     * positions=true adds one cursor per result and leaves the results in
+     * scan order, which is what the federation merges on.
+     *
+     * On a replication follower, maxStalenessMs= bounds how far behind the
+     * leader the answer may be: when the follower was last caught up longer
+     * ago than that (see WalReceiver), the query is rejected with 503 so the
+     * client can go to the leader or another follower.
+     */
     @GetMapping("/query")
-    public QueryResponse queryLogs(
+    public Mono<QueryResponse> queryLogs(
             @RequestParam(defaultValue = "100") int limit,
             @RequestParam(required = false) Long start,
             @RequestParam(required = false) Long end,
             @RequestParam(required = false) String level,
-            @RequestParam(required = false) String message) throws Exception {
+            @RequestParam(required = false) String labels,
+            @RequestParam(required = false) String message,
+            @RequestParam(required = false) String q,
+            @RequestParam(required = false) String cursor,
+            @RequestParam(required = false) Long timeoutMs,
+            @RequestParam(defaultValue = "false") boolean explain,
+            @RequestParam(defaultValue = "false") boolean local,
+            @RequestParam(defaultValue = "false") boolean positions,
+            @RequestParam(required = false) Long maxStalenessMs) {
+
+        if (maxStalenessMs != null && replica.isEnabled()) {
+            Long staleness = replica.stalenessMs();
+            if (staleness == null || staleness > maxStalenessMs)
+                throw new ResponseStatusException(HttpStatus.SERVICE_UNAVAILABLE,
+                        "Replica is " + (staleness == null ? "not yet caught up" : staleness + "ms behind")
+                                + " the leader (maxStalenessMs=" + maxStalenessMs + ")");
+        }
+
+        MessageQuery query;
+        Map<String, String> selector;
+        try {
+            query = MessageQuery.compile(q, message);
+            selector = StreamDictionary.parseSelector(labels);
+        } catch (IllegalArgumentException e) {
+            throw new ResponseStatusException(HttpStatus.BAD_REQUEST, e.getMessage());
+        }
 
+        QueryProfile profile = explain ? new QueryProfile() : null;
+        QueryContext context = admission.newContext(timeoutMs);
+
+        if (local || !federation.isEnabled())
+            return scanLocal(limit, start, end, level, selector, query, decodeCursor(cursor),
+                    positions, context, profile);
+
+        QueryFederation.Request request = new QueryFederation.Request(limit, start, end, level, labels, message, q);
+        Duration budget = Duration.ofNanos(Math.min(context.remainingNanos(), Long.MAX_VALUE / 2));
+        try {
+            return federation.query(request, cursor, budget,
+                            nodeCursor -> scanLocal(limit, start, end, level, selector, query,
+                                    decodeCursor(nodeCursor), true, context, profile))
+                    .doOnCancel(context::cancel);
+        } catch (IllegalArgumentException e) {
+            throw new ResponseStatusException(HttpStatus.BAD_REQUEST, e.getMessage());
+        }
+    }
+
+    private static QueryCursor decodeCursor(String cursor) {
+        try {
+            return cursor != null && !cursor.isBlank() ? QueryCursor.decode(cursor) : null;
+        } catch (IllegalArgumentException e) {
+            throw new ResponseStatusException(HttpStatus.BAD_REQUEST, e.getMessage());
+        }
+    }
+
+    private Mono<QueryResponse> scanLocal(int limit, Long start, Long end, String level,
+                                          Map<String, String> selector, MessageQuery query,
+                                          QueryCursor after, boolean withPositions,
+                                          QueryContext context, QueryProfile profile) {
         long t0 = System.currentTimeMillis();
 
-        List<LogEntry> results = segmentReader.queryLogs(
-                limit,
-                start,
-                end,
-                level,
-                message);
+        return Mono.fromCallable(() -> {
+                    if (!admission.acquireScan(context)) {
+                        metrics.queriesRejected.increment();
+                        throw new ResponseStatusException(HttpStatus.SERVICE_UNAVAILABLE,
+                                "Too many concurrent queries, none finished before the deadline");
+                    }
+
+                    SegmentReader.Page page;
+                    try {
+                        page = segmentReader.queryPage(
+                                limit,
+                                start,
+                                end,
+                                level,
+                                selector,
+                                query,
+                                after,
+                                withPositions,
+                                context,
+                                profile);
+                    } finally {
+                        admission.releaseScan();
+                    }
+
+                    List<LogEntry> results = page.entries();
+                    String nextCursor = page.next() != null ? page.next().encode() : null;
+                    long took = System.currentTimeMillis() - t0;
 
-        long took = System.currentTimeMillis() - t0;
+                    List<String> rowCursors = null;
+                    if (withPositions) {
+                        rowCursors = new ArrayList<>(page.positions().size());
+                        for (QueryCursor position : page.positions())
+                            rowCursors.add(position.encode());
+                    }
 
-        return new QueryResponse(took, results.size(), results);
+                    return new QueryResponse(took, results.size(), results, nextCursor,
+                            page.partial() ? Boolean.TRUE : null, profile, rowCursors, null);
+                })
+                .subscribeOn(Schedulers.boundedElastic())
+                .doOnCancel(context::cancel); // client went away
     }
-}
\ No newline at end of file
+}
@@ -0,0 +1,103 @@
+package com.logarythm.api;
+
+import com.logarythm.core.replication.WalReceiver;
+import com.logarythm.core.replication.WalShipper;
+import com.logarythm.core.wal.WalPosition;
+import org.springframework.core.io.buffer.DataBufferLimitException;
+import org.springframework.core.io.buffer.DataBufferUtils;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
+import org.springframework.http.ResponseEntity;
+import org.springframework.http.server.reactive.ServerHttpRequest;
+import org.springframework.web.bind.annotation.*;
+import org.springframework.web.server.ResponseStatusException;
+import reactor.core.publisher.Mono;
+import reactor.core.scheduler.Schedulers;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * WAL shipping between a leader and its followers (see WalShipper,
+ * WalReceiver).
+ *
+ * POST /replication/wal?shard=&from=walIndex@offset&caughtUp=
+ *   follower only: body is a WalChunk. Answers 200 with the follower's new
+ *   position as "walIndex@offset", 409 with its current position when the
+ *   chunk does not continue there, 403 on a node that is not a follower.
+ *
+ * GET /replication/status
+ *   role, per-follower shipping progress (leader) and per-leader-shard
+ *   position + staleness (follower).
+ */
+@RestController
+@RequestMapping("/replication")
+public class ReplicationController {
+
+    private static final int MAX_BODY_BYTES = 2 * 1024 * 1024;
+
+    private final WalShipper shipper;
+    private final WalReceiver receiver;
+
+    public ReplicationController(WalShipper shipper, WalReceiver receiver) {
+        this.shipper = shipper;
+        this.receiver = receiver;
+    }
+
+    @PostMapping(value = "/wal", produces = MediaType.TEXT_PLAIN_VALUE)
+    public Mono<ResponseEntity<String>> receive(
+            @RequestParam int shard,
+            @RequestParam String from,
+            @RequestParam(defaultValue = "false") boolean caughtUp,
+            ServerHttpRequest request) {
+
+        if (!receiver.isEnabled())
+            throw new ResponseStatusException(HttpStatus.FORBIDDEN,
+                    "Not a replication follower (logarythm.replication.follower=false)");
+
+        WalPosition start;
+        try {
+            start = WalPosition.parse(from);
+        } catch (IllegalArgumentException e) {
+            throw new ResponseStatusException(HttpStatus.BAD_REQUEST, e.getMessage());
+        }
+
+        return DataBufferUtils.join(request.getBody(), MAX_BODY_BYTES)
+                .onErrorMap(DataBufferLimitException.class,
+                        e -> new ResponseStatusException(HttpStatus.CONTENT_TOO_LARGE, e.getMessage()))
+                .map(buffer -> {
+                    byte[] body = new byte[buffer.readableByteCount()];
+                    buffer.read(body);
+                    DataBufferUtils.release(buffer);
+                    return body;
+                })
+                .defaultIfEmpty(new byte[2]) // heartbeat without a body: no streams, no records
+                .publishOn(Schedulers.boundedElastic())
+                .map(body -> {
+                    WalReceiver.Applied applied;
+                    try {
+                        applied = receiver.apply(shard, start, caughtUp, body);
+                    } catch (IllegalArgumentException e) {
+                        throw new ResponseStatusException(HttpStatus.BAD_REQUEST, e.getMessage());
+                    } catch (Exception e) {
+                        e.printStackTrace();
+                        throw new ResponseStatusException(HttpStatus.INTERNAL_SERVER_ERROR, e.getMessage());
+                    }
+                    return ResponseEntity.status(applied.accepted() ? HttpStatus.OK : HttpStatus.CONFLICT)
+                            .body(applied.position().toString());
+                });
+    }
+
+    @GetMapping("/status")
+    public Map<String, Object> status() {
+        Map<String, Object> out = new LinkedHashMap<>();
+        out.put("role", receiver.isEnabled() ? "follower" : shipper.isEnabled() ? "leader" : "standalone");
+        if (shipper.isEnabled())
+            out.put("followers", shipper.status());
+        if (receiver.isEnabled()) {
+            out.put("stalenessMs", receiver.stalenessMs());
+            out.put("leaderShards", receiver.status());
+        }
+        return out;
+    }
+}
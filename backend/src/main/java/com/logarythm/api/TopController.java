@@ -0,0 +1,51 @@
+package com.logarythm.api;
+
+import com.logarythm.core.sketch.SegmentSketch;
+import com.logarythm.core.sketch.TopMessages;
+import com.logarythm.model.LogEntry;
+import com.logarythm.model.TopResponse;
+import org.springframework.http.HttpStatus;
+import org.springframework.web.bind.annotation.GetMapping;
+import org.springframework.web.bind.annotation.RequestParam;
+import org.springframework.web.bind.annotation.RestController;
+import org.springframework.web.server.ResponseStatusException;
+
+/**
+ * Heavy hitters and distinct counts from the segment sketches (see
+ * TopMessages), without scanning any segment.
+ *
+ * GET /top?start=&end=&level=&k=20
+ *
+ * Messages are grouped by template: tokens with digits become <*>
+ * ("took 31ms" and "took 874ms" → "took <*>", status=503 → status=<*>).
+ * k is capped at 128 (the per-segment summary size).
+ */
+@RestController
+public class TopController {
+
+    private final TopMessages topMessages;
+
+    public TopController(TopMessages topMessages) {
+        this.topMessages = topMessages;
+    }
+
+    @GetMapping("/top")
+    public TopResponse top(
+            @RequestParam(required = false) Long start,
+            @RequestParam(required = false) Long end,
+            @RequestParam(required = false) String level,
+            @RequestParam(defaultValue = "20") int k) {
+
+        int levelCode = -1;
+        if (level != null && !level.isBlank()) {
+            levelCode = LogEntry.levelCode(level);
+            if (levelCode == 0)
+                throw new ResponseStatusException(HttpStatus.BAD_REQUEST, "Unknown level " + level);
+        }
+
+        if (k < 1)
+            throw new ResponseStatusException(HttpStatus.BAD_REQUEST, "k must be at least 1");
+
+        return topMessages.query(start, end, levelCode, Math.min(k, SegmentSketch.TOP_CAPACITY));
+    }
+}
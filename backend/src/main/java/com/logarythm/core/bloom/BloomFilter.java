@@ -27,6 +27,16 @@ public class BloomFilter {
         }
     }
 
+    /**
+     * Same as add(String) for the UTF-8 bytes [off, off + len).
+     */
+    public void add(byte[] bytes, int off, int len) {
+        for (int i = 0; i < numHashes; i++) {
+            int hash = hash(bytes, off, len, i);
+            bitset.set(Math.abs(hash % bitSize));
+        }
+    }
+
     public boolean mightContain(String value) {
         if (value == null)
             return true;
@@ -41,40 +51,55 @@ public class BloomFilter {
     }
 
     private int hash(byte[] data, int seed) {
+        return hash(data, 0, data.length, seed);
+    }
+
+    private int hash(byte[] data, int off, int len, int seed) {
         int h = seed * 0x5bd1e995;
-        for (byte b : data) {
-            h = h * 31 + b;
+        for (int i = off; i < off + len; i++) {
+            h = h * 31 + data[i];
         }
         return h;
     }
 
     public void saveToFile(File f) throws IOException {
         try (DataOutputStream out = new DataOutputStream(new FileOutputStream(f))) {
-            byte[] bytes = bitset.toByteArray();
-            out.writeInt(bytes.length);
-            out.write(bytes);
-            out.writeInt(bitSize);
-            out.writeInt(numHashes);
+            writeTo(out);
         }
     }
 
     public static BloomFilter loadFromFile(File f) throws IOException {
         try (DataInputStream in = new DataInputStream(new FileInputStream(f))) {
-            int byteLen = in.readInt();
-            byte[] bytes = new byte[byteLen];
-            in.readFully(bytes);
+            return readFrom(in);
+        }
+    }
+
+    /**
+     * Serialize into an already open stream (used by segment sidecars).
+     */
+    public void writeTo(DataOutputStream out) throws IOException {
+        byte[] bytes = bitset.toByteArray();
+        out.writeInt(bytes.length);
+        out.write(bytes);
+        out.writeInt(bitSize);
+        out.writeInt(numHashes);
+    }
+
+    public static BloomFilter readFrom(DataInputStream in) throws IOException {
+        int byteLen = in.readInt();
+        byte[] bytes = new byte[byteLen];
+        in.readFully(bytes);
 
-            int bitSize = in.readInt();
-            int numHashes = in.readInt();
+        int bitSize = in.readInt();
+        int numHashes = in.readInt();
 
-            BloomFilter bf = new BloomFilter(bitSize, numHashes);
-            BitSet bs = BitSet.valueOf(bytes);
+        BloomFilter bf = new BloomFilter(bitSize, numHashes);
+        BitSet bs = BitSet.valueOf(bytes);
 
-            for (int i = 0; i < bitSize; i++) {
-                if (bs.get(i))
-                    bf.bitset.set(i);
-            }
-            return bf;
+        for (int i = 0; i < bitSize; i++) {
+            if (bs.get(i))
+                bf.bitset.set(i);
         }
+        return bf;
     }
 }
@@ -3,38 +3,23 @@ package com.logarythm.core.bloom;
 import org.springframework.stereotype.Component;
 
 import java.io.File;
-import java.util.HashMap;
 import java.util.Map;
-
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Registry of per-segment Bloom filters.
+ *
+ * Keys are segment paths without the extension
+ * (e.g. data/segments/segment-000001), so segments of different
+ * ingest shards never collide.
+ *
+ * Filled through SegmentCatalog: sidecars are loaded when a SegmentWriter
+ * recovers its directory, and registered again whenever a segment is sealed.
+ */
 @Component
 public class BloomFilterManager {
 
-    private static final String SEGMENT_DIR = "data/segments";
-
-    private final Map<String, SegmentBloom> bloomMap = new HashMap<>();
-
-    public BloomFilterManager() {
-        loadAllBlooms();
-    }
-
-    private void loadAllBlooms() {
-        File dir = new File(SEGMENT_DIR);
-        File[] bfs = dir.listFiles((d, name) -> name.endsWith(".bf"));
-
-        if (bfs == null)
-            return;
-
-        for (File f : bfs) {
-            try {
-                BloomFilter bf = BloomFilter.loadFromFile(f);
-                SegmentBloom sb = new SegmentBloom(bf);
-
-                // restore timestamps from filename if desired later
-                bloomMap.put(f.getName().replace(".bf", ""), sb);
-            } catch (Exception ignored) {
-            }
-        }
-    }
+    private final Map<String, SegmentBloom> bloomMap = new ConcurrentHashMap<>();
 
     public SegmentBloom get(String segmentName) {
         return bloomMap.get(segmentName);
@@ -43,4 +28,25 @@ public class BloomFilterManager {
     public void register(String segmentName, SegmentBloom sb) {
         bloomMap.put(segmentName, sb);
     }
-}
\ No newline at end of file
+
+    public void unregister(String segmentName) {
+        bloomMap.remove(segmentName);
+    }
+
+    /**
+     * data/segments/segment-000001.bin → data/segments/segment-000001
+     * data/segments/segment-000001.g2.bin → data/segments/segment-000001
+     * (every generation of a rewritten segment keeps the key)
+     */
+    public static String segmentKey(File file) {
+        String path = file.getPath();
+        int dot = path.lastIndexOf('.');
+        String key = dot > 0 ? path.substring(0, dot) : path;
+
+        int generation = key.lastIndexOf(".g");
+        if (generation > key.lastIndexOf(File.separatorChar) && generation + 2 < key.length()
+                && key.substring(generation + 2).chars().allMatch(Character::isDigit))
+            return key.substring(0, generation);
+        return key;
+    }
+}
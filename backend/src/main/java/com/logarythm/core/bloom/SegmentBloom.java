@@ -1,16 +1,79 @@
 package com.logarythm.core.bloom;
 
+import java.io.*;
+import java.util.Arrays;
+
+/**
+ * Per-segment pruning metadata: Bloom filter + min/max timestamps.
+ *
+ * Persisted next to a sealed segment as segment-XXXXXX.bf:
+ * [bloom filter][minTs][maxTs][levelMinTs x LEVELS]
+ *
+ * levelMinTs[code] is the oldest timestamp seen for a level code
+ * (Long.MAX_VALUE = level absent); retention uses it for per-level policies.
+ */
 public class SegmentBloom {
+    public static final int LEVELS = 5;
+
     public final BloomFilter filter;
     public long minTs = Long.MAX_VALUE;
     public long maxTs = Long.MIN_VALUE;
+    public final long[] levelMinTs = new long[LEVELS];
 
     public SegmentBloom(BloomFilter filter) {
         this.filter = filter;
+        Arrays.fill(levelMinTs, Long.MAX_VALUE);
     }
 
     public void updateTs(long ts) {
         minTs = Math.min(minTs, ts);
         maxTs = Math.max(maxTs, ts);
     }
-}
\ No newline at end of file
+
+    public void updateLevel(byte levelCode, long ts) {
+        if (levelCode >= 0 && levelCode < LEVELS)
+            levelMinTs[levelCode] = Math.min(levelMinTs[levelCode], ts);
+    }
+
+    public boolean hasLevel(byte levelCode) {
+        return levelMinTs[levelCode] != Long.MAX_VALUE;
+    }
+
+    public void saveToFile(File f) throws IOException {
+        try (DataOutputStream out = new DataOutputStream(
+                new BufferedOutputStream(new FileOutputStream(f)))) {
+            filter.writeTo(out);
+            out.writeLong(minTs);
+            out.writeLong(maxTs);
+            for (long ts : levelMinTs) {
+                out.writeLong(ts);
+            }
+        }
+    }
+
+    public static SegmentBloom loadFromFile(File f) throws IOException {
+        try (DataInputStream in = new DataInputStream(
+                new BufferedInputStream(new FileInputStream(f)))) {
+            SegmentBloom sb = new SegmentBloom(BloomFilter.readFrom(in));
+
+            try {
+                sb.minTs = in.readLong();
+                sb.maxTs = in.readLong();
+            } catch (EOFException e) {
+                // older sidecar without time range: never prune by time
+                sb.minTs = Long.MIN_VALUE;
+                sb.maxTs = Long.MAX_VALUE;
+            }
+
+            try {
+                for (int i = 0; i < LEVELS; i++) {
+                    sb.levelMinTs[i] = in.readLong();
+                }
+            } catch (EOFException e) {
+                // older sidecar without per-level info: assume every level, as old as the segment
+                Arrays.fill(sb.levelMinTs, sb.minTs);
+            }
+            return sb;
+        }
+    }
+}
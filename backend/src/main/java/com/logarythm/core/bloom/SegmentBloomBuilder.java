@@ -2,17 +2,25 @@ package com.logarythm.core.bloom;
 
 import com.logarythm.model.LogEntry;
 
+import java.nio.charset.StandardCharsets;
+
 /**
  * Builds a SegmentBloom object for one segment file.
  * 
  * Responsibilities:
  * - Add log tokens to bloom filter
  * - Add log levels to bloom filter
- * - Track min/max timestamps
+ * - Track min/max timestamps (overall and per level)
+ *
+ * Messages are tokenized on their UTF-8 bytes: tokens are split on ASCII
+ * whitespace (what the "\s+" regex matches) and ASCII tokens are lower-cased in a
+ * scratch buffer, so no String is built per token. Only tokens with
+ * non-ASCII bytes go through String.toLowerCase.
  */
 public class SegmentBloomBuilder {
 
     private final SegmentBloom sb;
+    private byte[] scratch = new byte[64];
 
     public SegmentBloomBuilder(int bitSize, int numHashes) {
         this.sb = new SegmentBloom(new BloomFilter(bitSize, numHashes));
@@ -22,20 +30,53 @@ public class SegmentBloomBuilder {
         if (e == null)
             return;
 
-        // add level
-        sb.filter.add(e.level());
-        sb.updateTs(e.timestamp());
+        byte[] msg = e.messageBytes();
+        add(e.timestamp(), e.levelAsByte(), e.level(), msg, 0, msg != null ? msg.length : 0);
+    }
+
+    /**
+     * Add one record given as columns (see LogBatch): the message is the
+     * UTF-8 range [off, off + len) of msg.
+     */
+    public void add(long timestamp, byte levelCode, String level, byte[] msg, int off, int len) {
+        // add level (normalized, queries look it up upper-cased)
+        if (level != null)
+            sb.filter.add(level.toUpperCase());
+        sb.updateTs(timestamp);
+        sb.updateLevel(levelCode, timestamp);
 
         // tokenize message by whitespace
-        String msg = e.message();
-        if (msg != null) {
-            String[] tokens = msg.split("\\s+");
-            for (String t : tokens) {
-                if (!t.isBlank()) {
-                    sb.filter.add(t.toLowerCase());
-                }
+        int start = -1;
+        for (int i = off; i <= off + len; i++) {
+            if (i == off + len || isWhitespace(msg[i])) {
+                if (start >= 0)
+                    addToken(msg, start, i);
+                start = -1;
+            } else if (start < 0) {
+                start = i;
+            }
+        }
+    }
+
+    private void addToken(byte[] msg, int start, int end) {
+        int len = end - start;
+        if (len > scratch.length)
+            scratch = new byte[Math.max(len, scratch.length * 2)];
+
+        for (int i = 0; i < len; i++) {
+            byte b = msg[start + i];
+            if (b < 0) {
+                // non-ASCII: needs Unicode case mapping
+                sb.filter.add(new String(msg, start, len, StandardCharsets.UTF_8).toLowerCase());
+                return;
             }
+            scratch[i] = b >= 'A' && b <= 'Z' ? (byte) (b + ('a' - 'A')) : b;
         }
+        sb.filter.add(scratch, 0, len);
+    }
+
+    private static boolean isWhitespace(byte b) {
+        return b == ' ' || b == '\t' || b == '\n' || b == 0x0B || b == '\f' || b == '\r';
     }
 
     public SegmentBloom build() {
@@ -0,0 +1,26 @@
+package com.logarythm.core.ingestion;
+
+import com.logarythm.core.storage.SegmentWriter;
+import com.logarythm.core.wal.CheckpointManager;
+import com.logarythm.core.wal.WalCleaner;
+import com.logarythm.core.wal.WalWriter;
+
+/**
+ * One independent slice of the ingestion pipeline.
+ *
+ * Every shard owns:
+ * - its own WAL directory + WalWriter
+ * - its own checkpoint file + WalCleaner
+ * - its own segment directory + active segment
+ *
+ * Shards never share locks, so N shards can flush on N cores / disks.
+ */
+public record IngestShard(
+        int id,
+        String walDir,
+        String segmentDir,
+        WalWriter walWriter,
+        SegmentWriter segmentWriter,
+        CheckpointManager checkpointManager,
+        WalCleaner walCleaner) {
+}
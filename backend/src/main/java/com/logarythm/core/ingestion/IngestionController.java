@@ -1,27 +1,53 @@
 package com.logarythm.core.ingestion;
 
+import com.logarythm.core.metrics.EngineMetrics;
+import com.logarythm.core.replication.ReplicationAcks;
+import com.logarythm.core.storage.StreamDictionary;
 import com.logarythm.model.LogEntry;
+import org.springframework.core.io.buffer.DataBuffer;
+import org.springframework.core.io.buffer.DataBufferLimitException;
+import org.springframework.core.io.buffer.DataBufferUtils;
 import org.springframework.http.HttpStatus;
+import org.springframework.http.server.reactive.ServerHttpRequest;
 import org.springframework.web.bind.annotation.*;
+import org.springframework.web.server.ResponseStatusException;
 import reactor.core.publisher.Mono;
+import reactor.core.scheduler.Schedulers;
+
+import java.nio.ByteBuffer;
+import java.util.Map;
+import java.util.concurrent.TimeoutException;
 
 /**
  * The API entrypoint for ingesting logs into LogRhythm.
  *
  * Responsibilities:
  * - Accept HTTP POST requests
- * - Deserialize JSON into a LogEntry
+ * - Decode the JSON body into a LogEntry (LogEntryDecoder, straight from
+ *   the request's DataBuffer; the message stays UTF-8 bytes)
+ * - Reject invalid labels, or a new label set once the stream dictionary
+ *   is full (400), before they reach the pipeline
  * - Forward the entry to IngestionService
+ * - With sync-ack replication, answer once every follower has the entry
  * 
  */
 @RestController
 @RequestMapping("/ingest")
 public class IngestionController {
 
+    private static final int MAX_BODY_BYTES = 256 * 1024;
+
     private final IngestionService ingestionService;
+    private final StreamDictionary dictionary;
+    private final ReplicationAcks replicationAcks;
+    private final EngineMetrics metrics;
 
-    public IngestionController(IngestionService ingestionService) {
+    public IngestionController(IngestionService ingestionService, StreamDictionary dictionary,
+                               ReplicationAcks replicationAcks, EngineMetrics metrics) {
         this.ingestionService = ingestionService;
+        this.dictionary = dictionary;
+        this.replicationAcks = replicationAcks;
+        this.metrics = metrics;
     }
 
     /**
@@ -29,13 +55,93 @@ public class IngestionController {
      * POST /ingest
      *
      * Expected JSON:
-     * { "timestamp": 123, "level": "INFO", "message": "something" }
+     * { "timestamp": 123, "level": "INFO", "message": "something",
+     *   "labels": { "service": "api", "env": "prod" } }
+     *
+     * labels are optional; see StreamDictionary for the limits.
      *
-     * Returns 202 Accepted immediately after pushing to the ingestion pipeline.
+     * Returns 202 Accepted immediately after pushing to the ingestion pipeline,
+     * 400 for malformed JSON / missing fields / a new label set beyond
+     * StreamDictionary.MAX_STREAMS, 413 above MAX_BODY_BYTES,
+     * 409 on a replication follower (send logs to the leader).
+     *
+     * With logarythm.replication.sync-ack=true the 202 waits until every
+     * follower has received the entry's WAL batch; 504 when that takes
+     * longer than logarythm.replication.ack-timeout (the entry is still
+     * stored on the leader and will be shipped).
      */
     @PostMapping
     @ResponseStatus(HttpStatus.ACCEPTED)
-    public Mono<Void> ingest(@RequestBody Mono<LogEntry> logMono) {
-        return logMono.flatMap(ingestionService::accept);
+    public Mono<Void> ingest(ServerHttpRequest request) {
+        if (ingestionService.isReadOnly())
+            return Mono.error(new ResponseStatusException(HttpStatus.CONFLICT,
+                    "This node is a replication follower, send logs to the leader"));
+
+        return DataBufferUtils.join(request.getBody(), MAX_BODY_BYTES)
+                .onErrorMap(DataBufferLimitException.class,
+                        e -> new ResponseStatusException(HttpStatus.CONTENT_TOO_LARGE, e.getMessage()))
+                .switchIfEmpty(Mono.error(new ResponseStatusException(HttpStatus.BAD_REQUEST, "empty body")))
+                .flatMap(body -> {
+                    LogEntry entry;
+                    try {
+                        entry = decode(body);
+                    } catch (IllegalArgumentException e) {
+                        return Mono.error(new ResponseStatusException(HttpStatus.BAD_REQUEST, e.getMessage()));
+                    } finally {
+                        DataBufferUtils.release(body);
+                    }
+
+                    String error = StreamDictionary.validate(entry.labels());
+                    if (error != null)
+                        return Mono.error(new ResponseStatusException(HttpStatus.BAD_REQUEST, error));
+
+                    return registerStream(entry.labels()).then(Mono.defer(() -> accept(entry)));
+                });
+    }
+
+    /**
+     * Assign the label set's stream id before the entry is accepted, so an
+     * accepted entry is never stored without its labels. A new label set is
+     * synced to the dictionary file, off the event loop; 400 once the
+     * dictionary is full.
+     */
+    private Mono<Void> registerStream(Map<String, String> labels) {
+        if (dictionary.isKnown(labels))
+            return Mono.empty();
+
+        return Mono.fromCallable(() -> dictionary.idOf(labels))
+                .subscribeOn(Schedulers.boundedElastic())
+                .onErrorMap(IllegalStateException.class, e -> new ResponseStatusException(HttpStatus.BAD_REQUEST,
+                        "Too many distinct label sets (" + StreamDictionary.MAX_STREAMS
+                                + "), labels must not carry per-entry values"))
+                .then();
+    }
+
+    private Mono<Void> accept(LogEntry entry) {
+        if (!replicationAcks.isEnabled())
+            return ingestionService.accept(entry);
+
+        return replicationAcks.await(ingestionService.acceptTracked(entry))
+                .onErrorMap(TimeoutException.class, e -> {
+                    metrics.replicationAckTimeouts.increment();
+                    return new ResponseStatusException(HttpStatus.GATEWAY_TIMEOUT,
+                            "Stored on the leader, not yet confirmed by every follower");
+                });
+    }
+
+    /**
+     * Decode in place when the joined body is one contiguous buffer (the
+     * usual case for a single log), otherwise from a heap copy.
+     */
+    private static LogEntry decode(DataBuffer body) {
+        try (DataBuffer.ByteBufferIterator buffers = body.readableByteBuffers()) {
+            ByteBuffer first = buffers.hasNext() ? buffers.next() : ByteBuffer.allocate(0);
+            if (!buffers.hasNext())
+                return LogEntryDecoder.decode(first);
+        }
+
+        byte[] bytes = new byte[body.readableByteCount()];
+        body.read(bytes);
+        return LogEntryDecoder.decode(ByteBuffer.wrap(bytes));
     }
 }
\ No newline at end of file
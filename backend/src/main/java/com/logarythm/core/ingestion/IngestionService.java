@@ -1,6 +1,8 @@
 package com.logarythm.core.ingestion;
 
+import com.logarythm.core.metrics.EngineMetrics;
 import com.logarythm.model.LogEntry;
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.stereotype.Service;
 import reactor.core.publisher.Mono;
 /**
@@ -8,21 +10,83 @@ import reactor.core.publisher.Mono;
 */ 
 import reactor.core.publisher.Sinks;
 
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicInteger;
+
 /**
  * IngestionService is responsible only for accepting logs from the API
  * and pushing them into the internal reactive pipeline.
  * This is a reactive publisher source that downstream components consume from.
+ *
+ * With logarythm.ingest.shards > 1 there is one sink per shard, and every
+ * entry is routed to exactly one of them:
+ * - round-robin: spreads load evenly regardless of content
+ * - hash: identical messages always land on the same shard
+ *
+ * Producers (HTTP requests, TCP connections) emit concurrently; a sink
+ * accepts one emitter at a time, so a contended emit is retried briefly
+ * instead of dropping the entry.
+ *
+ * With logarythm.replication.sync-ack=true every emit also takes a per-shard
+ * sequence number (under the shard's lock, so numbers follow sink order):
+ * the n-th entry of a shard is in the WAL once the flusher has appended n
+ * entries of that shard, which is what ReplicationAcks waits for.
+ *
+ * A replication follower (logarythm.replication.follower=true) is read-only:
+ * its logs come from the leader's WAL, see WalReceiver.
  */
 @Service
 public class IngestionService {
 
-    // Acts like a buffered channel for downstream processing.
-    private final Sinks.Many<LogEntry> sink;
+    // stateless: busyLooping(Duration) fixes its deadline when created,
+    // so a shared instance would stop retrying after that duration
+    private static final Sinks.EmitFailureHandler RETRY_CONTENDED = (signal, result) -> {
+        if (result != Sinks.EmitResult.FAIL_NON_SERIALIZED)
+            return false;
+        Thread.onSpinWait();
+        return true;
+    };
+
+    /**
+     * Where an accepted entry went: its shard and its sequence number there
+     * (1 = first entry of the shard since startup).
+     */
+    public record Receipt(int shard, long sequence) {
+    }
+
+    // Acts like a buffered channel for downstream processing (one per shard).
+    private final Sinks.Many<LogEntry>[] sinks;
+    private final long[] emitted; // per shard, guarded by the shard's sink (sequenced only)
+    private final boolean sequenced;
+    private final boolean readOnly;
+    private final boolean hashRouting;
+    private final EngineMetrics metrics;
+    private final AtomicInteger nextShard = new AtomicInteger();
+
+    @SuppressWarnings("unchecked")
+    public IngestionService(
+            @Value("${logarythm.ingest.shards:1}") int shardCount,
+            @Value("${logarythm.ingest.routing:round-robin}") String routing,
+            @Value("${logarythm.replication.sync-ack:false}") boolean sequenced,
+            @Value("${logarythm.replication.follower:false}") boolean readOnly,
+            EngineMetrics metrics) {
+
+        if (shardCount < 1)
+            throw new IllegalArgumentException("logarythm.ingest.shards must be >= 1, got " + shardCount);
 
-    public IngestionService() {
-        // Unicast ensures single consumer (our flusher).
-        // Buffering is our backpressure strategy.
-        this.sink = Sinks.many().unicast().onBackpressureBuffer();
+        this.hashRouting = "hash".equalsIgnoreCase(routing);
+        this.sequenced = sequenced;
+        this.readOnly = readOnly;
+        this.metrics = metrics;
+        this.sinks = new Sinks.Many[shardCount];
+        this.emitted = new long[shardCount];
+
+        for (int i = 0; i < shardCount; i++) {
+            // Unicast ensures single consumer (our flusher).
+            // Buffering is our backpressure strategy.
+            sinks[i] = Sinks.many().unicast().onBackpressureBuffer();
+        }
     }
 
     /**
@@ -30,15 +94,81 @@ public class IngestionService {
      * The API will return 202 Accepted immediately.
      */
     public Mono<Void> accept(LogEntry entry) {
-        sink.tryEmitNext(entry);
+        emit(entry);
         return Mono.empty();
     }
 
+    /**
+     * Same, returning where the entry went (sync-ack replication); the
+     * sequence is 0 unless logarythm.replication.sync-ack is on, and -1
+     * when the pipeline is shutting down.
+     */
+    public Receipt acceptTracked(LogEntry entry) {
+        int shard = route(entry);
+        return new Receipt(shard, emit(shard, entry));
+    }
+
+    /**
+     * Push already decoded entries (TCP ingest), in order.
+     */
+    public void acceptAll(List<LogEntry> entries) {
+        for (LogEntry entry : entries) {
+            emit(entry);
+        }
+    }
+
+    private void emit(LogEntry entry) {
+        emit(route(entry), entry);
+    }
+
+    private long emit(int shard, LogEntry entry) {
+        Sinks.Many<LogEntry> sink = sinks[shard];
+        try {
+            long sequence = 0;
+            if (sequenced) {
+                synchronized (sink) {
+                    sink.emitNext(entry, RETRY_CONTENDED);
+                    sequence = ++emitted[shard];
+                }
+            } else {
+                sink.emitNext(entry, RETRY_CONTENDED);
+            }
+            metrics.logsAccepted.increment();
+            return sequence;
+        } catch (Sinks.EmissionException e) {
+            // sink terminated (shutdown)
+            return -1;
+        }
+    }
+
+    private int route(LogEntry entry) {
+        if (sinks.length == 1)
+            return 0;
+
+        // hash the UTF-8 bytes: the same message routes the same way
+        // whether it arrived as a String (syslog) or as bytes (HTTP / binary)
+        if (hashRouting && entry.messageBytes() != null)
+            return Math.floorMod(Arrays.hashCode(entry.messageBytes()), sinks.length);
+
+        return Math.floorMod(nextShard.getAndIncrement(), sinks.length);
+    }
+
+    /**
+     * True on a replication follower: logs only arrive through WalReceiver.
+     */
+    public boolean isReadOnly() {
+        return readOnly;
+    }
+
+    public int getShardCount() {
+        return sinks.length;
+    }
+
     /**
      * Downstream components (like WAL writer, batch flusher, etc.)
      * will subscribe to this stream.
      */
-    public Sinks.Many<LogEntry> getSink() {
-        return sink;
+    public Sinks.Many<LogEntry> getSink(int shard) {
+        return sinks[shard];
     }
 }
@@ -0,0 +1,451 @@
+package com.logarythm.core.ingestion;
+
+import com.logarythm.core.storage.RecordCodec;
+import com.logarythm.model.LogEntry;
+
+import java.io.ByteArrayOutputStream;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * Streaming JSON decoder for the /ingest body, specialised for its schema:
+ *
+ * { "timestamp": 123, "level": "INFO", "message": "...", "labels": { "k": "v" } }
+ *
+ * Reads the request buffer in place (heap or direct ByteBuffer) instead of
+ * going through Jackson databinding:
+ * - level    → matched byte by byte (case-insensitive) to the shared level
+ *              constants, so the four known levels never allocate a String
+ * - message  → kept as UTF-8: a slice copy when it has no escapes,
+ *              otherwise unescaped straight into bytes
+ * - labels   → decoded to Strings (small, and they go to StreamDictionary)
+ * - unknown keys are skipped, like Jackson does for this record
+ *
+ * Malformed input → IllegalArgumentException (the controller answers 400).
+ */
+public final class LogEntryDecoder {
+
+    private static final byte[] TIMESTAMP = ascii("timestamp");
+    private static final byte[] LEVEL = ascii("level");
+    private static final byte[] MESSAGE = ascii("message");
+    private static final byte[] LABELS = ascii("labels");
+
+    // unknown values are skipped recursively; deeper nesting is rejected (Jackson's default limit)
+    private static final int MAX_NESTING_DEPTH = 1000;
+
+    private static final String[] LEVEL_NAMES = {"INFO", "WARN", "ERROR", "DEBUG"};
+    private static final byte[][] LEVEL_BYTES = {
+            ascii("INFO"), ascii("WARN"), ascii("ERROR"), ascii("DEBUG")
+    };
+
+    private final ByteBuffer buf;
+    private final int limit;
+    private int pos;
+
+    private LogEntryDecoder(ByteBuffer buf) {
+        this.buf = buf;
+        this.pos = buf.position();
+        this.limit = buf.limit();
+    }
+
+    /**
+     * Decode one entry from the readable bytes of buf (position is not moved).
+     */
+    public static LogEntry decode(ByteBuffer buf) {
+        return new LogEntryDecoder(buf).readEntry();
+    }
+
+    private LogEntry readEntry() {
+        long timestamp = 0;
+        String level = null;
+        byte[] message = null;
+        Map<String, String> labels = Map.of();
+
+        expect('{');
+        if (!consume('}')) {
+            do {
+                int keyStart = stringStart();
+                int keyEnd = stringEnd(keyStart);
+                expect(':');
+
+                if (keyEquals(keyStart, keyEnd, TIMESTAMP))
+                    timestamp = readTimestamp();
+                else if (keyEquals(keyStart, keyEnd, LEVEL))
+                    level = readLevel();
+                else if (keyEquals(keyStart, keyEnd, MESSAGE))
+                    message = readNullableUtf8();
+                else if (keyEquals(keyStart, keyEnd, LABELS))
+                    labels = readLabels();
+                else
+                    skipValue();
+            } while (consume(','));
+            expect('}');
+        }
+
+        skipWhitespace();
+        if (pos != limit)
+            throw error("trailing data");
+        if (level == null)
+            throw new IllegalArgumentException("level is required");
+        if (message == null)
+            throw new IllegalArgumentException("message is required");
+        if (message.length > RecordCodec.MAX_MESSAGE_BYTES)
+            throw new IllegalArgumentException("message is longer than " + RecordCodec.MAX_MESSAGE_BYTES + " bytes");
+
+        return LogEntry.ofUtf8(timestamp, level, message, labels);
+    }
+
+    // ---- values ----
+
+    private long readTimestamp() {
+        skipWhitespace();
+        if (peek() == '"')
+            return parseNumber(readString());
+        if (consumeLiteral("null"))
+            return 0;
+
+        int start = pos;
+        boolean negative = consume('-');
+        long value = 0;
+        int digits = 0;
+
+        while (pos < limit && isDigit(buf.get(pos))) {
+            value = value * 10 + (buf.get(pos++) - '0');
+            if (++digits > 18)
+                throw error("timestamp out of range");
+        }
+        if (digits == 0)
+            throw error("expected a number");
+
+        // fractions / exponents are rare: take the slow path like Jackson's coercion
+        if (pos < limit && (buf.get(pos) == '.' || buf.get(pos) == 'e' || buf.get(pos) == 'E')) {
+            while (pos < limit && isNumberChar(buf.get(pos)))
+                pos++;
+            return parseNumber(copy(start, pos));
+        }
+        return negative ? -value : value;
+    }
+
+    private String readLevel() {
+        skipWhitespace();
+        if (consumeLiteral("null"))
+            return null;
+
+        int start = stringStart();
+        int end = stringEnd(start);
+
+        for (int i = 0; i < LEVEL_BYTES.length; i++) {
+            if (equalsIgnoreAsciiCase(start, end, LEVEL_BYTES[i]))
+                return LEVEL_NAMES[i];
+        }
+        return new String(unescape(start, end), StandardCharsets.UTF_8);
+    }
+
+    private Map<String, String> readLabels() {
+        skipWhitespace();
+        if (consumeLiteral("null"))
+            return Map.of();
+
+        Map<String, String> labels = new LinkedHashMap<>();
+        expect('{');
+        if (!consume('}')) {
+            do {
+                String key = readString();
+                expect(':');
+                skipWhitespace();
+                labels.put(key, peek() == '"' ? readString() : readScalarAsString());
+            } while (consume(','));
+            expect('}');
+        }
+        return labels;
+    }
+
+    private byte[] readNullableUtf8() {
+        skipWhitespace();
+        if (consumeLiteral("null"))
+            return null;
+
+        int start = stringStart();
+        return unescape(start, stringEnd(start));
+    }
+
+    private String readString() {
+        int start = stringStart();
+        return new String(unescape(start, stringEnd(start)), StandardCharsets.UTF_8);
+    }
+
+    /**
+     * Numbers / booleans as label values, the way Jackson coerces them to String.
+     */
+    private String readScalarAsString() {
+        int start = pos;
+        while (pos < limit && (isNumberChar(buf.get(pos)) || Character.isLetter(buf.get(pos))))
+            pos++;
+        if (start == pos)
+            throw error("expected a string");
+
+        String value = new String(copy(start, pos), StandardCharsets.US_ASCII);
+        if (value.equals("null"))
+            throw error("label values cannot be null");
+        return value;
+    }
+
+    private void skipValue() {
+        skipValue(0);
+    }
+
+    private void skipValue(int depth) {
+        skipWhitespace();
+        byte b = peek();
+
+        if (b == '"') {
+            stringEnd(stringStart());
+        } else if (b == '{' || b == '[') {
+            if (depth >= MAX_NESTING_DEPTH)
+                throw error("nesting too deep");
+            pos++;
+            char close = b == '{' ? '}' : ']';
+            if (!consume(close)) {
+                do {
+                    if (b == '{') {
+                        stringEnd(stringStart());
+                        expect(':');
+                    }
+                    skipValue(depth + 1);
+                } while (consume(','));
+                expect(close);
+            }
+        } else {
+            int start = pos;
+            while (pos < limit && (isNumberChar(buf.get(pos)) || Character.isLetter(buf.get(pos))))
+                pos++;
+            if (start == pos)
+                throw error("unexpected character");
+        }
+    }
+
+    // ---- strings ----
+
+    /**
+     * Skip to and past the opening quote; returns the first content byte.
+     */
+    private int stringStart() {
+        expect('"');
+        return pos;
+    }
+
+    /**
+     * Find the closing quote of the string starting at start and move past it.
+     *
+     * @return index of the closing quote
+     */
+    private int stringEnd(int start) {
+        int i = start;
+        while (i < limit) {
+            byte b = buf.get(i);
+            if (b == '"') {
+                pos = i + 1;
+                return i;
+            }
+            if (b == '\\')
+                i++;
+            else if (b >= 0 && b < 0x20)
+                throw error("control character in string");
+            i++;
+        }
+        throw error("unterminated string");
+    }
+
+    /**
+     * String content [start, end) → UTF-8 bytes, resolving escapes.
+     */
+    private byte[] unescape(int start, int end) {
+        int firstEscape = -1;
+        for (int i = start; i < end; i++) {
+            if (buf.get(i) == '\\') {
+                firstEscape = i;
+                break;
+            }
+        }
+
+        if (firstEscape < 0)
+            return copy(start, end); // no escapes: plain copy of the raw UTF-8
+
+        ByteArrayOutputStream out = new ByteArrayOutputStream(end - start);
+        out.write(copy(start, firstEscape), 0, firstEscape - start);
+
+        int i = firstEscape;
+        while (i < end) {
+            byte b = buf.get(i++);
+            if (b != '\\') {
+                out.write(b);
+                continue;
+            }
+
+            byte e = buf.get(i++);
+            switch (e) {
+                case '"', '\\', '/' -> out.write(e);
+                case 'b' -> out.write('\b');
+                case 'f' -> out.write('\f');
+                case 'n' -> out.write('\n');
+                case 'r' -> out.write('\r');
+                case 't' -> out.write('\t');
+                case 'u' -> {
+                    int c = hex4(i, end);
+                    i += 4;
+                    if (Character.isHighSurrogate((char) c) && i + 6 <= end
+                            && buf.get(i) == '\\' && buf.get(i + 1) == 'u') {
+                        int low = hex4(i + 2, end);
+                        if (Character.isLowSurrogate((char) low)) {
+                            c = Character.toCodePoint((char) c, (char) low);
+                            i += 6;
+                        }
+                    }
+                    writeUtf8(out, c);
+                }
+                default -> throw error("bad escape \\" + (char) e);
+            }
+        }
+        return out.toByteArray();
+    }
+
+    private int hex4(int at, int end) {
+        if (at + 4 > end)
+            throw error("truncated \\u escape");
+
+        int c = 0;
+        for (int k = 0; k < 4; k++) {
+            int d = Character.digit(buf.get(at + k), 16);
+            if (d < 0)
+                throw error("bad \\u escape");
+            c = c << 4 | d;
+        }
+        return c;
+    }
+
+    private static void writeUtf8(ByteArrayOutputStream out, int cp) {
+        if (Character.isSurrogate((char) cp) && cp <= 0xFFFF)
+            cp = 0xFFFD; // lone surrogate, same replacement String.getBytes uses
+
+        if (cp < 0x80) {
+            out.write(cp);
+        } else if (cp < 0x800) {
+            out.write(0xC0 | cp >> 6);
+            out.write(0x80 | cp & 0x3F);
+        } else if (cp < 0x10000) {
+            out.write(0xE0 | cp >> 12);
+            out.write(0x80 | cp >> 6 & 0x3F);
+            out.write(0x80 | cp & 0x3F);
+        } else {
+            out.write(0xF0 | cp >> 18);
+            out.write(0x80 | cp >> 12 & 0x3F);
+            out.write(0x80 | cp >> 6 & 0x3F);
+            out.write(0x80 | cp & 0x3F);
+        }
+    }
+
+    // ---- low level ----
+
+    private byte[] copy(int start, int end) {
+        byte[] bytes = new byte[end - start];
+        buf.get(start, bytes);
+        return bytes;
+    }
+
+    private boolean keyEquals(int start, int end, byte[] key) {
+        if (end - start != key.length)
+            return false;
+        for (int i = 0; i < key.length; i++) {
+            if (buf.get(start + i) != key[i])
+                return false;
+        }
+        return true;
+    }
+
+    private boolean equalsIgnoreAsciiCase(int start, int end, byte[] upper) {
+        if (end - start != upper.length)
+            return false;
+        for (int i = 0; i < upper.length; i++) {
+            byte b = buf.get(start + i);
+            if (b >= 'a' && b <= 'z')
+                b -= 'a' - 'A';
+            if (b != upper[i])
+                return false;
+        }
+        return true;
+    }
+
+    private void skipWhitespace() {
+        while (pos < limit) {
+            byte b = buf.get(pos);
+            if (b != ' ' && b != '\n' && b != '\r' && b != '\t')
+                return;
+            pos++;
+        }
+    }
+
+    private byte peek() {
+        if (pos >= limit)
+            throw error("unexpected end of input");
+        return buf.get(pos);
+    }
+
+    private void expect(char c) {
+        skipWhitespace();
+        if (pos >= limit || buf.get(pos) != c)
+            throw error("expected '" + c + "'");
+        pos++;
+    }
+
+    private boolean consume(char c) {
+        skipWhitespace();
+        if (pos < limit && buf.get(pos) == c) {
+            pos++;
+            return true;
+        }
+        return false;
+    }
+
+    private boolean consumeLiteral(String literal) {
+        if (pos + literal.length() > limit)
+            return false;
+        for (int i = 0; i < literal.length(); i++) {
+            if (buf.get(pos + i) != literal.charAt(i))
+                return false;
+        }
+        pos += literal.length();
+        return true;
+    }
+
+    private static boolean isDigit(byte b) {
+        return b >= '0' && b <= '9';
+    }
+
+    private static boolean isNumberChar(byte b) {
+        return isDigit(b) || b == '-' || b == '+' || b == '.' || b == 'e' || b == 'E';
+    }
+
+    private long parseNumber(byte[] text) {
+        return parseNumber(new String(text, StandardCharsets.US_ASCII));
+    }
+
+    private long parseNumber(String text) {
+        try {
+            return text.indexOf('.') < 0 && text.indexOf('e') < 0 && text.indexOf('E') < 0
+                    ? Long.parseLong(text.trim())
+                    : (long) Double.parseDouble(text.trim());
+        } catch (NumberFormatException e) {
+            throw error("bad timestamp " + text);
+        }
+    }
+
+    private IllegalArgumentException error(String what) {
+        return new IllegalArgumentException("Malformed JSON at byte " + (pos - buf.position()) + ": " + what);
+    }
+
+    private static byte[] ascii(String s) {
+        return s.getBytes(StandardCharsets.US_ASCII);
+    }
+}
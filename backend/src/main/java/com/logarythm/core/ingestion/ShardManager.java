@@ -0,0 +1,88 @@
+package com.logarythm.core.ingestion;
+
+import com.logarythm.core.storage.SegmentCatalog;
+import com.logarythm.core.storage.SegmentWriter;
+import com.logarythm.core.storage.StreamDictionary;
+import com.logarythm.core.wal.CheckpointManager;
+import com.logarythm.core.wal.WalCleaner;
+import com.logarythm.core.wal.WalWriter;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * ShardManager owns the set of ingest shards.
+ *
+ * Layout on disk:
+ * - shard 0 → data/wal, data/segments (the original single-writer layout)
+ * - shard N → data/shard-0N/wal, data/shard-0N/segments
+ *
+ * Shard 0 reuses the Spring-managed writers so a single-shard setup
+ * behaves exactly like before. Extra shards get their own instances.
+ */
+@Component
+public class ShardManager {
+
+    private static final String DATA_DIR = "data";
+    private static final String WAL_DIR = "data/wal";
+    private static final String SEGMENT_DIR = "data/segments";
+
+    private final List<IngestShard> shards;
+
+    public ShardManager(IngestionService ingestionService,
+                        WalWriter walWriter,
+                        SegmentWriter segmentWriter,
+                        CheckpointManager checkpointManager,
+                        WalCleaner walCleaner,
+                        SegmentCatalog catalog,
+                        StreamDictionary dictionary,
+                        @Value("${logarythm.wal.fsync:false}") boolean fsync) throws IOException {
+
+        int count = ingestionService.getShardCount();
+        List<IngestShard> list = new ArrayList<>(count);
+
+        list.add(new IngestShard(0, WAL_DIR, SEGMENT_DIR,
+                walWriter, segmentWriter, checkpointManager, walCleaner));
+
+        for (int i = 1; i < count; i++) {
+            String shardDir = String.format("%s/shard-%02d", DATA_DIR, i);
+            String walDir = shardDir + "/wal";
+            String segmentDir = shardDir + "/segments";
+
+            CheckpointManager checkpoint = new CheckpointManager(walDir + "/checkpoint.meta");
+
+            list.add(new IngestShard(i, walDir, segmentDir,
+                    new WalWriter(walDir, checkpoint, fsync),
+                    new SegmentWriter(segmentDir, checkpoint, catalog, dictionary),
+                    checkpoint,
+                    new WalCleaner(walDir, checkpoint)));
+        }
+
+        this.shards = Collections.unmodifiableList(list);
+
+        System.out.println("ShardManager: running with " + count + " ingest shard(s)");
+    }
+
+    public List<IngestShard> getShards() {
+        return shards;
+    }
+
+    public IngestShard getShard(int id) {
+        return shards.get(id);
+    }
+
+    /**
+     * Every directory that may contain segment files, one per shard.
+     */
+    public List<String> segmentDirs() {
+        List<String> dirs = new ArrayList<>(shards.size());
+        for (IngestShard shard : shards) {
+            dirs.add(shard.segmentDir());
+        }
+        return dirs;
+    }
+}
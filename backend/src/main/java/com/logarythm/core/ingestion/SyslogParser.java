@@ -0,0 +1,160 @@
+package com.logarythm.core.ingestion;
+
+import com.logarythm.core.storage.RecordCodec;
+import com.logarythm.core.storage.StreamDictionary;
+import com.logarythm.model.LogEntry;
+
+import java.time.OffsetDateTime;
+import java.time.format.DateTimeParseException;
+import java.util.Arrays;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * Turns one syslog line into a LogEntry.
+ *
+ * Understood formats:
+ * - RFC 5424: <PRI>1 TIMESTAMP HOSTNAME APP-NAME PROCID MSGID [SD] MSG
+ * - RFC 3164: <PRI>Mmm dd hh:mm:ss HOSTNAME TAG[pid]: MSG
+ * - anything else: the whole line is the message (level INFO)
+ * A <PRI> followed by an incomplete header keeps everything after the
+ * <PRI> as the message.
+ *
+ * Severity → level: 0-3 ERROR, 4 WARN, 5-6 INFO, 7 DEBUG.
+ * Hostname and app name / tag become the "host" and "app" labels.
+ * Timestamps without a year (RFC 3164) or unparsable ones use the receive time.
+ * Messages longer than RecordCodec.MAX_MESSAGE_BYTES are truncated (a
+ * syslog line may be longer than a record allows).
+ */
+public final class SyslogParser {
+
+    private SyslogParser() {
+    }
+
+    public static LogEntry parse(String line, long receivedAt) {
+        LogEntry entry = parseLine(line, receivedAt);
+
+        byte[] msg = entry.messageBytes();
+        int len = RecordCodec.fitMessage(msg, 0, msg.length);
+        if (len == msg.length)
+            return entry;
+        return LogEntry.ofUtf8(entry.timestamp(), entry.level(), Arrays.copyOf(msg, len), entry.labels());
+    }
+
+    private static LogEntry parseLine(String line, long receivedAt) {
+        int pri = -1;
+        int pos = 0;
+
+        if (line.startsWith("<")) {
+            int close = line.indexOf('>');
+            if (close > 1 && close <= 4) {
+                try {
+                    pri = Integer.parseInt(line.substring(1, close));
+                    pos = close + 1;
+                } catch (NumberFormatException ignored) {
+                }
+            }
+        }
+
+        if (pri < 0)
+            return new LogEntry(receivedAt, "INFO", line);
+
+        String level = levelOf(pri & 7);
+
+        if (line.startsWith("1 ", pos))
+            return parse5424(line, pos + 2, level, receivedAt);
+        return parse3164(line, pos, level, receivedAt);
+    }
+
+    private static LogEntry parse5424(String line, int pos, String level, long receivedAt) {
+        int header = pos;
+        String[] fields = new String[5]; // timestamp, host, app, procid, msgid
+        for (int i = 0; i < fields.length; i++) {
+            int space = line.indexOf(' ', pos);
+            if (space < 0)
+                return new LogEntry(receivedAt, level, line.substring(header)); // keep the partial header
+            fields[i] = line.substring(pos, space);
+            pos = space + 1;
+        }
+
+        long ts = receivedAt;
+        if (!"-".equals(fields[0])) {
+            try {
+                ts = OffsetDateTime.parse(fields[0]).toInstant().toEpochMilli();
+            } catch (DateTimeParseException ignored) {
+            }
+        }
+
+        pos = skipStructuredData(line, pos);
+        return new LogEntry(ts, level, line.substring(pos), labels(fields[1], fields[2]));
+    }
+
+    /**
+     * Skip "-" or one or more [id param="value" ...] elements (values may escape ']').
+     */
+    private static int skipStructuredData(String line, int pos) {
+        if (line.startsWith("-", pos))
+            return Math.min(pos + 2, line.length());
+
+        while (pos < line.length() && line.charAt(pos) == '[') {
+            boolean quoted = false;
+            pos++;
+            while (pos < line.length()) {
+                char c = line.charAt(pos++);
+                if (c == '\\') {
+                    pos++;
+                } else if (c == '"') {
+                    quoted = !quoted;
+                } else if (c == ']' && !quoted) {
+                    break;
+                }
+            }
+        }
+        return Math.min(pos < line.length() && line.charAt(pos) == ' ' ? pos + 1 : pos, line.length());
+    }
+
+    private static LogEntry parse3164(String line, int pos, String level, long receivedAt) {
+        // "Mmm dd hh:mm:ss " is 16 characters
+        if (line.length() - pos < 16 || line.charAt(pos + 3) != ' ' || line.charAt(pos + 15) != ' ')
+            return new LogEntry(receivedAt, level, line.substring(pos));
+        int header = pos;
+        pos += 16;
+
+        int space = line.indexOf(' ', pos);
+        if (space < 0)
+            return new LogEntry(receivedAt, level, line.substring(header)); // keep the partial header
+        String host = line.substring(pos, space);
+        pos = space + 1;
+
+        String app = null;
+        int colon = line.indexOf(": ", pos);
+        if (colon > pos && line.indexOf(' ', pos) > colon - 1) {
+            app = line.substring(pos, colon);
+            int bracket = app.indexOf('[');
+            if (bracket > 0)
+                app = app.substring(0, bracket);
+            pos = colon + 2;
+        }
+
+        return new LogEntry(receivedAt, level, line.substring(pos), labels(host, app));
+    }
+
+    private static String levelOf(int severity) {
+        if (severity <= 3)
+            return "ERROR";
+        if (severity == 4)
+            return "WARN";
+        return severity == 7 ? "DEBUG" : "INFO";
+    }
+
+    private static Map<String, String> labels(String host, String app) {
+        Map<String, String> labels = new LinkedHashMap<>();
+        if (host != null && !host.isEmpty() && !"-".equals(host))
+            labels.put("host", host);
+        if (app != null && !app.isEmpty() && !"-".equals(app))
+            labels.put("app", app);
+
+        // never let an odd header turn into a rejected entry
+        return StreamDictionary.validate(labels) == null ? labels : Map.of();
+    }
+}
@@ -0,0 +1,235 @@
+package com.logarythm.core.ingestion;
+
+import com.logarythm.core.metrics.EngineMetrics;
+import com.logarythm.core.storage.RecordCodec;
+import com.logarythm.core.storage.StreamDictionary;
+import com.logarythm.model.LogEntry;
+import io.netty.buffer.ByteBuf;
+import io.netty.channel.ChannelHandlerContext;
+import io.netty.channel.ChannelInboundHandlerAdapter;
+import io.netty.channel.ChannelOption;
+import io.netty.channel.socket.ChannelInputShutdownEvent;
+import io.netty.handler.codec.LengthFieldBasedFrameDecoder;
+import io.netty.handler.codec.LineBasedFrameDecoder;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+import reactor.core.publisher.Mono;
+import reactor.netty.DisposableServer;
+import reactor.netty.NettyInbound;
+import reactor.netty.tcp.TcpServer;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.charset.StandardCharsets;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.function.Function;
+
+/**
+ * Optional TCP ingestion for high-volume agents, next to HTTP /ingest.
+ *
+ * Two listeners (each one off when its port is 0):
+ * - binary → frames of [frameLen: 4 bytes][records...], every record in the
+ *            WAL layout [ts 8][level 1][msgLen 2][msg] (see RecordCodec;
+ *            labeled records are not accepted, agents have no stream ids)
+ * - syslog → newline-delimited syslog text (see SyslogParser)
+ *
+ * Frames are decoded straight from Netty's buffers into LogEntry batches
+ * and pushed into IngestionService. Flow control is TCP backpressure:
+ * every connection asks for one frame (binary) or a few lines (syslog) at
+ * a time, and while the ingest queue is deeper than max-queue-depth it
+ * stops asking, so Netty stops reading the socket and the agent's sends
+ * block instead of the server buffering without bound.
+ *
+ * Half-closed connections stay open until everything the agent sent
+ * was admitted (an agent can shutdown its output and wait for our close
+ * to know its logs were accepted). A malformed frame closes its connection.
+ */
+@Component
+public class TcpIngestServer {
+
+    private static final int MAX_FRAME_BYTES = 4 * 1024 * 1024;
+    private static final int MAX_SYSLOG_LINE = 16 * 1024; // SyslogParser cuts the message to the record limit
+    private static final int SYSLOG_PREFETCH = 64;
+    private static final Duration BACKPRESSURE_POLL = Duration.ofMillis(5);
+
+    // queued behind the last frame when the agent shuts down its output
+    private static final Object END_OF_INPUT = new Object();
+
+    private final IngestionService ingestionService;
+    private final StreamDictionary dictionary;
+    private final EngineMetrics metrics;
+    private final boolean enabled;
+    private final String host;
+    private final int binaryPort;
+    private final int syslogPort;
+    private final long maxQueueDepth;
+
+    private final List<DisposableServer> servers = new ArrayList<>();
+
+    public TcpIngestServer(
+            IngestionService ingestionService,
+            StreamDictionary dictionary,
+            EngineMetrics metrics,
+            @Value("${logarythm.ingest.tcp.enabled:false}") boolean enabled,
+            @Value("${logarythm.ingest.tcp.host:0.0.0.0}") String host,
+            @Value("${logarythm.ingest.tcp.binary-port:5140}") int binaryPort,
+            @Value("${logarythm.ingest.tcp.syslog-port:5514}") int syslogPort,
+            @Value("${logarythm.ingest.tcp.max-queue-depth:200000}") long maxQueueDepth) {
+
+        this.ingestionService = ingestionService;
+        this.dictionary = dictionary;
+        this.metrics = metrics;
+        this.enabled = enabled;
+        this.host = host;
+        this.binaryPort = binaryPort;
+        this.syslogPort = syslogPort;
+        this.maxQueueDepth = maxQueueDepth;
+    }
+
+    @PostConstruct
+    public void start() {
+        if (!enabled) {
+            System.out.println("TcpIngestServer: disabled");
+            return;
+        }
+        if (ingestionService.isReadOnly()) {
+            System.out.println("TcpIngestServer: disabled on a replication follower");
+            return;
+        }
+
+        if (binaryPort > 0) {
+            servers.add(TcpServer.create()
+                    .host(host)
+                    .port(binaryPort)
+                    .childOption(ChannelOption.ALLOW_HALF_CLOSURE, true)
+                    .doOnConnection(conn -> conn
+                            .addHandlerLast(new LengthFieldBasedFrameDecoder(MAX_FRAME_BYTES, 0, 4, 0, 4))
+                            .addHandlerLast(new EndOfInputHandler()))
+                    .handle((in, out) -> receive(in, this::decodeFrame, 1))
+                    .bindNow());
+            System.out.println("TcpIngestServer: binary frames on " + host + ":" + binaryPort);
+        }
+
+        if (syslogPort > 0) {
+            servers.add(TcpServer.create()
+                    .host(host)
+                    .port(syslogPort)
+                    .childOption(ChannelOption.ALLOW_HALF_CLOSURE, true)
+                    .doOnConnection(conn -> conn
+                            .addHandlerLast(new LineBasedFrameDecoder(MAX_SYSLOG_LINE))
+                            .addHandlerLast(new EndOfInputHandler()))
+                    .handle((in, out) -> receive(in, this::decodeSyslogLine, SYSLOG_PREFETCH))
+                    .bindNow());
+            System.out.println("TcpIngestServer: syslog lines on " + host + ":" + syslogPort);
+        }
+    }
+
+    @PreDestroy
+    public void stop() {
+        for (DisposableServer server : servers) {
+            server.disposeNow();
+        }
+    }
+
+    /**
+     * Decode every frame while Netty still owns its buffer (map runs inside
+     * onNext), then admit the batches one by one; concatMap only requests
+     * more frames once the previous ones were admitted. The connection
+     * closes once END_OF_INPUT is reached, i.e. after the last frame.
+     */
+    private Mono<Void> receive(NettyInbound in, Function<ByteBuf, List<LogEntry>> decoder,
+                               int prefetch) {
+        return in.receiveObject()
+                .takeWhile(msg -> msg != END_OF_INPUT)
+                .cast(ByteBuf.class)
+                .map(frame -> {
+                    metrics.tcpFramesReceived.increment();
+                    metrics.tcpBytesReceived.add(frame.readableBytes());
+                    return decoder.apply(frame);
+                })
+                .concatMap(this::admit, prefetch)
+                .doOnError(e -> {
+                    metrics.tcpConnectionsFailed.increment();
+                    System.out.println("TcpIngestServer: closing connection: " + e.getMessage());
+                })
+                .onErrorComplete()
+                .then();
+    }
+
+    private Mono<Void> admit(List<LogEntry> batch) {
+        if (metrics.queueDepth() < maxQueueDepth) {
+            ingestionService.acceptAll(batch);
+            return Mono.empty();
+        }
+
+        metrics.tcpBackpressureWaits.increment();
+        return Mono.delay(BACKPRESSURE_POLL).then(Mono.defer(() -> admit(batch)));
+    }
+
+    /**
+     * One binary frame → its records, in order.
+     */
+    private List<LogEntry> decodeFrame(ByteBuf frame) {
+        List<LogEntry> entries = new ArrayList<>(Math.max(frame.readableBytes() / 64, 1));
+
+        while (frame.isReadable()) {
+            if (frame.readableBytes() < RecordCodec.HEADER_BYTES)
+                throw new IllegalArgumentException("truncated record header");
+
+            long ts = frame.readLong();
+            byte lvl = frame.readByte();
+            int msgLen = frame.readUnsignedShort();
+
+            if ((lvl & RecordCodec.LABELED) != 0)
+                throw new IllegalArgumentException("labeled records are not accepted over TCP");
+            if ((lvl & RecordCodec.REPEATED) != 0)
+                throw new IllegalArgumentException("repeated records are not accepted over TCP");
+            if (msgLen > RecordCodec.MAX_MESSAGE_BYTES || frame.readableBytes() < msgLen)
+                throw new IllegalArgumentException("bad message length " + msgLen);
+
+            byte[] msg = new byte[msgLen];
+            frame.readBytes(msg);
+            entries.add(LogEntry.ofUtf8(ts, RecordCodec.decodeLevel(lvl), msg, null));
+        }
+        return entries;
+    }
+
+    private List<LogEntry> decodeSyslogLine(ByteBuf line) {
+        String text = line.toString(StandardCharsets.UTF_8);
+        if (text.endsWith("\r"))
+            text = text.substring(0, text.length() - 1);
+        LogEntry entry = SyslogParser.parse(text, System.currentTimeMillis());
+
+        // assign the host/app stream id now (a new one is synced once); syslog
+        // has no way to reject a line, so once the dictionary is full a new
+        // label set is dropped here rather than after the line was accepted
+        try {
+            dictionary.idOf(entry.labels());
+        } catch (IllegalStateException e) {
+            entry = LogEntry.ofUtf8(entry.timestamp(), entry.level(), entry.messageBytes(), null);
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+        return List.of(entry);
+    }
+
+    /**
+     * Turns the agent's half-close into an in-band END_OF_INPUT message.
+     * Reactor Netty discards frames still queued when a channel goes
+     * inactive, so instead of closing on EOF (ALLOW_HALF_CLOSURE) we let
+     * the queue drain and close from receive().
+     */
+    private static final class EndOfInputHandler extends ChannelInboundHandlerAdapter {
+
+        @Override
+        public void userEventTriggered(ChannelHandlerContext ctx, Object evt) throws Exception {
+            if (evt instanceof ChannelInputShutdownEvent)
+                ctx.fireChannelRead(END_OF_INPUT);
+            super.userEventTriggered(ctx, evt);
+        }
+    }
+}
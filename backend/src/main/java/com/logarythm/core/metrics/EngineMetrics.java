@@ -0,0 +1,223 @@
+package com.logarythm.core.metrics;
+
+import jakarta.annotation.PreDestroy;
+import org.springframework.stereotype.Component;
+import reactor.core.Disposable;
+import reactor.core.publisher.Flux;
+
+import java.time.Duration;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Central, low-overhead engine instrumentation.
+ *
+ * Hot paths only touch LongAdder counters and LatencyHistogram buckets
+ * (lock-free, no allocation). Anything that needs math or allocation
+ * (rates, percentiles, JSON maps) happens when /metrics is read.
+ */
+@Component
+public class EngineMetrics {
+
+    // ---- ingest ----
+    public final LongAdder logsAccepted = new LongAdder();
+    public final LongAdder logsFlushed = new LongAdder();
+    public final LongAdder logsFailed = new LongAdder();
+    public final LongAdder logsDeduplicated = new LongAdder();
+    public final LongAdder tcpFramesReceived = new LongAdder();
+    public final LongAdder tcpBytesReceived = new LongAdder();
+    public final LongAdder tcpBackpressureWaits = new LongAdder();
+    public final LongAdder tcpConnectionsFailed = new LongAdder();
+
+    // ---- flush pipeline ----
+    public final LongAdder batchesFlushed = new LongAdder();
+    public final LatencyHistogram encodeLatency = new LatencyHistogram();
+    public final LatencyHistogram walWriteLatency = new LatencyHistogram();
+    public final LatencyHistogram walFsyncLatency = new LatencyHistogram();
+    public final LatencyHistogram segmentWriteLatency = new LatencyHistogram();
+    public final LatencyHistogram batchEndToEndLatency = new LatencyHistogram();
+    public final LongAdder walBytes = new LongAdder();
+    public final LongAdder segmentBytesWritten = new LongAdder();
+
+    // ---- retention ----
+    public final LongAdder retentionSegmentsDropped = new LongAdder();
+    public final LongAdder retentionSegmentsRewritten = new LongAdder();
+    public final LongAdder retentionBytesFreed = new LongAdder();
+
+    // ---- archive tier ----
+    public final LongAdder tierSegmentsArchived = new LongAdder();
+    public final LongAdder tierBytesArchived = new LongAdder();
+    public final LongAdder tierBlocksFetched = new LongAdder();
+    public final LongAdder tierBytesFetched = new LongAdder();
+    public final LongAdder tierCacheHits = new LongAdder();
+
+    // ---- replication ----
+    public final LongAdder replicationChunksShipped = new LongAdder();
+    public final LongAdder replicationBytesShipped = new LongAdder();
+    public final LongAdder replicationShipErrors = new LongAdder();
+    public final LongAdder replicationGaps = new LongAdder();
+    public final LongAdder replicationChunksApplied = new LongAdder();
+    public final LongAdder replicationLogsApplied = new LongAdder();
+    public final LongAdder replicationAckTimeouts = new LongAdder();
+
+    // ---- query ----
+    public final LatencyHistogram queryAll = new LatencyHistogram();
+    public final LatencyHistogram queryTime = new LatencyHistogram();
+    public final LatencyHistogram queryLevel = new LatencyHistogram();
+    public final LatencyHistogram queryKeyword = new LatencyHistogram();
+    public final LatencyHistogram queryCombined = new LatencyHistogram();
+    public final LongAdder segmentsScanned = new LongAdder();
+    public final LongAdder segmentsPrunedByTime = new LongAdder();
+    public final LongAdder segmentsPrunedByBloom = new LongAdder();
+    public final LongAdder segmentsPrunedByLabel = new LongAdder();
+    public final LongAdder blocksPrunedByTime = new LongAdder();
+    public final LongAdder blocksPrunedByLabel = new LongAdder();
+    public final LongAdder queryBytesRead = new LongAdder();
+    public final LongAdder queryRecordsRead = new LongAdder();
+    public final LongAdder queriesRejected = new LongAdder();
+    public final LongAdder queriesTimedOut = new LongAdder();
+    public final LongAdder queriesCancelled = new LongAdder();
+    public final LongAdder federatedQueries = new LongAdder();
+    public final LongAdder federationPeerTimeouts = new LongAdder();
+    public final LongAdder federationPeerErrors = new LongAdder();
+
+    // per-second rates, sampled once a second off the hot path
+    private volatile double acceptedPerSec;
+    private volatile double flushedPerSec;
+    private long lastAccepted;
+    private long lastFlushed;
+    private final Disposable rateSampler;
+
+    public EngineMetrics() {
+        rateSampler = Flux.interval(Duration.ofSeconds(1)).subscribe(tick -> sampleRates());
+    }
+
+    private void sampleRates() {
+        long accepted = logsAccepted.sum();
+        long flushed = logsFlushed.sum();
+
+        acceptedPerSec = accepted - lastAccepted;
+        flushedPerSec = flushed - lastFlushed;
+
+        lastAccepted = accepted;
+        lastFlushed = flushed;
+    }
+
+    /**
+     * Pick the latency histogram for a query shape.
+     */
+    public LatencyHistogram queryLatency(boolean hasTime, boolean hasLevel, boolean hasKeyword) {
+        int filters = (hasTime ? 1 : 0) + (hasLevel ? 1 : 0) + (hasKeyword ? 1 : 0);
+
+        if (filters == 0)
+            return queryAll;
+        if (filters > 1)
+            return queryCombined;
+        if (hasTime)
+            return queryTime;
+        if (hasLevel)
+            return queryLevel;
+        return queryKeyword;
+    }
+
+    /**
+     * Logs accepted by the API but not yet written to segments (or dropped).
+     */
+    public long queueDepth() {
+        return logsAccepted.sum() - logsFlushed.sum() - logsFailed.sum();
+    }
+
+    public Map<String, Object> snapshot() {
+        Map<String, Object> ingest = new LinkedHashMap<>();
+        ingest.put("accepted", logsAccepted.sum());
+        ingest.put("flushed", logsFlushed.sum());
+        ingest.put("failed", logsFailed.sum());
+        ingest.put("deduplicated", logsDeduplicated.sum());
+        ingest.put("queueDepth", queueDepth());
+        ingest.put("acceptedPerSec", acceptedPerSec);
+        ingest.put("flushedPerSec", flushedPerSec);
+
+        Map<String, Object> tcp = new LinkedHashMap<>();
+        tcp.put("frames", tcpFramesReceived.sum());
+        tcp.put("bytes", tcpBytesReceived.sum());
+        tcp.put("backpressureWaits", tcpBackpressureWaits.sum());
+        tcp.put("connectionsFailed", tcpConnectionsFailed.sum());
+        ingest.put("tcp", tcp);
+
+        Map<String, Object> flush = new LinkedHashMap<>();
+        flush.put("batches", batchesFlushed.sum());
+        flush.put("encode", encodeLatency.snapshot());
+        flush.put("walWrite", walWriteLatency.snapshot());
+        flush.put("walFsync", walFsyncLatency.snapshot());
+        flush.put("segmentWrite", segmentWriteLatency.snapshot());
+        flush.put("endToEnd", batchEndToEndLatency.snapshot());
+
+        Map<String, Object> storage = new LinkedHashMap<>();
+        storage.put("walBytesWritten", walBytes.sum());
+        storage.put("segmentBytesWritten", segmentBytesWritten.sum());
+
+        Map<String, Object> retention = new LinkedHashMap<>();
+        retention.put("segmentsDropped", retentionSegmentsDropped.sum());
+        retention.put("segmentsRewritten", retentionSegmentsRewritten.sum());
+        retention.put("bytesFreed", retentionBytesFreed.sum());
+
+        Map<String, Object> tier = new LinkedHashMap<>();
+        tier.put("segmentsArchived", tierSegmentsArchived.sum());
+        tier.put("bytesArchived", tierBytesArchived.sum());
+        tier.put("blocksFetched", tierBlocksFetched.sum());
+        tier.put("bytesFetched", tierBytesFetched.sum());
+        tier.put("cacheHits", tierCacheHits.sum());
+
+        Map<String, Object> latency = new LinkedHashMap<>();
+        latency.put("all", queryAll.snapshot());
+        latency.put("time", queryTime.snapshot());
+        latency.put("level", queryLevel.snapshot());
+        latency.put("keyword", queryKeyword.snapshot());
+        latency.put("combined", queryCombined.snapshot());
+
+        Map<String, Object> query = new LinkedHashMap<>();
+        query.put("latency", latency);
+        query.put("segmentsScanned", segmentsScanned.sum());
+        query.put("segmentsPrunedByTime", segmentsPrunedByTime.sum());
+        query.put("segmentsPrunedByBloom", segmentsPrunedByBloom.sum());
+        query.put("segmentsPrunedByLabel", segmentsPrunedByLabel.sum());
+        query.put("blocksPrunedByTime", blocksPrunedByTime.sum());
+        query.put("blocksPrunedByLabel", blocksPrunedByLabel.sum());
+        query.put("bytesRead", queryBytesRead.sum());
+        query.put("recordsRead", queryRecordsRead.sum());
+        query.put("rejected", queriesRejected.sum());
+        query.put("timedOut", queriesTimedOut.sum());
+        query.put("cancelled", queriesCancelled.sum());
+
+        Map<String, Object> federation = new LinkedHashMap<>();
+        federation.put("queries", federatedQueries.sum());
+        federation.put("peerTimeouts", federationPeerTimeouts.sum());
+        federation.put("peerErrors", federationPeerErrors.sum());
+        query.put("federation", federation);
+
+        Map<String, Object> replication = new LinkedHashMap<>();
+        replication.put("chunksShipped", replicationChunksShipped.sum());
+        replication.put("bytesShipped", replicationBytesShipped.sum());
+        replication.put("shipErrors", replicationShipErrors.sum());
+        replication.put("gaps", replicationGaps.sum());
+        replication.put("chunksApplied", replicationChunksApplied.sum());
+        replication.put("logsApplied", replicationLogsApplied.sum());
+        replication.put("ackTimeouts", replicationAckTimeouts.sum());
+
+        Map<String, Object> out = new LinkedHashMap<>();
+        out.put("ingest", ingest);
+        out.put("flush", flush);
+        out.put("storage", storage);
+        out.put("retention", retention);
+        out.put("tier", tier);
+        out.put("query", query);
+        out.put("replication", replication);
+        return out;
+    }
+
+    @PreDestroy
+    public void close() {
+        rateSampler.dispose();
+    }
+}
@@ -0,0 +1,121 @@
+package com.logarythm.core.metrics;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * Lock-free, allocation-free latency histogram (HdrHistogram-style, log-linear).
+ *
+ * Values are recorded in microseconds into 8 sub-buckets per power of two,
+ * so every bucket is within 12.5% of the true value. Recording is a few
+ * atomic increments; all the math for percentiles happens in snapshot().
+ */
+public class LatencyHistogram {
+
+    private static final int SUB_BUCKET_BITS = 3;
+    private static final int SUB_BUCKETS = 1 << SUB_BUCKET_BITS;
+    private static final int BUCKETS = 64 * SUB_BUCKETS;
+
+    private final AtomicLongArray counts = new AtomicLongArray(BUCKETS);
+    private final AtomicLong totalCount = new AtomicLong();
+    private final AtomicLong totalMicros = new AtomicLong();
+    private final AtomicLong maxMicros = new AtomicLong();
+
+    public void recordNanos(long nanos) {
+        recordMicros(TimeUnit.NANOSECONDS.toMicros(nanos));
+    }
+
+    /**
+     * Record the time elapsed since startNanos (a System.nanoTime() value).
+     */
+    public void recordSince(long startNanos) {
+        recordNanos(System.nanoTime() - startNanos);
+    }
+
+    public void recordMicros(long micros) {
+        if (micros < 0)
+            micros = 0;
+
+        counts.incrementAndGet(bucketIndex(micros));
+        totalCount.incrementAndGet();
+        totalMicros.addAndGet(micros);
+
+        long max = maxMicros.get();
+        while (micros > max && !maxMicros.compareAndSet(max, micros)) {
+            max = maxMicros.get();
+        }
+    }
+
+    public long count() {
+        return totalCount.get();
+    }
+
+    static int bucketIndex(long value) {
+        if (value < SUB_BUCKETS)
+            return (int) value;
+
+        int exponent = 63 - Long.numberOfLeadingZeros(value);
+        int sub = (int) ((value >>> (exponent - SUB_BUCKET_BITS)) & (SUB_BUCKETS - 1));
+        return (exponent - SUB_BUCKET_BITS + 1) * SUB_BUCKETS + sub;
+    }
+
+    static long bucketLowerBound(int index) {
+        if (index < SUB_BUCKETS)
+            return index;
+
+        int exponent = index / SUB_BUCKETS + SUB_BUCKET_BITS - 1;
+        int sub = index % SUB_BUCKETS;
+        return (long) (SUB_BUCKETS + sub) << (exponent - SUB_BUCKET_BITS);
+    }
+
+    /**
+     * Summary in milliseconds: count, mean, p50, p90, p99, p999, max.
+     */
+    public Map<String, Object> snapshot() {
+        long[] copy = new long[BUCKETS];
+        long count = 0;
+
+        for (int i = 0; i < BUCKETS; i++) {
+            copy[i] = counts.get(i);
+            count += copy[i];
+        }
+
+        Map<String, Object> out = new LinkedHashMap<>();
+        out.put("count", count);
+
+        if (count == 0)
+            return out;
+
+        out.put("meanMs", toMillis(totalMicros.get() / Math.max(1, totalCount.get())));
+        out.put("p50Ms", toMillis(percentile(copy, count, 0.50)));
+        out.put("p90Ms", toMillis(percentile(copy, count, 0.90)));
+        out.put("p99Ms", toMillis(percentile(copy, count, 0.99)));
+        out.put("p999Ms", toMillis(percentile(copy, count, 0.999)));
+        out.put("maxMs", toMillis(maxMicros.get()));
+        return out;
+    }
+
+    private long percentile(long[] buckets, long count, double p) {
+        long rank = (long) Math.ceil(p * count);
+        long seen = 0;
+
+        for (int i = 0; i < buckets.length; i++) {
+            seen += buckets[i];
+            if (seen >= rank) {
+                // upper edge of the bucket, capped by the real max
+                long upper = i + 1 < buckets.length ? bucketLowerBound(i + 1) - 1 : Long.MAX_VALUE;
+                if (upper < 0)
+                    upper = Long.MAX_VALUE;
+                return Math.min(upper, maxMicros.get());
+            }
+        }
+        return maxMicros.get();
+    }
+
+    private double toMillis(long micros) {
+        return Math.round(micros / 10.0) / 100.0;
+    }
+}
@@ -0,0 +1,110 @@
+package com.logarythm.core.query;
+
+import java.util.ArrayDeque;
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * Multi-pattern substring matcher over raw bytes (Aho-Corasick, compiled
+ * to a full 256-way transition table so a scan is one table lookup per byte).
+ *
+ * Matching is ASCII case-insensitive: patterns and text are folded with
+ * the same table, so UTF-8 multi-byte sequences pass through unchanged.
+ *
+ * At most 64 patterns; scan() returns a bitmask of the patterns found.
+ */
+final class AhoCorasick {
+
+    static final int MAX_PATTERNS = 64;
+
+    private static final byte[] FOLD = new byte[256];
+
+    static {
+        for (int i = 0; i < 256; i++)
+            FOLD[i] = (byte) (i >= 'A' && i <= 'Z' ? i + 32 : i);
+    }
+
+    private final int[] delta;   // state * 256 + byte → next state
+    private final long[] output; // state → patterns ending here (incl. via failure links)
+    private final long all;
+
+    AhoCorasick(List<byte[]> patterns) {
+        if (patterns.size() > MAX_PATTERNS)
+            throw new IllegalArgumentException("Too many search terms (max " + MAX_PATTERNS + ")");
+
+        int maxStates = 1;
+        for (byte[] p : patterns)
+            maxStates += p.length;
+
+        int[] table = new int[maxStates * 256];
+        long[] out = new long[maxStates];
+        Arrays.fill(table, -1);
+
+        // trie
+        int states = 1;
+        for (int id = 0; id < patterns.size(); id++) {
+            int s = 0;
+            for (byte b : patterns.get(id)) {
+                int slot = s * 256 + (FOLD[b & 0xFF] & 0xFF);
+                if (table[slot] == -1)
+                    table[slot] = states++;
+                s = table[slot];
+            }
+            out[s] |= 1L << id;
+        }
+
+        // failure links, breadth first, folded into the transition table
+        int[] fail = new int[states];
+        ArrayDeque<Integer> queue = new ArrayDeque<>();
+
+        for (int c = 0; c < 256; c++) {
+            if (table[c] == -1) {
+                table[c] = 0;
+            } else {
+                fail[table[c]] = 0;
+                queue.add(table[c]);
+            }
+        }
+
+        while (!queue.isEmpty()) {
+            int r = queue.poll();
+            out[r] |= out[fail[r]];
+
+            for (int c = 0; c < 256; c++) {
+                int u = table[r * 256 + c];
+                int viaFail = table[fail[r] * 256 + c];
+
+                if (u == -1) {
+                    table[r * 256 + c] = viaFail;
+                } else {
+                    fail[u] = viaFail;
+                    queue.add(u);
+                }
+            }
+        }
+
+        this.delta = Arrays.copyOf(table, states * 256);
+        this.output = Arrays.copyOf(out, states);
+        this.all = patterns.size() == MAX_PATTERNS ? -1L : (1L << patterns.size()) - 1;
+    }
+
+    /**
+     * @return bitmask of the patterns occurring in text[offset, offset + length)
+     */
+    long scan(byte[] text, int offset, int length) {
+        int[] delta = this.delta;
+        long[] output = this.output;
+
+        int state = 0;
+        long found = 0;
+
+        for (int i = offset, end = offset + length; i < end; i++) {
+            state = delta[(state << 8) | (FOLD[text[i] & 0xFF] & 0xFF)];
+            found |= output[state];
+
+            if (found == all)
+                break; // every pattern seen
+        }
+        return found;
+    }
+}
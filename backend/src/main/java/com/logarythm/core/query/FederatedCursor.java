@@ -0,0 +1,95 @@
+package com.logarythm.core.query;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Base64;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * Continuation point of a federated query: where to resume on every node
+ * (index 0 = this node, then the configured peers in order).
+ *
+ * Per node:
+ * - START     → nothing read yet, query from the top
+ * - a cursor  → that node's own /query cursor, resume right after it
+ * - EXHAUSTED → the node has no more rows, skip it
+ *
+ * Sent to clients as an opaque URL-safe base64 token, like QueryCursor.
+ */
+public final class FederatedCursor {
+
+    public static final String START = "";
+    public static final String EXHAUSTED = "~";
+
+    private static final int VERSION = 0x46; // 'F', never a QueryCursor version
+
+    private final List<String> nodes;
+
+    private FederatedCursor(List<String> nodes) {
+        this.nodes = nodes;
+    }
+
+    public static FederatedCursor start(int nodeCount) {
+        return new FederatedCursor(Collections.nCopies(nodeCount, START));
+    }
+
+    public static FederatedCursor of(List<String> nodes) {
+        return new FederatedCursor(List.copyOf(nodes));
+    }
+
+    public String node(int i) {
+        return nodes.get(i);
+    }
+
+    public boolean exhausted(int i) {
+        return EXHAUSTED.equals(nodes.get(i));
+    }
+
+    public boolean allExhausted() {
+        for (String node : nodes) {
+            if (!EXHAUSTED.equals(node))
+                return false;
+        }
+        return true;
+    }
+
+    public String encode() {
+        try {
+            ByteArrayOutputStream bytes = new ByteArrayOutputStream(64 * nodes.size());
+            DataOutputStream out = new DataOutputStream(bytes);
+            out.writeByte(VERSION);
+            out.writeShort(nodes.size());
+            for (String node : nodes)
+                out.writeUTF(node);
+            return Base64.getUrlEncoder().withoutPadding().encodeToString(bytes.toByteArray());
+        } catch (IOException e) {
+            throw new IllegalStateException(e); // in-memory stream
+        }
+    }
+
+    /**
+     * @throws IllegalArgumentException when the token is not a federated cursor
+     *         for nodeCount nodes (e.g. the peer list changed)
+     */
+    public static FederatedCursor decode(String token, int nodeCount) {
+        try {
+            DataInputStream in = new DataInputStream(
+                    new ByteArrayInputStream(Base64.getUrlDecoder().decode(token)));
+
+            if (in.readByte() != VERSION || in.readUnsignedShort() != nodeCount)
+                throw new IllegalArgumentException();
+
+            List<String> nodes = new ArrayList<>(nodeCount);
+            for (int i = 0; i < nodeCount; i++)
+                nodes.add(in.readUTF());
+            return new FederatedCursor(nodes);
+        } catch (IOException | IllegalArgumentException e) {
+            throw new IllegalArgumentException("Invalid federated cursor (or the peer list changed): " + token);
+        }
+    }
+}
@@ -0,0 +1,93 @@
+package com.logarythm.core.query;
+
+import java.lang.reflect.Constructor;
+
+/**
+ * Case-insensitive search for one keyword in raw UTF-8 message bytes,
+ * without decoding or lower-casing the message.
+ *
+ * Candidates are found by comparing the first and last byte of the keyword
+ * at distance length - 1 (ASCII letters compared with the case bit forced on),
+ * then verified with ASCII folding. Used instead of Aho-Corasick when a
+ * query has a single literal, the common message=keyword case.
+ *
+ * Two implementations:
+ * - ScalarKeywordScanner → plain loop, always available
+ * - VectorKeywordScanner → JDK Vector API (incubator), tests a whole vector
+ *   of candidate positions per step; picked automatically when the JVM was
+ *   started with --add-modules jdk.incubator.vector
+ */
+abstract class KeywordScanner {
+
+    private static final Constructor<? extends KeywordScanner> VECTOR = loadVectorScanner();
+
+    protected final byte[] pattern; // ASCII-folded (lower case)
+    protected final byte first;
+    protected final byte last;
+    protected final byte firstCaseBit; // 0x20 for letters, else 0
+    protected final byte lastCaseBit;
+
+    protected KeywordScanner(byte[] folded) {
+        this.pattern = folded;
+        this.first = folded[0];
+        this.last = folded[folded.length - 1];
+        this.firstCaseBit = caseBit(first);
+        this.lastCaseBit = caseBit(last);
+    }
+
+    static KeywordScanner create(byte[] folded) {
+        if (VECTOR != null && folded.length >= 2) {
+            try {
+                return VECTOR.newInstance((Object) folded);
+            } catch (ReflectiveOperationException e) {
+                e.printStackTrace();
+            }
+        }
+        return new ScalarKeywordScanner(folded);
+    }
+
+    static boolean vectorAvailable() {
+        return VECTOR != null;
+    }
+
+    /**
+     * Does text[offset, offset + length) contain the keyword (ASCII case-insensitive)?
+     */
+    abstract boolean find(byte[] text, int offset, int length);
+
+    /**
+     * Full comparison of a candidate whose first and last bytes already matched.
+     */
+    protected final boolean verify(byte[] text, int at) {
+        for (int k = 1; k < pattern.length - 1; k++) {
+            byte b = text[at + k];
+            if (b >= 'A' && b <= 'Z')
+                b += 32;
+            if (b != pattern[k])
+                return false;
+        }
+        return true;
+    }
+
+    private static byte caseBit(byte b) {
+        return (byte) (b >= 'a' && b <= 'z' ? 0x20 : 0);
+    }
+
+    @SuppressWarnings("unchecked")
+    private static Constructor<? extends KeywordScanner> loadVectorScanner() {
+        if (ModuleLayer.boot().findModule("jdk.incubator.vector").isEmpty())
+            return null;
+
+        try {
+            Class<?> c = Class.forName("com.logarythm.core.query.VectorKeywordScanner");
+            Constructor<? extends KeywordScanner> ctor =
+                    (Constructor<? extends KeywordScanner>) c.getDeclaredConstructor(byte[].class);
+
+            System.out.println("KeywordScanner: using the Vector API for keyword search");
+            return ctor;
+        } catch (Throwable t) {
+            System.out.println("KeywordScanner: Vector API unavailable (" + t + "), using scalar search");
+            return null;
+        }
+    }
+}
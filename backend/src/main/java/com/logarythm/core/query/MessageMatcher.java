@@ -0,0 +1,98 @@
+package com.logarythm.core.query;
+
+import java.nio.charset.StandardCharsets;
+
+/**
+ * Per-scan evaluator of a MessageQuery. Not thread-safe: one per query scan.
+ *
+ * matches() runs the literal pass (Aho-Corasick or KeywordScanner) once per
+ * row, then evaluates the query tree on the resulting bitmask. The message is decoded to a String
+ * only when a regex (or a non-ASCII term) actually has to look at it.
+ */
+public final class MessageMatcher {
+
+    private final QueryNode root;
+    private final AhoCorasick automaton;
+    private final KeywordScanner scanner;
+
+    // current row
+    private byte[] buf;
+    private int offset;
+    private int length;
+    private long found;
+    private String text;
+
+    private long stringsMaterialized;
+
+    MessageMatcher(QueryNode root, AhoCorasick automaton, KeywordScanner scanner) {
+        this.root = root;
+        this.automaton = automaton;
+        this.scanner = scanner;
+    }
+
+    public boolean matches(byte[] buf, int offset, int length) {
+        this.buf = buf;
+        this.offset = offset;
+        this.length = length;
+        this.text = null;
+        if (scanner != null)
+            this.found = scanner.find(buf, offset, length) ? 1 : 0;
+        else
+            this.found = automaton != null ? automaton.scan(buf, offset, length) : 0;
+
+        return eval(root);
+    }
+
+    /**
+     * Decoded message of the last matches() call, if it had to be built.
+     */
+    public String decodedText() {
+        return text;
+    }
+
+    public long stringsMaterialized() {
+        return stringsMaterialized;
+    }
+
+    private boolean eval(QueryNode node) {
+        return switch (node) {
+            case QueryNode.Term t -> t.literal() >= 0
+                    ? hasLiteral(t.literal())
+                    : text().toLowerCase().contains(t.text().toLowerCase());
+            case QueryNode.Regex r -> {
+                for (int id : r.literals()) {
+                    if (!hasLiteral(id))
+                        yield false;
+                }
+                yield r.pattern().matcher(text()).find();
+            }
+            case QueryNode.And a -> {
+                for (QueryNode c : a.children()) {
+                    if (!eval(c))
+                        yield false;
+                }
+                yield true;
+            }
+            case QueryNode.Or o -> {
+                for (QueryNode c : o.children()) {
+                    if (eval(c))
+                        yield true;
+                }
+                yield false;
+            }
+            case QueryNode.Not n -> !eval(n.child());
+        };
+    }
+
+    private boolean hasLiteral(int id) {
+        return (found & (1L << id)) != 0;
+    }
+
+    private String text() {
+        if (text == null) {
+            text = new String(buf, offset, length, StandardCharsets.UTF_8);
+            stringsMaterialized++;
+        }
+        return text;
+    }
+}
@@ -0,0 +1,150 @@
+package com.logarythm.core.query;
+
+import com.logarythm.core.bloom.BloomFilter;
+
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * A compiled message filter: AND / OR / NOT of words, "phrases" and /regexes/.
+ *
+ * Evaluation is layered so a complex query costs about as much as one keyword:
+ * 1. segment pruning → mightMatch() checks the words that must appear as whole
+ *    tokens against the segment's token Bloom filter
+ * 2. row prefilter   → all terms and required regex fragments are found in a
+ *    single Aho-Corasick pass over the raw UTF-8 message bytes (or, for a
+ *    single literal, a first/last-byte KeywordScanner, SIMD when available)
+ * 3. regex           → runs only on rows that contain all of its fragments
+ *
+ * Matching of words and phrases is case-insensitive (ASCII case folding;
+ * non-ASCII terms fall back to a String comparison). Regexes are Java syntax,
+ * case-sensitive unless they say (?i).
+ *
+ * Immutable and thread-safe; every scan takes its own MessageMatcher.
+ */
+public final class MessageQuery {
+
+    private final String source;
+    private final QueryNode root;
+    private final List<String> literals;
+    private final AhoCorasick automaton;
+    private final KeywordScanner scanner;
+
+    private MessageQuery(String source, QueryNode root, List<String> literals) {
+        this.source = source;
+        this.root = root;
+        this.literals = List.copyOf(literals);
+
+        List<byte[]> patterns = new ArrayList<>();
+        for (String literal : literals)
+            patterns.add(QueryParser.fold(literal));
+        // one literal (the common single-keyword case) → dedicated scanner
+        this.scanner = patterns.size() == 1 ? KeywordScanner.create(patterns.get(0)) : null;
+        this.automaton = patterns.size() > 1 ? new AhoCorasick(patterns) : null;
+    }
+
+    /**
+     * Compile a query string (q=) and/or a plain keyword (message=).
+     *
+     * @return null when both are empty
+     * @throws IllegalArgumentException on a syntax error
+     */
+    public static MessageQuery compile(String query, String keyword) {
+        boolean hasQuery = query != null && !query.isBlank();
+        boolean hasKeyword = keyword != null && !keyword.isEmpty();
+
+        if (!hasQuery && !hasKeyword)
+            return null;
+
+        List<String> literals = new ArrayList<>();
+        List<QueryNode> parts = new ArrayList<>();
+
+        if (hasQuery)
+            parts.add(new QueryParser(query, literals).parse());
+        if (hasKeyword)
+            parts.add(new QueryParser(keyword, literals).term(keyword,
+                    keyword.chars().noneMatch(Character::isWhitespace)));
+
+        String source = hasQuery && hasKeyword
+                ? "(" + query + ") AND \"" + keyword + "\""
+                : hasQuery ? query : keyword;
+
+        return new MessageQuery(source, parts.size() == 1 ? parts.get(0) : new QueryNode.And(parts), literals);
+    }
+
+    /**
+     * A single keyword, as the old message= parameter.
+     */
+    public static MessageQuery keyword(String keyword) {
+        return compile(null, keyword);
+    }
+
+    public MessageMatcher matcher() {
+        return new MessageMatcher(root, automaton, scanner);
+    }
+
+    /**
+     * False when the segment's token Bloom filter proves no row can match.
+     */
+    public boolean mightMatch(BloomFilter filter) {
+        return mightMatch(root, filter);
+    }
+
+    private static boolean mightMatch(QueryNode node, BloomFilter filter) {
+        return switch (node) {
+            case QueryNode.Term t -> {
+                List<String> tokens = t.bare()
+                        ? List.of(t.text().toLowerCase())
+                        : RegexLiterals.boundedTokens(t.text());
+                yield allPresent(tokens, filter);
+            }
+            case QueryNode.Regex r -> allPresent(r.bloomTokens(), filter);
+            case QueryNode.And a -> a.children().stream().allMatch(c -> mightMatch(c, filter));
+            case QueryNode.Or o -> o.children().stream().anyMatch(c -> mightMatch(c, filter));
+            case QueryNode.Not n -> true; // absence can't be proven by a Bloom filter
+        };
+    }
+
+    private static boolean allPresent(List<String> tokens, BloomFilter filter) {
+        for (String token : tokens) {
+            if (!filter.mightContain(token))
+                return false;
+        }
+        return true;
+    }
+
+    /**
+     * Bloom tokens that every match must contain (for explain output).
+     */
+    private static void requiredTokens(QueryNode node, List<String> out) {
+        switch (node) {
+            case QueryNode.Term t -> out.addAll(t.bare()
+                    ? List.of(t.text().toLowerCase())
+                    : RegexLiterals.boundedTokens(t.text()));
+            case QueryNode.Regex r -> out.addAll(r.bloomTokens());
+            case QueryNode.And a -> a.children().forEach(c -> requiredTokens(c, out));
+            default -> {
+            }
+        }
+    }
+
+    public Map<String, Object> describe() {
+        List<String> tokens = new ArrayList<>();
+        requiredTokens(root, tokens);
+
+        Map<String, Object> plan = new LinkedHashMap<>();
+        plan.put("query", source);
+        plan.put("literals", literals);
+        plan.put("requiredBloomTokens", tokens);
+        plan.put("matcher", scanner != null ? scanner.getClass().getSimpleName()
+                : automaton != null ? "AhoCorasick" : "none");
+        return plan;
+    }
+
+    @Override
+    public String toString() {
+        return source;
+    }
+}
@@ -0,0 +1,115 @@
+package com.logarythm.core.query;
+
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.time.Duration;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Admission control for queries, so a burst of broad scans cannot take
+ * all the disk bandwidth away from ingestion.
+ *
+ * Responsibilities:
+ * - give every query its QueryContext (timeout = min(requested, configured))
+ * - limit the number of scans running at once
+ *   (logarythm.query.max-concurrent; later queries wait, up to their deadline)
+ * - limit the bytes of segment blocks being read at once, over all queries
+ *   (logarythm.query.max-bytes-in-flight; accounted in KiB)
+ *
+ * Both limits are fair semaphores, so waiting queries are served in order.
+ */
+@Component
+public class QueryAdmission {
+
+    private static final int KIB = 1024;
+
+    private final Duration timeout;
+    private final int maxConcurrent;
+    private final int maxKibInFlight;
+    private final Semaphore scans;
+    private final Semaphore kibInFlight;
+
+    public QueryAdmission(
+            @Value("${logarythm.query.timeout:30s}") Duration timeout,
+            @Value("${logarythm.query.max-concurrent:4}") int maxConcurrent,
+            @Value("${logarythm.query.max-bytes-in-flight:67108864}") long maxBytesInFlight) {
+
+        if (maxConcurrent < 1)
+            throw new IllegalArgumentException("logarythm.query.max-concurrent must be >= 1, got " + maxConcurrent);
+
+        this.timeout = timeout;
+        this.maxConcurrent = maxConcurrent;
+        this.maxKibInFlight = (int) Math.min(Math.max(maxBytesInFlight / KIB, 1), Integer.MAX_VALUE);
+        this.scans = new Semaphore(maxConcurrent, true);
+        this.kibInFlight = new Semaphore(maxKibInFlight, true);
+    }
+
+    /**
+     * Context for a new query; requestedMs (nullable) can only shorten the configured timeout.
+     */
+    public QueryContext newContext(Long requestedMs) {
+        Duration t = timeout;
+        if (requestedMs != null && requestedMs > 0 && requestedMs < t.toMillis())
+            t = Duration.ofMillis(requestedMs);
+        return QueryContext.withTimeout(t);
+    }
+
+    /**
+     * Wait for a scan slot until the query's deadline.
+     *
+     * @return false when the deadline passed (or the query was cancelled) first
+     */
+    public boolean acquireScan(QueryContext context) throws InterruptedException {
+        return acquire(scans, 1, context);
+    }
+
+    public void releaseScan() {
+        scans.release();
+    }
+
+    /**
+     * Reserve read budget for a block of the given size before reading it.
+     *
+     * @return false when the deadline passed (or the query was cancelled) first
+     */
+    public boolean acquireBytes(int bytes, QueryContext context) throws InterruptedException {
+        return acquire(kibInFlight, kib(bytes), context);
+    }
+
+    public void releaseBytes(int bytes) {
+        kibInFlight.release(kib(bytes));
+    }
+
+    private static boolean acquire(Semaphore semaphore, int permits, QueryContext context)
+            throws InterruptedException {
+        if (context.shouldStop())
+            return false;
+
+        long remaining = context.remainingNanos();
+        if (remaining == Long.MAX_VALUE) {
+            semaphore.acquire(permits);
+            return true;
+        }
+        return semaphore.tryAcquire(permits, remaining, TimeUnit.NANOSECONDS);
+    }
+
+    // a block larger than the whole budget still gets to run, alone
+    private int kib(int bytes) {
+        return Math.min(Math.max((bytes + KIB - 1) / KIB, 1), maxKibInFlight);
+    }
+
+    public Map<String, Object> snapshot() {
+        Map<String, Object> out = new LinkedHashMap<>();
+        out.put("timeoutMs", timeout.toMillis());
+        out.put("maxConcurrent", maxConcurrent);
+        out.put("running", maxConcurrent - scans.availablePermits());
+        out.put("waiting", scans.getQueueLength());
+        out.put("maxBytesInFlight", (long) maxKibInFlight * KIB);
+        out.put("bytesInFlight", (long) (maxKibInFlight - kibInFlight.availablePermits()) * KIB);
+        return out;
+    }
+}
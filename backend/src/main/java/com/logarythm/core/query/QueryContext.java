@@ -0,0 +1,66 @@
+package com.logarythm.core.query;
+
+import java.time.Duration;
+
+/**
+ * Lifetime of one running query: a deadline and a cancel flag.
+ *
+ * The scan checks shouldStop() between segments and blocks (never inside
+ * a block), so a query stops within one block of its deadline or of the
+ * client going away, and returns what it collected so far as a partial
+ * result.
+ *
+ * cancel() may be called from any thread (e.g. WebFlux on disconnect).
+ */
+public final class QueryContext {
+
+    public enum Stop { NONE, DEADLINE, CANCELLED }
+
+    private static final QueryContext UNBOUNDED = new QueryContext(0, false);
+
+    private final long deadlineNanos;
+    private final boolean hasDeadline;
+    private volatile boolean cancelled;
+
+    private QueryContext(long deadlineNanos, boolean hasDeadline) {
+        this.deadlineNanos = deadlineNanos;
+        this.hasDeadline = hasDeadline;
+    }
+
+    public static QueryContext withTimeout(Duration timeout) {
+        return new QueryContext(System.nanoTime() + timeout.toNanos(), true);
+    }
+
+    /**
+     * No deadline and never cancelled (internal callers, benchmarks).
+     */
+    public static QueryContext unbounded() {
+        return UNBOUNDED;
+    }
+
+    public void cancel() {
+        if (this != UNBOUNDED)
+            cancelled = true;
+    }
+
+    public boolean shouldStop() {
+        return stopReason() != Stop.NONE;
+    }
+
+    public Stop stopReason() {
+        if (cancelled)
+            return Stop.CANCELLED;
+        if (hasDeadline && System.nanoTime() - deadlineNanos >= 0)
+            return Stop.DEADLINE;
+        return Stop.NONE;
+    }
+
+    /**
+     * Time left before the deadline (Long.MAX_VALUE without one, 0 once passed).
+     */
+    public long remainingNanos() {
+        if (!hasDeadline)
+            return Long.MAX_VALUE;
+        return Math.max(deadlineNanos - System.nanoTime(), 0);
+    }
+}
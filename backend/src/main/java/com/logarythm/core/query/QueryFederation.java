@@ -0,0 +1,263 @@
+package com.logarythm.core.query;
+
+import com.logarythm.core.metrics.EngineMetrics;
+import com.logarythm.model.LogEntry;
+import com.logarythm.model.NodeStatus;
+import com.logarythm.model.QueryResponse;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+import org.springframework.web.reactive.function.client.WebClient;
+import org.springframework.web.reactive.function.client.WebClientResponseException;
+import reactor.core.publisher.Mono;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeoutException;
+import java.util.function.Function;
+import java.util.function.Supplier;
+
+/**
+ * Scatter-gather /query over several LogaRhythm nodes, each with its own
+ * data directory (logarythm.federation.peers = base URLs of the others).
+ *
+ * A federated query:
+ * - runs the local part in-process and sends the same query to every peer
+ *   in parallel (non-blocking WebClient) with local=true, so peers never
+ *   fan out again, and positions=true, so each node answers in scan order
+ *   with a cursor per row
+ * - merges the node pages newest first and keeps the first `limit` rows
+ *   (every node is asked for `limit`, the most one node can contribute)
+ * - resumes every node right after the last of its rows that made the
+ *   page; the per-node cursors travel as one FederatedCursor, so the next
+ *   page neither repeats nor skips rows
+ *
+ * Every peer gets min(peer-timeout, the query's remaining time) and is
+ * asked to stop a little earlier than that, so a slow peer answers with
+ * what it has. A peer that times out or fails is reported in nodes and
+ * the response is partial=true; its cursor is kept, so the next page
+ * asks it again from the same point.
+ */
+@Component
+public class QueryFederation {
+
+    private static final int MAX_RESPONSE_BYTES = 32 * 1024 * 1024;
+
+    /**
+     * Filters forwarded to every node unchanged.
+     */
+    public record Request(int limit, Long start, Long end, String level, String labels,
+                          String message, String q) {
+    }
+
+    private record NodeResult(String node, QueryResponse response, String status, long tookMs, String error) {
+
+        int count() {
+            return response != null && response.results() != null ? response.results().size() : 0;
+        }
+    }
+
+    private final List<String> peers;
+    private final Duration peerTimeout;
+    private final WebClient client;
+    private final EngineMetrics metrics;
+
+    public QueryFederation(
+            EngineMetrics metrics,
+            @Value("${logarythm.federation.peers:}") String peers,
+            @Value("${logarythm.federation.peer-timeout:5s}") Duration peerTimeout) {
+
+        this.peers = new ArrayList<>();
+        for (String peer : peers.split(",")) {
+            if (!peer.isBlank())
+                this.peers.add(peer.trim().replaceAll("/+$", ""));
+        }
+        this.peerTimeout = peerTimeout;
+        this.metrics = metrics;
+        this.client = WebClient.builder()
+                .codecs(codecs -> codecs.defaultCodecs().maxInMemorySize(MAX_RESPONSE_BYTES))
+                .build();
+
+        if (!this.peers.isEmpty())
+            System.out.println("QueryFederation: peers " + this.peers);
+    }
+
+    public boolean isEnabled() {
+        return !peers.isEmpty();
+    }
+
+    /**
+     * Run a federated page.
+     *
+     * @param cursor     federated cursor from the previous page, or null
+     * @param budget     time left for the whole query
+     * @param localQuery runs the local part for a node cursor (null = from
+     *                   the top) and answers with positions
+     * @throws IllegalArgumentException for a cursor that does not belong to this peer list
+     */
+    public Mono<QueryResponse> query(Request request, String cursor, Duration budget,
+                                     Function<String, Mono<QueryResponse>> localQuery) {
+        long t0 = System.currentTimeMillis();
+        int nodeCount = peers.size() + 1;
+        FederatedCursor from = cursor != null && !cursor.isBlank()
+                ? FederatedCursor.decode(cursor, nodeCount)
+                : FederatedCursor.start(nodeCount);
+
+        metrics.federatedQueries.increment();
+
+        Duration timeout = budget.compareTo(peerTimeout) < 0 ? budget : peerTimeout;
+
+        List<Mono<NodeResult>> calls = new ArrayList<>(nodeCount);
+        calls.add(call("local", from, 0, () -> localQuery.apply(nodeCursor(from, 0))));
+        for (int i = 0; i < peers.size(); i++) {
+            String peer = peers.get(i);
+            int node = i + 1;
+            calls.add(call(peer, from, node, () -> askPeer(peer, request, nodeCursor(from, node), timeout)
+                    .timeout(timeout)));
+        }
+
+        return Mono.zip(calls, results -> merge(request.limit(), from, results, t0));
+    }
+
+    private static String nodeCursor(FederatedCursor cursor, int node) {
+        String c = cursor.node(node);
+        return FederatedCursor.START.equals(c) ? null : c;
+    }
+
+    private Mono<NodeResult> call(String name, FederatedCursor from, int node,
+                                  Supplier<Mono<QueryResponse>> query) {
+        if (from.exhausted(node))
+            return Mono.just(new NodeResult(name, null, "exhausted", 0, null));
+
+        long t0 = System.currentTimeMillis();
+        return Mono.defer(query)
+                .map(response -> new NodeResult(name, response,
+                        Boolean.TRUE.equals(response.partial()) ? "partial" : "ok",
+                        System.currentTimeMillis() - t0, null))
+                .onErrorResume(e -> {
+                    boolean timedOut = e instanceof TimeoutException;
+                    if (timedOut)
+                        metrics.federationPeerTimeouts.increment();
+                    else
+                        metrics.federationPeerErrors.increment();
+                    return Mono.just(new NodeResult(name, null, timedOut ? "timeout" : "error",
+                            System.currentTimeMillis() - t0, describe(e)));
+                });
+    }
+
+    private Mono<QueryResponse> askPeer(String peer, Request request, String nodeCursor, Duration timeout) {
+        // peers stop at 90% of our timeout so they can still answer with a partial page
+        long peerTimeoutMs = Math.max(1, timeout.toMillis() * 9 / 10);
+
+        Map<String, Object> params = new LinkedHashMap<>();
+        params.put("limit", request.limit());
+        params.put("start", request.start());
+        params.put("end", request.end());
+        params.put("level", request.level());
+        params.put("labels", request.labels());
+        params.put("message", request.message());
+        params.put("q", request.q());
+        params.put("cursor", nodeCursor);
+        params.put("timeoutMs", peerTimeoutMs);
+        params.put("local", true);
+        params.put("positions", true);
+
+        return client.get()
+                .uri(peer + "/query", uri -> {
+                    // values go through template variables so regexes like \d{3} are encoded, not expanded
+                    Map<String, Object> vars = new LinkedHashMap<>();
+                    params.forEach((name, value) -> {
+                        if (value != null) {
+                            uri.queryParam(name, "{" + name + "}");
+                            vars.put(name, value);
+                        }
+                    });
+                    return uri.build(vars);
+                })
+                .retrieve()
+                .bodyToMono(QueryResponse.class);
+    }
+
+    /**
+     * Newest first over the node pages (each in its scan order), first
+     * `limit` rows; then work out where every node resumes.
+     */
+    private QueryResponse merge(int limit, FederatedCursor from, Object[] raw, long t0) {
+        NodeResult[] results = Arrays.copyOf(raw, raw.length, NodeResult[].class);
+        int[] used = new int[results.length];
+        List<LogEntry> merged = new ArrayList<>(limit);
+
+        while (merged.size() < limit) {
+            int best = -1;
+            long bestTs = Long.MIN_VALUE;
+            for (int i = 0; i < results.length; i++) {
+                if (used[i] < results[i].count()) {
+                    long ts = results[i].response().results().get(used[i]).timestamp();
+                    if (best < 0 || ts > bestTs) {
+                        best = i;
+                        bestTs = ts;
+                    }
+                }
+            }
+            if (best < 0)
+                break;
+            merged.add(results[best].response().results().get(used[best]++));
+        }
+
+        // scan order is time order within a node, not necessarily across segments
+        merged.sort((a, b) -> Long.compare(b.timestamp(), a.timestamp()));
+
+        List<String> next = new ArrayList<>(results.length);
+        List<NodeStatus> nodes = new ArrayList<>(results.length);
+        boolean partial = false;
+
+        for (int i = 0; i < results.length; i++) {
+            NodeResult r = results[i];
+            next.add(resumePoint(from.node(i), r, used[i]));
+            nodes.add(new NodeStatus(r.node(), r.status(), r.tookMs(), r.count(), used[i], r.error()));
+            partial |= r.status().equals("partial") || r.status().equals("timeout") || r.status().equals("error");
+        }
+
+        FederatedCursor nextCursor = FederatedCursor.of(next);
+        QueryResponse local = results[0].response();
+
+        return new QueryResponse(System.currentTimeMillis() - t0, merged.size(), merged,
+                nextCursor.allExhausted() ? null : nextCursor.encode(),
+                partial ? Boolean.TRUE : null,
+                local != null ? local.profile() : null,
+                null, nodes);
+    }
+
+    /**
+     * Where a node continues on the next page.
+     */
+    private static String resumePoint(String previous, NodeResult r, int used) {
+        QueryResponse response = r.response();
+        if (response == null)
+            return previous; // exhausted, or failed: ask again from the same point
+
+        if (used < r.count()) {
+            if (used == 0)
+                return previous;
+            if (response.positions() == null || response.positions().size() != r.count())
+                throw new IllegalStateException("Node " + r.node() + " did not return row positions");
+            return response.positions().get(used - 1);
+        }
+
+        // every row it sent made the page
+        if (response.nextCursor() != null)
+            return response.nextCursor();
+        return Boolean.TRUE.equals(response.partial()) ? previous : FederatedCursor.EXHAUSTED;
+    }
+
+    private static String describe(Throwable e) {
+        if (e instanceof WebClientResponseException w)
+            return w.getStatusCode().value() + " " + w.getResponseBodyAsString();
+        if (e instanceof TimeoutException)
+            return "no answer in time";
+        return e.getClass().getSimpleName() + (e.getMessage() != null ? ": " + e.getMessage() : "");
+    }
+}
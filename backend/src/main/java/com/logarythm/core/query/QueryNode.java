@@ -0,0 +1,37 @@
+package com.logarythm.core.query;
+
+import java.util.List;
+import java.util.regex.Pattern;
+
+/**
+ * Parsed message query (see QueryParser).
+ *
+ * literal ids index into the MessageQuery literal table / Aho-Corasick
+ * automaton; -1 means the term is not ASCII-foldable and is checked on
+ * the decoded String instead.
+ */
+sealed interface QueryNode {
+
+    /**
+     * Case-insensitive substring. bare = typed without quotes, which (like the
+     * old message= keyword) is also looked up as a whole token in the Bloom filter.
+     */
+    record Term(String text, boolean bare, int literal) implements QueryNode {
+    }
+
+    /**
+     * Java regex (find semantics), applied only to rows containing all its
+     * required literals.
+     */
+    record Regex(String source, Pattern pattern, int[] literals, List<String> bloomTokens) implements QueryNode {
+    }
+
+    record And(List<QueryNode> children) implements QueryNode {
+    }
+
+    record Or(List<QueryNode> children) implements QueryNode {
+    }
+
+    record Not(QueryNode child) implements QueryNode {
+    }
+}
@@ -0,0 +1,233 @@
+package com.logarythm.core.query;
+
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.regex.Pattern;
+import java.util.regex.PatternSyntaxException;
+
+/**
+ * Recursive-descent parser for the message query language.
+ *
+ * Grammar (NOT binds tighter than AND, AND tighter than OR):
+ *
+ *   query   := or
+ *   or      := and ( "OR" and )*
+ *   and     := unary ( ["AND"] unary )*      adjacent terms are ANDed
+ *   unary   := "NOT" unary | primary
+ *   primary := "(" or ")" | word | "quoted phrase" | /regex/
+ *
+ * Operators are upper-case only; "and"/"or"/"not" are ordinary words.
+ * Inside /regex/ a slash is written as \/.
+ *
+ * Every term and required regex fragment is registered in the shared
+ * literal table while parsing, so the whole query compiles to one
+ * Aho-Corasick automaton.
+ */
+final class QueryParser {
+
+    private final String input;
+    private final List<String> literals;
+    private int pos;
+
+    QueryParser(String input, List<String> literals) {
+        this.input = input;
+        this.literals = literals;
+    }
+
+    QueryNode parse() {
+        QueryNode node = parseOr();
+        skipWhitespace();
+        if (pos < input.length())
+            throw error("Unexpected '" + input.charAt(pos) + "'");
+        return node;
+    }
+
+    private QueryNode parseOr() {
+        List<QueryNode> children = new ArrayList<>();
+        children.add(parseAnd());
+
+        while (acceptKeyword("OR"))
+            children.add(parseAnd());
+
+        return children.size() == 1 ? children.get(0) : new QueryNode.Or(children);
+    }
+
+    private QueryNode parseAnd() {
+        List<QueryNode> children = new ArrayList<>();
+        children.add(parseUnary());
+
+        while (true) {
+            if (acceptKeyword("AND")) {
+                children.add(parseUnary());
+                continue;
+            }
+            skipWhitespace();
+            if (pos >= input.length() || input.charAt(pos) == ')' || peekKeyword("OR"))
+                break;
+            children.add(parseUnary()); // implicit AND
+        }
+
+        return children.size() == 1 ? children.get(0) : new QueryNode.And(children);
+    }
+
+    private QueryNode parseUnary() {
+        if (acceptKeyword("NOT"))
+            return new QueryNode.Not(parseUnary());
+        return parsePrimary();
+    }
+
+    private QueryNode parsePrimary() {
+        skipWhitespace();
+        if (pos >= input.length())
+            throw error("Expected a term");
+
+        char c = input.charAt(pos);
+
+        if (c == '(') {
+            pos++;
+            QueryNode inner = parseOr();
+            skipWhitespace();
+            if (pos >= input.length() || input.charAt(pos) != ')')
+                throw error("Missing )");
+            pos++;
+            return inner;
+        }
+        if (c == ')')
+            throw error("Unexpected )");
+        if (c == '"')
+            return term(readDelimited('"'), false);
+        if (c == '/')
+            return regex(readDelimited('/'));
+
+        int start = pos;
+        while (pos < input.length() && !Character.isWhitespace(input.charAt(pos))
+                && input.charAt(pos) != '(' && input.charAt(pos) != ')')
+            pos++;
+        return term(input.substring(start, pos), true);
+    }
+
+    QueryNode term(String text, boolean bare) {
+        if (text.isEmpty())
+            throw error("Empty phrase");
+        return new QueryNode.Term(text, bare, isAscii(text) ? literal(text) : -1);
+    }
+
+    private QueryNode regex(String source) {
+        Pattern pattern;
+        try {
+            pattern = Pattern.compile(source);
+        } catch (PatternSyntaxException e) {
+            throw error("Invalid regex /" + source + "/: " + e.getDescription());
+        }
+
+        List<Integer> ids = new ArrayList<>();
+        List<String> bloomTokens = new ArrayList<>();
+        boolean inlineFlags = source.contains("(?");
+
+        for (String fragment : RegexLiterals.required(source)) {
+            // with inline flags like (?iu) a non-ASCII fragment may match other bytes
+            if (inlineFlags && !isAscii(fragment))
+                continue;
+            ids.add(literal(fragment));
+            bloomTokens.addAll(RegexLiterals.boundedTokens(fragment));
+        }
+
+        return new QueryNode.Regex(source, pattern,
+                ids.stream().mapToInt(Integer::intValue).toArray(), bloomTokens);
+    }
+
+    private int literal(String text) {
+        int existing = indexOfIgnoreAsciiCase(text);
+        if (existing >= 0)
+            return existing;
+
+        literals.add(text);
+        if (literals.size() > AhoCorasick.MAX_PATTERNS)
+            throw error("Too many search terms (max " + AhoCorasick.MAX_PATTERNS + ")");
+        return literals.size() - 1;
+    }
+
+    private int indexOfIgnoreAsciiCase(String text) {
+        byte[] folded = fold(text);
+        for (int i = 0; i < literals.size(); i++) {
+            if (Arrays.equals(folded, fold(literals.get(i))))
+                return i;
+        }
+        return -1;
+    }
+
+    static byte[] fold(String text) {
+        byte[] bytes = text.getBytes(StandardCharsets.UTF_8);
+        for (int i = 0; i < bytes.length; i++) {
+            if (bytes[i] >= 'A' && bytes[i] <= 'Z')
+                bytes[i] += 32;
+        }
+        return bytes;
+    }
+
+    private static boolean isAscii(String text) {
+        for (int i = 0; i < text.length(); i++) {
+            if (text.charAt(i) > 0x7F)
+                return false;
+        }
+        return true;
+    }
+
+    /**
+     * Read "..." or /.../ starting at pos; a backslash escapes the delimiter.
+     * Other escapes are kept as written (they belong to the regex).
+     */
+    private String readDelimited(char delimiter) {
+        int start = pos;
+        pos++;
+        StringBuilder sb = new StringBuilder();
+
+        while (pos < input.length()) {
+            char c = input.charAt(pos);
+
+            if (c == '\\' && pos + 1 < input.length()) {
+                char n = input.charAt(pos + 1);
+                if (n == delimiter || (delimiter == '"' && n == '\\'))
+                    sb.append(n);
+                else
+                    sb.append(c).append(n);
+                pos += 2;
+                continue;
+            }
+            if (c == delimiter) {
+                pos++;
+                return sb.toString();
+            }
+            sb.append(c);
+            pos++;
+        }
+
+        pos = start;
+        throw error("Unterminated " + delimiter);
+    }
+
+    private boolean acceptKeyword(String keyword) {
+        if (!peekKeyword(keyword))
+            return false;
+        pos += keyword.length();
+        return true;
+    }
+
+    private boolean peekKeyword(String keyword) {
+        skipWhitespace();
+        int end = pos + keyword.length();
+        return input.startsWith(keyword, pos)
+                && (end == input.length() || Character.isWhitespace(input.charAt(end)) || input.charAt(end) == '(');
+    }
+
+    private void skipWhitespace() {
+        while (pos < input.length() && Character.isWhitespace(input.charAt(pos)))
+            pos++;
+    }
+
+    private IllegalArgumentException error(String message) {
+        return new IllegalArgumentException(message + " at position " + pos + " in query: " + input);
+    }
+}
@@ -0,0 +1,223 @@
+package com.logarythm.core.query;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Extracts literal fragments that every match of a regex must contain,
+ * e.g. "status=5\d\d" → ["status=5"], "GET /api/v\d+/users" → ["GET /api/v", "/users"].
+ *
+ * Deliberately conservative: groups, character classes, escapes like \d
+ * and optional atoms end a fragment, and a top-level alternation yields
+ * no fragments at all. Missing a fragment only costs speed; inventing
+ * one would drop matching rows.
+ */
+final class RegexLiterals {
+
+    private RegexLiterals() {
+    }
+
+    static List<String> required(String regex) {
+        List<String> out = new ArrayList<>();
+        if (hasTopLevelAlternation(regex))
+            return out;
+
+        StringBuilder current = new StringBuilder();
+        boolean lastAtomLiteral = false;
+        int i = 0;
+
+        while (i < regex.length()) {
+            char c = regex.charAt(i);
+
+            switch (c) {
+                case '\\' -> {
+                    if (i + 1 >= regex.length()) {
+                        i++;
+                        break;
+                    }
+                    char n = regex.charAt(i + 1);
+
+                    if (n == 'Q') {
+                        int endQuote = regex.indexOf("\\E", i + 2);
+                        int stop = endQuote < 0 ? regex.length() : endQuote;
+                        current.append(regex, i + 2, stop);
+                        lastAtomLiteral = stop > i + 2;
+                        i = endQuote < 0 ? stop : stop + 2;
+                    } else if (Character.isLetterOrDigit(n)) {
+                        // \d \w \s \b \p{..} \x41 \1 ... : not a plain literal
+                        flush(current, out);
+                        lastAtomLiteral = false;
+                        i += 2;
+                        if (i < regex.length() && regex.charAt(i) == '{')
+                            i = skipBraces(regex, i);
+                    } else {
+                        current.append(n);
+                        lastAtomLiteral = true;
+                        i += 2;
+                    }
+                }
+                case '[' -> {
+                    flush(current, out);
+                    lastAtomLiteral = false;
+                    i = skipClass(regex, i);
+                }
+                case '(' -> {
+                    flush(current, out);
+                    lastAtomLiteral = false;
+                    i = skipGroup(regex, i);
+                }
+                case '.', '^', '$' -> {
+                    flush(current, out);
+                    lastAtomLiteral = false;
+                    i++;
+                }
+                case '*', '?', '+', '{' -> {
+                    int min = c == '+' ? 1 : 0;
+                    int next = i + 1;
+
+                    if (c == '{') {
+                        int close = regex.indexOf('}', i);
+                        if (close < 0)
+                            throw new IllegalArgumentException("Unclosed { in /" + regex + "/");
+                        String bounds = regex.substring(i + 1, close);
+                        int comma = bounds.indexOf(',');
+                        min = Integer.parseInt((comma < 0 ? bounds : bounds.substring(0, comma)).trim());
+                        next = close + 1;
+                    }
+                    // lazy / possessive suffix
+                    if (next < regex.length() && (regex.charAt(next) == '?' || regex.charAt(next) == '+'))
+                        next++;
+
+                    if (lastAtomLiteral && min == 0)
+                        current.setLength(current.length() - 1); // optional char
+                    flush(current, out);
+                    lastAtomLiteral = false;
+                    i = next;
+                }
+                default -> {
+                    current.append(c);
+                    lastAtomLiteral = true;
+                    i++;
+                }
+            }
+        }
+
+        flush(current, out);
+        return out;
+    }
+
+    /**
+     * Whitespace-delimited words that lie strictly inside a literal.
+     * Only those are guaranteed to be whole tokens in a matching message,
+     * so only those can be looked up in the segment token Bloom filter.
+     */
+    static List<String> boundedTokens(String literal) {
+        List<String> tokens = new ArrayList<>();
+        String[] parts = literal.split("\\s", -1);
+
+        for (int i = 1; i < parts.length - 1; i++) {
+            if (!parts[i].isEmpty())
+                tokens.add(parts[i].toLowerCase());
+        }
+        return tokens;
+    }
+
+    private static void flush(StringBuilder current, List<String> out) {
+        if (!current.isEmpty()) {
+            out.add(current.toString());
+            current.setLength(0);
+        }
+    }
+
+    private static boolean hasTopLevelAlternation(String regex) {
+        int depth = 0;
+
+        for (int i = 0; i < regex.length(); i++) {
+            char c = regex.charAt(i);
+
+            if (c == '\\') {
+                if (i + 1 < regex.length() && regex.charAt(i + 1) == 'Q') {
+                    int endQuote = regex.indexOf("\\E", i + 2);
+                    i = endQuote < 0 ? regex.length() : endQuote + 1;
+                } else {
+                    i++;
+                }
+            } else if (c == '[') {
+                i = skipClass(regex, i) - 1;
+            } else if (c == '(') {
+                depth++;
+            } else if (c == ')') {
+                depth--;
+            } else if (c == '|' && depth == 0) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * @return index just after the character class starting at i
+     */
+    private static int skipClass(String regex, int i) {
+        int depth = 0;
+        int j = i;
+
+        while (j < regex.length()) {
+            char c = regex.charAt(j);
+
+            if (c == '\\') {
+                j += 2;
+                continue;
+            }
+            if (c == '[') {
+                depth++;
+                // a ']' right after '[' or '[^' is a literal member
+                if (j + 1 < regex.length() && regex.charAt(j + 1) == '^')
+                    j++;
+                if (j + 1 < regex.length() && regex.charAt(j + 1) == ']')
+                    j++;
+            } else if (c == ']') {
+                depth--;
+                if (depth == 0)
+                    return j + 1;
+            }
+            j++;
+        }
+        throw new IllegalArgumentException("Unclosed [ in /" + regex + "/");
+    }
+
+    /**
+     * @return index just after the group starting at i
+     */
+    private static int skipGroup(String regex, int i) {
+        int depth = 0;
+        int j = i;
+
+        while (j < regex.length()) {
+            char c = regex.charAt(j);
+
+            if (c == '\\') {
+                j += 2;
+                continue;
+            }
+            if (c == '[') {
+                j = skipClass(regex, j);
+                continue;
+            }
+            if (c == '(') {
+                depth++;
+            } else if (c == ')') {
+                depth--;
+                if (depth == 0)
+                    return j + 1;
+            }
+            j++;
+        }
+        throw new IllegalArgumentException("Unclosed ( in /" + regex + "/");
+    }
+
+    private static int skipBraces(String regex, int i) {
+        int close = regex.indexOf('}', i);
+        return close < 0 ? regex.length() : close + 1;
+    }
+}
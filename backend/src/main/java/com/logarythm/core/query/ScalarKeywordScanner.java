@@ -0,0 +1,31 @@
+package com.logarythm.core.query;
+
+/**
+ * Portable KeywordScanner: first/last-byte filter in a plain loop.
+ */
+final class ScalarKeywordScanner extends KeywordScanner {
+
+    ScalarKeywordScanner(byte[] folded) {
+        super(folded);
+    }
+
+    @Override
+    boolean find(byte[] text, int offset, int length) {
+        return findInRange(text, offset, offset + length - pattern.length + 1);
+    }
+
+    /**
+     * Candidates start in [from, to).
+     */
+    boolean findInRange(byte[] text, int from, int to) {
+        int lastOffset = pattern.length - 1;
+
+        for (int i = from; i < to; i++) {
+            if ((text[i] | firstCaseBit) == first
+                    && (text[i + lastOffset] | lastCaseBit) == last
+                    && verify(text, i))
+                return true;
+        }
+        return false;
+    }
+}
@@ -0,0 +1,52 @@
+package com.logarythm.core.query;
+
+import jdk.incubator.vector.ByteVector;
+import jdk.incubator.vector.VectorSpecies;
+
+/**
+ * KeywordScanner on the JDK Vector API: per step it loads one vector at
+ * every candidate start and one at start + length - 1, and compares both
+ * against the keyword's first / last byte in all lanes at once. Only lanes
+ * where both match are verified; the remainder runs the scalar loop.
+ *
+ * Only loaded (reflectively, by KeywordScanner) when the jdk.incubator.vector
+ * module is present, so the engine still runs on a plain JVM.
+ */
+final class VectorKeywordScanner extends KeywordScanner {
+
+    private static final VectorSpecies<Byte> SPECIES = ByteVector.SPECIES_PREFERRED;
+
+    private final ScalarKeywordScanner tail;
+
+    VectorKeywordScanner(byte[] folded) {
+        super(folded);
+        this.tail = new ScalarKeywordScanner(folded);
+    }
+
+    @Override
+    boolean find(byte[] text, int offset, int length) {
+        int lastOffset = pattern.length - 1;
+        int candidates = length - lastOffset; // number of possible start positions
+        int lanes = SPECIES.length();
+
+        int i = offset;
+        int end = offset + candidates;
+
+        for (; i + lanes <= end; i += lanes) {
+            ByteVector head = ByteVector.fromArray(SPECIES, text, i);
+            ByteVector tailBytes = ByteVector.fromArray(SPECIES, text, i + lastOffset);
+
+            long hits = head.or(firstCaseBit).eq(first)
+                    .and(tailBytes.or(lastCaseBit).eq(last))
+                    .toLong();
+
+            while (hits != 0) {
+                if (verify(text, i + Long.numberOfTrailingZeros(hits)))
+                    return true;
+                hits &= hits - 1;
+            }
+        }
+
+        return tail.findInRange(text, i, end);
+    }
+}
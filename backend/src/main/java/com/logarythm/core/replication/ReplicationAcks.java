@@ -0,0 +1,124 @@
+package com.logarythm.core.replication;
+
+import com.logarythm.core.ingestion.IngestionService;
+import com.logarythm.core.wal.WalPosition;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+import reactor.core.publisher.Mono;
+import reactor.core.publisher.Sinks;
+
+import java.time.Duration;
+import java.util.ArrayDeque;
+
+/**
+ * Sync-ack replication: lets POST /ingest wait until every follower has
+ * received the entry (logarythm.replication.sync-ack=true on a leader).
+ *
+ * Per shard:
+ * - IngestionService numbers entries in sink order (Receipt.sequence)
+ * - the WAL stage reports every batch: "entries up to n end at WAL position p"
+ * - WalShipper reports the position every follower has received
+ * → an entry is replicated once the position of its batch is received
+ *
+ * Waiting is non-blocking: waiters subscribe to the shard's replicated
+ * sequence and time out after logarythm.replication.ack-timeout.
+ */
+@Component
+public class ReplicationAcks {
+
+    private record Appended(WalPosition position, long sequence) {
+    }
+
+    private final boolean enabled;
+    private final Duration timeout;
+
+    // per shard, guarded by this
+    private final ArrayDeque<Appended>[] pending;
+    private final long[] appendedSequence;
+    private final WalPosition[] lastPosition;
+    private final long[] replicatedSequence;
+    private final Sinks.Many<Long>[] replicated;
+
+    @SuppressWarnings("unchecked")
+    public ReplicationAcks(
+            IngestionService ingestionService,
+            @Value("${logarythm.replication.followers:}") String followers,
+            @Value("${logarythm.replication.sync-ack:false}") boolean syncAck,
+            @Value("${logarythm.replication.ack-timeout:5s}") Duration timeout) {
+
+        this.enabled = syncAck && !followers.isBlank();
+        this.timeout = timeout;
+
+        int shards = ingestionService.getShardCount();
+        this.pending = new ArrayDeque[shards];
+        this.appendedSequence = new long[shards];
+        this.lastPosition = new WalPosition[shards];
+        this.replicatedSequence = new long[shards];
+        this.replicated = new Sinks.Many[shards];
+
+        for (int i = 0; i < shards; i++) {
+            pending[i] = new ArrayDeque<>();
+            lastPosition[i] = new WalPosition(0, 0);
+            replicated[i] = Sinks.many().replay().latest();
+        }
+
+        if (syncAck && !enabled)
+            System.out.println("ReplicationAcks: sync-ack ignored, no logarythm.replication.followers");
+    }
+
+    public boolean isEnabled() {
+        return enabled;
+    }
+
+    /**
+     * WAL stage: a batch of count entries ends at position (null when the
+     * batch failed; its entries are released with the batch before it).
+     */
+    public synchronized void walAppended(int shard, WalPosition position, int count) {
+        if (!enabled)
+            return;
+
+        if (position != null)
+            lastPosition[shard] = position;
+        appendedSequence[shard] += count;
+        pending[shard].addLast(new Appended(lastPosition[shard], appendedSequence[shard]));
+    }
+
+    /**
+     * WalShipper: every follower has received shard's WAL up to position.
+     */
+    public synchronized void replicatedUpTo(int shard, WalPosition position) {
+        if (!enabled)
+            return;
+
+        long sequence = replicatedSequence[shard];
+        ArrayDeque<Appended> queue = pending[shard];
+        while (!queue.isEmpty() && queue.peekFirst().position().compareTo(position) <= 0)
+            sequence = queue.pollFirst().sequence();
+
+        if (sequence > replicatedSequence[shard]) {
+            replicatedSequence[shard] = sequence;
+            replicated[shard].tryEmitNext(sequence);
+        }
+    }
+
+    /**
+     * Completes once the entry is on every follower; errors with a
+     * TimeoutException after ack-timeout.
+     */
+    public Mono<Void> await(IngestionService.Receipt receipt) {
+        if (!enabled || receipt.sequence() <= 0)
+            return Mono.empty();
+
+        synchronized (this) {
+            if (replicatedSequence[receipt.shard()] >= receipt.sequence())
+                return Mono.empty();
+        }
+
+        return replicated[receipt.shard()].asFlux()
+                .filter(sequence -> sequence >= receipt.sequence())
+                .next()
+                .then()
+                .timeout(timeout);
+    }
+}
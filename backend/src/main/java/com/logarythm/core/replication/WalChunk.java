@@ -0,0 +1,76 @@
+package com.logarythm.core.replication;
+
+import com.logarythm.core.storage.StreamDictionary;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.util.BitSet;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.TreeMap;
+
+/**
+ * Body of POST /replication/wal: a run of complete WAL records plus the
+ * labels of every stream id they use (ids are only meaningful with the
+ * sender's StreamDictionary, the receiver maps them to its own).
+ *
+ * [streamCount: 2 bytes]
+ * streamCount × { [id: 2 bytes][labelCount: 1 byte] labelCount × { [key: UTF][value: UTF] } }
+ * [records: rest of the body, RecordCodec layout]
+ */
+public record WalChunk(Map<Integer, Map<String, String>> streams, byte[] body, int recordsOffset) {
+
+    public int recordsLength() {
+        return body.length - recordsOffset;
+    }
+
+    public static byte[] encode(StreamDictionary dictionary, BitSet streamIds,
+                                byte[] records, int length) throws IOException {
+
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream(length + 64 * streamIds.cardinality() + 2);
+        DataOutputStream out = new DataOutputStream(bytes);
+
+        streamIds.clear(0); // the empty label set needs no entry
+        out.writeShort(streamIds.cardinality());
+        for (int id = streamIds.nextSetBit(0); id >= 0; id = streamIds.nextSetBit(id + 1)) {
+            Map<String, String> labels = dictionary.labelsOf(id);
+            out.writeShort(id);
+            out.writeByte(labels.size());
+            for (Map.Entry<String, String> label : labels.entrySet()) {
+                out.writeUTF(label.getKey());
+                out.writeUTF(label.getValue());
+            }
+        }
+
+        out.write(records, 0, length);
+        return bytes.toByteArray();
+    }
+
+    /**
+     * @throws IllegalArgumentException for a body that does not parse
+     */
+    public static WalChunk decode(byte[] body) {
+        try {
+            ByteArrayInputStream bytes = new ByteArrayInputStream(body);
+            DataInputStream in = new DataInputStream(bytes);
+
+            int count = in.readUnsignedShort();
+            Map<Integer, Map<String, String>> streams = new HashMap<>(count * 2);
+            for (int i = 0; i < count; i++) {
+                int id = in.readUnsignedShort();
+                int labelCount = in.readUnsignedByte();
+                Map<String, String> labels = new TreeMap<>();
+                for (int j = 0; j < labelCount; j++)
+                    labels.put(in.readUTF(), in.readUTF());
+                streams.put(id, labels);
+            }
+
+            return new WalChunk(streams, body, body.length - bytes.available());
+        } catch (IOException e) {
+            throw new IllegalArgumentException("Malformed WAL chunk: " + e.getMessage());
+        }
+    }
+}
@@ -0,0 +1,221 @@
+package com.logarythm.core.replication;
+
+import com.logarythm.core.ingestion.IngestShard;
+import com.logarythm.core.ingestion.ShardManager;
+import com.logarythm.core.metrics.EngineMetrics;
+import com.logarythm.core.storage.LogBatch;
+import com.logarythm.core.storage.RecordCodec;
+import com.logarythm.core.storage.StreamDictionary;
+import com.logarythm.core.wal.CheckpointManager;
+import com.logarythm.core.wal.WalPosition;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Follower side of WAL shipping (logarythm.replication.follower=true).
+ *
+ * Chunks of a leader shard's WAL (see WalShipper) go through the same path
+ * as locally ingested batches and WAL replay:
+ *
+ *   remap stream ids → LogBatch → local WAL append/fsync → segment append
+ *
+ * into local shard (leader shard % local shards), so the follower has its
+ * own WAL, segments, Bloom filters and checkpoint, and recovers from a
+ * crash with its normal WalReplayer.
+ *
+ * The replication checkpoint (how far each leader shard's WAL has been
+ * received) lives in data/replication/shard-NN.meta and moves right after
+ * the local WAL append: a crash after that is covered by local replay, a
+ * crash before it makes the leader send the chunk again (at-least-once for
+ * that one chunk).
+ *
+ * A chunk is applied only when it starts at the replication checkpoint, or
+ * at the start of a newer WAL file; otherwise the leader gets a 409 with
+ * the checkpoint and resumes from there.
+ *
+ * Staleness: the leader marks a chunk (or heartbeat) caughtUp when it
+ * ends at the end of its live WAL; the follower is as stale as the oldest
+ * of those moments across leader shards.
+ */
+@Component
+public class WalReceiver {
+
+    private static final String REPLICATION_DIR = "data/replication";
+    private static final int APPLY_BATCH_CAPACITY = 4096;
+
+    /**
+     * Replication state of one leader shard.
+     */
+    private static final class LeaderShard {
+        final CheckpointManager checkpoint;
+        volatile long caughtUpMillis;
+        volatile long lastChunkMillis;
+
+        LeaderShard(CheckpointManager checkpoint) {
+            this.checkpoint = checkpoint;
+        }
+
+        WalPosition position() {
+            long offset = checkpoint.getLastFlushedWalOffset();
+            return new WalPosition(checkpoint.getLastFlushedWalIndex(), offset == Long.MAX_VALUE ? 0 : offset);
+        }
+    }
+
+    /**
+     * Outcome of apply(): applied, or rejected because the chunk does not
+     * continue at position; either way position is where this follower is.
+     */
+    public record Applied(boolean accepted, WalPosition position) {
+    }
+
+    private final boolean enabled;
+    private final ShardManager shardManager;
+    private final StreamDictionary dictionary;
+    private final EngineMetrics metrics;
+    private final Map<Integer, LeaderShard> leaderShards = new ConcurrentHashMap<>();
+
+    public WalReceiver(
+            ShardManager shardManager,
+            StreamDictionary dictionary,
+            EngineMetrics metrics,
+            @Value("${logarythm.replication.follower:false}") boolean enabled) {
+
+        this.enabled = enabled;
+        this.shardManager = shardManager;
+        this.dictionary = dictionary;
+        this.metrics = metrics;
+
+        if (enabled)
+            loadCheckpoints();
+    }
+
+    public boolean isEnabled() {
+        return enabled;
+    }
+
+    private void loadCheckpoints() {
+        File[] files = new File(REPLICATION_DIR).listFiles((d, name) -> name.startsWith("shard-") && name.endsWith(".meta"));
+        if (files != null) {
+            for (File f : files) {
+                try {
+                    int shard = Integer.parseInt(f.getName().substring(6, f.getName().length() - 5));
+                    leaderShard(shard);
+                } catch (NumberFormatException ignored) {
+                }
+            }
+        }
+        System.out.println("WalReceiver: follower mode, " + leaderShards.size() + " leader shard(s) known");
+    }
+
+    private LeaderShard leaderShard(int shard) {
+        return leaderShards.computeIfAbsent(shard, s -> new LeaderShard(
+                new CheckpointManager(String.format("%s/shard-%02d.meta", REPLICATION_DIR, s))));
+    }
+
+    /**
+     * Apply a chunk of leader shard's WAL that starts at from.
+     */
+    public Applied apply(int shard, WalPosition from, boolean caughtUp, byte[] body) throws IOException {
+        if (shard < 0)
+            throw new IllegalArgumentException("Invalid shard " + shard);
+
+        LeaderShard leader = leaderShard(shard);
+        IngestShard local = shardManager.getShard(shard % shardManager.getShards().size());
+        WalChunk chunk = WalChunk.decode(body);
+
+        // one leader shard at a time per local shard, so WAL and segment order match
+        synchronized (local) {
+            WalPosition at = leader.position();
+            boolean continues = from.equals(at) || (from.walIndex() > at.walIndex() && from.offset() == 0);
+            if (!continues)
+                return new Applied(false, at);
+
+            WalPosition to = new WalPosition(from.walIndex(), from.offset() + chunk.recordsLength());
+            if (chunk.recordsLength() > 0)
+                write(leader, local, chunk, to);
+            else if (!to.equals(at))
+                leader.checkpoint.updateCheckpoint(to);
+
+            long now = System.currentTimeMillis();
+            leader.lastChunkMillis = now;
+            if (caughtUp)
+                leader.caughtUpMillis = now;
+            return new Applied(true, to);
+        }
+    }
+
+    private void write(LeaderShard leader, IngestShard local, WalChunk chunk, WalPosition to) throws IOException {
+        Map<Integer, Integer> streamIds = new HashMap<>(chunk.streams().size() * 2);
+        for (Map.Entry<Integer, Map<String, String>> stream : chunk.streams().entrySet())
+            streamIds.put(stream.getKey(), dictionary.idOf(stream.getValue()));
+
+        LogBatch batch = new LogBatch(APPLY_BATCH_CAPACITY);
+        ByteBuffer records = ByteBuffer.wrap(chunk.body(), chunk.recordsOffset(), chunk.recordsLength());
+        int complete = RecordCodec.scan(records, (ts, level, stream, message, repeats, lastTs) -> {
+            Integer id = stream != 0 ? streamIds.get(stream) : Integer.valueOf(0);
+            if (id == null)
+                throw new IllegalArgumentException("Stream " + stream + " has no labels in the chunk");
+            batch.add(ts, level, id, message, 0, message.length, repeats, lastTs);
+        });
+        if (complete != chunk.recordsLength())
+            throw new IllegalArgumentException("Chunk ends inside a record");
+
+        batch.encode(dictionary);
+
+        WalPosition localPosition = local.walWriter().appendEncoded(batch.records(), batch.recordsLength());
+        if (local.walWriter().isFsyncEnabled())
+            local.walWriter().sync();
+        metrics.walBytes.add(batch.recordsLength());
+
+        leader.checkpoint.updateCheckpoint(to);
+
+        local.segmentWriter().writeEncodedBatch(localPosition, batch);
+        metrics.segmentBytesWritten.add(batch.recordsLength());
+        metrics.replicationChunksApplied.increment();
+        metrics.replicationLogsApplied.add(batch.entryCount());
+    }
+
+    /**
+     * Milliseconds since this follower was last caught up with every leader
+     * shard it knows (null before the first caught-up chunk).
+     */
+    public Long stalenessMs() {
+        if (leaderShards.isEmpty())
+            return null;
+
+        long oldest = Long.MAX_VALUE;
+        for (LeaderShard leader : leaderShards.values())
+            oldest = Math.min(oldest, leader.caughtUpMillis);
+        return oldest > 0 ? System.currentTimeMillis() - oldest : null;
+    }
+
+    /**
+     * Per leader shard: position received and when.
+     */
+    public List<Map<String, Object>> status() {
+        long now = System.currentTimeMillis();
+        List<Map<String, Object>> out = new ArrayList<>();
+
+        new TreeMap<>(leaderShards).forEach((shard, leader) -> {
+            Map<String, Object> s = new LinkedHashMap<>();
+            s.put("leaderShard", shard);
+            s.put("localShard", shard % shardManager.getShards().size());
+            s.put("position", leader.position().toString());
+            s.put("lastChunkAgoMs", leader.lastChunkMillis > 0 ? now - leader.lastChunkMillis : null);
+            s.put("caughtUpAgoMs", leader.caughtUpMillis > 0 ? now - leader.caughtUpMillis : null);
+            out.add(s);
+        });
+        return out;
+    }
+}
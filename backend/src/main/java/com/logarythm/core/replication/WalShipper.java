@@ -0,0 +1,350 @@
+package com.logarythm.core.replication;
+
+import com.logarythm.core.ingestion.IngestShard;
+import com.logarythm.core.ingestion.ShardManager;
+import com.logarythm.core.metrics.EngineMetrics;
+import com.logarythm.core.storage.RecordCodec;
+import com.logarythm.core.storage.StreamDictionary;
+import com.logarythm.core.wal.WalPosition;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+import reactor.core.Disposable;
+import reactor.core.publisher.Flux;
+import reactor.core.scheduler.Schedulers;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.nio.ByteBuffer;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.BitSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Leader side of WAL shipping (logarythm.replication.followers = base URLs).
+ *
+ * Every follower has its own thread that, every ship-interval and for
+ * every shard, tails the shard's WAL files from the position the follower
+ * has received:
+ * - reads up to MAX_CHUNK_BYTES of complete records (sealed files first,
+ *   then the live one) and POSTs them with their stream labels to
+ *   /replication/wal on the follower (see WalChunk, WalReceiver)
+ * - the follower answers with its new position, or 409 + its position when
+ *   the chunk does not continue where it is; the leader resumes from there
+ *   (this is also how a restarted leader finds each follower's position)
+ * - moves on to the next WAL file once a rotated file is fully shipped
+ * - sends an empty heartbeat every HEARTBEAT_INTERVAL when there is
+ *   nothing new, so followers can tell how stale they are
+ *
+ * WAL files a follower has not received are kept by the WalCleaner, at
+ * most max-retained-wal-files behind the checkpoint: a follower that is
+ * down for longer loses that part of the log (counted as a gap).
+ *
+ * Positions every follower has received feed ReplicationAcks (sync-ack).
+ */
+@Component
+public class WalShipper {
+
+    private static final int MAX_CHUNK_BYTES = 1024 * 1024;
+    private static final Duration HEARTBEAT_INTERVAL = Duration.ofSeconds(1);
+    private static final Duration TIMEOUT = Duration.ofSeconds(10);
+
+    /**
+     * Shipping state of one follower (only touched by its thread, read by status()).
+     */
+    private static final class Follower {
+        final String url;
+        final WalPosition[] shipped; // per shard, null until the follower told us
+        final long[] lastSentMillis;
+        volatile String lastError;
+        volatile long lastContactMillis;
+
+        Follower(String url, int shards) {
+            this.url = url;
+            this.shipped = new WalPosition[shards];
+            this.lastSentMillis = new long[shards];
+        }
+    }
+
+    private final ShardManager shardManager;
+    private final StreamDictionary dictionary;
+    private final ReplicationAcks acks;
+    private final EngineMetrics metrics;
+    private final List<Follower> followers = new ArrayList<>();
+    private final Duration interval;
+    private final int maxRetainedWalFiles;
+    private final int[] startIndex; // per shard: oldest WAL file at startup
+    private final List<Disposable> tasks = new ArrayList<>();
+
+    private final HttpClient client = HttpClient.newBuilder()
+            .connectTimeout(TIMEOUT)
+            .build();
+
+    public WalShipper(
+            ShardManager shardManager,
+            StreamDictionary dictionary,
+            ReplicationAcks acks,
+            EngineMetrics metrics,
+            @Value("${logarythm.replication.followers:}") String followers,
+            @Value("${logarythm.replication.ship-interval:100ms}") Duration interval,
+            @Value("${logarythm.replication.max-retained-wal-files:256}") int maxRetainedWalFiles) {
+
+        this.shardManager = shardManager;
+        this.dictionary = dictionary;
+        this.acks = acks;
+        this.metrics = metrics;
+        this.interval = interval;
+        this.maxRetainedWalFiles = maxRetainedWalFiles;
+
+        int shards = shardManager.getShards().size();
+        for (String url : followers.split(",")) {
+            if (!url.isBlank())
+                this.followers.add(new Follower(url.trim().replaceAll("/+$", ""), shards));
+        }
+        this.startIndex = new int[shards];
+    }
+
+    @PostConstruct
+    public void start() {
+        if (followers.isEmpty())
+            return;
+
+        for (IngestShard shard : shardManager.getShards()) {
+            int oldest = nextWalIndex(shard, 0);
+            startIndex[shard.id()] = oldest > 0 ? oldest : shard.walWriter().getCurrentWalIndex();
+            shard.walCleaner().retainFrom(() -> oldestNeeded(shard));
+        }
+
+        for (int i = 0; i < followers.size(); i++) {
+            Follower follower = followers.get(i);
+            tasks.add(Flux.interval(interval, interval, Schedulers.newSingle("wal-shipper-" + i))
+                    .subscribe(tick -> shipAll(follower)));
+        }
+
+        System.out.println("WalShipper: shipping WAL to " + followers.size() + " follower(s) "
+                + followers.stream().map(f -> f.url).toList());
+    }
+
+    @PreDestroy
+    public void stop() {
+        tasks.forEach(Disposable::dispose);
+    }
+
+    private void shipAll(Follower follower) {
+        for (IngestShard shard : shardManager.getShards()) {
+            try {
+                while (shipNext(follower, shard)) {
+                    // keep going while a follower is catching up
+                }
+            } catch (Exception e) {
+                metrics.replicationShipErrors.increment();
+                String error = e.getClass().getSimpleName() + (e.getMessage() != null ? ": " + e.getMessage() : "");
+                if (!error.equals(follower.lastError))
+                    System.out.println("WalShipper: " + follower.url + " shard=" + shard.id() + " → " + error);
+                follower.lastError = error;
+                return; // try again next tick
+            }
+        }
+    }
+
+    /**
+     * Ship the next chunk of one shard to one follower.
+     *
+     * @return true when there may be more to ship right away
+     */
+    private boolean shipNext(Follower follower, IngestShard shard) throws IOException, InterruptedException {
+        int id = shard.id();
+        WalPosition from = follower.shipped[id];
+        if (from == null)
+            from = new WalPosition(startIndex[id], 0); // first guess, the follower corrects it
+
+        // a newer file means this one is closed: check before reading its length
+        int next = nextWalIndex(shard, from.walIndex());
+        File file = walFile(shard, from.walIndex());
+
+        if (!file.exists()) {
+            if (next < 0)
+                return false;
+            if (follower.shipped[id] != null && from.walIndex() > 0) {
+                metrics.replicationGaps.increment();
+                System.out.println("WalShipper: " + follower.url + " shard=" + id + " missed WAL "
+                        + from + " (already deleted), continuing at wal " + next);
+            }
+            follower.shipped[id] = new WalPosition(next, 0);
+            return true;
+        }
+
+        byte[] buffer;
+        long length;
+        try (RandomAccessFile in = new RandomAccessFile(file, "r")) {
+            length = in.length();
+            buffer = new byte[(int) Math.min(MAX_CHUNK_BYTES, Math.max(0, length - from.offset()))];
+            in.seek(from.offset());
+            in.readFully(buffer);
+        }
+
+        BitSet streams = new BitSet();
+        int complete = RecordCodec.scan(ByteBuffer.wrap(buffer), (ts, level, stream, message, repeats, lastTs) -> streams.set(stream));
+
+        if (complete == 0) {
+            if (next > 0) {
+                // rotated and fully shipped (anything left is a torn tail)
+                follower.shipped[id] = new WalPosition(next, 0);
+                return true;
+            }
+            long now = System.currentTimeMillis();
+            if (now - follower.lastSentMillis[id] >= HEARTBEAT_INTERVAL.toMillis())
+                send(follower, shard, from, new byte[0], 0, streams, buffer.length == 0);
+            return false;
+        }
+
+        boolean caughtUp = next < 0 && from.offset() + complete == length;
+        WalPosition after = send(follower, shard, from, buffer, complete, streams, caughtUp);
+        return after.compareTo(from) > 0 && !caughtUp;
+    }
+
+    private WalPosition send(Follower follower, IngestShard shard, WalPosition from, byte[] records, int length,
+                             BitSet streams, boolean caughtUp) throws IOException, InterruptedException {
+
+        byte[] body = WalChunk.encode(dictionary, streams, records, length);
+        URI uri = URI.create(follower.url + "/replication/wal?shard=" + shard.id()
+                + "&from=" + from + "&caughtUp=" + caughtUp);
+
+        HttpRequest request = HttpRequest.newBuilder(uri)
+                .timeout(TIMEOUT)
+                .header("Content-Type", "application/octet-stream")
+                .POST(HttpRequest.BodyPublishers.ofByteArray(body))
+                .build();
+
+        HttpResponse<String> response = client.send(request, HttpResponse.BodyHandlers.ofString());
+        follower.lastSentMillis[shard.id()] = System.currentTimeMillis();
+
+        if (response.statusCode() != 200 && response.statusCode() != 409)
+            throw new IOException("HTTP " + response.statusCode() + " " + response.body());
+
+        // 200: applied, 409: not where the follower is; both carry its position
+        WalPosition position = WalPosition.parse(response.body());
+        follower.shipped[shard.id()] = position;
+        follower.lastContactMillis = System.currentTimeMillis();
+        follower.lastError = null;
+
+        if (response.statusCode() == 200 && length > 0) {
+            metrics.replicationChunksShipped.increment();
+            metrics.replicationBytesShipped.add(length);
+        }
+        if (response.statusCode() == 409)
+            System.out.println("WalShipper: " + follower.url + " shard=" + shard.id() + " is at " + position);
+
+        onShipped(shard.id());
+        return position;
+    }
+
+    /**
+     * Release sync-ack waiters up to what every follower has received.
+     */
+    private synchronized void onShipped(int shard) {
+        WalPosition min = null;
+        for (Follower follower : followers) {
+            WalPosition p = follower.shipped[shard];
+            if (p == null)
+                return;
+            if (min == null || p.compareTo(min) < 0)
+                min = p;
+        }
+        acks.replicatedUpTo(shard, min);
+    }
+
+    /**
+     * Oldest WAL file of a shard some follower still needs (WalCleaner hold).
+     */
+    private int oldestNeeded(IngestShard shard) {
+        int oldest = Integer.MAX_VALUE;
+        for (Follower follower : followers) {
+            WalPosition p = follower.shipped[shard.id()];
+            oldest = Math.min(oldest, p != null ? p.walIndex() : startIndex[shard.id()]);
+        }
+        int checkpoint = shard.checkpointManager().getLastFlushedWalIndex();
+        return Math.max(oldest, checkpoint - maxRetainedWalFiles);
+    }
+
+    private static File walFile(IngestShard shard, int walIndex) {
+        return new File(shard.walDir(), String.format("wal-%06d.log", walIndex));
+    }
+
+    /**
+     * Lowest WAL file index above walIndex, -1 when there is none.
+     */
+    private static int nextWalIndex(IngestShard shard, int walIndex) {
+        File[] files = new File(shard.walDir()).listFiles((d, name) -> name.startsWith("wal-") && name.endsWith(".log"));
+        int next = -1;
+
+        if (files == null) return next;
+
+        for (File f : files) {
+            try {
+                int index = Integer.parseInt(f.getName().substring(4, 10));
+                if (index > walIndex && (next < 0 || index < next))
+                    next = index;
+            } catch (Exception ignored) {
+            }
+        }
+        return next;
+    }
+
+    public boolean isEnabled() {
+        return !followers.isEmpty();
+    }
+
+    /**
+     * Per follower and shard: position received, the leader's WAL end and
+     * the bytes in between.
+     */
+    public List<Map<String, Object>> status() {
+        long now = System.currentTimeMillis();
+        List<Map<String, Object>> out = new ArrayList<>();
+
+        for (Follower follower : followers) {
+            List<Map<String, Object>> shards = new ArrayList<>();
+            for (IngestShard shard : shardManager.getShards()) {
+                WalPosition shipped = follower.shipped[shard.id()];
+                Map<String, Object> s = new LinkedHashMap<>();
+                s.put("shard", shard.id());
+                s.put("shipped", shipped != null ? shipped.toString() : null);
+                s.put("walEnd", walEnd(shard).toString());
+                s.put("lagBytes", shipped != null ? lagBytes(shard, shipped) : null);
+                shards.add(s);
+            }
+
+            Map<String, Object> f = new LinkedHashMap<>();
+            f.put("url", follower.url);
+            f.put("lastContactAgoMs", follower.lastContactMillis > 0 ? now - follower.lastContactMillis : null);
+            f.put("lastError", follower.lastError);
+            f.put("shards", shards);
+            out.add(f);
+        }
+        return out;
+    }
+
+    private static WalPosition walEnd(IngestShard shard) {
+        int live = shard.walWriter().getCurrentWalIndex();
+        return new WalPosition(live, walFile(shard, live).length());
+    }
+
+    private static long lagBytes(IngestShard shard, WalPosition shipped) {
+        long lag = 0;
+        for (int index = shipped.walIndex(); index > 0; index = nextWalIndex(shard, index)) {
+            long length = walFile(shard, index).length();
+            lag += index == shipped.walIndex() ? Math.max(0, length - shipped.offset()) : length;
+        }
+        return lag;
+    }
+}
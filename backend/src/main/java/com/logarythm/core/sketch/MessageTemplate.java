@@ -0,0 +1,103 @@
+package com.logarythm.core.sketch;
+
+/**
+ * Normalizes a message into its template, so "took 31ms" and "took 874ms"
+ * count as the same message, and hashes byte strings for the sketches.
+ *
+ * Works on the UTF-8 bytes (whitespace-separated tokens, as in the Bloom
+ * tokenizer):
+ * - a token with an ASCII digit becomes <*>            10.0.0.7 → <*>
+ * - unless it is name=value / name:value with a digit-free name,
+ *   then only the value is replaced                   status=503 → status=<*>
+ * - runs of whitespace become one space
+ * - the template is cut at MAX_TEMPLATE_BYTES (on a character boundary)
+ */
+public final class MessageTemplate {
+
+    public static final int MAX_TEMPLATE_BYTES = 160;
+
+    private static final byte[] WILDCARD = {'<', '*', '>'};
+
+    private MessageTemplate() {
+    }
+
+    /**
+     * Write the template of msg[off, off + len) into out (at least
+     * MAX_TEMPLATE_BYTES long).
+     *
+     * @return template length
+     */
+    public static int normalize(byte[] msg, int off, int len, byte[] out) {
+        int n = 0;
+        int end = off + len;
+        int i = off;
+
+        while (i < end && n < MAX_TEMPLATE_BYTES) {
+            if (isWhitespace(msg[i])) {
+                i++;
+                continue;
+            }
+
+            int start = i;
+            int separator = -1;
+            int firstDigit = -1;
+            while (i < end && !isWhitespace(msg[i])) {
+                byte b = msg[i];
+                if (firstDigit < 0 && b >= '0' && b <= '9')
+                    firstDigit = i;
+                if (separator < 0 && (b == '=' || b == ':'))
+                    separator = i;
+                i++;
+            }
+
+            if (n > 0)
+                out[n++] = ' ';
+
+            if (firstDigit < 0) {
+                n = append(out, n, msg, start, i - start);
+            } else if (separator > start && firstDigit > separator) {
+                n = append(out, n, msg, start, separator + 1 - start);
+                n = append(out, n, WILDCARD, 0, WILDCARD.length);
+            } else {
+                n = append(out, n, WILDCARD, 0, WILDCARD.length);
+            }
+        }
+
+        // never end inside a multi-byte character
+        if (n == MAX_TEMPLATE_BYTES) {
+            while (n > 0 && (out[n - 1] & 0xC0) == 0x80)
+                n--;
+            if (n > 0 && (out[n - 1] & 0xC0) == 0xC0)
+                n--;
+        }
+        return n;
+    }
+
+    private static int append(byte[] out, int n, byte[] src, int off, int len) {
+        int copy = Math.min(len, MAX_TEMPLATE_BYTES - n);
+        System.arraycopy(src, off, out, n, copy);
+        return n + copy;
+    }
+
+    private static boolean isWhitespace(byte b) {
+        return b == ' ' || b == '\t' || b == '\n' || b == 0x0B || b == '\f' || b == '\r';
+    }
+
+    /**
+     * 64-bit FNV-1a with a murmur3 finalizer (HyperLogLog needs well-mixed high bits).
+     */
+    public static long hash(byte[] data, int off, int len) {
+        long h = 0xcbf29ce484222325L;
+        for (int i = off; i < off + len; i++) {
+            h ^= data[i] & 0xFF;
+            h *= 0x100000001b3L;
+        }
+
+        h ^= h >>> 33;
+        h *= 0xff51afd7ed558ccdL;
+        h ^= h >>> 33;
+        h *= 0xc4ceb9fe1a85ec53L;
+        h ^= h >>> 33;
+        return h;
+    }
+}
@@ -0,0 +1,141 @@
+package com.logarythm.core.sketch;
+
+import com.logarythm.core.bloom.SegmentBloom;
+import com.logarythm.core.storage.LogBatch;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+
+/**
+ * Message statistics of one segment, answering "top messages" and
+ * "distinct messages" without scanning it.
+ *
+ * Per level code:
+ * - rows      → exact entry count (a collapsed record counts its repeats)
+ * - top       → Space-Saving summary of message templates (MessageTemplate)
+ * - distinct  → HyperLogLog of the raw messages
+ * plus the segment's time range.
+ *
+ * Built row by row while the segment is active (the writer adds every
+ * batch, queries merge the live sketch under the same lock) and persisted
+ * next to the Bloom sidecar as segment-XXXXXX.sk when it is sealed:
+ * [VERSION][minTs][maxTs] LEVELS × { [rows][present: 1 byte] (Space-Saving, HyperLogLog)? }
+ */
+public final class SegmentSketch {
+
+    public static final int LEVELS = SegmentBloom.LEVELS;
+    public static final int TOP_CAPACITY = 128;
+
+    private static final int VERSION = 1;
+
+    private final long[] rows = new long[LEVELS];
+    private final SpaceSaving[] top = new SpaceSaving[LEVELS];
+    private final HyperLogLog[] distinct = new HyperLogLog[LEVELS];
+    private long minTs = Long.MAX_VALUE;
+    private long maxTs = Long.MIN_VALUE;
+
+    private final byte[] template = new byte[MessageTemplate.MAX_TEMPLATE_BYTES];
+
+    /**
+     * One stored record; repeats > 1 for a collapsed record (counted that many times).
+     */
+    public synchronized void add(long timestamp, byte level, byte[] msg, int off, int len, int repeats) {
+        addRow(timestamp, level, msg, off, len, repeats);
+    }
+
+    /**
+     * Every row of a batch, under one lock.
+     */
+    public synchronized void add(LogBatch batch) {
+        byte[] messages = batch.messages();
+        for (int i = 0; i < batch.size(); i++)
+            addRow(batch.timestamp(i), batch.level(i), messages, batch.messageOffset(i), batch.messageLength(i),
+                    batch.repeats(i));
+    }
+
+    private void addRow(long timestamp, byte level, byte[] msg, int off, int len, int repeats) {
+        int code = level >= 0 && level < LEVELS ? level : 0;
+
+        if (top[code] == null) {
+            top[code] = new SpaceSaving(TOP_CAPACITY);
+            distinct[code] = new HyperLogLog();
+        }
+
+        rows[code] += repeats;
+        minTs = Math.min(minTs, timestamp);
+        maxTs = Math.max(maxTs, timestamp);
+
+        int n = MessageTemplate.normalize(msg, off, len, template);
+        top[code].add(MessageTemplate.hash(template, 0, n), template, 0, n, repeats);
+        distinct[code].add(MessageTemplate.hash(msg, off, len));
+    }
+
+    /**
+     * Add one level (or every level for -1) into a running merge.
+     *
+     * @return entries merged
+     */
+    public synchronized long mergeInto(int level, SpaceSaving topInto, HyperLogLog distinctInto) {
+        long merged = 0;
+        for (int code = 0; code < LEVELS; code++) {
+            if ((level >= 0 && code != level) || top[code] == null)
+                continue;
+
+            topInto.merge(top[code]);
+            distinctInto.merge(distinct[code]);
+            merged += rows[code];
+        }
+        return merged;
+    }
+
+    public synchronized long minTs() {
+        return minTs;
+    }
+
+    public synchronized long maxTs() {
+        return maxTs;
+    }
+
+    public synchronized void saveToFile(File f) throws IOException {
+        try (DataOutputStream out = new DataOutputStream(
+                new BufferedOutputStream(new FileOutputStream(f)))) {
+            out.writeByte(VERSION);
+            out.writeLong(minTs);
+            out.writeLong(maxTs);
+            for (int code = 0; code < LEVELS; code++) {
+                out.writeLong(rows[code]);
+                out.writeBoolean(top[code] != null);
+                if (top[code] != null) {
+                    top[code].writeTo(out);
+                    distinct[code].writeTo(out);
+                }
+            }
+        }
+    }
+
+    public static SegmentSketch loadFromFile(File f) throws IOException {
+        try (DataInputStream in = new DataInputStream(
+                new BufferedInputStream(new FileInputStream(f)))) {
+            if (in.readByte() != VERSION)
+                throw new IOException("Unknown sketch version in " + f.getPath());
+
+            SegmentSketch sketch = new SegmentSketch();
+            sketch.minTs = in.readLong();
+            sketch.maxTs = in.readLong();
+            for (int code = 0; code < LEVELS; code++) {
+                sketch.rows[code] = in.readLong();
+                if (in.readBoolean()) {
+                    sketch.top[code] = SpaceSaving.readFrom(in);
+                    sketch.distinct[code] = HyperLogLog.readFrom(in);
+                }
+            }
+            return sketch;
+        }
+    }
+}
@@ -0,0 +1,208 @@
+package com.logarythm.core.sketch;
+
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * Space-Saving heavy hitters: at most `capacity` counters of (key, count,
+ * error). A key that is not tracked takes over the smallest counter and
+ * inherits its count as error, so:
+ * - count is never below the key's true count
+ * - count - error is never above it
+ * - every key with a true count above total / capacity is tracked
+ *
+ * Keys are byte strings identified by a 64-bit hash (collisions are
+ * ignored). Capacity is small, so lookups scan the hash array instead of
+ * keeping a map: no allocation unless a new key takes a counter.
+ *
+ * Summaries merge the mergeable way (Agarwal et al., "Mergeable
+ * Summaries"): a key tracked by both adds both counters; a key missing
+ * from a full summary may still have occurred up to that summary's smallest
+ * count there, so that minimum is added to its count and its error. The
+ * `capacity` largest counters are kept, which keeps both bounds.
+ */
+public final class SpaceSaving {
+
+    /**
+     * One tracked key: its count is at most error too high.
+     */
+    public record Item(String key, long count, long error) {
+    }
+
+    private final int capacity;
+    private final long[] hashes;
+    private final byte[][] keys;
+    private final long[] counts;
+    private final long[] errors;
+    private int size;
+
+    public SpaceSaving(int capacity) {
+        this.capacity = capacity;
+        this.hashes = new long[capacity];
+        this.keys = new byte[capacity][];
+        this.counts = new long[capacity];
+        this.errors = new long[capacity];
+    }
+
+    public void add(long hash, byte[] key, int off, int len) {
+        add(hash, key, off, len, 1, 0);
+    }
+
+    /**
+     * Count the key `count` times at once.
+     */
+    public void add(long hash, byte[] key, int off, int len, long count) {
+        add(hash, key, off, len, count, 0);
+    }
+
+    private void add(long hash, byte[] key, int off, int len, long count, long error) {
+        for (int i = 0; i < size; i++) {
+            if (hashes[i] == hash) {
+                counts[i] += count;
+                errors[i] += error;
+                return;
+            }
+        }
+
+        int slot;
+        long inherited = 0;
+        if (size < capacity) {
+            slot = size++;
+        } else {
+            slot = 0;
+            for (int i = 1; i < size; i++) {
+                if (counts[i] < counts[slot])
+                    slot = i;
+            }
+            inherited = counts[slot];
+        }
+
+        hashes[slot] = hash;
+        keys[slot] = Arrays.copyOfRange(key, off, off + len);
+        counts[slot] = inherited + count;
+        errors[slot] = inherited + error;
+    }
+
+    public void merge(SpaceSaving other) {
+        long missingHere = floor();
+        long missingThere = other.floor();
+
+        int n = size + other.size;
+        long[] mergedHashes = new long[n];
+        byte[][] mergedKeys = new byte[n][];
+        long[] mergedCounts = new long[n];
+        long[] mergedErrors = new long[n];
+        int m = 0;
+
+        for (int i = 0; i < size; i++) {
+            int j = other.indexOf(hashes[i]);
+            mergedHashes[m] = hashes[i];
+            mergedKeys[m] = keys[i];
+            mergedCounts[m] = counts[i] + (j >= 0 ? other.counts[j] : missingThere);
+            mergedErrors[m] = errors[i] + (j >= 0 ? other.errors[j] : missingThere);
+            m++;
+        }
+        for (int j = 0; j < other.size; j++) {
+            if (indexOf(other.hashes[j]) >= 0)
+                continue;
+
+            mergedHashes[m] = other.hashes[j];
+            mergedKeys[m] = other.keys[j];
+            mergedCounts[m] = other.counts[j] + missingHere;
+            mergedErrors[m] = other.errors[j] + missingHere;
+            m++;
+        }
+
+        // keep the `capacity` largest counters
+        Integer[] order = new Integer[m];
+        for (int i = 0; i < m; i++)
+            order[i] = i;
+        Arrays.sort(order, (a, b) -> Long.compare(mergedCounts[b], mergedCounts[a]));
+
+        size = Math.min(m, capacity);
+        for (int i = 0; i < size; i++) {
+            int slot = order[i];
+            hashes[i] = mergedHashes[slot];
+            keys[i] = mergedKeys[slot];
+            counts[i] = mergedCounts[slot];
+            errors[i] = mergedErrors[slot];
+        }
+        Arrays.fill(keys, size, capacity, null);
+    }
+
+    private int indexOf(long hash) {
+        for (int i = 0; i < size; i++) {
+            if (hashes[i] == hash)
+                return i;
+        }
+        return -1;
+    }
+
+    /**
+     * Most an untracked key can have occurred: the smallest counter once
+     * every counter is taken, 0 before (every key seen so far is tracked).
+     */
+    private long floor() {
+        if (size < capacity)
+            return 0;
+
+        long min = counts[0];
+        for (int i = 1; i < size; i++)
+            min = Math.min(min, counts[i]);
+        return min;
+    }
+
+    /**
+     * The n largest counters, largest first.
+     */
+    public List<Item> top(int n) {
+        Integer[] order = new Integer[size];
+        for (int i = 0; i < size; i++)
+            order[i] = i;
+        Arrays.sort(order, (a, b) -> Long.compare(counts[b], counts[a]));
+
+        List<Item> items = new ArrayList<>(Math.min(n, size));
+        for (int i = 0; i < Math.min(n, size); i++) {
+            int slot = order[i];
+            items.add(new Item(new String(keys[slot], StandardCharsets.UTF_8), counts[slot], errors[slot]));
+        }
+        return items;
+    }
+
+    public int capacity() {
+        return capacity;
+    }
+
+    public void writeTo(DataOutputStream out) throws IOException {
+        out.writeShort(capacity);
+        out.writeShort(size);
+        for (int i = 0; i < size; i++) {
+            out.writeLong(hashes[i]);
+            out.writeLong(counts[i]);
+            out.writeLong(errors[i]);
+            out.writeShort(keys[i].length);
+            out.write(keys[i]);
+        }
+    }
+
+    public static SpaceSaving readFrom(DataInputStream in) throws IOException {
+        SpaceSaving s = new SpaceSaving(in.readUnsignedShort());
+        s.size = in.readUnsignedShort();
+        if (s.size > s.capacity)
+            throw new IOException("Space-Saving summary with " + s.size + " counters, capacity " + s.capacity);
+
+        for (int i = 0; i < s.size; i++) {
+            s.hashes[i] = in.readLong();
+            s.counts[i] = in.readLong();
+            s.errors[i] = in.readLong();
+            s.keys[i] = new byte[in.readUnsignedShort()];
+            in.readFully(s.keys[i]);
+        }
+        return s;
+    }
+}
@@ -0,0 +1,71 @@
+package com.logarythm.core.sketch;
+
+import com.logarythm.core.storage.SegmentCatalog;
+import com.logarythm.model.TopResponse;
+import org.springframework.stereotype.Component;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Answers "which messages are most frequent" and "how many distinct
+ * messages" for a time window from the per-segment sketches alone.
+ *
+ * Every segment in the catalog (sealed, archived and the active ones, which
+ * cover the latest flushed batches) whose time range overlaps the window
+ * contributes its sketch; Space-Saving and HyperLogLog both merge without
+ * losing their guarantees. Segments are counted whole, so a segment that
+ * straddles the window boundary adds its rows outside the window too
+ * (exactWindow=false in the response).
+ */
+@Component
+public class TopMessages {
+
+    private final SegmentCatalog catalog;
+
+    public TopMessages(SegmentCatalog catalog) {
+        this.catalog = catalog;
+    }
+
+    /**
+     * @param level level code, or -1 for every level
+     * @param k     templates to return, at most SegmentSketch.TOP_CAPACITY
+     */
+    public TopResponse query(Long start, Long end, int level, int k) {
+        long t0 = System.currentTimeMillis();
+        long from = start != null ? start : Long.MIN_VALUE;
+        long to = end != null ? end : Long.MAX_VALUE;
+
+        SpaceSaving top = new SpaceSaving(SegmentSketch.TOP_CAPACITY);
+        HyperLogLog distinct = new HyperLogLog();
+        int merged = 0;
+        int withoutSketch = 0;
+        long rows = 0;
+        boolean exactWindow = true;
+
+        for (SegmentCatalog.SegmentInfo info : catalog.segments()) {
+            SegmentSketch sketch = info.sketch();
+            if (sketch == null) {
+                withoutSketch++;
+                continue;
+            }
+
+            long minTs = sketch.minTs();
+            long maxTs = sketch.maxTs();
+            if (minTs > maxTs || maxTs < from || minTs > to)
+                continue; // empty, or outside the window
+
+            rows += sketch.mergeInto(level, top, distinct);
+            merged++;
+            if (minTs < from || maxTs > to)
+                exactWindow = false;
+        }
+
+        List<TopResponse.Message> messages = new ArrayList<>();
+        for (SpaceSaving.Item item : top.top(k))
+            messages.add(new TopResponse.Message(item.key(), item.count(), item.error()));
+
+        return new TopResponse(System.currentTimeMillis() - t0, merged, withoutSketch, exactWindow,
+                rows, distinct.estimate(), messages);
+    }
+}
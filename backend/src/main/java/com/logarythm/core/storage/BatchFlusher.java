@@ -1,88 +1,207 @@
 package com.logarythm.core.storage;
 
+import com.logarythm.core.ingestion.IngestShard;
 import com.logarythm.core.ingestion.IngestionService;
+import com.logarythm.core.ingestion.ShardManager;
+import com.logarythm.core.metrics.EngineMetrics;
+import com.logarythm.core.replication.ReplicationAcks;
 import com.logarythm.model.LogEntry;
-import com.logarythm.core.wal.WalWriter;
-import com.logarythm.core.wal.WalCleaner;
-import com.logarythm.core.wal.CheckpointManager;
-import com.logarythm.core.storage.SegmentWriter;
 import jakarta.annotation.PostConstruct;
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.stereotype.Component;
 import reactor.core.publisher.Flux;
+import reactor.core.scheduler.Scheduler;
+import reactor.core.scheduler.Schedulers;
 
 import java.time.Duration;
-import java.util.List;
-import java.io.IOException;
 
 /**
  * BatchFlusher subscribes to the ingestion pipeline and groups logs into batches.
  *
  * Responsibilities:
- * - Subscribe to the sink
- * - Collect logs into batches of 1000 OR flush every 1 second
- * - Call flushBatch(...) when a batch is ready
- * 
+ * - Subscribe to the sink of every ingest shard
+ * - Collect logs into batches of 1000 OR flush every 1 second; each log is
+ *   copied into a pooled columnar LogBatch as it arrives, so the pipeline
+ *   carries primitive columns and one message arena instead of entry lists
+ * - Push each batch through the flush pipeline
+ *
+ * Flush pipeline (per shard, each stage on its own thread):
+ *
+ *   (dedup +) encode → WAL append/fsync → segment append + Bloom update
+ *
+ * With logarythm.dedup.enabled, the encode stage first collapses runs of
+ * identical consecutive entries (same level, labels and message, within
+ * logarythm.dedup.window) of the batch into one record with a repeat count
+ * (see LogBatch.collapseRepeats), so a log storm costs one record per run
+ * in the WAL, the segment, the Bloom builder and every later scan.
+ *
+ * Stages are connected by bounded queues (STAGE_QUEUE batches), so while
+ * batch N is being fsynced, batch N+1 is encoded and batch N-1 is appended
+ * to the segment. Every stage is single-threaded, so batches keep their order
+ * and the checkpoint only moves forward.
+ *
+ * WAL cleanup is not part of the pipeline: it runs every CLEANUP_INTERVAL
+ * on its own thread.
+ *
+ * Every stage records its latency into EngineMetrics.
  */
 @Component
 public class BatchFlusher {
 
     private static final int BATCH_SIZE = 1000;
+    private static final int STAGE_QUEUE = 4;
+    private static final Duration CLEANUP_INTERVAL = Duration.ofSeconds(5);
+    // enough for every batch that can be in flight: one filling, STAGE_QUEUE
+    // queued in front of each stage plus one being processed by each stage
+    private static final int POOLED_BATCHES = 1 + 3 * (STAGE_QUEUE + 1);
 
     private final IngestionService ingestionService;
-    private final WalWriter walWriter;
-    private final CheckpointManager checkpointManager;
-    private final WalCleaner walCleaner;
-    private final SegmentWriter segmentWriter;
+    private final ShardManager shardManager;
+    private final StreamDictionary dictionary;
+    private final ReplicationAcks replicationAcks;
+    private final EngineMetrics metrics;
+    private final long dedupWindowMs; // < 0 = no dedup
 
     public BatchFlusher(IngestionService ingestionService,
-                        WalWriter walWriter,
-                        WalCleaner walCleaner,
-                        CheckpointManager checkpointManager,
-                        SegmentWriter segmentWriter) {
+                        ShardManager shardManager,
+                        StreamDictionary dictionary,
+                        ReplicationAcks replicationAcks,
+                        EngineMetrics metrics,
+                        @Value("${logarythm.dedup.enabled:false}") boolean dedup,
+                        @Value("${logarythm.dedup.window:1s}") Duration dedupWindow) {
         this.ingestionService = ingestionService;
-        this.walWriter = walWriter;
-        this.checkpointManager = checkpointManager;
-        this.segmentWriter = segmentWriter;
-        this.walCleaner = walCleaner;
+        this.shardManager = shardManager;
+        this.dictionary = dictionary;
+        this.replicationAcks = replicationAcks;
+        this.metrics = metrics;
+        this.dedupWindowMs = dedup ? dedupWindow.toMillis() : -1;
     }
 
 
     @PostConstruct
     public void startConsuming() {
-        Flux<LogEntry> stream = ingestionService.getSink().asFlux();
+        for (IngestShard shard : shardManager.getShards()) {
+            Flux<LogEntry> stream = ingestionService.getSink(shard.id()).asFlux();
+            LogBatch.Pool pool = new LogBatch.Pool(POOLED_BATCHES, BATCH_SIZE);
+
+            Scheduler encodeStage = Schedulers.newSingle("flush-encode-" + shard.id());
+            Scheduler walStage = Schedulers.newSingle("flush-wal-" + shard.id());
+            Scheduler segmentStage = Schedulers.newSingle("flush-segment-" + shard.id());
+
+            // Buffer 1000 logs OR flush every 1 second
+            stream
+                .bufferTimeout(BATCH_SIZE, Duration.ofSeconds(1), pool::acquire)
+                .filter(batch -> {
+                    if (!batch.isEmpty())
+                        return true;
+                    pool.release(batch);
+                    return false;
+                })
+                .publishOn(encodeStage, STAGE_QUEUE)
+                .map(this::encode)
+                .publishOn(walStage, STAGE_QUEUE)
+                .doOnNext(batch -> appendToWal(shard, batch))
+                .publishOn(segmentStage, STAGE_QUEUE)
+                .subscribe(batch -> {
+                    appendToSegment(shard, batch);
+                    pool.release(batch.logs);
+                });
+        }
 
-        // Buffer 1000 logs OR flush every 1 second
-        stream
-            .bufferTimeout(BATCH_SIZE, Duration.ofSeconds(1))
-            .filter(batch -> !batch.isEmpty())
-            .subscribe(this::flushBatch);
+        Flux.interval(CLEANUP_INTERVAL, Schedulers.newSingle("wal-cleaner"))
+            .subscribe(tick -> cleanup());
     }
 
     /**
-     * For now, just print the batch size.
-     * Later, this will:
-     * - append to WAL
-     * - write to segment files
-     * - update indexes
-     * - deletes old WAL files
+     * Stage 1: collapse repeated entries (when enabled), then encode the
+     * batch once into the shared WAL/segment record format.
      */
-    private void flushBatch(List<LogEntry> batch) {
+    private EncodedBatch encode(LogBatch logs) {
+        EncodedBatch batch = new EncodedBatch(logs);
         try {
-            int walIndex = walWriter.getCurrentWalIndex();
+            if (dedupWindowMs >= 0)
+                metrics.logsDeduplicated.add(logs.collapseRepeats(dedupWindowMs));
+            logs.encode(dictionary);
+            metrics.encodeLatency.recordSince(batch.createdNanos);
+        } catch (Exception e) {
+            fail(batch);
+            e.printStackTrace();
+        }
+        return batch;
+    }
 
-            // 1. Write WAL entries
-            walWriter.appendBatch(batch);
+    /**
+     * Stage 2: make the batch durable (and tell sync-ack replication where
+     * the batch ends in the WAL).
+     */
+    private void appendToWal(IngestShard shard, EncodedBatch batch) {
+        writeWal(shard, batch);
+        replicationAcks.walAppended(shard.id(), batch.failed ? null : batch.walPosition, batch.size());
+    }
 
-            // 2. Write to segment storage
-            segmentWriter.writeBatchToSegment(walIndex, batch);
+    private void writeWal(IngestShard shard, EncodedBatch batch) {
+        if (batch.failed)
+            return;
 
-            // 3. CLEANUP OLD WAL FILES
-            walCleaner.cleanOldWalFiles();
+        try {
+            long t0 = System.nanoTime();
+            batch.walPosition = shard.walWriter().appendEncoded(batch.logs.records(), batch.logs.recordsLength());
+            metrics.walWriteLatency.recordSince(t0);
+            metrics.walBytes.add(batch.logs.recordsLength());
 
-            System.out.println("BatchFlusher: wrote batch=" + batch.size() + " walIndex=" + walIndex);
+            if (shard.walWriter().isFsyncEnabled()) {
+                long t1 = System.nanoTime();
+                shard.walWriter().sync();
+                metrics.walFsyncLatency.recordSince(t1);
+            }
+        } catch (Exception e) {
+            // not durable → never expose it through segments
+            fail(batch);
+            e.printStackTrace();
+        }
+    }
+
+    /**
+     * Stage 3: append to the active segment, update its Bloom filter, move the checkpoint.
+     */
+    private void appendToSegment(IngestShard shard, EncodedBatch batch) {
+        if (batch.failed)
+            return;
+
+        try {
+            long t0 = System.nanoTime();
+            shard.segmentWriter().writeEncodedBatch(batch.walPosition, batch.logs);
+            metrics.segmentWriteLatency.recordSince(t0);
+
+            metrics.segmentBytesWritten.add(batch.logs.recordsLength());
+            metrics.logsFlushed.add(batch.size());
+            metrics.batchesFlushed.increment();
+            metrics.batchEndToEndLatency.recordSince(batch.createdNanos);
+
+            System.out.println("BatchFlusher: wrote batch=" + batch.size()
+                    + " shard=" + shard.id() + " walIndex=" + batch.walPosition.walIndex());
 
         } catch (Exception e) {
+            fail(batch);
             e.printStackTrace();
         }
     }
+
+    private void fail(EncodedBatch batch) {
+        batch.failed = true;
+        metrics.logsFailed.add(batch.size());
+    }
+
+    /**
+     * Periodic stage: delete WAL files fully covered by each shard's checkpoint.
+     */
+    private void cleanup() {
+        for (IngestShard shard : shardManager.getShards()) {
+            try {
+                shard.walCleaner().cleanOldWalFiles();
+            } catch (Exception e) {
+                e.printStackTrace();
+            }
+        }
+    }
 }
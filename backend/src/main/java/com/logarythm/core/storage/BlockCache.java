@@ -0,0 +1,148 @@
+package com.logarythm.core.storage;
+
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * Shared, byte-budgeted cache of decoded segment blocks.
+ *
+ * Eviction is a segmented LRU (SLRU), which keeps one large scan
+ * (an export, a full-history search) from flushing the working set:
+ * - a block enters the probation segment on its first use
+ * - a second use promotes it to the protected segment (80% of the budget)
+ * - protected overflow is demoted back to probation
+ * - eviction always takes the least recently used probation block first
+ *
+ * Keys are (segment key, index generation, block number). Sealed blocks
+ * never change, and the closed blocks of the active segment don't either.
+ * A rewrite replaces the segment's BlockIndex, so a block a running query
+ * decoded from the old file and put after the rewrite is keyed by the old
+ * generation and can't be hit through the new index. RetentionManager
+ * still invalidates a segment when it rewrites or deletes it, to free
+ * the memory.
+ */
+@Component
+public class BlockCache {
+
+    private record Key(String segment, long generation, int block) {
+    }
+
+    private static final int PROTECTED_PERCENT = 80;
+
+    private final long capacityBytes;
+    private final long protectedCapacityBytes;
+
+    private final LinkedHashMap<Key, DecodedBlock> probation = new LinkedHashMap<>(64, 0.75f, true);
+    private final LinkedHashMap<Key, DecodedBlock> protectedBlocks = new LinkedHashMap<>(64, 0.75f, true);
+    private long probationBytes;
+    private long protectedBytes;
+
+    private long hits;
+    private long misses;
+    private long evictions;
+
+    public BlockCache(@Value("${logarythm.cache.block-bytes:67108864}") long capacityBytes) {
+        this.capacityBytes = capacityBytes;
+        this.protectedCapacityBytes = capacityBytes * PROTECTED_PERCENT / 100;
+    }
+
+    public synchronized DecodedBlock get(String segment, long generation, int block) {
+        Key key = new Key(segment, generation, block);
+
+        DecodedBlock hit = protectedBlocks.get(key);
+        if (hit != null) {
+            hits++;
+            return hit;
+        }
+
+        hit = probation.remove(key);
+        if (hit == null) {
+            misses++;
+            return null;
+        }
+
+        // second use → protected
+        hits++;
+        probationBytes -= hit.bytes();
+        protectedBlocks.put(key, hit);
+        protectedBytes += hit.bytes();
+
+        Iterator<Map.Entry<Key, DecodedBlock>> it = protectedBlocks.entrySet().iterator();
+        while (protectedBytes > protectedCapacityBytes && it.hasNext()) {
+            Map.Entry<Key, DecodedBlock> lru = it.next();
+            it.remove();
+            protectedBytes -= lru.getValue().bytes();
+            probation.put(lru.getKey(), lru.getValue());
+            probationBytes += lru.getValue().bytes();
+        }
+
+        evictOverBudget();
+        return hit;
+    }
+
+    public synchronized void put(String segment, long generation, int block, DecodedBlock decoded) {
+        if (capacityBytes <= 0 || decoded.bytes() > capacityBytes / 4)
+            return;
+
+        DecodedBlock previous = probation.put(new Key(segment, generation, block), decoded);
+        if (previous != null)
+            probationBytes -= previous.bytes();
+        probationBytes += decoded.bytes();
+
+        evictOverBudget();
+    }
+
+    private void evictOverBudget() {
+        while (probationBytes + protectedBytes > capacityBytes) {
+            LinkedHashMap<Key, DecodedBlock> victims = probation.isEmpty() ? protectedBlocks : probation;
+            Iterator<Map.Entry<Key, DecodedBlock>> it = victims.entrySet().iterator();
+            if (!it.hasNext())
+                return;
+
+            long bytes = it.next().getValue().bytes();
+            it.remove();
+            if (victims == probation)
+                probationBytes -= bytes;
+            else
+                protectedBytes -= bytes;
+            evictions++;
+        }
+    }
+
+    /**
+     * Forget every block of a segment (it was rewritten or deleted).
+     */
+    public synchronized void invalidate(String segment) {
+        probationBytes -= removeSegment(probation, segment);
+        protectedBytes -= removeSegment(protectedBlocks, segment);
+    }
+
+    private static long removeSegment(LinkedHashMap<Key, DecodedBlock> blocks, String segment) {
+        long freed = 0;
+        Iterator<Map.Entry<Key, DecodedBlock>> it = blocks.entrySet().iterator();
+        while (it.hasNext()) {
+            Map.Entry<Key, DecodedBlock> e = it.next();
+            if (e.getKey().segment().equals(segment)) {
+                freed += e.getValue().bytes();
+                it.remove();
+            }
+        }
+        return freed;
+    }
+
+    public synchronized Map<String, Object> snapshot() {
+        Map<String, Object> stats = new LinkedHashMap<>();
+        stats.put("capacityBytes", capacityBytes);
+        stats.put("bytes", probationBytes + protectedBytes);
+        stats.put("protectedBytes", protectedBytes);
+        stats.put("blocks", probation.size() + protectedBlocks.size());
+        stats.put("hits", hits);
+        stats.put("misses", misses);
+        stats.put("evictions", evictions);
+        return stats;
+    }
+}
@@ -0,0 +1,295 @@
+package com.logarythm.core.storage;
+
+import java.io.*;
+import java.util.concurrent.atomic.AtomicLong;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.util.Arrays;
+import java.util.BitSet;
+
+/**
+ * Sparse index of a segment: the segment is cut into blocks of whole
+ * records (~TARGET_BLOCK_BYTES each), and for every block we keep
+ * its byte range, record count, time range and the stream ids
+ * (label sets, see StreamDictionary) it contains.
+ *
+ * Readers use it to skip blocks outside the query time range or without
+ * any stream of a label selector, and to read a segment block by block
+ * instead of record by record.
+ *
+ * When the segment is moved to the archive tier, every block is
+ * compressed on its own and archiveOffset/archiveLength point into the
+ * archive object, so a single block can be fetched lazily.
+ *
+ * Persisted next to a sealed segment as segment-XXXXXX.idx. The active
+ * segment's index lives in memory and grows as the writer closes blocks.
+ *
+ * Every instance has its own generation. A rewritten or archived segment
+ * gets a new index, and BlockCache keys blocks by generation, so blocks
+ * decoded from an older layout of the same segment are never served again.
+ */
+public class BlockIndex {
+
+    public static final int TARGET_BLOCK_BYTES = 64 * 1024;
+
+    private static final int FORMAT_VERSION = 2;
+
+    private static final int[] NO_LABELS = {0};
+    private static final AtomicLong GENERATIONS = new AtomicLong();
+
+    private final long generation = GENERATIONS.incrementAndGet();
+
+    // volatile: the active segment's index is read by queries while the
+    // writer appends; a block is visible only once all its fields are set
+    private volatile int size;
+    private long[] offsets = new long[16];
+    private int[] lengths = new int[16];
+    private int[] counts = new int[16];
+    private long[] minTs = new long[16];
+    private long[] maxTs = new long[16];
+    private int[][] streams = new int[16][]; // sorted stream ids per block
+
+    private long[] archiveOffsets;
+    private int[] archiveLengths;
+
+    // block currently being filled (writer side)
+    private long openOffset;
+    private int openLength;
+    private int openCount;
+    private long openMinTs = Long.MAX_VALUE;
+    private long openMaxTs = Long.MIN_VALUE;
+    private final BitSet openStreams = new BitSet();
+
+    public long generation() {
+        return generation;
+    }
+
+    public int size() {
+        return size;
+    }
+
+    public long offset(int block) {
+        return offsets[block];
+    }
+
+    public int length(int block) {
+        return lengths[block];
+    }
+
+    public int count(int block) {
+        return counts[block];
+    }
+
+    public long minTs(int block) {
+        return minTs[block];
+    }
+
+    public long maxTs(int block) {
+        return maxTs[block];
+    }
+
+    /**
+     * Block holds at least one record of the selected streams.
+     */
+    public boolean hasAnyStream(int block, BitSet selected) {
+        for (int stream : streams[block]) {
+            if (selected.get(stream))
+                return true;
+        }
+        return false;
+    }
+
+    /**
+     * Some closed block holds a record of the selected streams.
+     */
+    public boolean hasAnyStream(BitSet selected) {
+        int n = size;
+        for (int b = 0; b < n; b++) {
+            if (hasAnyStream(b, selected))
+                return true;
+        }
+        return false;
+    }
+
+    /**
+     * First byte after the last closed block (where the unindexed tail of
+     * an active segment starts).
+     */
+    public long indexedBytes() {
+        int n = size;
+        return n == 0 ? 0 : offsets[n - 1] + lengths[n - 1];
+    }
+
+    public boolean isArchived() {
+        return archiveOffsets != null;
+    }
+
+    public long archiveOffset(int block) {
+        return archiveOffsets[block];
+    }
+
+    public int archiveLength(int block) {
+        return archiveLengths[block];
+    }
+
+    public void setArchiveLocation(long[] offsets, int[] lengths) {
+        this.archiveOffsets = offsets;
+        this.archiveLengths = lengths;
+    }
+
+    /**
+     * Block overlaps [start, end] (nulls = open ended).
+     */
+    public boolean overlaps(int block, Long start, Long end) {
+        if (start != null && maxTs[block] < start)
+            return false;
+        return end == null || minTs[block] <= end;
+    }
+
+    /**
+     * Writer side: account for appended unlabeled records.
+     */
+    public void append(int bytes, int records, long batchMinTs, long batchMaxTs) {
+        openStreams.set(0);
+        append(bytes, records, batchMinTs, batchMaxTs, null);
+    }
+
+    /**
+     * Writer side: account for appended records of the given streams;
+     * cuts a block once it reaches TARGET_BLOCK_BYTES.
+     */
+    public void append(int bytes, int records, long batchMinTs, long batchMaxTs, BitSet batchStreams) {
+        if (batchStreams != null)
+            openStreams.or(batchStreams);
+        openLength += bytes;
+        openCount += records;
+        openMinTs = Math.min(openMinTs, batchMinTs);
+        openMaxTs = Math.max(openMaxTs, batchMaxTs);
+
+        if (openLength >= TARGET_BLOCK_BYTES)
+            closeBlock();
+    }
+
+    /**
+     * Close the partially filled block (called when the segment is sealed).
+     */
+    public void finish() {
+        if (openLength > 0)
+            closeBlock();
+    }
+
+    private void closeBlock() {
+        if (size == offsets.length) {
+            int n = size * 2;
+            offsets = Arrays.copyOf(offsets, n);
+            lengths = Arrays.copyOf(lengths, n);
+            counts = Arrays.copyOf(counts, n);
+            minTs = Arrays.copyOf(minTs, n);
+            maxTs = Arrays.copyOf(maxTs, n);
+            streams = Arrays.copyOf(streams, n);
+        }
+
+        int n = size;
+        offsets[n] = openOffset;
+        lengths[n] = openLength;
+        counts[n] = openCount;
+        minTs[n] = openMinTs;
+        maxTs[n] = openMaxTs;
+        streams[n] = openStreams.cardinality() == 1 && openStreams.get(0)
+                ? NO_LABELS
+                : openStreams.stream().toArray();
+        size = n + 1;
+
+        openOffset += openLength;
+        openLength = 0;
+        openCount = 0;
+        openMinTs = Long.MAX_VALUE;
+        openMaxTs = Long.MIN_VALUE;
+        openStreams.clear();
+    }
+
+    /**
+     * Build the index of an existing segment file by scanning it.
+     */
+    public static BlockIndex build(File segment) throws IOException {
+        BlockIndex index = new BlockIndex();
+        RecordCodec.scan(segment, (ts, lvl, stream, msg, repeats, lastTs) -> {
+            index.openStreams.set(stream);
+            index.append(RecordCodec.recordBytes(stream, repeats, msg.length), 1, ts, ts, null);
+        });
+        index.finish();
+        return index;
+    }
+
+    public void saveToFile(File f) throws IOException {
+        File tmp = new File(f.getPath() + ".tmp");
+
+        try (DataOutputStream out = new DataOutputStream(
+                new BufferedOutputStream(new FileOutputStream(tmp)))) {
+            out.writeInt(FORMAT_VERSION);
+            out.writeInt(size);
+            out.writeBoolean(isArchived());
+
+            for (int i = 0; i < size; i++) {
+                out.writeLong(offsets[i]);
+                out.writeInt(lengths[i]);
+                out.writeInt(counts[i]);
+                out.writeLong(minTs[i]);
+                out.writeLong(maxTs[i]);
+                out.writeShort(streams[i].length);
+                for (int stream : streams[i])
+                    out.writeShort(stream);
+
+                if (isArchived()) {
+                    out.writeLong(archiveOffsets[i]);
+                    out.writeInt(archiveLengths[i]);
+                }
+            }
+        }
+
+        Files.move(tmp.toPath(), f.toPath(),
+                StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+    }
+
+    public static BlockIndex loadFromFile(File f) throws IOException {
+        try (DataInputStream in = new DataInputStream(
+                new BufferedInputStream(new FileInputStream(f)))) {
+
+            int version = in.readInt();
+            if (version != 1 && version != FORMAT_VERSION)
+                throw new IOException("Unsupported block index version " + version + " in " + f);
+
+            int n = in.readInt();
+            boolean archived = in.readBoolean();
+
+            BlockIndex index = new BlockIndex();
+            long[] arcOffsets = archived ? new long[n] : null;
+            int[] arcLengths = archived ? new int[n] : null;
+
+            for (int i = 0; i < n; i++) {
+                index.openOffset = in.readLong();
+                index.openLength = in.readInt();
+                index.openCount = in.readInt();
+                index.openMinTs = in.readLong();
+                index.openMaxTs = in.readLong();
+                if (version == 1) {
+                    index.openStreams.set(0); // written before labels existed
+                } else {
+                    int streamCount = in.readUnsignedShort();
+                    for (int s = 0; s < streamCount; s++)
+                        index.openStreams.set(in.readUnsignedShort());
+                }
+                index.closeBlock();
+
+                if (archived) {
+                    arcOffsets[i] = in.readLong();
+                    arcLengths[i] = in.readInt();
+                }
+            }
+
+            index.archiveOffsets = arcOffsets;
+            index.archiveLengths = arcLengths;
+            return index;
+        }
+    }
+}
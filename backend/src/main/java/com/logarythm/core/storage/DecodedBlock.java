@@ -0,0 +1,183 @@
+package com.logarythm.core.storage;
+
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.VarHandle;
+import java.nio.ByteOrder;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+
+/**
+ * One segment block decoded into a compact, column-like form:
+ *
+ * timestamps[i] → record timestamp
+ * levels[i]     → level code
+ * streams[i]    → stream id (0 = no labels)
+ * messages      → all message bytes back to back (UTF-8)
+ * msgOffsets    → message i is messages[msgOffsets[i], msgOffsets[i + 1])
+ * repeats[i], lastTimestamps[i] → only allocated when the block holds a
+ *                 collapsed (REPEATED) record
+ *
+ * Filters run on the primitive arrays; a String is only built for rows
+ * that are returned. Instances are immutable and shared through BlockCache.
+ */
+public final class DecodedBlock {
+
+    // records are big-endian (DataOutputStream)
+    private static final VarHandle LONG_VIEW = MethodHandles.byteArrayViewVarHandle(long[].class, ByteOrder.BIG_ENDIAN);
+    private static final VarHandle INT_VIEW = MethodHandles.byteArrayViewVarHandle(int[].class, ByteOrder.BIG_ENDIAN);
+    private static final VarHandle SHORT_VIEW = MethodHandles.byteArrayViewVarHandle(short[].class, ByteOrder.BIG_ENDIAN);
+
+    private static final int OBJECT_OVERHEAD = 144; // headers of the object + 7 arrays
+
+    private final int size;
+    private final long[] timestamps;
+    private final byte[] levels;
+    private final char[] streams;
+    private final byte[] messages;
+    private final int[] msgOffsets;
+    private final int[] repeats;
+    private final long[] lastTimestamps;
+
+    private DecodedBlock(int size, long[] timestamps, byte[] levels, char[] streams,
+                         byte[] messages, int[] msgOffsets, int[] repeats, long[] lastTimestamps) {
+        this.size = size;
+        this.timestamps = timestamps;
+        this.levels = levels;
+        this.streams = streams;
+        this.messages = messages;
+        this.msgOffsets = msgOffsets;
+        this.repeats = repeats;
+        this.lastTimestamps = lastTimestamps;
+    }
+
+    /**
+     * Decode the complete records in raw[0, length).
+     *
+     * @param expectedRecords record count from the block index (sizing hint)
+     */
+    public static DecodedBlock decode(byte[] raw, int length, int expectedRecords) {
+        int capacity = Math.max(expectedRecords, 1);
+        long[] timestamps = new long[capacity];
+        byte[] levels = new byte[capacity];
+        char[] streams = new char[capacity];
+        int[] offsets = new int[capacity + 1];
+        byte[] messages = new byte[Math.max(length - capacity * RecordCodec.HEADER_BYTES, 0)];
+        int[] repeats = null;
+        long[] lastTimestamps = null;
+
+        int n = 0;
+        int pos = 0;
+        int arena = 0;
+
+        while (length - pos >= RecordCodec.HEADER_BYTES) {
+            long ts = (long) LONG_VIEW.get(raw, pos);
+            byte lvl = raw[pos + 8];
+            int msgLen = (short) SHORT_VIEW.get(raw, pos + 9) & 0xFFFF;
+            int header = RecordCodec.headerBytes(lvl);
+
+            if (msgLen > RecordCodec.MAX_MESSAGE_BYTES || length - pos - header < msgLen)
+                break; // corrupt or truncated tail
+
+            if (n == timestamps.length) {
+                timestamps = Arrays.copyOf(timestamps, n * 2);
+                levels = Arrays.copyOf(levels, n * 2);
+                streams = Arrays.copyOf(streams, n * 2);
+                offsets = Arrays.copyOf(offsets, n * 2 + 1);
+                if (repeats != null) {
+                    repeats = Arrays.copyOf(repeats, n * 2);
+                    lastTimestamps = Arrays.copyOf(lastTimestamps, n * 2);
+                }
+            }
+            if (repeats == null && (lvl & RecordCodec.REPEATED) != 0) {
+                // first collapsed record: every row before it stands for itself
+                repeats = new int[timestamps.length];
+                lastTimestamps = new long[timestamps.length];
+                Arrays.fill(repeats, 0, n, 1);
+                System.arraycopy(timestamps, 0, lastTimestamps, 0, n);
+            }
+            if (arena + msgLen > messages.length)
+                messages = Arrays.copyOf(messages, Math.max(messages.length * 2, arena + msgLen));
+
+            timestamps[n] = ts;
+            levels[n] = (byte) (lvl & RecordCodec.LEVEL_MASK);
+            streams[n] = (lvl & RecordCodec.LABELED) != 0 ? (char) (short) SHORT_VIEW.get(raw, pos + 11) : 0;
+            if (repeats != null) {
+                boolean repeated = (lvl & RecordCodec.REPEATED) != 0;
+                int repeatAt = pos + header - RecordCodec.REPEAT_BYTES;
+                repeats[n] = repeated ? (int) INT_VIEW.get(raw, repeatAt) : 1;
+                lastTimestamps[n] = repeated ? (long) LONG_VIEW.get(raw, repeatAt + 4) : ts;
+            }
+            offsets[n] = arena;
+            System.arraycopy(raw, pos + header, messages, arena, msgLen);
+
+            arena += msgLen;
+            pos += header + msgLen;
+            n++;
+        }
+        offsets[n] = arena;
+
+        if (messages.length != arena)
+            messages = Arrays.copyOf(messages, arena);
+
+        return new DecodedBlock(n, timestamps, levels, streams, messages, offsets, repeats, lastTimestamps);
+    }
+
+    public int size() {
+        return size;
+    }
+
+    public long timestamp(int row) {
+        return timestamps[row];
+    }
+
+    public byte level(int row) {
+        return levels[row];
+    }
+
+    public int stream(int row) {
+        return streams[row];
+    }
+
+    /**
+     * Entries the row stands for (1 unless it is a collapsed record).
+     */
+    public int repeats(int row) {
+        return repeats != null ? repeats[row] : 1;
+    }
+
+    public long lastTimestamp(int row) {
+        return lastTimestamps != null ? lastTimestamps[row] : timestamps[row];
+    }
+
+    /**
+     * The shared message arena; read-only for callers.
+     */
+    public byte[] messageBytes() {
+        return messages;
+    }
+
+    public int messageOffset(int row) {
+        return msgOffsets[row];
+    }
+
+    public int messageLength(int row) {
+        return msgOffsets[row + 1] - msgOffsets[row];
+    }
+
+    public String message(int row) {
+        return new String(messages, msgOffsets[row], messageLength(row), StandardCharsets.UTF_8);
+    }
+
+    /**
+     * Approximate heap footprint, used for the cache byte budget.
+     */
+    public long bytes() {
+        return OBJECT_OVERHEAD
+                + 8L * timestamps.length
+                + levels.length
+                + 2L * streams.length
+                + 4L * msgOffsets.length
+                + messages.length
+                + (repeats != null ? 12L * repeats.length : 0);
+    }
+}
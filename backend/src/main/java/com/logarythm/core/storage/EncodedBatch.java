@@ -0,0 +1,33 @@
+package com.logarythm.core.storage;
+
+import com.logarythm.core.wal.WalPosition;
+
+/**
+ * A batch travelling through the flush pipeline.
+ *
+ * encode stage  → fills the LogBatch's records (the shared WAL/segment bytes) and stream ids
+ * WAL stage     → fills walPosition
+ * segment stage → appends records, moves the checkpoint to walPosition and
+ *                 returns the LogBatch to its pool
+ *
+ * Each field is written by exactly one stage before the batch is handed
+ * to the next one, so no locking is needed.
+ */
+public class EncodedBatch {
+
+    final LogBatch logs;
+    final long createdNanos = System.nanoTime();
+    WalPosition walPosition;
+    boolean failed;
+
+    EncodedBatch(LogBatch logs) {
+        this.logs = logs;
+    }
+
+    /**
+     * Entries in the batch (a collapsed record counts its repeats).
+     */
+    int size() {
+        return logs.entryCount();
+    }
+}
@@ -0,0 +1,97 @@
+package com.logarythm.core.storage;
+
+import java.io.File;
+import java.io.IOException;
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.time.Duration;
+import java.util.Arrays;
+
+/**
+ * Archive tier on an S3-compatible object store (MinIO, a local
+ * S3 stand-in, or a bucket behind a signing proxy).
+ *
+ * Uses path-style URLs: {baseUrl}/{objectKey}
+ * - PUT    uploads an object
+ * - GET    with a Range header reads one block
+ * - DELETE removes an object
+ *
+ * Requests are not signed; put credentials in front of it (proxy or
+ * a pre-authorized bucket policy).
+ */
+public class HttpObjectStoreTier implements StorageTier {
+
+    private static final Duration TIMEOUT = Duration.ofSeconds(30);
+
+    private final String baseUrl;
+    private final HttpClient client = HttpClient.newBuilder()
+            .connectTimeout(TIMEOUT)
+            .build();
+
+    public HttpObjectStoreTier(String baseUrl) {
+        if (baseUrl == null || baseUrl.isBlank())
+            throw new IllegalArgumentException("logarythm.tier.http-url must be set for the http tier");
+
+        this.baseUrl = baseUrl.endsWith("/") ? baseUrl.substring(0, baseUrl.length() - 1) : baseUrl;
+    }
+
+    private URI uriOf(String objectKey) {
+        return URI.create(baseUrl + "/" + objectKey);
+    }
+
+    @Override
+    public void put(String objectKey, File source) throws IOException {
+        HttpRequest request = HttpRequest.newBuilder(uriOf(objectKey))
+                .timeout(TIMEOUT)
+                .PUT(HttpRequest.BodyPublishers.ofFile(source.toPath()))
+                .build();
+
+        HttpResponse<Void> response = send(request, HttpResponse.BodyHandlers.discarding());
+        if (response.statusCode() / 100 != 2)
+            throw new IOException("PUT " + objectKey + " failed: HTTP " + response.statusCode());
+    }
+
+    @Override
+    public byte[] readRange(String objectKey, long offset, int length) throws IOException {
+        HttpRequest request = HttpRequest.newBuilder(uriOf(objectKey))
+                .timeout(TIMEOUT)
+                .header("Range", "bytes=" + offset + "-" + (offset + length - 1))
+                .GET()
+                .build();
+
+        HttpResponse<byte[]> response = send(request, HttpResponse.BodyHandlers.ofByteArray());
+        byte[] body = response.body();
+
+        // 206 = the range we asked for; 200 = server ignored Range and sent everything
+        if (response.statusCode() == 206 && body.length == length)
+            return body;
+        if (response.statusCode() == 200 && body.length >= offset + length)
+            return Arrays.copyOfRange(body, (int) offset, (int) offset + length);
+
+        throw new IOException("GET " + objectKey + " [" + offset + "+" + length + "] failed: HTTP "
+                + response.statusCode() + ", " + body.length + " bytes");
+    }
+
+    @Override
+    public void delete(String objectKey) throws IOException {
+        HttpRequest request = HttpRequest.newBuilder(uriOf(objectKey))
+                .timeout(TIMEOUT)
+                .DELETE()
+                .build();
+
+        HttpResponse<Void> response = send(request, HttpResponse.BodyHandlers.discarding());
+        if (response.statusCode() / 100 != 2 && response.statusCode() != 404)
+            throw new IOException("DELETE " + objectKey + " failed: HTTP " + response.statusCode());
+    }
+
+    private <T> HttpResponse<T> send(HttpRequest request, HttpResponse.BodyHandler<T> handler) throws IOException {
+        try {
+            return client.send(request, handler);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IOException("Interrupted: " + request.method() + " " + request.uri(), e);
+        }
+    }
+}
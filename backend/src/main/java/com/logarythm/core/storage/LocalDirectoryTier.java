@@ -0,0 +1,57 @@
+package com.logarythm.core.storage;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+
+/**
+ * Archive tier backed by a plain directory. Object keys map to
+ * relative paths below the root.
+ */
+public class LocalDirectoryTier implements StorageTier {
+
+    private final Path root;
+
+    public LocalDirectoryTier(String rootDir) {
+        this.root = Path.of(rootDir);
+        root.toFile().mkdirs();
+    }
+
+    private Path pathOf(String objectKey) {
+        return root.resolve(objectKey);
+    }
+
+    @Override
+    public void put(String objectKey, File source) throws IOException {
+        Path target = pathOf(objectKey);
+        Path tmp = target.resolveSibling(target.getFileName() + ".tmp");
+
+        Files.createDirectories(target.getParent());
+        Files.copy(source.toPath(), tmp, StandardCopyOption.REPLACE_EXISTING);
+        Files.move(tmp, target, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+    }
+
+    @Override
+    public byte[] readRange(String objectKey, long offset, int length) throws IOException {
+        byte[] out = new byte[length];
+        ByteBuffer buf = ByteBuffer.wrap(out);
+
+        try (FileChannel ch = FileChannel.open(pathOf(objectKey), StandardOpenOption.READ)) {
+            while (buf.hasRemaining()) {
+                if (ch.read(buf, offset + buf.position()) < 0)
+                    throw new IOException("Short read of " + objectKey + " at " + offset);
+            }
+        }
+        return out;
+    }
+
+    @Override
+    public void delete(String objectKey) throws IOException {
+        Files.deleteIfExists(pathOf(objectKey));
+    }
+}
@@ -0,0 +1,382 @@
+package com.logarythm.core.storage;
+
+import com.logarythm.model.LogEntry;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.util.AbstractCollection;
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.Collection;
+import java.util.Iterator;
+import java.util.Map;
+import java.util.NoSuchElementException;
+import java.util.Objects;
+import java.util.concurrent.ArrayBlockingQueue;
+
+/**
+ * Columnar batch of logs, the unit the flush pipeline and WAL replay hand
+ * to the WAL and segment writers.
+ *
+ * Columns (row i):
+ * - timestamps[i], levels[i]   → primitives, no boxing
+ * - messages[offsets[i] ..]    → one contiguous UTF-8 arena for every message
+ * - labels[i] / streams[i]     → label set as received, resolved to a stream
+ *                                id by encode() (replay adds the id directly)
+ * - repeats[i], lastTimestamps[i] → identical entries the row stands for
+ *                                (1 unless collapseRepeats() folded some)
+ *
+ * encode() writes the shared WAL/segment record bytes (see RecordCodec)
+ * into a buffer owned by the batch, so the WAL append and the segment
+ * append copy the same bytes and nothing is re-encoded.
+ *
+ * Batches are recycled through a Pool: arrays only grow, so a steady
+ * ingest stream stops allocating once every pooled batch has seen its
+ * largest batch. As a Collection it plugs into Flux.bufferTimeout, where
+ * add(LogEntry) copies the entry into the columns.
+ */
+public final class LogBatch extends AbstractCollection<LogEntry> {
+
+    // a batch holding this much message data is not pooled again
+    private static final int MAX_POOLED_ARENA_BYTES = 4 * 1024 * 1024;
+
+    private long[] timestamps;
+    private byte[] levels;
+    private char[] streams;
+    private Map<String, String>[] labels;
+    private int[] offsets;
+    private byte[] messages;
+    private int[] repeats;
+    private long[] lastTimestamps;
+    private int size;
+    private int entries;
+
+    private byte[] records = new byte[0];
+    private ByteBuffer recordsView = ByteBuffer.wrap(records);
+    private int recordsLength;
+    private final BitSet streamIds = new BitSet();
+
+    private long minTs;
+    private long maxTs;
+
+    public LogBatch(int capacity) {
+        capacity = Math.max(capacity, 1);
+        timestamps = new long[capacity];
+        levels = new byte[capacity];
+        streams = new char[capacity];
+        labels = newLabels(capacity);
+        offsets = new int[capacity + 1];
+        messages = new byte[capacity * 64];
+        repeats = new int[capacity];
+        lastTimestamps = new long[capacity];
+        reset();
+    }
+
+    /**
+     * Copy of a list of entries (tools, benchmarks).
+     */
+    public static LogBatch of(Collection<LogEntry> entries) {
+        LogBatch batch = new LogBatch(entries.size());
+        batch.addAll(entries);
+        return batch;
+    }
+
+    /**
+     * Empty the batch, keeping its arrays.
+     */
+    public void reset() {
+        Arrays.fill(labels, 0, size, null);
+        size = 0;
+        entries = 0;
+        offsets[0] = 0;
+        recordsLength = 0;
+        streamIds.clear();
+        minTs = Long.MAX_VALUE;
+        maxTs = Long.MIN_VALUE;
+    }
+
+    @Override
+    public boolean add(LogEntry entry) {
+        byte[] msg = entry.messageBytes();
+        int row = addRow(entry.timestamp(), entry.levelAsByte(), 0, msg, 0, msg.length, 1, entry.timestamp());
+        if (!entry.labels().isEmpty())
+            labels[row] = entry.labels();
+        return true;
+    }
+
+    /**
+     * Add a record whose stream id is already known (WAL replay).
+     */
+    public void add(long timestamp, byte level, int stream, byte[] msg, int off, int len) {
+        addRow(timestamp, level, stream, msg, off, len, 1, timestamp);
+    }
+
+    /**
+     * Same for a record that stands for `repeats` identical entries.
+     */
+    public void add(long timestamp, byte level, int stream, byte[] msg, int off, int len,
+                    int repeats, long lastTimestamp) {
+        addRow(timestamp, level, stream, msg, off, len, repeats, lastTimestamp);
+    }
+
+    private int addRow(long timestamp, byte level, int stream, byte[] msg, int off, int len,
+                       int repeat, long lastTimestamp) {
+        if (size == timestamps.length)
+            growRows();
+
+        // every ingest path checks the limit; never write a record readers reject
+        len = RecordCodec.fitMessage(msg, off, len);
+
+        int start = offsets[size];
+        if (start + len > messages.length)
+            messages = Arrays.copyOf(messages, Math.max(start + len, messages.length * 2));
+        System.arraycopy(msg, off, messages, start, len);
+
+        int row = size++;
+        timestamps[row] = timestamp;
+        levels[row] = level;
+        streams[row] = (char) stream;
+        repeats[row] = repeat;
+        lastTimestamps[row] = lastTimestamp;
+        offsets[size] = start + len;
+        entries += repeat;
+        minTs = Math.min(minTs, timestamp);
+        maxTs = Math.max(maxTs, timestamp);
+        return row;
+    }
+
+    /**
+     * Fold every row that repeats the row before it (same level, labels /
+     * stream and message bytes) into that row, as long as the run's
+     * timestamps stay within windowMs. The surviving row keeps the earliest
+     * timestamp, counts the entries in repeats and the latest timestamp in
+     * lastTimestamp. Must run before encode().
+     *
+     * @return entries folded away (rows removed)
+     */
+    public int collapseRepeats(long windowMs) {
+        if (size < 2)
+            return 0;
+
+        int kept = 1;
+        for (int row = 1; row < size; row++) {
+            int prev = kept - 1;
+            int len = offsets[row + 1] - offsets[row];
+
+            if (levels[row] == levels[prev]
+                    && streams[row] == streams[prev]
+                    && Objects.equals(labels[row], labels[prev])
+                    && Arrays.equals(messages, offsets[row], offsets[row] + len,
+                                     messages, offsets[prev], offsets[kept])
+                    && runSpan(prev, row) <= windowMs
+                    && (long) repeats[prev] + repeats[row] <= Integer.MAX_VALUE) {
+
+                timestamps[prev] = Math.min(timestamps[prev], timestamps[row]);
+                lastTimestamps[prev] = Math.max(lastTimestamps[prev], lastTimestamps[row]);
+                repeats[prev] += repeats[row];
+                continue;
+            }
+
+            if (row != kept) {
+                int start = offsets[kept];
+                System.arraycopy(messages, offsets[row], messages, start, len);
+                timestamps[kept] = timestamps[row];
+                levels[kept] = levels[row];
+                streams[kept] = streams[row];
+                labels[kept] = labels[row];
+                repeats[kept] = repeats[row];
+                lastTimestamps[kept] = lastTimestamps[row];
+                offsets[kept + 1] = start + len;
+            } else {
+                offsets[kept + 1] = offsets[row + 1];
+            }
+            kept++;
+        }
+
+        int folded = size - kept;
+        Arrays.fill(labels, kept, size, null);
+        size = kept;
+        return folded;
+    }
+
+    private long runSpan(int run, int row) {
+        long first = Math.min(timestamps[run], timestamps[row]);
+        long last = Math.max(lastTimestamps[run], lastTimestamps[row]);
+        return last - first;
+    }
+
+    private void growRows() {
+        int n = timestamps.length * 2;
+        timestamps = Arrays.copyOf(timestamps, n);
+        levels = Arrays.copyOf(levels, n);
+        streams = Arrays.copyOf(streams, n);
+        labels = Arrays.copyOf(labels, n);
+        offsets = Arrays.copyOf(offsets, n + 1);
+        repeats = Arrays.copyOf(repeats, n);
+        lastTimestamps = Arrays.copyOf(lastTimestamps, n);
+    }
+
+    /**
+     * Resolve labels to stream ids and write every row as a WAL/segment
+     * record into the batch's buffer (see records()).
+     */
+    public void encode(StreamDictionary dictionary) throws IOException {
+        int capacity = size * (RecordCodec.HEADER_BYTES + RecordCodec.STREAM_BYTES + RecordCodec.REPEAT_BYTES)
+                + offsets[size];
+        if (records.length < capacity) {
+            records = new byte[Math.max(capacity, records.length * 2)];
+            recordsView = ByteBuffer.wrap(records);
+        }
+
+        recordsView.clear();
+        streamIds.clear();
+
+        for (int i = 0; i < size; i++) {
+            if (labels[i] != null) {
+                if (dictionary == null)
+                    throw new IllegalArgumentException("Labeled entries need a StreamDictionary");
+                streams[i] = (char) dictionary.idOf(labels[i]);
+            }
+            streamIds.set(streams[i]);
+
+            RecordCodec.write(recordsView, timestamps[i], levels[i], streams[i],
+                    messages, offsets[i], offsets[i + 1] - offsets[i], repeats[i], lastTimestamps[i]);
+        }
+        recordsLength = recordsView.position();
+    }
+
+    @Override
+    public int size() {
+        return size;
+    }
+
+    public long timestamp(int row) {
+        return timestamps[row];
+    }
+
+    public byte level(int row) {
+        return levels[row];
+    }
+
+    public int stream(int row) {
+        return streams[row];
+    }
+
+    public int repeats(int row) {
+        return repeats[row];
+    }
+
+    public long lastTimestamp(int row) {
+        return lastTimestamps[row];
+    }
+
+    /**
+     * Entries in the batch: size() plus every entry folded into a repeat count.
+     */
+    public int entryCount() {
+        return entries;
+    }
+
+    /**
+     * The message arena; row i is [messageOffset(i), messageOffset(i) + messageLength(i)).
+     */
+    public byte[] messages() {
+        return messages;
+    }
+
+    public int messageOffset(int row) {
+        return offsets[row];
+    }
+
+    public int messageLength(int row) {
+        return offsets[row + 1] - offsets[row];
+    }
+
+    public long minTs() {
+        return minTs;
+    }
+
+    public long maxTs() {
+        return maxTs;
+    }
+
+    /**
+     * Encoded records, valid for [0, recordsLength()) after encode().
+     */
+    public byte[] records() {
+        return records;
+    }
+
+    public int recordsLength() {
+        return recordsLength;
+    }
+
+    /**
+     * Stream ids present in the encoded records.
+     */
+    public BitSet streamIds() {
+        return streamIds;
+    }
+
+    /**
+     * Rows as LogEntry objects (copies; not used on the write path).
+     */
+    @Override
+    public Iterator<LogEntry> iterator() {
+        return new Iterator<>() {
+            private int row;
+
+            @Override
+            public boolean hasNext() {
+                return row < size;
+            }
+
+            @Override
+            public LogEntry next() {
+                if (row >= size)
+                    throw new NoSuchElementException();
+                LogEntry entry = LogEntry.ofUtf8(timestamps[row], RecordCodec.decodeLevel(levels[row]),
+                        Arrays.copyOfRange(messages, offsets[row], offsets[row + 1]), labels[row]);
+                if (repeats[row] > 1)
+                    entry = entry.withRepeats(repeats[row], lastTimestamps[row]);
+                row++;
+                return entry;
+            }
+        };
+    }
+
+    @SuppressWarnings("unchecked")
+    private static Map<String, String>[] newLabels(int n) {
+        return new Map[n];
+    }
+
+    /**
+     * Bounded free list of batches. acquire() never blocks: when the pool is
+     * empty a new batch is allocated, and release() drops batches beyond the
+     * pool size (or with an oversized arena) for the GC.
+     */
+    public static final class Pool {
+
+        private final ArrayBlockingQueue<LogBatch> free;
+        private final int batchCapacity;
+
+        public Pool(int batches, int batchCapacity) {
+            this.free = new ArrayBlockingQueue<>(batches);
+            this.batchCapacity = batchCapacity;
+        }
+
+        public LogBatch acquire() {
+            LogBatch batch = free.poll();
+            if (batch == null)
+                return new LogBatch(batchCapacity);
+
+            batch.reset();
+            return batch;
+        }
+
+        public void release(LogBatch batch) {
+            if (batch.messages.length <= MAX_POOLED_ARENA_BYTES)
+                free.offer(batch);
+        }
+    }
+}
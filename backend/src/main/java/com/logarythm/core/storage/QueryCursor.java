@@ -0,0 +1,65 @@
+package com.logarythm.core.storage;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.util.Base64;
+
+/**
+ * Continuation point of a paged query: the last row the scan looked at
+ * (the last row returned when the page is full).
+ *
+ * segment   → segment key (see BloomFilterManager.segmentKey)
+ * block     → block of the row (BlockIndex numbering; the active segment's
+ *             unindexed tail is block index.size())
+ * row       → row inside that block
+ * timestamp → timestamp of the row, used to check the position is still
+ *             valid and as the fallback bound when it is not
+ *
+ * Segments are scanned newest first, blocks and rows in a segment from the
+ * newest down, so the next page resumes right below this row without
+ * reading anything above it.
+ *
+ * Sent to clients as an opaque URL-safe base64 token.
+ */
+public record QueryCursor(String segment, int block, int row, long timestamp) {
+
+    private static final int VERSION = 1;
+
+    public String encode() {
+        try {
+            ByteArrayOutputStream bytes = new ByteArrayOutputStream(64);
+            DataOutputStream out = new DataOutputStream(bytes);
+            out.writeByte(VERSION);
+            out.writeUTF(segment);
+            out.writeInt(block);
+            out.writeInt(row);
+            out.writeLong(timestamp);
+            return Base64.getUrlEncoder().withoutPadding().encodeToString(bytes.toByteArray());
+        } catch (IOException e) {
+            throw new IllegalStateException(e); // in-memory stream
+        }
+    }
+
+    /**
+     * @throws IllegalArgumentException when the token is not a cursor of this version
+     */
+    public static QueryCursor decode(String token) {
+        try {
+            DataInputStream in = new DataInputStream(
+                    new ByteArrayInputStream(Base64.getUrlDecoder().decode(token)));
+
+            if (in.readByte() != VERSION)
+                throw new IllegalArgumentException("Unsupported cursor version");
+
+            QueryCursor cursor = new QueryCursor(in.readUTF(), in.readInt(), in.readInt(), in.readLong());
+            if (cursor.block < 0 || cursor.row < 0)
+                throw new IllegalArgumentException("Invalid cursor");
+            return cursor;
+        } catch (IOException | IllegalArgumentException e) {
+            throw new IllegalArgumentException("Invalid cursor: " + token);
+        }
+    }
+}
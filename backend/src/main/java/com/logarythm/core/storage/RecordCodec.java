@@ -0,0 +1,283 @@
+package com.logarythm.core.storage;
+
+import com.logarythm.model.LogEntry;
+
+import java.io.BufferedInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.util.BitSet;
+import java.util.List;
+
+/**
+ * Binary record layout shared by the WAL and segment files:
+ *
+ * [timestamp: 8 bytes][level: 1 byte][msgLen: 2 bytes][stream: 2 bytes]?
+ * [repeats: 4 bytes][lastTimestamp: 8 bytes]?[message: msgLen bytes]
+ *
+ * The stream id (see StreamDictionary) is only present when the LABELED
+ * bit of the level byte is set, so unlabeled records keep the original
+ * 11-byte header and old files stay readable.
+ *
+ * The repeat count is only present when the REPEATED bit is set: the
+ * record stands for `repeats` identical consecutive entries (see
+ * LogBatch.collapseRepeats), timestamp is the first of them and
+ * lastTimestamp the last.
+ *
+ * A batch is encoded once and the same bytes are appended to both files.
+ */
+public final class RecordCodec {
+
+    public static final int HEADER_BYTES = 11;
+    public static final int STREAM_BYTES = 2;
+    public static final int REPEAT_BYTES = 12;
+    public static final int MAX_MESSAGE_BYTES = 10000;
+
+    public static final int LABELED = 0x80;
+    public static final int REPEATED = 0x40;
+    public static final int LEVEL_MASK = 0x3F;
+
+    /**
+     * Callback for scan(): one decoded record (level without the flag bits;
+     * repeats = 1 and lastTimestamp = timestamp for a plain record).
+     */
+    public interface RecordVisitor {
+        void visit(long timestamp, byte level, int stream, byte[] message, int repeats, long lastTimestamp)
+                throws IOException;
+    }
+
+    private RecordCodec() {
+    }
+
+    /**
+     * Sequentially decode every complete record of a segment / WAL file.
+     * Stops quietly at a truncated or corrupt tail.
+     */
+    public static void scan(File file, RecordVisitor visitor) throws IOException {
+        scan(file, 0, visitor);
+    }
+
+    /**
+     * Same, starting at a record boundary startOffset.
+     */
+    public static void scan(File file, long startOffset, RecordVisitor visitor) throws IOException {
+        try (DataInputStream dis = new DataInputStream(
+                new BufferedInputStream(new FileInputStream(file), 64 * 1024))) {
+
+            dis.skipNBytes(startOffset);
+            long remaining = file.length() - startOffset;
+
+            while (remaining >= HEADER_BYTES) {
+                long ts = dis.readLong();
+                byte lvl = dis.readByte();
+                int msgLen = dis.readUnsignedShort();
+                int header = headerBytes(lvl);
+
+                if (msgLen > MAX_MESSAGE_BYTES || remaining - header < msgLen)
+                    break;
+
+                int stream = (lvl & LABELED) != 0 ? dis.readUnsignedShort() : 0;
+                int repeats = 1;
+                long lastTs = ts;
+                if ((lvl & REPEATED) != 0) {
+                    repeats = dis.readInt();
+                    lastTs = dis.readLong();
+                }
+                byte[] msgBytes = new byte[msgLen];
+                dis.readFully(msgBytes);
+                remaining -= header + msgLen;
+
+                visitor.visit(ts, (byte) (lvl & LEVEL_MASK), stream, msgBytes, repeats, lastTs);
+            }
+        }
+    }
+
+    /**
+     * Decode the complete records at the front of a buffer (a WAL chunk),
+     * advancing its position past them.
+     *
+     * @return bytes of complete records consumed; a truncated record at the
+     *         end is left in the buffer
+     */
+    public static int scan(ByteBuffer records, RecordVisitor visitor) throws IOException {
+        int start = records.position();
+
+        while (records.remaining() >= HEADER_BYTES) {
+            int at = records.position();
+            long ts = records.getLong(at);
+            byte lvl = records.get(at + 8);
+            int msgLen = records.getShort(at + 9) & 0xFFFF;
+            int header = headerBytes(lvl);
+
+            if (msgLen > MAX_MESSAGE_BYTES || records.remaining() - header < msgLen)
+                break;
+
+            int stream = (lvl & LABELED) != 0 ? records.getShort(at + HEADER_BYTES) & 0xFFFF : 0;
+            int repeats = 1;
+            long lastTs = ts;
+            if ((lvl & REPEATED) != 0) {
+                int repeatAt = at + header - REPEAT_BYTES;
+                repeats = records.getInt(repeatAt);
+                lastTs = records.getLong(repeatAt + 4);
+            }
+            byte[] msgBytes = new byte[msgLen];
+            records.position(at + header);
+            records.get(msgBytes);
+
+            visitor.visit(ts, (byte) (lvl & LEVEL_MASK), stream, msgBytes, repeats, lastTs);
+        }
+        return records.position() - start;
+    }
+
+    /**
+     * Encode unlabeled entries (labels are rejected: they need a StreamDictionary).
+     */
+    public static byte[] encode(List<LogEntry> batch) throws IOException {
+        return encode(batch, null, null);
+    }
+
+    /**
+     * Encode a batch, resolving each entry's labels to a stream id.
+     * When streams is non-null, every stream id used is set in it.
+     */
+    public static byte[] encode(List<LogEntry> batch, StreamDictionary dictionary, BitSet streams)
+            throws IOException {
+
+        ByteArrayOutputStream buffer = new ByteArrayOutputStream(batch.size() * 64);
+        DataOutputStream out = new DataOutputStream(buffer);
+
+        for (LogEntry entry : batch) {
+            int stream = 0;
+            if (!entry.labels().isEmpty()) {
+                if (dictionary == null)
+                    throw new IllegalArgumentException("Labeled entries need a StreamDictionary");
+                stream = dictionary.idOf(entry.labels());
+            }
+            if (streams != null)
+                streams.set(stream);
+
+            write(out, entry.timestamp(), entry.levelAsByte(), stream, entry.messageBytes());
+        }
+
+        return buffer.toByteArray();
+    }
+
+    /**
+     * Write one record.
+     *
+     * @return bytes written
+     */
+    public static int write(DataOutputStream out, long ts, byte level, int stream, byte[] msg) throws IOException {
+        return write(out, ts, level, stream, msg, 1, ts);
+    }
+
+    /**
+     * Write one record standing for `repeats` entries (a plain record when 1).
+     *
+     * @return bytes written
+     */
+    public static int write(DataOutputStream out, long ts, byte level, int stream, byte[] msg,
+                            int repeats, long lastTs) throws IOException {
+        checkLength(msg.length);
+        out.writeLong(ts);
+        out.writeByte(flags(level, stream, repeats));
+        out.writeShort(msg.length);
+        if (stream != 0)
+            out.writeShort(stream);
+        if (repeats > 1) {
+            out.writeInt(repeats);
+            out.writeLong(lastTs);
+        }
+        out.write(msg);
+
+        return recordBytes(stream, repeats, msg.length);
+    }
+
+    /**
+     * Write one record into a buffer with enough room (see LogBatch.encode).
+     */
+    public static void write(ByteBuffer out, long ts, byte level, int stream, byte[] msg, int off, int len,
+                             int repeats, long lastTs) {
+        checkLength(len);
+        out.putLong(ts);
+        out.put((byte) flags(level, stream, repeats));
+        out.putShort((short) len);
+        if (stream != 0)
+            out.putShort((short) stream);
+        if (repeats > 1) {
+            out.putInt(repeats);
+            out.putLong(lastTs);
+        }
+        out.put(msg, off, len);
+    }
+
+    /**
+     * Readers treat a longer message as a corrupt tail and stop there, so
+     * such a record must never be written.
+     */
+    private static void checkLength(int len) {
+        if (len > MAX_MESSAGE_BYTES)
+            throw new IllegalArgumentException("message of " + len + " bytes exceeds " + MAX_MESSAGE_BYTES);
+    }
+
+    /**
+     * Length of msg[off, off + len) cut to MAX_MESSAGE_BYTES, never inside a
+     * UTF-8 character.
+     */
+    public static int fitMessage(byte[] msg, int off, int len) {
+        if (len <= MAX_MESSAGE_BYTES)
+            return len;
+
+        int n = MAX_MESSAGE_BYTES;
+        while (n > 0 && (msg[off + n] & 0xC0) == 0x80)
+            n--;
+        return n;
+    }
+
+    private static int flags(byte level, int stream, int repeats) {
+        int raw = level;
+        if (stream != 0)
+            raw |= LABELED;
+        if (repeats > 1)
+            raw |= REPEATED;
+        return raw;
+    }
+
+    /**
+     * Header size of a record given its raw level byte.
+     */
+    public static int headerBytes(int rawLevel) {
+        int header = HEADER_BYTES;
+        if ((rawLevel & LABELED) != 0)
+            header += STREAM_BYTES;
+        if ((rawLevel & REPEATED) != 0)
+            header += REPEAT_BYTES;
+        return header;
+    }
+
+    /**
+     * Encoded size of a record.
+     */
+    public static int recordBytes(int stream, int repeats, int msgLen) {
+        int header = HEADER_BYTES;
+        if (stream != 0)
+            header += STREAM_BYTES;
+        if (repeats > 1)
+            header += REPEAT_BYTES;
+        return header + msgLen;
+    }
+
+    public static String decodeLevel(int lvl) {
+        return switch (lvl & LEVEL_MASK) {
+            case 1 -> "INFO";
+            case 2 -> "WARN";
+            case 3 -> "ERROR";
+            case 4 -> "DEBUG";
+            default -> "UNKNOWN";
+        };
+    }
+}
@@ -0,0 +1,359 @@
+package com.logarythm.core.storage;
+
+import com.logarythm.core.bloom.SegmentBloom;
+import com.logarythm.core.bloom.SegmentBloomBuilder;
+import com.logarythm.core.metrics.EngineMetrics;
+import com.logarythm.core.sketch.SegmentSketch;
+import com.logarythm.model.LogEntry;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+import reactor.core.Disposable;
+import reactor.core.publisher.Flux;
+import reactor.core.scheduler.Schedulers;
+
+import java.io.BufferedOutputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+
+/**
+ * Keeps disk usage and query cost bounded by deleting old data.
+ *
+ * Policies (all optional, see application.properties):
+ * - logarythm.retention.max-age    → drop sealed segments whose newest log is older
+ * - logarythm.retention.levels     → per-level max age, e.g. ERROR:90d,DEBUG:3d
+ *                                    (levels not listed fall back to max-age)
+ * - logarythm.retention.max-bytes  → drop the oldest local sealed segments while
+ *                                    the segment bytes on local disk are above this
+ *                                    (archived segments do not count and are kept)
+ *
+ * A segment is dropped whole when every level it contains is past its max age.
+ * When only some levels expired, the segment is rewritten in the background
+ * without those rows as its next generation (segment-XXXXXX.gN.bin with its
+ * own sidecars, see SegmentWriter), swapped in with one catalog update, and
+ * only then are the old files deleted.
+ *
+ * Active segments are never touched. Archived segments (see TieredStorage)
+ * are only ever dropped whole, together with their archive object.
+ */
+@Component
+public class RetentionManager {
+
+    private final SegmentCatalog catalog;
+    private final TieredStorage tieredStorage;
+    private final BlockCache blockCache;
+    private final EngineMetrics metrics;
+
+    private final Long maxAgeMs;
+    private final Long[] levelMaxAgeMs = new Long[SegmentBloom.LEVELS];
+    private final boolean hasLevelPolicies;
+    private final long maxBytes;
+    private final Duration interval;
+
+    private Disposable task;
+
+    public RetentionManager(
+            SegmentCatalog catalog,
+            TieredStorage tieredStorage,
+            BlockCache blockCache,
+            EngineMetrics metrics,
+            @Value("${logarythm.retention.max-age:}") String maxAge,
+            @Value("${logarythm.retention.levels:}") String levels,
+            @Value("${logarythm.retention.max-bytes:0}") long maxBytes,
+            @Value("${logarythm.retention.interval:60s}") String interval) {
+
+        this.catalog = catalog;
+        this.tieredStorage = tieredStorage;
+        this.blockCache = blockCache;
+        this.metrics = metrics;
+        this.maxAgeMs = maxAge.isBlank() ? null : parseDuration(maxAge).toMillis();
+        this.maxBytes = maxBytes;
+        this.interval = parseDuration(interval);
+
+        boolean anyLevel = false;
+        for (String policy : levels.split(",")) {
+            if (policy.isBlank())
+                continue;
+
+            String[] parts = policy.trim().split(":");
+            if (parts.length != 2)
+                throw new IllegalArgumentException("logarythm.retention.levels: expected LEVEL:age, got " + policy);
+
+            // levelCode maps unknown names to 0, which would silently retarget a typo
+            byte code = LogEntry.levelCode(parts[0].trim());
+            if (code == 0)
+                throw new IllegalArgumentException("logarythm.retention.levels: unknown level " + parts[0].trim()
+                        + ", expected INFO, WARN, ERROR or DEBUG");
+            levelMaxAgeMs[code] = parseDuration(parts[1].trim()).toMillis();
+            anyLevel = true;
+        }
+        this.hasLevelPolicies = anyLevel;
+    }
+
+    @PostConstruct
+    public void start() {
+        if (maxAgeMs == null && !hasLevelPolicies && maxBytes <= 0) {
+            System.out.println("RetentionManager: no retention policy configured, keeping everything");
+            return;
+        }
+
+        task = Flux.interval(interval, interval, Schedulers.newSingle("retention"))
+                .subscribe(tick -> enforce());
+    }
+
+    @PreDestroy
+    public void stop() {
+        if (task != null)
+            task.dispose();
+    }
+
+    /**
+     * One retention pass: age policies first, then the size cap.
+     */
+    public synchronized void enforce() {
+        long now = System.currentTimeMillis();
+
+        for (SegmentCatalog.SegmentInfo info : catalog.segments()) {
+            if (!info.sealed())
+                continue;
+
+            SegmentBloom sb = catalog.bloomFor(info);
+            if (sb == null)
+                continue;
+
+            try {
+                if (fullyExpired(sb, now)) {
+                    drop(info, "expired");
+                } else if (hasLevelPolicies && !info.archived() && hasExpiredRows(sb, now)) {
+                    rewrite(info, now);
+                }
+            } catch (Exception e) {
+                e.printStackTrace();
+            }
+        }
+
+        if (maxBytes > 0)
+            enforceSizeCap();
+    }
+
+    private Long maxAgeFor(int levelCode) {
+        Long age = levelMaxAgeMs[levelCode];
+        return age != null ? age : maxAgeMs;
+    }
+
+    /**
+     * Every level present in the segment is past its max age
+     * (judged by the segment's newest timestamp, so never too early).
+     */
+    private boolean fullyExpired(SegmentBloom sb, long now) {
+        for (int code = 0; code < SegmentBloom.LEVELS; code++) {
+            if (!sb.hasLevel((byte) code))
+                continue;
+
+            Long age = maxAgeFor(code);
+            if (age == null || sb.maxTs >= now - age)
+                return false;
+        }
+        return true;
+    }
+
+    /**
+     * Some level has rows older than its max age.
+     */
+    private boolean hasExpiredRows(SegmentBloom sb, long now) {
+        for (int code = 0; code < SegmentBloom.LEVELS; code++) {
+            Long age = maxAgeFor(code);
+            if (age != null && sb.hasLevel((byte) code) && sb.levelMinTs[code] < now - age)
+                return true;
+        }
+        return false;
+    }
+
+    private void drop(SegmentCatalog.SegmentInfo info, String why) throws IOException {
+        long bytes = info.file().length();
+
+        catalog.remove(info);
+        blockCache.invalidate(info.key());
+
+        if (info.archived())
+            tieredStorage.delete(info);
+
+        deleteFiles(info.file());
+
+        metrics.retentionSegmentsDropped.increment();
+        metrics.retentionBytesFreed.add(bytes);
+
+        System.out.println("RetentionManager: dropped " + info.file().getPath() + " (" + why + ")");
+    }
+
+    private static void deleteFiles(File segment) {
+        segment.delete();
+        SegmentWriter.sidecarFor(segment).delete();
+        SegmentWriter.indexFor(segment).delete();
+        SegmentWriter.sketchFor(segment).delete();
+    }
+
+    /**
+     * Copy the segment without expired rows into its next generation, then
+     * swap it in.
+     *
+     * Every file of the new generation is written under a temp name and
+     * moved into place, the .idx last: SegmentWriter recovery only trusts a
+     * generation whose .idx exists, so a crash at any point leaves either
+     * the old or the new generation whole. Queries that already hold the
+     * old entry keep reading the old file with its own index; the old files
+     * are deleted only after the catalog swap.
+     */
+    private void rewrite(SegmentCatalog.SegmentInfo info, long now) throws IOException {
+        File segment = info.file();
+        File rewritten = SegmentWriter.nextGeneration(segment);
+        File tmpSegment = tmpFor(rewritten);
+
+        SegmentBloomBuilder builder = SegmentWriter.newBloomBuilder();
+        SegmentSketch sketch = new SegmentSketch();
+        long[] kept = new long[2]; // rows, dropped rows
+
+        try (DataOutputStream out = new DataOutputStream(
+                new BufferedOutputStream(new FileOutputStream(tmpSegment), 64 * 1024))) {
+
+            RecordCodec.scan(segment, (ts, lvl, stream, msg, repeats, lastTs) -> {
+                Long age = lvl >= 0 && lvl < SegmentBloom.LEVELS ? maxAgeFor(lvl) : maxAgeMs;
+
+                if (age != null && ts < now - age) {
+                    kept[1]++;
+                    return;
+                }
+
+                RecordCodec.write(out, ts, lvl, stream, msg, repeats, lastTs); // keeps the stream id and repeats
+
+                builder.add(ts, lvl, RecordCodec.decodeLevel(lvl), msg, 0, msg.length);
+                sketch.add(ts, lvl, msg, 0, msg.length, repeats);
+                kept[0]++;
+            });
+        } catch (IOException e) {
+            tmpSegment.delete();
+            throw e;
+        }
+
+        if (kept[1] == 0) {
+            tmpSegment.delete();
+            return;
+        }
+
+        if (kept[0] == 0) {
+            tmpSegment.delete();
+            drop(info, "all rows expired");
+            return;
+        }
+
+        long freed = segment.length() - tmpSegment.length();
+        SegmentBloom bloom = builder.build();
+        BlockIndex index = BlockIndex.build(tmpSegment);
+
+        try {
+            moveIntoPlace(tmpSegment, rewritten);
+
+            File tmpSidecar = tmpFor(SegmentWriter.sidecarFor(rewritten));
+            bloom.saveToFile(tmpSidecar);
+            moveIntoPlace(tmpSidecar, SegmentWriter.sidecarFor(rewritten));
+
+            File tmpSketch = tmpFor(SegmentWriter.sketchFor(rewritten));
+            sketch.saveToFile(tmpSketch);
+            moveIntoPlace(tmpSketch, SegmentWriter.sketchFor(rewritten));
+
+            index.saveToFile(SegmentWriter.indexFor(rewritten)); // temp file + atomic move, commits the generation
+        } catch (IOException e) {
+            tmpSegment.delete();
+            deleteFiles(rewritten);
+            throw e;
+        }
+
+        if (!catalog.replaceSealed(info, rewritten, bloom, index, sketch)) {
+            // archived or dropped meanwhile: the new generation is stale
+            deleteFiles(rewritten);
+            return;
+        }
+        blockCache.invalidate(info.key());
+        deleteFiles(segment);
+
+        metrics.retentionSegmentsRewritten.increment();
+        metrics.retentionBytesFreed.add(freed);
+
+        System.out.println("RetentionManager: rewrote " + segment.getPath() + " as " + rewritten.getPath()
+                + " dropped " + kept[1] + " expired rows, kept " + kept[0]);
+    }
+
+    private static File tmpFor(File f) {
+        return new File(f.getPath() + ".tmp");
+    }
+
+    private static void moveIntoPlace(File tmp, File target) throws IOException {
+        Files.move(tmp.toPath(), target.toPath(),
+                StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+    }
+
+    /**
+     * Only local disk counts: an archived segment's .bin is gone, so dropping
+     * it frees nothing here and would only delete its archive object.
+     */
+    private void enforceSizeCap() {
+        List<SegmentCatalog.SegmentInfo> segments = catalog.segments();
+
+        long total = 0;
+        List<SegmentCatalog.SegmentInfo> sealed = new ArrayList<>();
+
+        for (SegmentCatalog.SegmentInfo info : segments) {
+            if (info.archived())
+                continue;
+
+            total += info.file().length();
+            if (info.sealed() && catalog.bloomFor(info) != null)
+                sealed.add(info);
+        }
+
+        // oldest first
+        sealed.sort(Comparator.comparingLong(info -> catalog.bloomFor(info).maxTs));
+
+        for (SegmentCatalog.SegmentInfo info : sealed) {
+            if (total <= maxBytes)
+                break;
+
+            total -= info.file().length();
+            try {
+                drop(info, "size cap " + maxBytes + " bytes");
+            } catch (IOException e) {
+                e.printStackTrace();
+            }
+        }
+    }
+
+    /**
+     * "90d", "12h", "30m", "45s", "500ms" or ISO-8601 ("PT1H").
+     */
+    static Duration parseDuration(String value) {
+        String v = value.trim().toLowerCase();
+
+        if (v.startsWith("p"))
+            return Duration.parse(value.trim().toUpperCase());
+        if (v.endsWith("ms"))
+            return Duration.ofMillis(Long.parseLong(v.substring(0, v.length() - 2)));
+
+        long amount = Long.parseLong(v.substring(0, v.length() - 1));
+        return switch (v.charAt(v.length() - 1)) {
+            case 'd' -> Duration.ofDays(amount);
+            case 'h' -> Duration.ofHours(amount);
+            case 'm' -> Duration.ofMinutes(amount);
+            case 's' -> Duration.ofSeconds(amount);
+            default -> throw new IllegalArgumentException("Unsupported duration: " + value);
+        };
+    }
+}
@@ -0,0 +1,141 @@
+package com.logarythm.core.storage;
+
+import com.logarythm.core.bloom.BloomFilterManager;
+import com.logarythm.core.bloom.SegmentBloom;
+import com.logarythm.core.sketch.SegmentSketch;
+import org.springframework.stereotype.Component;
+
+import java.io.File;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * In-memory list of every segment of every shard.
+ *
+ * SegmentWriter registers segments when it opens and seals them,
+ * RetentionManager removes them. Readers get an immutable, pre-sorted
+ * snapshot, so a query never lists directories.
+ *
+ * Snapshot order (newest first):
+ * - active segments (still being written)
+ * - sealed (local or archived) segments by max timestamp, descending
+ *
+ * All mutations go through one lock together with the Bloom registry,
+ * so a segment and its Bloom filter appear and disappear atomically.
+ */
+@Component
+public class SegmentCatalog {
+
+    /**
+     * One segment.
+     * - sealed   = has Bloom + block index sidecars and will never change
+     * - archived = data lives in the archive tier, only sidecars are local
+     * - index    = resident block index (still growing while the segment is active)
+     * - sketch   = resident message sketch (growing while active; null for an
+     *              archived segment sealed before sketches existed)
+     */
+    public record SegmentInfo(File file, String key, boolean sealed, boolean archived, BlockIndex index,
+                              SegmentSketch sketch) {
+    }
+
+    private final BloomFilterManager bloomManager;
+    private final Map<String, SegmentInfo> segments = new LinkedHashMap<>();
+
+    private volatile List<SegmentInfo> snapshot = List.of();
+
+    public SegmentCatalog(BloomFilterManager bloomManager) {
+        this.bloomManager = bloomManager;
+    }
+
+    public List<SegmentInfo> segments() {
+        return snapshot;
+    }
+
+    public SegmentBloom bloomFor(SegmentInfo info) {
+        return bloomManager.get(info.key());
+    }
+
+    /**
+     * Register a segment that is being written, with the writer's live block
+     * index and sketch.
+     */
+    public synchronized void addActive(File file, BlockIndex index, SegmentSketch sketch) {
+        String key = BloomFilterManager.segmentKey(file);
+        segments.put(key, new SegmentInfo(file, key, false, false, index, sketch));
+        rebuildSnapshot();
+    }
+
+    /**
+     * Register a sealed segment together with its Bloom filter, block index
+     * and sketch.
+     */
+    public synchronized void addSealed(File file, SegmentBloom bloom, BlockIndex index, SegmentSketch sketch) {
+        String key = BloomFilterManager.segmentKey(file);
+        bloomManager.register(key, bloom);
+        segments.put(key, new SegmentInfo(file, key, true, index.isArchived(), index, sketch));
+        rebuildSnapshot();
+    }
+
+    /**
+     * Swap a sealed segment for its rewritten generation (same key, new
+     * file, sidecars and index) in one step. Queries holding the old entry
+     * keep reading the old, consistent file pair until the caller deletes it.
+     *
+     * @return false when the segment was archived, replaced or removed since
+     *         the caller read it (the rewritten copy is then stale)
+     */
+    public synchronized boolean replaceSealed(SegmentInfo info, File file, SegmentBloom bloom, BlockIndex index,
+                                              SegmentSketch sketch) {
+        if (!info.equals(segments.get(info.key())) || !info.key().equals(BloomFilterManager.segmentKey(file)))
+            return false;
+
+        addSealed(file, bloom, index, sketch);
+        return true;
+    }
+
+    /**
+     * The segment data moved to the archive tier; its sidecars stay resident.
+     *
+     * @return the new entry, or null when the segment was replaced or removed
+     *         since the caller read it (the archived copy is then stale)
+     */
+    public synchronized SegmentInfo markArchived(SegmentInfo info, BlockIndex archivedIndex) {
+        if (!info.equals(segments.get(info.key())))
+            return null;
+
+        SegmentInfo archived = new SegmentInfo(info.file(), info.key(), true, true, archivedIndex, info.sketch());
+        segments.put(info.key(), archived);
+        rebuildSnapshot();
+        return archived;
+    }
+
+    /**
+     * Drop a segment from the catalog and the Bloom registry. Files are not
+     * touched: callers delete them after this returns, so new queries never
+     * see a half-deleted segment (running scans keep their open handle).
+     */
+    public synchronized void remove(SegmentInfo info) {
+        segments.remove(info.key());
+        bloomManager.unregister(info.key());
+        rebuildSnapshot();
+    }
+
+    private void rebuildSnapshot() {
+        List<SegmentInfo> list = new ArrayList<>(segments.values());
+
+        list.sort(Comparator
+                .comparing((SegmentInfo s) -> s.sealed())
+                .thenComparing(Comparator.comparingLong(this::maxTs).reversed())
+                .thenComparing(s -> s.file().getPath(), Comparator.reverseOrder()));
+
+        snapshot = List.copyOf(list);
+    }
+
+    private long maxTs(SegmentInfo info) {
+        SegmentBloom sb = bloomManager.get(info.key());
+        return sb != null ? sb.maxTs : Long.MAX_VALUE;
+    }
+}
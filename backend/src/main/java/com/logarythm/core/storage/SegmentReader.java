@@ -1,29 +1,97 @@
 package com.logarythm.core.storage;
 
-import com.logarythm.core.bloom.BloomFilterManager;
 import com.logarythm.core.bloom.SegmentBloom;
+import com.logarythm.core.ingestion.ShardManager;
+import com.logarythm.core.metrics.EngineMetrics;
+import com.logarythm.core.query.MessageMatcher;
+import com.logarythm.core.query.MessageQuery;
+import com.logarythm.core.query.QueryAdmission;
+import com.logarythm.core.query.QueryContext;
 import com.logarythm.model.LogEntry;
+import com.logarythm.model.QueryProfile;
 import org.springframework.stereotype.Component;
 
 import java.io.*;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
 import java.nio.charset.StandardCharsets;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.StandardOpenOption;
 import java.util.ArrayList;
+import java.util.BitSet;
+import java.util.LinkedHashMap;
 import java.util.List;
+import java.util.Map;
 
 @Component
 public class SegmentReader {
 
-    private static final String SEGMENT_DIR = "data/segments";
+    private enum Pruning { NONE, TIME, BLOOM, LABEL }
 
-    private final BloomFilterManager bloomManager;
+    /**
+     * Per-segment counters filled by readSegment.
+     */
+    private static class ScanStats {
+        long bytes;
+        long records;
+        long matches;
+        long strings;
+        int blocksScanned;
+        int blocksPruned;
+        int blocksPrunedByLabel;
+        int cacheHits;
+        int lastBlock = -1; // position of the last row scanned, see QueryCursor
+        int lastRow;
+        long lastTs;
+        String segment;
+        List<QueryCursor> positions; // position of every row returned (federation)
+        boolean stopped; // deadline / cancel hit before the segment was fully read
+    }
+
+    /**
+     * One page of results; next is null when the scan reached the end.
+     * partial = the query hit its deadline or was cancelled before the page
+     * was full, or a segment the catalog still lists could not be opened
+     * (next, when present, continues where it stopped).
+     * positions = when requested, the position of each entry (entries are
+     * then left in scan order), so a caller can resume after any of them.
+     */
+    public record Page(List<LogEntry> entries, QueryCursor next, boolean partial, List<QueryCursor> positions) {
+    }
 
-    public SegmentReader(BloomFilterManager bloomManager) {
-        this.bloomManager = bloomManager;
+    private static final int MAX_REOPEN_ATTEMPTS = 2;
+
+    // readCurrent: the segment is listed but its file is missing
+    private static final SegmentCatalog.SegmentInfo UNREADABLE =
+            new SegmentCatalog.SegmentInfo(new File(""), "", false, false, null, null);
+
+    private final SegmentCatalog catalog;
+    private final TieredStorage tieredStorage;
+    private final BlockCache blockCache;
+    private final ShardManager shardManager;
+    private final StreamDictionary dictionary;
+    private final QueryAdmission admission;
+    private final EngineMetrics metrics;
+
+    public SegmentReader(SegmentCatalog catalog, TieredStorage tieredStorage, BlockCache blockCache,
+                         ShardManager shardManager, StreamDictionary dictionary, QueryAdmission admission,
+                         EngineMetrics metrics) {
+        this.catalog = catalog;
+        this.tieredStorage = tieredStorage;
+        this.blockCache = blockCache;
+        this.shardManager = shardManager;
+        this.dictionary = dictionary;
+        this.admission = admission;
+        this.metrics = metrics;
     }
 
     /**
      * Unified log reader: applies limit, time range, level, and keyword search.
-     * Bloom Filters are used to SKIP entire segments cheaply.
+     * Bloom Filters are used to SKIP entire segments cheaply; sealed segments
+     * are then read block by block, skipping blocks outside the time range.
+     * Archived blocks are only fetched from the tier when they survive pruning,
+     * and decoded blocks are shared between queries through the BlockCache.
+     * Segments of every ingest shard are searched as one pool.
      */
     public List<LogEntry> queryLogs(
             Integer limit,
@@ -31,144 +99,651 @@ public class SegmentReader {
             Long end,
             String levelFilter,
             String messageKeyword) throws IOException {
+        return queryLogs(limit, start, end, levelFilter, messageKeyword, null);
+    }
+
+    /**
+     * Same as above; when profile is non-null every segment decision and
+     * its cost are recorded into it (explain mode).
+     */
+    public List<LogEntry> queryLogs(
+            Integer limit,
+            Long start,
+            Long end,
+            String levelFilter,
+            String messageKeyword,
+            QueryProfile profile) throws IOException {
+        return queryLogs(limit, start, end, levelFilter, MessageQuery.keyword(messageKeyword), profile);
+    }
+
+    /**
+     * Query with a compiled message query (AND / OR / NOT, phrases, regex),
+     * see MessageQuery. query may be null (no message filter).
+     */
+    public List<LogEntry> queryLogs(
+            Integer limit,
+            Long start,
+            Long end,
+            String levelFilter,
+            MessageQuery query,
+            QueryProfile profile) throws IOException {
+        return queryLogs(limit, start, end, levelFilter, Map.of(), query, profile);
+    }
+
+    /**
+     * Query restricted to the streams carrying every label of the selector
+     * (empty selector = all streams). The selector is resolved to stream ids
+     * first; segments and blocks without any of them are skipped from their
+     * block index, and rows of other streams are dropped before their
+     * message is looked at.
+     */
+    public List<LogEntry> queryLogs(
+            Integer limit,
+            Long start,
+            Long end,
+            String levelFilter,
+            Map<String, String> labels,
+            MessageQuery query,
+            QueryProfile profile) throws IOException {
+        return queryPage(limit, start, end, levelFilter, labels, query, null, false, QueryContext.unbounded(), profile)
+                .entries();
+    }
+
+    /**
+     * One page of a query. Segments, blocks and rows are scanned newest
+     * first and the page holds the first `limit` matches; its cursor is the
+     * position of the last one. Passing that cursor back as after resumes
+     * the scan right below it: segments above the cursor's segment are
+     * skipped without being opened, so every page costs about the same.
+     *
+     * Pages follow the segment scan order (see SegmentCatalog), which is
+     * exact time order within a shard. If the cursor's segment was dropped
+     * by retention, the scan continues with rows older than the cursor.
+     *
+     * With withPositions the entries stay in scan order and the page carries
+     * every entry's position: a federating node merges pages of several
+     * nodes and resumes each one right after the last entry it used.
+     *
+     * The context is checked between segments and blocks; once it is past
+     * its deadline or cancelled, the page is returned as is (partial). Block
+     * reads that miss the BlockCache take read budget from QueryAdmission.
+     */
+    public Page queryPage(
+            Integer limit,
+            Long start,
+            Long end,
+            String levelFilter,
+            Map<String, String> labels,
+            MessageQuery query,
+            QueryCursor after,
+            boolean withPositions,
+            QueryContext context,
+            QueryProfile profile) throws IOException {
+
+        long t0 = System.nanoTime();
 
         if (limit == null || limit <= 0)
             limit = 100;
 
-        if (messageKeyword != null)
-            messageKeyword = messageKeyword.toLowerCase();
+        MessageMatcher matcher = query != null ? query.matcher() : null;
+        BitSet streams = labels.isEmpty() ? null : dictionary.select(labels);
 
-        File dir = new File(SEGMENT_DIR);
-        File[] files = dir.listFiles((d, name) -> name.startsWith("segment-") && name.endsWith(".bin"));
+        // newest → oldest, already sorted by the catalog
+        List<SegmentCatalog.SegmentInfo> segments = catalog.segments();
 
-        if (files == null || files.length == 0)
-            return List.of();
+        if (after != null && !containsSegment(segments, after.segment())) {
+            // cursor segment is gone: carry on below the cursor's timestamp
+            end = end == null ? after.timestamp() - 1 : Math.min(end, after.timestamp() - 1);
+            after = null;
+        }
 
-        // newest → oldest
-        List<File> segments = new ArrayList<>(List.of(files));
-        segments.sort((a, b) -> b.getName().compareTo(a.getName()));
+        if (profile != null)
+            describePlan(profile, limit, start, end, levelFilter, labels, streams, query, after);
 
         List<LogEntry> collected = new ArrayList<>(limit);
+        List<QueryCursor> positions = withPositions ? new ArrayList<>(limit) : null;
+        QueryCursor last = null;
+        boolean beforeCursor = after != null;
+        boolean stopped = false;
+        String stopWhy = null;
+        long bytesRead = 0;
+        long recordsRead = 0;
+
+        for (SegmentCatalog.SegmentInfo info : segments) {
+            File seg = info.file();
+            QueryProfile.SegmentProfile sp = profile != null ? profile.addSegment(seg.getPath()) : null;
+
+            if (collected.size() >= limit) {
+                if (sp != null)
+                    sp.reason = "limit reached before this segment";
+                continue;
+            }
+            if (stopped || context.shouldStop()) {
+                if (!stopped)
+                    stopWhy = context.stopReason().toString();
+                stopped = true;
+                if (sp != null)
+                    sp.reason = "query stopped (" + stopWhy + ") before this segment";
+                continue;
+            }
 
-        for (File seg : segments) {
-            if (collected.size() >= limit)
-                break;
+            if (beforeCursor) {
+                if (!info.key().equals(after.segment())) {
+                    if (sp != null)
+                        sp.reason = "above the cursor (returned by earlier pages)";
+                    continue;
+                }
+                beforeCursor = false;
+            }
+            QueryCursor resumeAt = after != null && info.key().equals(after.segment()) ? after : null;
+
+            long segStart = System.nanoTime();
+            SegmentBloom sb = catalog.bloomFor(info);
+            Pruning pruning = segmentLikelyMatches(info, sb, start, end, levelFilter, streams, query);
 
-            if (!segmentLikelyMatches(seg, start, end, levelFilter, messageKeyword))
+            if (sp != null) {
+                describeSegment(sp, sb, pruning, levelFilter);
+                sp.archived = info.archived();
+            }
+
+            if (pruning == Pruning.TIME) {
+                metrics.segmentsPrunedByTime.increment();
+                continue;
+            }
+            if (pruning == Pruning.BLOOM) {
+                metrics.segmentsPrunedByBloom.increment();
                 continue; // bloom filter rejects → skip
+            }
+            if (pruning == Pruning.LABEL) {
+                metrics.segmentsPrunedByLabel.increment();
+                continue;
+            }
 
-            readSegment(seg, collected, limit, start, end, levelFilter, messageKeyword);
+            metrics.segmentsScanned.increment();
+
+            ScanStats stats = new ScanStats();
+            stats.segment = info.key();
+            stats.positions = positions;
+            long regexStrings = matcher != null ? matcher.stringsMaterialized() : 0;
+            SegmentCatalog.SegmentInfo current = readCurrent(info, resumeAt, context, collected, limit, start, end,
+                    levelFilter, streams, matcher, stats);
+            if (current == null)
+                continue; // dropped by retention after we took the snapshot, its rows are gone
+            if (current == UNREADABLE) {
+                // still listed but its file is gone: stop here so the cursor does not skip its rows
+                stopped = true;
+                stopWhy = "segment file missing";
+                if (sp != null)
+                    sp.reason = "segment file missing although the catalog still lists it; page is partial";
+                continue;
+            }
+            if (sp != null)
+                sp.archived = current.archived();
+            if (stats.stopped) {
+                stopped = true;
+                stopWhy = context.stopReason().toString();
+            }
+            if (stats.lastBlock >= 0)
+                last = new QueryCursor(info.key(), stats.lastBlock, stats.lastRow, stats.lastTs);
+            if (matcher != null)
+                stats.strings += matcher.stringsMaterialized() - regexStrings;
+            bytesRead += stats.bytes;
+            metrics.blocksPrunedByTime.add(stats.blocksPruned);
+            metrics.blocksPrunedByLabel.add(stats.blocksPrunedByLabel);
+            recordsRead += stats.records;
+
+            if (sp != null) {
+                sp.bytesRead = stats.bytes;
+                sp.recordsRead = stats.records;
+                sp.matches = stats.matches;
+                sp.stringsMaterialized = stats.strings;
+                sp.blocksScanned = stats.blocksScanned;
+                sp.blocksPruned = stats.blocksPruned + stats.blocksPrunedByLabel;
+                sp.cacheHits = stats.cacheHits;
+                sp.elapsedMicros = (System.nanoTime() - segStart) / 1000;
+            }
         }
 
+        metrics.queryBytesRead.add(bytesRead);
+        metrics.queryRecordsRead.add(recordsRead);
+
         // Sort descending by timestamp
-        collected.sort((a, b) -> Long.compare(b.timestamp(), a.timestamp()));
+        if (!withPositions)
+            collected.sort((a, b) -> Long.compare(b.timestamp(), a.timestamp()));
+
+        metrics.queryLatency(start != null || end != null, levelFilter != null, query != null)
+                .recordSince(t0);
+
+        // only what was actually left unread counts: a deadline that passes
+        // after the last segment was read does not make the page partial
+        boolean partial = collected.size() < limit && stopped;
+        if (partial) {
+            if (context.stopReason() == QueryContext.Stop.CANCELLED)
+                metrics.queriesCancelled.increment();
+            else if (context.stopReason() == QueryContext.Stop.DEADLINE)
+                metrics.queriesTimedOut.increment();
+        }
+
+        if (profile != null) {
+            profile.plan.put("partial", partial);
+            profile.finish((System.nanoTime() - t0) / 1000);
+        }
+
+        return new Page(collected, collected.size() >= limit || partial ? last : null, partial, positions);
+    }
+
+    private static boolean containsSegment(List<SegmentCatalog.SegmentInfo> segments, String key) {
+        return findSegment(segments, key) != null;
+    }
 
-        if (collected.size() > limit)
-            return collected.subList(0, limit);
+    private static SegmentCatalog.SegmentInfo findSegment(List<SegmentCatalog.SegmentInfo> segments, String key) {
+        for (SegmentCatalog.SegmentInfo info : segments) {
+            if (info.key().equals(key))
+                return info;
+        }
+        return null;
+    }
 
-        return collected;
+    /**
+     * readSegment on the snapshot's entry. When its file is gone, the
+     * segment was archived, rewritten or dropped after the snapshot was
+     * taken: the catalog is asked again and the segment's current entry is
+     * read instead (from the tier once archived).
+     *
+     * @return the entry that was read, null when the catalog no longer has
+     *         the segment, UNREADABLE when it still lists the missing file
+     */
+    private SegmentCatalog.SegmentInfo readCurrent(
+            SegmentCatalog.SegmentInfo info,
+            QueryCursor resumeAt,
+            QueryContext context,
+            List<LogEntry> out,
+            int limit,
+            Long start,
+            Long end,
+            String levelFilter,
+            BitSet streams,
+            MessageMatcher matcher,
+            ScanStats stats) throws IOException {
+
+        for (int attempt = 0; ; attempt++) {
+            try {
+                readSegment(info, resumeAt, context, out, limit, start, end, levelFilter, streams, matcher, stats);
+                return info;
+            } catch (FileNotFoundException | NoSuchFileException e) {
+                SegmentCatalog.SegmentInfo current = findSegment(catalog.segments(), info.key());
+                if (current == null)
+                    return null;
+                if (current.equals(info) || attempt == MAX_REOPEN_ATTEMPTS)
+                    return UNREADABLE;
+                info = current;
+            }
+        }
     }
 
     /**
      * Use Bloom Filter + metadata to skip entire segments cheaply.
      */
-    private boolean segmentLikelyMatches(
-            File seg,
+    private Pruning segmentLikelyMatches(
+            SegmentCatalog.SegmentInfo info,
+            SegmentBloom sb,
             Long start,
             Long end,
             String levelFilter,
-            String keyword) {
+            BitSet streams,
+            MessageQuery query) {
 
-        String baseName = seg.getName().replace(".bin", "");
-        SegmentBloom sb = bloomManager.get(baseName);
+        // no stream carries the selector's labels
+        if (streams != null && streams.isEmpty())
+            return Pruning.LABEL;
 
         if (sb == null) {
             // no bloom filter means we must scan
-            return true;
+            return Pruning.NONE;
         }
 
         // time-range skip
         if (start != null && sb.maxTs < start)
-            return false;
+            return Pruning.TIME;
 
         if (end != null && sb.minTs > end)
-            return false;
+            return Pruning.TIME;
 
         // level skip
-        if (levelFilter != null && !sb.filter.mightContain(levelFilter))
-            return false;
+        if (levelFilter != null && !sb.filter.mightContain(levelFilter.toUpperCase()))
+            return Pruning.BLOOM;
 
-        // keyword skip
-        if (keyword != null && !sb.filter.mightContain(keyword))
-            return false;
+        // message query skip (words that must appear as whole tokens)
+        if (query != null && !query.mightMatch(sb.filter))
+            return Pruning.BLOOM;
+
+        // stream skip: no block of the segment holds a selected stream
+        if (streams != null && !info.index().hasAnyStream(streams))
+            return Pruning.LABEL;
 
-        return true;
+        return Pruning.NONE;
+    }
+
+    private void describePlan(QueryProfile profile, int limit, Long start, Long end,
+                              String levelFilter, Map<String, String> labels, BitSet streams,
+                              MessageQuery query, QueryCursor after) {
+        Map<String, Object> filters = new LinkedHashMap<>();
+        filters.put("limit", limit);
+        filters.put("start", start);
+        filters.put("end", end);
+        filters.put("level", levelFilter);
+        filters.put("labels", labels.isEmpty() ? null : labels);
+        filters.put("message", query != null ? query.describe() : null);
+        filters.put("after", after);
+
+        profile.plan.put("filters", filters);
+        if (streams != null)
+            profile.plan.put("streams", streams.cardinality() + " of " + dictionary.size() + " streams match the labels");
+        profile.plan.put("shards", shardManager.getShards().size());
+        profile.plan.put("segmentOrder", "active segments, then sealed by max timestamp desc; "
+                + "blocks and rows newest first; resume below the cursor; stop at limit");
+        profile.plan.put("pruning", "segment time range, then Bloom filter on level and required message tokens, "
+                + "then streams of the label selector, then block time range and streams; "
+                + "rows: one multi-literal pass over message bytes, regex only on rows with all its literals");
+        profile.plan.put("blockCache", blockCache.snapshot());
+    }
+
+    private void describeSegment(QueryProfile.SegmentProfile sp, SegmentBloom sb,
+                                 Pruning pruning, String levelFilter) {
+        if (sb != null) {
+            sp.minTs = sb.minTs;
+            sp.maxTs = sb.maxTs;
+        }
+
+        switch (pruning) {
+            case TIME -> {
+                sp.status = QueryProfile.SegmentProfile.PRUNED;
+                sp.reason = "time range does not overlap the query";
+            }
+            case BLOOM -> {
+                sp.status = QueryProfile.SegmentProfile.PRUNED;
+                sp.reason = levelFilter != null && !sb.filter.mightContain(levelFilter.toUpperCase())
+                        ? "Bloom filter: level absent"
+                        : "Bloom filter: required message token absent";
+            }
+            case LABEL -> {
+                sp.status = QueryProfile.SegmentProfile.PRUNED;
+                sp.reason = "label selector: no matching stream";
+            }
+            case NONE -> {
+                sp.status = QueryProfile.SegmentProfile.SCANNED;
+                sp.reason = sb == null
+                        ? "no Bloom sidecar (active or unsealed segment)"
+                        : "passed time range and Bloom filter";
+            }
+        }
     }
 
     /**
-     * Binary segment scanner — safe, EOF-resistant.
+     * Scan one segment newest first: the active segment's unindexed tail
+     * (records after its last closed block, read directly and never cached),
+     * then its blocks from the last down, skipping blocks outside the time
+     * range or without a selected stream. Decoded blocks come from the
+     * BlockCache when possible; on a miss they are read (positional read, or
+     * fetched from the archive tier) and cached.
+     *
+     * With resumeAt, only rows below that position are read. If the position
+     * no longer holds the cursor's row (the segment was rewritten), the whole
+     * segment is read, limited to rows older than the cursor.
      */
     private void readSegment(
-            File file,
+            SegmentCatalog.SegmentInfo info,
+            QueryCursor resumeAt,
+            QueryContext context,
             List<LogEntry> out,
             int limit,
             Long start,
             Long end,
             String levelFilter,
-            String keyword) throws IOException {
+            BitSet streams,
+            MessageMatcher matcher,
+            ScanStats stats) throws IOException {
 
-        FileInputStream fis = new FileInputStream(file);
-        DataInputStream dis = new DataInputStream(fis);
+        BlockIndex index = info.index();
+        int blocks = index.size(); // the active index may grow meanwhile
+        long tailOffset = blocks == 0 ? 0 : index.offset(blocks - 1) + index.length(blocks - 1);
 
+        FileChannel channel = info.archived() ? null : FileChannel.open(info.file().toPath(), StandardOpenOption.READ);
         try {
+            // resolve the cursor position before reading anything else
+            DecodedBlock resumeBlock = null;
+            if (resumeAt != null) {
+                if (resumeAt.block() < blocks)
+                    resumeBlock = blockAt(info, channel, resumeAt.block(), context, stats);
+                else if (!info.sealed())
+                    resumeBlock = readTail(channel, tailOffset, context);
+
+                if (resumeBlock == null && context.shouldStop()) {
+                    stats.stopped = true;
+                    return;
+                }
+
+                if (resumeBlock == null || resumeAt.row() >= resumeBlock.size()
+                        || resumeBlock.timestamp(resumeAt.row()) != resumeAt.timestamp()) {
+                    end = end == null ? resumeAt.timestamp() - 1 : Math.min(end, resumeAt.timestamp() - 1);
+                    resumeAt = null;
+                    resumeBlock = null;
+                }
+            }
 
-            while (out.size() < limit) {
-
-                // Need at least 11 bytes for a complete header
-                if (dis.available() < 11)
-                    break;
-
-                long ts = dis.readLong();
-                byte lvlByte = dis.readByte();
-                int msgLen = dis.readUnsignedShort();
-
-                if (msgLen < 0 || msgLen > 10000)
-                    break; // corruption or leftover bytes
+            int firstBlock = resumeAt != null ? Math.min(resumeAt.block(), blocks - 1) : blocks - 1;
 
-                if (dis.available() < msgLen)
-                    break;
+            if (!info.sealed() && (resumeAt == null || resumeAt.block() >= blocks)) {
+                DecodedBlock tail = resumeBlock != null ? resumeBlock : readTail(channel, tailOffset, context);
+                if (tail == null) {
+                    stats.stopped = true; // stopped while waiting for read budget
+                    return;
+                }
 
-                byte[] msgBytes = new byte[msgLen];
-                dis.readFully(msgBytes);
+                int rowEnd = resumeBlock != null ? resumeAt.row() : tail.size();
+                scanBlock(tail, blocks, rowEnd, out, limit, start, end, levelFilter, streams, matcher, stats);
+            }
 
-                String msg = new String(msgBytes, StandardCharsets.UTF_8);
-                String lvl = decodeLevel(lvlByte);
+            for (int b = firstBlock; b >= 0 && out.size() < limit; b--) {
+                if (context.shouldStop()) {
+                    stats.stopped = true;
+                    return;
+                }
+                boolean resumeHere = resumeAt != null && b == resumeAt.block();
 
-                // apply filters
-                if (start != null && ts < start)
-                    continue;
-                if (end != null && ts > end)
+                if (!resumeHere && !index.overlaps(b, start, end)) {
+                    stats.blocksPruned++;
                     continue;
-                if (levelFilter != null && !lvl.equalsIgnoreCase(levelFilter))
-                    continue;
-                if (keyword != null && !msg.toLowerCase().contains(keyword))
+                }
+                if (!resumeHere && streams != null && !index.hasAnyStream(b, streams)) {
+                    stats.blocksPrunedByLabel++;
                     continue;
+                }
+
+                DecodedBlock block = resumeHere ? resumeBlock : blockAt(info, channel, b, context, stats);
+                if (block == null) {
+                    stats.stopped = true; // stopped while waiting for read budget
+                    return;
+                }
 
-                out.add(new LogEntry(ts, lvl, msg));
+                int rowEnd = resumeHere ? resumeAt.row() : block.size();
+                scanBlock(block, b, rowEnd, out, limit, start, end, levelFilter, streams, matcher, stats);
             }
+        } finally {
+            if (channel != null)
+                channel.close();
+        }
+    }
+
+    /**
+     * Decoded block b, from the BlockCache or loaded and cached.
+     *
+     * @return null when the query stopped while waiting for read budget
+     */
+    private DecodedBlock blockAt(SegmentCatalog.SegmentInfo info, FileChannel channel, int b,
+                                 QueryContext context, ScanStats stats) throws IOException {
+        DecodedBlock block = blockCache.get(info.key(), info.index().generation(), b);
+        if (block != null) {
+            stats.blocksScanned++;
+            stats.cacheHits++;
+            return block;
+        }
+
+        int length = info.index().length(b);
+        if (!acquireReadBudget(length, context))
+            return null;
+
+        try {
+            block = loadBlock(info, channel, b);
+        } finally {
+            admission.releaseBytes(length);
+        }
+        stats.blocksScanned++;
+        blockCache.put(info.key(), info.index().generation(), b, block);
+        return block;
+    }
+
+    private boolean acquireReadBudget(int bytes, QueryContext context) {
+        try {
+            return admission.acquireBytes(bytes, context);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            context.cancel();
+            return false;
+        }
+    }
+
+    private DecodedBlock loadBlock(SegmentCatalog.SegmentInfo info, FileChannel channel, int b) throws IOException {
+        BlockIndex index = info.index();
+        int length = index.length(b);
 
+        byte[] raw;
+        if (info.archived()) {
+            raw = tieredStorage.fetchBlock(info, b);
+        } else {
+            raw = new byte[length];
+            readFully(channel, raw, index.offset(b), length);
+        }
+        return DecodedBlock.decode(raw, length, index.count(b));
+    }
+
+    /**
+     * Active segment tail: the records written after the last closed block
+     * (at most about one block). Bytes appended after this read are ignored,
+     * a trailing partial record is dropped by the decoder.
+     *
+     * @return null when the query stopped while waiting for read budget
+     */
+    private DecodedBlock readTail(FileChannel channel, long offset, QueryContext context) throws IOException {
+        int length = (int) Math.max(channel.size() - offset, 0);
+        if (!acquireReadBudget(length, context))
+            return null;
+
+        try {
+            byte[] raw = new byte[length];
+            readFully(channel, raw, offset, length);
+            return DecodedBlock.decode(raw, length, length / 64);
         } finally {
-            dis.close();
+            admission.releaseBytes(length);
         }
     }
 
-    private String decodeLevel(byte lvl) {
-        return switch (lvl) {
-            case 1 -> "INFO";
-            case 2 -> "WARN";
-            case 3 -> "ERROR";
-            case 4 -> "DEBUG";
-            default -> "UNKNOWN";
-        };
+    private static void readFully(FileChannel channel, byte[] buf, long offset, int length) throws IOException {
+        ByteBuffer bb = ByteBuffer.wrap(buf, 0, length);
+        while (bb.hasRemaining()) {
+            if (channel.read(bb, offset + bb.position()) < 0)
+                throw new EOFException("Segment shorter than its block index");
+        }
+    }
+
+    /**
+     * Filter rows [0, rowEnd) of one decoded block, newest (last) first:
+     * time and level are checked on the primitive columns, the message query
+     * on the raw message bytes. The position of the last row looked at is
+     * kept in stats for the continuation cursor.
+     */
+    private void scanBlock(
+            DecodedBlock block,
+            int blockNumber,
+            int rowEnd,
+            List<LogEntry> out,
+            int limit,
+            Long start,
+            Long end,
+            String levelFilter,
+            BitSet streams,
+            MessageMatcher matcher,
+            ScanStats stats) {
+
+        byte[] messages = block.messageBytes();
+
+        for (int i = rowEnd - 1; i >= 0 && out.size() < limit; i--) {
+            int msgLen = block.messageLength(i);
+            int stream = block.stream(i);
+            int repeats = block.repeats(i);
+            stats.bytes += RecordCodec.recordBytes(stream, repeats, msgLen);
+            stats.records++;
+
+            long ts = block.timestamp(i);
+            stats.lastBlock = blockNumber;
+            stats.lastRow = i;
+            stats.lastTs = ts;
+
+            int before = out.size();
+            acceptRow(ts, block.level(i), stream, messages, block.messageOffset(i), msgLen,
+                    repeats, block.lastTimestamp(i), out, start, end, levelFilter, streams, matcher, stats);
+            if (stats.positions != null && out.size() > before)
+                stats.positions.add(new QueryCursor(stats.segment, blockNumber, i, ts));
+        }
+    }
+
+    /**
+     * Apply the filters to one record; the message is decoded only for rows
+     * that are returned (or that a regex had to look at). A collapsed record
+     * is filtered by its first timestamp and returned once, carrying its
+     * repeat count.
+     */
+    private void acceptRow(
+            long ts,
+            byte lvlByte,
+            int stream,
+            byte[] buf,
+            int msgOffset,
+            int msgLen,
+            int repeats,
+            long lastTs,
+            List<LogEntry> out,
+            Long start,
+            Long end,
+            String levelFilter,
+            BitSet streams,
+            MessageMatcher matcher,
+            ScanStats stats) {
+
+        if (streams != null && !streams.get(stream))
+            return;
+        if (start != null && ts < start)
+            return;
+        if (end != null && ts > end)
+            return;
+
+        String lvl = RecordCodec.decodeLevel(lvlByte);
+        if (levelFilter != null && !lvl.equalsIgnoreCase(levelFilter))
+            return;
+
+        String msg = null;
+        if (matcher != null) {
+            if (!matcher.matches(buf, msgOffset, msgLen))
+                return;
+            msg = matcher.decodedText();
+        }
+        if (msg == null) {
+            msg = new String(buf, msgOffset, msgLen, StandardCharsets.UTF_8);
+            stats.strings++;
+        }
+
+        stats.matches++;
+        LogEntry entry = new LogEntry(ts, lvl, msg, dictionary.labelsOf(stream));
+        out.add(repeats > 1 ? entry.withRepeats(repeats, lastTs) : entry);
     }
 }
@@ -1,15 +1,22 @@
 package com.logarythm.core.storage;
 
 import com.logarythm.model.LogEntry;
+import com.logarythm.core.sketch.SegmentSketch;
 import com.logarythm.core.wal.CheckpointManager;
+import com.logarythm.core.wal.WalPosition;
+import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.stereotype.Component;
 import com.logarythm.core.bloom.*;
 
 import java.io.File;
 import java.io.FileOutputStream;
 import java.io.BufferedOutputStream;
-import java.io.ByteArrayOutputStream;
 import java.io.IOException;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
 
 /**
  * SegmentWriter is responsible for writing flushed batches
@@ -20,108 +27,315 @@ import java.io.IOException;
  * - Segments are the final, queryable storage format
  *
  * For now:
- * - We store newline-delimited JSON
- * - We create a new segment when size > 5MB
+ * - We store binary records (see RecordCodec)
+ * - We create a new segment when size > 10MB
  * - We update checkpoint so WAL cleanup can start working
+ *
+ * Sealing: when a segment rotates, its Bloom filter + time range are written
+ * to segment-XXXXXX.bf, its block index to segment-XXXXXX.idx, its message
+ * sketch to segment-XXXXXX.sk, and the segment is marked sealed in the
+ * SegmentCatalog. The active segment has no sidecars and is always scanned
+ * (its block index and sketch are live in the catalog).
+ *
+ * Retention may later rewrite a sealed segment as a new generation
+ * (segment-XXXXXX.gN.bin with its own sidecars); every generation keeps the
+ * segment's key, see BloomFilterManager.segmentKey.
  */
 @Component
 public class SegmentWriter {
 
     private static final String SEGMENT_DIR = "data/segments";
-    private static final long MAX_SEGMENT_SIZE_BYTES = 10 * 1024 * 1024; // 1MB per segment
+    private static final long MAX_SEGMENT_SIZE_BYTES = 10 * 1024 * 1024; // 10MB per segment
+    private static final int BLOOM_BITS = 16 * 1024 * 8; // 16KB * 8 bits
+    private static final int BLOOM_HASHES = 4;
+
+    // segment-000001.bin, segment-000001.g2.bin, segment-000001.g2.idx, segment-000001.bin.tmp, ...
+    private static final Pattern SEGMENT_NAME = Pattern.compile("segment-(\\d{6})(?:\\.g(\\d+))?\\..*");
 
+    private final String segmentDir;
     private final CheckpointManager checkpointManager;
-    private SegmentBloomBuilder bloomBuilder = new SegmentBloomBuilder(16 * 1024 * 8, 4); // 16KB * 8 bits
+    private final SegmentCatalog catalog;
+    private final StreamDictionary dictionary;
+    private SegmentBloomBuilder bloomBuilder = newBloomBuilder();
+    private BlockIndex blockIndex = new BlockIndex();
+    private SegmentSketch sketch = new SegmentSketch();
 
     private File currentSegmentFile;
     private BufferedOutputStream segmentStream;
     private FileOutputStream fileStream;
     private int segmentIndex = 1;
+    private long segmentBytes = 0;
+
+    @Autowired
+    public SegmentWriter(CheckpointManager checkpointManager, SegmentCatalog catalog,
+                         StreamDictionary dictionary) throws IOException {
+        this(SEGMENT_DIR, checkpointManager, catalog, dictionary);
+    }
 
-    public SegmentWriter(CheckpointManager checkpointManager) throws IOException {
+    /**
+     * Create a segment writer rooted at a custom directory (used by ingest shards).
+     */
+    public SegmentWriter(String segmentDir,
+                         CheckpointManager checkpointManager,
+                         SegmentCatalog catalog,
+                         StreamDictionary dictionary) throws IOException {
+        this.segmentDir = segmentDir;
         this.checkpointManager = checkpointManager;
+        this.catalog = catalog;
+        this.dictionary = dictionary;
 
         initializeSegmentDirectory();
+        segmentIndex = recoverSegments() + 1;
         openNewSegmentFile();
     }
 
     private void initializeSegmentDirectory() {
-        File dir = new File(SEGMENT_DIR);
+        File dir = new File(segmentDir);
         if (!dir.exists())
             dir.mkdirs();
     }
 
+    /**
+     * Register the segments left by a previous run with the catalog. Any
+     * segment that was never sealed (missing .bf / .idx sidecar) gets its
+     * sidecars rebuilt now, since this run always starts a fresh active segment.
+     * A missing .sk alone (segments sealed before sketches existed) is rebuilt
+     * from the .bin. Archived segments have no .bin file, only their resident
+     * sidecars.
+     *
+     * A segment rewritten by retention has a newer generation
+     * (segment-XXXXXX.gN.bin and sidecars, .idx written last). The newest
+     * generation with an .idx wins; files of older generations (swap done,
+     * cleanup not) and of unfinished ones are deleted, as are temp files.
+     *
+     * @return index of the newest existing segment, 0 if none
+     */
+    private int recoverSegments() throws IOException {
+        File[] files = new File(segmentDir).listFiles((d, name) -> name.startsWith("segment-"));
+
+        int highest = 0;
+        if (files == null)
+            return highest;
+
+        // segment index → newest complete generation (-1 = none)
+        Map<Integer, Integer> generations = new TreeMap<>();
+        for (File f : files) {
+            Matcher m = SEGMENT_NAME.matcher(f.getName());
+            if (!m.matches())
+                continue;
+
+            int idx = Integer.parseInt(m.group(1));
+            int generation = generationOf(m);
+            boolean complete = generation == 0
+                    ? f.getName().endsWith(".bin") || f.getName().endsWith(".idx")
+                    : f.getName().endsWith(".idx");
+            generations.merge(idx, complete ? generation : -1, Math::max);
+        }
+
+        for (File f : files) {
+            Matcher m = SEGMENT_NAME.matcher(f.getName());
+            if (m.matches() && (generationOf(m) != generations.get(Integer.parseInt(m.group(1)))
+                    || f.getName().endsWith(".tmp") || f.getName().endsWith(".rewrite"))) {
+                f.delete();
+            }
+        }
+
+        for (Map.Entry<Integer, Integer> e : generations.entrySet()) {
+            int idx = e.getKey();
+            highest = Math.max(highest, idx);
+            if (e.getValue() < 0)
+                continue;
+
+            File segment = segmentFile(segmentDir, idx, e.getValue());
+
+            File bloomFile = sidecarFor(segment);
+            File indexFile = indexFor(segment);
+
+            if (bloomFile.exists() && indexFile.exists()) {
+                try {
+                    BlockIndex index = BlockIndex.loadFromFile(indexFile);
+                    if (index.isArchived() || segment.exists()) {
+                        catalog.addSealed(segment, SegmentBloom.loadFromFile(bloomFile), index,
+                                recoverSketch(segment));
+                        continue;
+                    }
+                } catch (IOException ex) {
+                    System.out.println("SegmentWriter: unreadable sidecars for " + segment.getPath() + ", rebuilding");
+                }
+            }
+
+            if (segment.exists())
+                sealSegment(segment, rebuildBloom(segment), BlockIndex.build(segment), rebuildSketch(segment));
+        }
+        return highest;
+    }
+
+    /**
+     * Load the segment's .sk, or rebuild and save it when the .bin is still
+     * local (null for an archived segment without one).
+     */
+    private SegmentSketch recoverSketch(File segment) throws IOException {
+        File sketchFile = sketchFor(segment);
+        if (sketchFile.exists()) {
+            try {
+                return SegmentSketch.loadFromFile(sketchFile);
+            } catch (IOException e) {
+                System.out.println("SegmentWriter: unreadable sketch for " + segment.getPath() + ", rebuilding");
+            }
+        }
+
+        if (!segment.exists())
+            return null;
+
+        SegmentSketch rebuilt = rebuildSketch(segment);
+        rebuilt.saveToFile(sketchFile);
+        return rebuilt;
+    }
+
+    static SegmentBloom rebuildBloom(File segment) throws IOException {
+        SegmentBloomBuilder builder = newBloomBuilder();
+
+        RecordCodec.scan(segment, (ts, lvl, stream, msg, repeats, lastTs) ->
+                builder.add(ts, lvl, RecordCodec.decodeLevel(lvl), msg, 0, msg.length));
+
+        return builder.build();
+    }
+
+    static SegmentSketch rebuildSketch(File segment) throws IOException {
+        SegmentSketch rebuilt = new SegmentSketch();
+
+        RecordCodec.scan(segment, (ts, lvl, stream, msg, repeats, lastTs) ->
+                rebuilt.add(ts, lvl, msg, 0, msg.length, repeats));
+
+        return rebuilt;
+    }
+
+    static SegmentBloomBuilder newBloomBuilder() {
+        return new SegmentBloomBuilder(BLOOM_BITS, BLOOM_HASHES);
+    }
+
     private void openNewSegmentFile() throws IOException {
-        String filename = String.format("segment-%06d.bin", segmentIndex);
-        currentSegmentFile = new File(SEGMENT_DIR, filename);
+        currentSegmentFile = segmentFile(segmentDir, segmentIndex, 0);
 
         fileStream = new FileOutputStream(currentSegmentFile, true);
         segmentStream = new BufferedOutputStream(fileStream, 64 * 1024);
+        segmentBytes = currentSegmentFile.length();
+        catalog.addActive(currentSegmentFile, blockIndex, sketch);
 
-        System.out.println("SegmentWriter: Opened new segment file " + filename);
+        System.out.println("SegmentWriter: Opened new segment file " + currentSegmentFile.getPath());
     }
 
     private void rotateIfNeeded() throws IOException {
-        if (currentSegmentFile.length() >= MAX_SEGMENT_SIZE_BYTES) {
+        if (segmentBytes >= MAX_SEGMENT_SIZE_BYTES) {
             segmentStream.flush();
             segmentStream.close();
             fileStream.close();
 
+            blockIndex.finish();
+            sealSegment(currentSegmentFile, bloomBuilder.build(), blockIndex, sketch);
+            bloomBuilder = newBloomBuilder();
+            blockIndex = new BlockIndex();
+            sketch = new SegmentSketch();
+
             segmentIndex++;
             openNewSegmentFile();
         }
     }
 
+    private void sealSegment(File segment, SegmentBloom bloom, BlockIndex index, SegmentSketch sketch)
+            throws IOException {
+        bloom.saveToFile(sidecarFor(segment));
+        sketch.saveToFile(sketchFor(segment));
+        index.saveToFile(indexFor(segment));
+        catalog.addSealed(segment, bloom, index, sketch);
+
+        System.out.println("SegmentWriter: Sealed segment " + segment.getPath());
+    }
+
+    static File sidecarFor(File segment) {
+        return new File(withoutExtension(segment) + ".bf");
+    }
+
+    static File indexFor(File segment) {
+        return new File(withoutExtension(segment) + ".idx");
+    }
+
+    static File sketchFor(File segment) {
+        return new File(withoutExtension(segment) + ".sk");
+    }
+
     /**
-     * Write flushed batch into the segment file.
-     * For now, JSON lines are acceptable.
-     *
-     * Later we replace this with:
-     * - binary encoding
-     * - compression
-     * - indexed blocks
+     * Sidecars belong to one generation of the segment
+     * (segment-000001.g2.bin → segment-000001.g2.bf), unlike the segment key.
      */
-    public synchronized void writeBatchToSegment(int walIndex, Iterable<LogEntry> batch) throws IOException {
-        rotateIfNeeded();
+    private static String withoutExtension(File segment) {
+        String path = segment.getPath();
+        return path.substring(0, path.lastIndexOf('.'));
+    }
 
-        ByteArrayOutputStream buffer = new ByteArrayOutputStream(64 * 1024);
+    /**
+     * segment-XXXXXX.bin for generation 0, segment-XXXXXX.gN.bin after N rewrites.
+     */
+    static File segmentFile(String dir, int index, int generation) {
+        return new File(dir, generation == 0
+                ? String.format("segment-%06d.bin", index)
+                : String.format("segment-%06d.g%d.bin", index, generation));
+    }
 
-        for (LogEntry entry : batch) {
-            byte[] msgBytes = entry.message().getBytes("UTF-8");
-            int msgLen = msgBytes.length;
+    /**
+     * File name of the next generation of a sealed segment (retention rewrite).
+     */
+    static File nextGeneration(File segment) {
+        Matcher m = SEGMENT_NAME.matcher(segment.getName());
+        if (!m.matches())
+            throw new IllegalArgumentException("Not a segment file: " + segment.getPath());
 
-            buffer.write(longToBytes(entry.timestamp()));
-            buffer.write(entry.levelAsByte());
-            buffer.write(shortToBytes((short) msgLen));
-            buffer.write(msgBytes);
-        }
+        return segmentFile(segment.getParent(), Integer.parseInt(m.group(1)), generationOf(m) + 1);
+    }
+
+    private static int generationOf(Matcher m) {
+        return m.group(2) != null ? Integer.parseInt(m.group(2)) : 0;
+    }
+
+    /**
+     * Append a batch that was already encoded for the WAL (LogBatch.encode),
+     * so the bytes are produced once. The Bloom builder, block index and
+     * sketch of the active segment are updated from the batch's columns and
+     * the checkpoint moves to the WAL position of this batch.
+     */
+    public synchronized void writeEncodedBatch(WalPosition position, LogBatch batch) throws IOException {
+        rotateIfNeeded();
 
         // ONE write instead of 4000
-        segmentStream.write(buffer.toByteArray());
+        segmentStream.write(batch.records(), 0, batch.recordsLength());
+        segmentStream.flush(); // make the batch visible to SegmentReader
+        segmentBytes += batch.recordsLength();
+
+        byte[] messages = batch.messages();
+        for (int i = 0; i < batch.size(); i++) {
+            byte level = batch.level(i);
+            bloomBuilder.add(batch.timestamp(i), level, RecordCodec.decodeLevel(level),
+                    messages, batch.messageOffset(i), batch.messageLength(i));
+        }
+        blockIndex.append(batch.recordsLength(), batch.size(), batch.minTs(), batch.maxTs(), batch.streamIds());
+        sketch.add(batch);
 
         // update checkpoint
-        checkpointManager.updateCheckpoint(walIndex);
+        checkpointManager.updateCheckpoint(position);
     }
 
     /**
-     * Helper Functions
+     * Encode and write a batch straight into the segment (used by WAL replay).
      */
-    /**
-     * Helper Functions
-     */
-    private byte[] longToBytes(long value) {
-        byte[] bytes = new byte[8];
-        for (int i = 7; i >= 0; i--) {
-            bytes[i] = (byte) (value & 0xFF);
-            value >>= 8;
-        }
-        return bytes;
+    public void writeBatchToSegment(WalPosition position, LogBatch batch) throws IOException {
+        batch.encode(dictionary);
+        writeEncodedBatch(position, batch);
     }
 
-    private byte[] shortToBytes(short value) {
-        return new byte[] {
-                (byte) ((value >> 8) & 0xFF),
-                (byte) (value & 0xFF)
-        };
+    /**
+     * Same for a list of entries (copied into a LogBatch first).
+     */
+    public void writeBatchToSegment(WalPosition position, List<LogEntry> batch) throws IOException {
+        writeBatchToSegment(position, LogBatch.of(batch));
     }
-}
\ No newline at end of file
+}
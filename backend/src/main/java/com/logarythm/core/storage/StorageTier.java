@@ -0,0 +1,24 @@
+package com.logarythm.core.storage;
+
+import java.io.File;
+import java.io.IOException;
+
+/**
+ * Second storage tier for cold segment data.
+ *
+ * Objects are written once (whole file) and read back by byte range,
+ * so a single compressed block can be fetched without downloading
+ * the whole archived segment.
+ *
+ * Implementations:
+ * - LocalDirectoryTier   → a directory (e.g. a cheap HDD / network mount)
+ * - HttpObjectStoreTier  → an S3-compatible endpoint (PUT / ranged GET / DELETE)
+ */
+public interface StorageTier {
+
+    void put(String objectKey, File source) throws IOException;
+
+    byte[] readRange(String objectKey, long offset, int length) throws IOException;
+
+    void delete(String objectKey) throws IOException;
+}
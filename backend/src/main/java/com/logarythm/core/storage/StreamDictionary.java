@@ -0,0 +1,246 @@
+package com.logarythm.core.storage;
+
+import org.springframework.stereotype.Component;
+
+import java.io.BufferedReader;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.FileReader;
+import java.io.IOException;
+import java.net.URLDecoder;
+import java.net.URLEncoder;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.StringJoiner;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.regex.Pattern;
+
+/**
+ * Dictionary of label sets ("streams"), shared by every shard and segment.
+ *
+ * Each distinct label set gets a 2-byte stream id when it is first seen;
+ * records store only that id (see RecordCodec), and block indexes keep
+ * stream → block postings. Id 0 is the empty label set.
+ *
+ * Persisted as an append-only text file (one "id<TAB>k=v&k=v" line per
+ * stream, URL-encoded). A new stream is synced to disk before any WAL
+ * record can reference it, so ids always resolve after a crash.
+ *
+ * Responsibilities:
+ * - assign / look up stream ids (lock-free for known streams)
+ * - resolve ids back to labels for query results
+ * - select the streams matching a label selector (label → streams postings)
+ */
+@Component
+public class StreamDictionary {
+
+    public static final int MAX_STREAMS = 0xFFFF;
+    public static final int MAX_LABELS = 16;
+    public static final int MAX_VALUE_LENGTH = 256;
+
+    private static final String DICTIONARY_FILE = "data/streams.dict";
+    private static final Pattern LABEL_NAME = Pattern.compile("[a-zA-Z_][a-zA-Z0-9_]{0,63}");
+
+    private final File file;
+    private final Map<Map<String, String>, Integer> ids = new ConcurrentHashMap<>();
+    private final Map<String, BitSet> streamsByLabel = new HashMap<>(); // "k=v" → stream ids
+    private volatile Map<String, String>[] labelsById = newArray(16);
+    private int nextId = 1;
+
+    public StreamDictionary() throws IOException {
+        this(DICTIONARY_FILE);
+    }
+
+    public StreamDictionary(String path) throws IOException {
+        this.file = new File(path);
+        load();
+    }
+
+    /**
+     * Stream id of a label set; registers (and persists) it on first use.
+     * Ingest paths call this at admission, so an accepted entry always has
+     * its id by the time it is encoded.
+     *
+     * @throws IllegalStateException when a new label set no longer fits (MAX_STREAMS)
+     */
+    public int idOf(Map<String, String> labels) throws IOException {
+        if (labels.isEmpty())
+            return 0;
+
+        Integer id = ids.get(labels);
+        if (id != null)
+            return id;
+
+        return register(labels);
+    }
+
+    private synchronized int register(Map<String, String> labels) throws IOException {
+        Integer id = ids.get(labels);
+        if (id != null)
+            return id;
+
+        String error = validate(labels);
+        if (error != null)
+            throw new IllegalArgumentException(error);
+        if (nextId > MAX_STREAMS)
+            throw new IllegalStateException("StreamDictionary: more than " + MAX_STREAMS + " label sets");
+
+        Map<String, String> canonical = Collections.unmodifiableMap(new TreeMap<>(labels));
+        int newId = nextId;
+
+        try (FileOutputStream out = new FileOutputStream(file, true)) {
+            out.write((newId + "\t" + encode(canonical) + "\n").getBytes(StandardCharsets.UTF_8));
+            out.getFD().sync();
+        }
+
+        put(newId, canonical);
+        return newId;
+    }
+
+    /**
+     * The label set already has an id (or is empty), so idOf is a lock-free
+     * lookup that neither registers nor touches the disk.
+     */
+    public boolean isKnown(Map<String, String> labels) {
+        return labels.isEmpty() || ids.containsKey(labels);
+    }
+
+    /**
+     * Labels of a stream id (empty for 0 or an unknown id).
+     */
+    public Map<String, String> labelsOf(int id) {
+        Map<String, String>[] byId = labelsById;
+        if (id <= 0 || id >= byId.length || byId[id] == null)
+            return Map.of();
+        return byId[id];
+    }
+
+    /**
+     * Streams carrying every label of the selector.
+     */
+    public synchronized BitSet select(Map<String, String> selector) {
+        BitSet result = null;
+
+        for (Map.Entry<String, String> e : selector.entrySet()) {
+            BitSet streams = streamsByLabel.get(e.getKey() + "=" + e.getValue());
+            if (streams == null)
+                return new BitSet();
+
+            if (result == null)
+                result = (BitSet) streams.clone();
+            else
+                result.and(streams);
+        }
+        return result != null ? result : new BitSet();
+    }
+
+    public synchronized int size() {
+        return nextId - 1;
+    }
+
+    /**
+     * @return an error message, or null when the label set is acceptable
+     */
+    public static String validate(Map<String, String> labels) {
+        if (labels == null || labels.isEmpty())
+            return null;
+        if (labels.size() > MAX_LABELS)
+            return "At most " + MAX_LABELS + " labels per log entry";
+
+        for (Map.Entry<String, String> e : labels.entrySet()) {
+            if (e.getKey() == null || !LABEL_NAME.matcher(e.getKey()).matches())
+                return "Invalid label name '" + e.getKey() + "' (expected [a-zA-Z_][a-zA-Z0-9_]*, max 64 chars)";
+            if (e.getValue() == null || e.getValue().isEmpty() || e.getValue().length() > MAX_VALUE_LENGTH)
+                return "Label '" + e.getKey() + "' needs a value of 1-" + MAX_VALUE_LENGTH + " characters";
+        }
+        return null;
+    }
+
+    /**
+     * "service=api,env=prod" → {service=api, env=prod}
+     */
+    public static Map<String, String> parseSelector(String selector) {
+        Map<String, String> labels = new LinkedHashMap<>();
+        if (selector == null || selector.isBlank())
+            return labels;
+
+        for (String pair : selector.split(",")) {
+            int eq = pair.indexOf('=');
+            if (eq <= 0)
+                throw new IllegalArgumentException("Expected label=value in selector, got '" + pair.trim() + "'");
+            labels.put(pair.substring(0, eq).trim(), pair.substring(eq + 1).trim());
+        }
+
+        String error = validate(labels);
+        if (error != null)
+            throw new IllegalArgumentException(error);
+        return labels;
+    }
+
+    private void load() throws IOException {
+        File parent = file.getAbsoluteFile().getParentFile();
+        if (parent != null)
+            parent.mkdirs();
+        if (!file.exists())
+            return;
+
+        try (BufferedReader in = new BufferedReader(new FileReader(file, StandardCharsets.UTF_8))) {
+            String line;
+            while ((line = in.readLine()) != null) {
+                int tab = line.indexOf('\t');
+                if (tab < 0)
+                    continue; // torn last line: its stream was never acknowledged
+
+                int id = Integer.parseInt(line.substring(0, tab));
+                put(id, Collections.unmodifiableMap(decode(line.substring(tab + 1))));
+            }
+        }
+
+        System.out.println("StreamDictionary: loaded " + (nextId - 1) + " streams from " + file.getPath());
+    }
+
+    private void put(int id, Map<String, String> labels) {
+        ids.put(labels, id);
+
+        for (Map.Entry<String, String> e : labels.entrySet())
+            streamsByLabel.computeIfAbsent(e.getKey() + "=" + e.getValue(), k -> new BitSet()).set(id);
+
+        Map<String, String>[] byId = labelsById;
+        if (id >= byId.length)
+            byId = Arrays.copyOf(byId, Math.max(byId.length * 2, id + 1));
+        byId[id] = labels;
+        labelsById = byId; // volatile write publishes the new slot
+
+        nextId = Math.max(nextId, id + 1);
+    }
+
+    private static String encode(Map<String, String> labels) {
+        StringJoiner joiner = new StringJoiner("&");
+        for (Map.Entry<String, String> e : labels.entrySet()) {
+            joiner.add(URLEncoder.encode(e.getKey(), StandardCharsets.UTF_8) + "="
+                    + URLEncoder.encode(e.getValue(), StandardCharsets.UTF_8));
+        }
+        return joiner.toString();
+    }
+
+    private static Map<String, String> decode(String encoded) {
+        Map<String, String> labels = new TreeMap<>();
+        for (String pair : encoded.split("&")) {
+            int eq = pair.indexOf('=');
+            labels.put(URLDecoder.decode(pair.substring(0, eq), StandardCharsets.UTF_8),
+                    URLDecoder.decode(pair.substring(eq + 1), StandardCharsets.UTF_8));
+        }
+        return labels;
+    }
+
+    @SuppressWarnings("unchecked")
+    private static Map<String, String>[] newArray(int n) {
+        return (Map<String, String>[]) new Map[n];
+    }
+}
@@ -0,0 +1,320 @@
+package com.logarythm.core.storage;
+
+import com.logarythm.core.bloom.SegmentBloom;
+import com.logarythm.core.metrics.EngineMetrics;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+import reactor.core.Disposable;
+import reactor.core.publisher.Flux;
+import reactor.core.scheduler.Schedulers;
+
+import java.io.BufferedOutputStream;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.RandomAccessFile;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.time.Duration;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.zip.DataFormatException;
+import java.util.zip.Deflater;
+import java.util.zip.Inflater;
+
+/**
+ * Moves cold sealed segments to a cheaper, heavily compressed archive tier.
+ *
+ * Responsibilities:
+ * - periodically pick sealed segments whose newest log is older than archive-after
+ * - compress every block of the segment on its own (Deflate, best compression)
+ *   into one archive object and upload it to the StorageTier
+ * - record each block's archive offset/length in the .idx sidecar, mark the
+ *   segment archived in the SegmentCatalog and delete the local .bin
+ * - serve single blocks back to SegmentReader (fetchBlock), keeping recently
+ *   fetched blocks decompressed in a byte-budgeted local disk cache
+ *
+ * The Bloom (.bf) and block index (.idx) sidecars stay on local disk, so
+ * queries still prune archived segments and blocks without touching the tier.
+ *
+ * Disabled unless logarythm.tier.enabled=true.
+ */
+@Component
+public class TieredStorage {
+
+    private static final String CACHE_DIR = "data/tier-cache";
+
+    private final SegmentCatalog catalog;
+    private final EngineMetrics metrics;
+
+    private final boolean enabled;
+    private final long archiveAfterMs;
+    private final Duration interval;
+    private final long cacheBytes;
+    private final StorageTier tier;
+
+    // cached block file name → size, in access order (LRU first)
+    private final LinkedHashMap<String, Long> cachedBlocks = new LinkedHashMap<>(16, 0.75f, true);
+    private long cachedBytes;
+
+    private Disposable task;
+
+    public TieredStorage(
+            SegmentCatalog catalog,
+            EngineMetrics metrics,
+            @Value("${logarythm.tier.enabled:false}") boolean enabled,
+            @Value("${logarythm.tier.archive-after:7d}") String archiveAfter,
+            @Value("${logarythm.tier.type:local}") String type,
+            @Value("${logarythm.tier.local-dir:data/archive}") String localDir,
+            @Value("${logarythm.tier.http-url:}") String httpUrl,
+            @Value("${logarythm.tier.cache-bytes:268435456}") long cacheBytes,
+            @Value("${logarythm.tier.interval:60s}") String interval) {
+
+        this.catalog = catalog;
+        this.metrics = metrics;
+        this.enabled = enabled;
+        this.archiveAfterMs = RetentionManager.parseDuration(archiveAfter).toMillis();
+        this.interval = RetentionManager.parseDuration(interval);
+        this.cacheBytes = cacheBytes;
+
+        this.tier = switch (type.trim().toLowerCase()) {
+            case "local" -> new LocalDirectoryTier(localDir);
+            case "http", "s3" -> new HttpObjectStoreTier(httpUrl);
+            default -> throw new IllegalArgumentException("logarythm.tier.type: expected local or http, got " + type);
+        };
+
+        resetCache();
+    }
+
+    @PostConstruct
+    public void start() {
+        if (!enabled)
+            return;
+
+        System.out.println("TieredStorage: archiving sealed segments older than "
+                + Duration.ofMillis(archiveAfterMs) + " to " + tier.getClass().getSimpleName());
+
+        task = Flux.interval(interval, interval, Schedulers.newSingle("tier-archiver"))
+                .subscribe(tick -> archiveColdSegments());
+    }
+
+    @PreDestroy
+    public void stop() {
+        if (task != null)
+            task.dispose();
+    }
+
+    /**
+     * One archiving pass over the catalog.
+     */
+    public synchronized void archiveColdSegments() {
+        long cutoff = System.currentTimeMillis() - archiveAfterMs;
+
+        for (SegmentCatalog.SegmentInfo info : catalog.segments()) {
+            if (!info.sealed() || info.archived() || info.index() == null)
+                continue;
+
+            SegmentBloom sb = catalog.bloomFor(info);
+            if (sb == null || sb.maxTs >= cutoff)
+                continue;
+
+            try {
+                archive(info);
+            } catch (Exception e) {
+                e.printStackTrace();
+            }
+        }
+    }
+
+    private void archive(SegmentCatalog.SegmentInfo info) throws IOException {
+        File segment = info.file();
+        File indexFile = SegmentWriter.indexFor(segment);
+        File packed = new File(info.key() + ".arc.tmp");
+        String objectKey = objectKey(info);
+
+        // fresh copy: the resident index is shared with running queries
+        BlockIndex index = BlockIndex.loadFromFile(indexFile);
+        long[] arcOffsets = new long[index.size()];
+        int[] arcLengths = new int[index.size()];
+
+        Deflater deflater = new Deflater(Deflater.BEST_COMPRESSION);
+        try (RandomAccessFile in = new RandomAccessFile(segment, "r");
+             OutputStream out = new BufferedOutputStream(new FileOutputStream(packed), 64 * 1024)) {
+
+            byte[] raw = new byte[0];
+            byte[] compressed = new byte[0];
+            long position = 0;
+
+            for (int b = 0; b < index.size(); b++) {
+                int length = index.length(b);
+                if (raw.length < length) {
+                    raw = new byte[length];
+                    compressed = new byte[length + length / 100 + 64];
+                }
+
+                in.seek(index.offset(b));
+                in.readFully(raw, 0, length);
+
+                deflater.reset();
+                deflater.setInput(raw, 0, length);
+                deflater.finish();
+
+                int n = 0;
+                while (!deflater.finished())
+                    n += deflater.deflate(compressed, n, compressed.length - n);
+
+                out.write(compressed, 0, n);
+                arcOffsets[b] = position;
+                arcLengths[b] = n;
+                position += n;
+            }
+        } finally {
+            deflater.end();
+        }
+
+        long localBytes = segment.length();
+        long archivedBytes = packed.length();
+
+        try {
+            tier.put(objectKey, packed);
+        } finally {
+            packed.delete();
+        }
+
+        index.setArchiveLocation(arcOffsets, arcLengths);
+
+        // the segment may have been rewritten or dropped by retention meanwhile
+        if (catalog.markArchived(info, index) == null) {
+            tier.delete(objectKey);
+            return;
+        }
+        index.saveToFile(indexFile);
+        segment.delete();
+
+        metrics.tierSegmentsArchived.increment();
+        metrics.tierBytesArchived.add(archivedBytes);
+
+        System.out.println("TieredStorage: archived " + segment.getPath() + " (" + localBytes
+                + " -> " + archivedBytes + " bytes, " + index.size() + " blocks)");
+    }
+
+    /**
+     * Decompressed bytes of one block of an archived segment. Served from the
+     * local cache when possible, otherwise fetched by byte range from the tier.
+     */
+    public byte[] fetchBlock(SegmentCatalog.SegmentInfo info, int block) throws IOException {
+        BlockIndex index = info.index();
+        String cacheName = info.key().replace(File.separatorChar, '_') + "-" + block + ".blk";
+        File cached = new File(CACHE_DIR, cacheName);
+
+        synchronized (cachedBlocks) {
+            if (cachedBlocks.get(cacheName) != null) {
+                try {
+                    byte[] bytes = Files.readAllBytes(cached.toPath());
+                    metrics.tierCacheHits.increment();
+                    return bytes;
+                } catch (IOException e) {
+                    cachedBytes -= cachedBlocks.remove(cacheName);
+                }
+            }
+        }
+
+        byte[] compressed = tier.readRange(objectKey(info), index.archiveOffset(block), index.archiveLength(block));
+        byte[] raw = inflate(compressed, index.length(block));
+        metrics.tierBlocksFetched.increment();
+        metrics.tierBytesFetched.add(compressed.length);
+
+        cache(cacheName, cached, raw);
+        return raw;
+    }
+
+    /**
+     * Remove an archived segment from the tier and the local cache (retention).
+     */
+    public void delete(SegmentCatalog.SegmentInfo info) throws IOException {
+        tier.delete(objectKey(info));
+
+        String prefix = info.key().replace(File.separatorChar, '_') + "-";
+        synchronized (cachedBlocks) {
+            Iterator<Map.Entry<String, Long>> it = cachedBlocks.entrySet().iterator();
+            while (it.hasNext()) {
+                Map.Entry<String, Long> e = it.next();
+                if (e.getKey().startsWith(prefix)) {
+                    new File(CACHE_DIR, e.getKey()).delete();
+                    cachedBytes -= e.getValue();
+                    it.remove();
+                }
+            }
+        }
+    }
+
+    private static String objectKey(SegmentCatalog.SegmentInfo info) {
+        return info.key().replace(File.separatorChar, '/') + ".arc";
+    }
+
+    private static byte[] inflate(byte[] compressed, int length) throws IOException {
+        Inflater inflater = new Inflater();
+        try {
+            inflater.setInput(compressed);
+            byte[] raw = new byte[length];
+
+            int n = 0;
+            while (n < length && !inflater.finished())
+                n += inflater.inflate(raw, n, length - n);
+
+            if (n != length)
+                throw new IOException("Archived block inflated to " + n + " bytes, expected " + length);
+            return raw;
+        } catch (DataFormatException e) {
+            throw new IOException("Corrupt archived block", e);
+        } finally {
+            inflater.end();
+        }
+    }
+
+    private void cache(String cacheName, File cached, byte[] raw) {
+        if (raw.length > cacheBytes)
+            return;
+
+        try {
+            File tmp = new File(CACHE_DIR, cacheName + ".tmp");
+            Files.write(tmp.toPath(), raw);
+            Files.move(tmp.toPath(), cached.toPath(),
+                    StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        } catch (IOException e) {
+            e.printStackTrace();
+            return;
+        }
+
+        synchronized (cachedBlocks) {
+            Long previous = cachedBlocks.put(cacheName, (long) raw.length);
+            cachedBytes += raw.length - (previous != null ? previous : 0);
+
+            // evict least recently used blocks over budget
+            Iterator<Map.Entry<String, Long>> it = cachedBlocks.entrySet().iterator();
+            while (cachedBytes > cacheBytes && it.hasNext()) {
+                Map.Entry<String, Long> e = it.next();
+                new File(CACHE_DIR, e.getKey()).delete();
+                cachedBytes -= e.getValue();
+                it.remove();
+            }
+        }
+    }
+
+    /**
+     * The block cache is not persisted across restarts; start empty.
+     */
+    private void resetCache() {
+        File dir = new File(CACHE_DIR);
+        File[] stale = dir.listFiles();
+        if (stale != null) {
+            for (File f : stale)
+                f.delete();
+        }
+        dir.mkdirs();
+    }
+}
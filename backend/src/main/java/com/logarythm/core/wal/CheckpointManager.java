@@ -1,5 +1,6 @@
 package com.logarythm.core.wal;
 
+import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.stereotype.Component;
 
 import java.io.*;
@@ -10,15 +11,31 @@ import java.io.*;
  * Stored in data/wal/checkpoint.meta:
  * 
  * lastFlushedWalIndex=5
+ * lastFlushedWalOffset=40960
+ *
+ * Meaning: every WAL file before 5, and the first 40960 bytes of
+ * wal-000005.log, are in segments. A checkpoint without an offset
+ * (older format) covers the whole file.
+ *
+ * Each ingest shard keeps its own checkpoint file inside its WAL directory.
  */
 @Component
 public class CheckpointManager {
 
     private static final String CHECKPOINT_FILE = "data/wal/checkpoint.meta";
 
-    private int lastFlushedWalIndex = 0;
+    private final String checkpointFile;
 
+    private volatile int lastFlushedWalIndex = 0;
+    private volatile long lastFlushedWalOffset = Long.MAX_VALUE;
+
+    @Autowired
     public CheckpointManager() {
+        this(CHECKPOINT_FILE);
+    }
+
+    public CheckpointManager(String checkpointFile) {
+        this.checkpointFile = checkpointFile;
         loadCheckpoint();
     }
 
@@ -26,16 +43,21 @@ public class CheckpointManager {
         return lastFlushedWalIndex;
     }
 
+    public long getLastFlushedWalOffset() {
+        return lastFlushedWalOffset;
+    }
+
     /**
      * Update checkpoint when segment flush succeeds.
      */
-    public synchronized void updateCheckpoint(int index) {
-        this.lastFlushedWalIndex = index;
+    public synchronized void updateCheckpoint(WalPosition position) {
+        this.lastFlushedWalIndex = position.walIndex();
+        this.lastFlushedWalOffset = position.offset();
         saveCheckpoint();
     }
 
     private void loadCheckpoint() {
-        File file = new File(CHECKPOINT_FILE);
+        File file = new File(checkpointFile);
 
         if (!file.exists()) {
             System.out.println("CheckpointManager: No checkpoint found. Starting fresh.");
@@ -43,29 +65,37 @@ public class CheckpointManager {
         }
 
         try (BufferedReader reader = new BufferedReader(new FileReader(file))) {
-            String line = reader.readLine();
-
-            if (line != null && line.startsWith("lastFlushedWalIndex=")) {
-                this.lastFlushedWalIndex = Integer.parseInt(line.split("=")[1]);
+            String line;
+
+            while ((line = reader.readLine()) != null) {
+                if (line.startsWith("lastFlushedWalIndex=")) {
+                    this.lastFlushedWalIndex = Integer.parseInt(line.split("=")[1]);
+                } else if (line.startsWith("lastFlushedWalOffset=")) {
+                    this.lastFlushedWalOffset = Long.parseLong(line.split("=")[1]);
+                }
             }
 
-            System.out.println("CheckpointManager: Loaded checkpoint → " + lastFlushedWalIndex);
+            System.out.println("CheckpointManager: Loaded checkpoint " + checkpointFile + " → "
+                    + lastFlushedWalIndex + "@" + lastFlushedWalOffset);
 
-        } catch (IOException e) {
+        } catch (IOException | NumberFormatException e) {
             e.printStackTrace();
         }
     }
 
     private void saveCheckpoint() {
-        File file = new File(CHECKPOINT_FILE);
+        File file = new File(checkpointFile);
         file.getParentFile().mkdirs();
 
         try (BufferedWriter writer = new BufferedWriter(new FileWriter(file, false))) {
             writer.write("lastFlushedWalIndex=" + lastFlushedWalIndex);
+            writer.newLine();
+            writer.write("lastFlushedWalOffset=" + lastFlushedWalOffset);
         } catch (IOException e) {
             e.printStackTrace();
         }
 
-        System.out.println("CheckpointManager: Updated checkpoint → " + lastFlushedWalIndex);
+        System.out.println("CheckpointManager: Updated checkpoint " + checkpointFile + " → "
+                + lastFlushedWalIndex + "@" + lastFlushedWalOffset);
     }
 }
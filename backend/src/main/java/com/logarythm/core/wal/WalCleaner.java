@@ -1,27 +1,65 @@
 package com.logarythm.core.wal;
 
+import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.stereotype.Component;
 
 import java.io.File;
+import java.util.function.IntSupplier;
 
 @Component
 public class WalCleaner {
 
     private static final String WAL_DIR = "data/wal";
 
+    private final String walDir;
     private final CheckpointManager checkpointManager;
 
+    private int lastCleanedCheckpoint = -1;
+    private volatile IntSupplier retainFrom; // oldest WAL file still needed by replication
+
+    @Autowired
     public WalCleaner(CheckpointManager checkpointManager) {
+        this(WAL_DIR, checkpointManager);
+    }
+
+    public WalCleaner(String walDir, CheckpointManager checkpointManager) {
+        this.walDir = walDir;
         this.checkpointManager = checkpointManager;
     }
 
     /**
-     * Deletes WAL files whose index <= lastFlushedWalIndex.
+     * Keep WAL files from this index on even when they are checkpointed
+     * (a follower has not received them yet, see WalShipper).
      */
-    public void cleanOldWalFiles() {
+    public void retainFrom(IntSupplier oldestNeeded) {
+        this.retainFrom = oldestNeeded;
+    }
+
+    /**
+     * Deletes WAL files that are fully covered by the checkpoint:
+     * every file before lastFlushedWalIndex, and that file itself only
+     * when the checkpoint has no offset (it is still being written otherwise).
+     * Files a follower still needs (retainFrom) are kept.
+     *
+     * Does nothing if the checkpoint did not move to a new WAL file since the last run.
+     */
+    public synchronized void cleanOldWalFiles() {
         int checkpoint = checkpointManager.getLastFlushedWalIndex();
+        boolean wholeFile = checkpointManager.getLastFlushedWalOffset() == Long.MAX_VALUE;
+
+        if (!wholeFile)
+            checkpoint--;
+
+        IntSupplier hold = retainFrom;
+        if (hold != null)
+            checkpoint = Math.min(checkpoint, hold.getAsInt() - 1);
+
+        if (checkpoint == lastCleanedCheckpoint)
+            return;
+
+        lastCleanedCheckpoint = checkpoint;
 
-        File dir = new File(WAL_DIR);
+        File dir = new File(walDir);
         File[] files = dir.listFiles((d, name) -> name.startsWith("wal-") && name.endsWith(".log"));
 
         if (files == null) return;
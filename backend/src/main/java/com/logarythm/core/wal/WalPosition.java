@@ -0,0 +1,32 @@
+package com.logarythm.core.wal;
+
+/**
+ * A point in the WAL: everything before byte offset `offset`
+ * of wal-{walIndex}.log (and all older WAL files).
+ *
+ * Written as "walIndex@offset" (checkpoint logs, replication).
+ */
+public record WalPosition(int walIndex, long offset) implements Comparable<WalPosition> {
+
+    @Override
+    public int compareTo(WalPosition other) {
+        int byIndex = Integer.compare(walIndex, other.walIndex);
+        return byIndex != 0 ? byIndex : Long.compare(offset, other.offset);
+    }
+
+    @Override
+    public String toString() {
+        return walIndex + "@" + offset;
+    }
+
+    /**
+     * "5@40960" → WalPosition(5, 40960)
+     */
+    public static WalPosition parse(String text) {
+        int at = text.indexOf('@');
+        if (at <= 0)
+            throw new IllegalArgumentException("Expected walIndex@offset, got '" + text + "'");
+        return new WalPosition(Integer.parseInt(text.substring(0, at).trim()),
+                Long.parseLong(text.substring(at + 1).trim()));
+    }
+}
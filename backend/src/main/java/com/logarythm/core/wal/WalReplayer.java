@@ -1,11 +1,14 @@
 package com.logarythm.core.wal;
 
+import com.logarythm.core.ingestion.IngestShard;
+import com.logarythm.core.ingestion.ShardManager;
+import com.logarythm.core.storage.LogBatch;
+import com.logarythm.core.storage.RecordCodec;
 import com.logarythm.core.storage.SegmentWriter;
-import com.logarythm.model.LogEntry;
 import org.springframework.stereotype.Component;
 
 import jakarta.annotation.PostConstruct;
-import java.io.*;
+import java.io.File;
 import java.util.ArrayList;
 import java.util.List;
 
@@ -15,63 +18,54 @@ import java.util.List;
  * which were not flushed into segment storage before a crash.
  *
  * Replay rules:
- *  - Read checkpoint: lastFlushedWalIndex
- *  - Replay WAL files > checkpoint
- *  - Write their logs into SegmentWriter
+ *  - Read checkpoint: lastFlushedWalIndex + lastFlushedWalOffset
+ *  - Replay the checkpointed file from its offset, and WAL files > checkpoint
+ *  - Write their logs into SegmentWriter (records keep their stream ids,
+ *    so nothing is decoded beyond the LogBatch columns)
  *  - Update checkpoint
  *  - Run WalCleaner
+ *
+ * Every ingest shard is replayed independently against its own checkpoint.
  */
 @Component
 public class WalReplayer {
 
-    private static final String WAL_DIR = "data/wal";
-
-    private final CheckpointManager checkpointManager;
-    private final SegmentWriter segmentWriter;
-    private final WalCleaner walCleaner;
-
-    public WalReplayer(CheckpointManager checkpointManager,
-                       SegmentWriter segmentWriter,
-                       WalCleaner walCleaner) {
-        this.checkpointManager = checkpointManager;
-        this.segmentWriter = segmentWriter;
-        this.walCleaner = walCleaner;
-    }
-
-    private LogEntry readBinaryRecord(InputStream in) throws IOException {
-        byte[] tsBytes = in.readNBytes(8);
-        if (tsBytes.length < 8) return null; // EOF
-        long timestamp = bytesToLong(tsBytes);
+    private static final int REPLAY_BATCH_CAPACITY = 4096;
 
-        int levelByte = in.read();
-        if (levelByte < 0) return null;
+    private final ShardManager shardManager;
 
-        byte[] lenBytes = in.readNBytes(2);
-        if (lenBytes.length < 2) return null;
-        int msgLen = bytesToShort(lenBytes);
-
-        byte[] msgBytes = in.readNBytes(msgLen);
-        if (msgBytes.length < msgLen) return null;
-
-        return new LogEntry(timestamp, decodeLevel(levelByte), new String(msgBytes, "UTF-8"));
+    public WalReplayer(ShardManager shardManager) {
+        this.shardManager = shardManager;
     }
 
     @PostConstruct
     public void replayPendingWalFiles() {
-        int lastFlushed = checkpointManager.getLastFlushedWalIndex();
+        for (IngestShard shard : shardManager.getShards()) {
+            replayShard(shard);
+        }
+    }
+
+    private void replayShard(IngestShard shard) {
+        int lastFlushed = shard.checkpointManager().getLastFlushedWalIndex();
+        long lastOffset = shard.checkpointManager().getLastFlushedWalOffset();
+        int liveIndex = shard.walWriter().getCurrentWalIndex();
 
-        File dir = new File(WAL_DIR);
+        File dir = new File(shard.walDir());
         File[] files = dir.listFiles((d, name) -> name.startsWith("wal-") && name.endsWith(".log"));
 
         if (files == null) return;
 
-        System.out.println("WalReplayer: Starting replay. lastFlushedWalIndex=" + lastFlushed);
+        System.out.println("WalReplayer: Starting replay. shard=" + shard.id()
+                + " lastFlushedWalIndex=" + lastFlushed);
 
         List<File> toReplay = new ArrayList<>();
 
         for (File file : files) {
             int index = extractIndex(file.getName());
-            if (index > lastFlushed) {
+            if (index >= liveIndex)
+                continue; // opened by this run's WalWriter, nothing to replay
+
+            if (index > lastFlushed || (index == lastFlushed && file.length() > lastOffset)) {
                 toReplay.add(file);
             }
         }
@@ -81,28 +75,27 @@ public class WalReplayer {
 
         for (File file : toReplay) {
             int walIndex = extractIndex(file.getName());
-            replaySingleFile(file, walIndex);
+            long startOffset = walIndex == lastFlushed ? lastOffset : 0;
+            replaySingleFile(shard.segmentWriter(), file, walIndex, startOffset);
         }
 
         // After replaying → clean WAL files
-        walCleaner.cleanOldWalFiles();
+        shard.walCleaner().cleanOldWalFiles();
 
         System.out.println("WalReplayer: Replay complete.");
     }
 
-    private void replaySingleFile(File file, int walIndex) {
-        System.out.println("WalReplayer: Replaying " + file.getName());
+    private void replaySingleFile(SegmentWriter segmentWriter, File file, int walIndex, long startOffset) {
+        System.out.println("WalReplayer: Replaying " + file.getName() + " from offset " + startOffset);
 
-        try (InputStream in = new FileInputStream(file)) {
-            List<LogEntry> batch = new ArrayList<>();
+        try {
+            LogBatch batch = new LogBatch(REPLAY_BATCH_CAPACITY);
 
-            LogEntry entry;
-            while ((entry = readBinaryRecord(in)) != null) {
-                batch.add(entry);
-            }
+            RecordCodec.scan(file, startOffset, (ts, lvl, stream, msg, repeats, lastTs) ->
+                    batch.add(ts, lvl, stream, msg, 0, msg.length, repeats, lastTs));
 
             if (!batch.isEmpty()) {
-                segmentWriter.writeBatchToSegment(walIndex, batch);
+                segmentWriter.writeBatchToSegment(new WalPosition(walIndex, file.length()), batch);
             }
         } catch (Exception e) {
             e.printStackTrace();
@@ -116,33 +109,4 @@ public class WalReplayer {
             return -1;
         }
     }
-
-    /**
-     * Helper Functions
-     */
-    private long bytesToLong(byte[] b) {
-        return ((long)(b[0] & 0xff) << 56) |
-            ((long)(b[1] & 0xff) << 48) |
-            ((long)(b[2] & 0xff) << 40) |
-            ((long)(b[3] & 0xff) << 32) |
-            ((long)(b[4] & 0xff) << 24) |
-            ((long)(b[5] & 0xff) << 16) |
-            ((long)(b[6] & 0xff) << 8)  |
-            ((long)(b[7] & 0xff));
-    }
-
-    private short bytesToShort(byte[] b) {
-        return (short)(((b[0] & 0xFF) << 8) | (b[1] & 0xFF));
-    }
-
-    private String decodeLevel(int lvl) {
-        return switch (lvl) {
-            case 1 -> "INFO";
-            case 2 -> "WARN";
-            case 3 -> "ERROR";
-            case 4 -> "DEBUG";
-            default -> "UNKNOWN";
-        };
-    }
-
 }
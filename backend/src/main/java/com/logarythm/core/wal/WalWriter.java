@@ -1,12 +1,14 @@
 package com.logarythm.core.wal;
 
+import com.logarythm.core.storage.RecordCodec;
 import com.logarythm.model.LogEntry;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.stereotype.Component;
 
 import java.io.File;
 import java.io.FileOutputStream;
 import java.io.BufferedOutputStream;
-import java.io.ByteArrayOutputStream;
 import java.io.IOException;
 
 import java.util.List;
@@ -14,6 +16,9 @@ import java.util.List;
 /**
  * WAL = Write Ahead Log
  * Responsible for durable append-only logging before segment writes.
+ *
+ * On startup a fresh WAL file is opened after the newest existing one,
+ * so files that still need replay are never appended to.
  */
 @Component
 public class WalWriter {
@@ -21,35 +26,68 @@ public class WalWriter {
     private static final String WAL_DIR = "data/wal";
     private static final long MAX_WAL_SIZE_BYTES = 1024 * 1024; // 1 MB per WAL log file
 
+    private final String walDir;
+    private final boolean fsync;
+
     private File currentWalFile;
     private BufferedOutputStream walStream;
     private FileOutputStream fileStream;
     private int walIndex = 1;
+    private long walOffset = 0;
+
+    @Autowired
+    public WalWriter(CheckpointManager checkpointManager,
+                     @Value("${logarythm.wal.fsync:false}") boolean fsync) throws IOException {
+        this(WAL_DIR, checkpointManager, fsync);
+    }
 
-    public WalWriter() throws IOException {
+    /**
+     * Create a WAL writer rooted at a custom directory (used by ingest shards).
+     */
+    public WalWriter(String walDir, CheckpointManager checkpointManager, boolean fsync) throws IOException {
+        this.walDir = walDir;
+        this.fsync = fsync;
         initializeWalDirectory();
+
+        walIndex = Math.max(highestExistingIndex(), checkpointManager.getLastFlushedWalIndex()) + 1;
         openNewWalFile();
     }
 
     private void initializeWalDirectory() {
-        File dir = new File(WAL_DIR);
+        File dir = new File(walDir);
         if (!dir.exists()) {
             dir.mkdirs();
         }
     }
 
+    private int highestExistingIndex() {
+        File[] files = new File(walDir).listFiles((d, name) -> name.startsWith("wal-") && name.endsWith(".log"));
+        int highest = 0;
+
+        if (files == null) return highest;
+
+        for (File f : files) {
+            try {
+                highest = Math.max(highest, Integer.parseInt(f.getName().substring(4, 10)));
+            } catch (Exception ignored) {
+            }
+        }
+        return highest;
+    }
+
     private void openNewWalFile() throws IOException {
         String filename = String.format("wal-%06d.log", walIndex);
-        currentWalFile = new File(WAL_DIR, filename);
+        currentWalFile = new File(walDir, filename);
 
         fileStream = new FileOutputStream(currentWalFile, true);
         walStream = new BufferedOutputStream(fileStream, 64 * 1024); // 64KB buffer
+        walOffset = currentWalFile.length();
 
-        System.out.println("WAL: Opened new WAL file " + filename);
+        System.out.println("WAL: Opened new WAL file " + currentWalFile.getPath());
     }
 
     private void rotateIfNeeded() throws IOException {
-        if (currentWalFile.length() >= MAX_WAL_SIZE_BYTES) {
+        if (walOffset >= MAX_WAL_SIZE_BYTES) {
             walStream.flush();
             walStream.close();
             fileStream.close();
@@ -58,63 +96,58 @@ public class WalWriter {
         }
     }
 
-    public synchronized void appendBatch(List<LogEntry> batch) throws IOException {
-        rotateIfNeeded();
-
-        ByteArrayOutputStream buffer = new ByteArrayOutputStream(batch.size() * 64);
-
-        for (LogEntry entry : batch) {
-            byte[] msgBytes = entry.message().getBytes("UTF-8");
-            int msgLen = msgBytes.length;
-
-            buffer.write(longToBytes(entry.timestamp()));
-            buffer.write(entry.levelAsByte());
-            buffer.write(shortToBytes((short) msgLen));
-            buffer.write(msgBytes);
-        }
-
-        walStream.write(buffer.toByteArray());
+    /**
+     * Append an already encoded batch (see RecordCodec) and flush it to the OS.
+     * Call sync() afterwards when logarythm.wal.fsync=true.
+     *
+     * @return the WAL position right after this batch
+     */
+    public WalPosition appendEncoded(byte[] records) throws IOException {
+        return appendEncoded(records, records.length);
     }
 
     /**
-     * Append log to WAL (JSON lines for now).
+     * Same, for the first length bytes of records (a LogBatch's reusable buffer).
      */
-    public synchronized void append(LogEntry entry) throws IOException {
+    public synchronized WalPosition appendEncoded(byte[] records, int length) throws IOException {
         rotateIfNeeded();
 
-        byte[] msgBytes = entry.message().getBytes("UTF-8");
-        int msgLen = msgBytes.length;
+        walStream.write(records, 0, length);
+        walStream.flush();
 
-        // Write binary record
-        walStream.write(longToBytes(entry.timestamp()));
-        walStream.write(entry.levelAsByte());
-        walStream.write(shortToBytes((short) msgLen));
-        walStream.write(msgBytes);
+        walOffset += length;
+        return new WalPosition(walIndex, walOffset);
     }
 
     /**
-     * Expose current WAL file index — used for checkpointing.
+     * Force everything appended so far to disk.
      */
-    public int getCurrentWalIndex() {
-        return walIndex;
+    public synchronized void sync() throws IOException {
+        fileStream.getFD().sync();
+    }
+
+    public boolean isFsyncEnabled() {
+        return fsync;
+    }
+
+    public WalPosition appendBatch(List<LogEntry> batch) throws IOException {
+        WalPosition position = appendEncoded(RecordCodec.encode(batch));
+        if (fsync)
+            sync();
+        return position;
     }
 
     /**
-     * Helper Functions
+     * Append a single log to the WAL.
      */
-    private byte[] longToBytes(long value) {
-        byte[] bytes = new byte[8];
-        for (int i = 7; i >= 0; i--) {
-            bytes[i] = (byte) (value & 0xFF);
-            value >>= 8;
-        }
-        return bytes;
+    public WalPosition append(LogEntry entry) throws IOException {
+        return appendBatch(List.of(entry));
     }
 
-    private byte[] shortToBytes(short value) {
-        return new byte[] {
-            (byte) ((value >> 8) & 0xFF),
-            (byte) (value & 0xFF)
-        };
+    /**
+     * Expose current WAL file index — used for checkpointing.
+     */
+    public synchronized int getCurrentWalIndex() {
+        return walIndex;
     }
 }
@@ -1,19 +1,103 @@
 package com.logarythm.model;
 
+import com.fasterxml.jackson.annotation.JsonIgnore;
+import com.fasterxml.jackson.annotation.JsonInclude;
+
+import java.nio.charset.StandardCharsets;
+import java.util.Map;
+
 /**
  * LogEntry represents a single log event ingested by logarythm.
  * It is intentionally minimal; other layers (WAL, encoding, indexing)
  * will work around this immutable record.
+ *
+ * labels are optional indexed key/value pairs (service, host, env, ...).
+ * Each distinct label set is one "stream" (see StreamDictionary); queries
+ * can select streams by label before any message data is read.
+ *
+ * Entries built from bytes (HTTP / TCP ingest, WAL replay) carry the message
+ * as UTF-8 in messageUtf8 and no String: the encoders and the Bloom builder
+ * use messageBytes(), so the message is never decoded on the write path.
+ * message() still works for them, it decodes on every call.
+ *
+ * repeats / lastTimestamp are only set on query results for a stored record
+ * that stands for several identical consecutive entries (ingest-time
+ * deduplication, see LogBatch.collapseRepeats): the same message was logged
+ * `repeats` times between timestamp and lastTimestamp.
  */
-public record LogEntry(long timestamp, String level, String message) {
+public record LogEntry(long timestamp, String level, String message,
+                       @JsonInclude(JsonInclude.Include.NON_EMPTY) Map<String, String> labels,
+                       @JsonIgnore byte[] messageUtf8,
+                       @JsonInclude(JsonInclude.Include.NON_NULL) Integer repeats,
+                       @JsonInclude(JsonInclude.Include.NON_NULL) Long lastTimestamp) {
+
+    public LogEntry {
+        if (labels == null)
+            labels = Map.of();
+    }
+
+    public LogEntry(long timestamp, String level, String message, Map<String, String> labels) {
+        this(timestamp, level, message, labels, null, null, null);
+    }
+
+    public LogEntry(long timestamp, String level, String message) {
+        this(timestamp, level, message, Map.of(), null, null, null);
+    }
+
+    /**
+     * Entry whose message is already UTF-8 encoded (not copied).
+     */
+    public static LogEntry ofUtf8(long timestamp, String level, byte[] message, Map<String, String> labels) {
+        return new LogEntry(timestamp, level, null, labels, message, null, null);
+    }
+
+    /**
+     * The same entry, standing for `repeats` identical entries up to lastTimestamp.
+     */
+    public LogEntry withRepeats(int repeats, long lastTimestamp) {
+        return new LogEntry(timestamp, level, message, labels, messageUtf8, repeats, lastTimestamp);
+    }
+
+    @Override
+    public String message() {
+        if (message == null && messageUtf8 != null)
+            return new String(messageUtf8, StandardCharsets.UTF_8);
+        return message;
+    }
+
+    /**
+     * The message as UTF-8, without copying when the entry was built from bytes.
+     */
+    public byte[] messageBytes() {
+        if (messageUtf8 != null)
+            return messageUtf8;
+        return message != null ? message.getBytes(StandardCharsets.UTF_8) : null;
+    }
 
     public byte levelAsByte() {
-        return switch (level.toUpperCase()) {
+        return levelCode(level);
+    }
+
+    /**
+     * Level name → the 1-byte code stored in WAL / segment records.
+     * Upper-case names (the common case) are matched without allocating.
+     */
+    public static byte levelCode(String level) {
+        if (level == null)
+            return 0;
+
+        return switch (level) {
             case "INFO" -> 1;
             case "WARN" -> 2;
             case "ERROR" -> 3;
             case "DEBUG" -> 4;
-            default -> 0;
+            default -> switch (level.toUpperCase()) {
+                case "INFO" -> 1;
+                case "WARN" -> 2;
+                case "ERROR" -> 3;
+                case "DEBUG" -> 4;
+                default -> 0;
+            };
         };
     }
-}
\ No newline at end of file
+}
@@ -0,0 +1,14 @@
+package com.logarythm.model;
+
+import com.fasterxml.jackson.annotation.JsonInclude;
+
+/**
+ * How one node answered its part of a federated query.
+ *
+ * node   → "local" or the peer's base URL
+ * status → ok | partial (node hit its own deadline) | timeout | error
+ * count  → rows it returned, used → rows of it that made the merged page
+ */
+@JsonInclude(JsonInclude.Include.NON_NULL)
+public record NodeStatus(String node, String status, long tookMs, int count, int used, String error) {
+}
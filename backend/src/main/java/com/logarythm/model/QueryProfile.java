@@ -0,0 +1,89 @@
+package com.logarythm.model;
+
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Execution profile of one /query?explain=true call.
+ *
+ * plan     → how the query was interpreted (filters, segment order)
+ * segments → what happened to every segment: pruned / scanned / not visited, and why
+ * totals   → sums over all segments
+ *
+ * Only filled when explain is requested; normal queries never allocate one.
+ */
+public class QueryProfile {
+
+    public final Map<String, Object> plan = new LinkedHashMap<>();
+    public final List<SegmentProfile> segments = new ArrayList<>();
+
+    public int segmentsTotal;
+    public int segmentsScanned;
+    public int segmentsPruned;
+    public int segmentsNotVisited;
+
+    public long bytesRead;
+    public long recordsRead;
+    public long matches;
+    public long stringsMaterialized;
+    public long cacheHits;
+    public long blocksScanned;
+    public long blocksPruned;
+    public long elapsedMicros;
+
+    public SegmentProfile addSegment(String segment) {
+        SegmentProfile sp = new SegmentProfile(segment);
+        segments.add(sp);
+        segmentsTotal++;
+        return sp;
+    }
+
+    /**
+     * Roll the per-segment numbers up into the totals.
+     */
+    public void finish(long elapsedMicros) {
+        this.elapsedMicros = elapsedMicros;
+
+        for (SegmentProfile sp : segments) {
+            switch (sp.status) {
+                case SegmentProfile.SCANNED -> segmentsScanned++;
+                case SegmentProfile.PRUNED -> segmentsPruned++;
+                default -> segmentsNotVisited++;
+            }
+            bytesRead += sp.bytesRead;
+            recordsRead += sp.recordsRead;
+            matches += sp.matches;
+            stringsMaterialized += sp.stringsMaterialized;
+            cacheHits += sp.cacheHits;
+            blocksScanned += sp.blocksScanned;
+            blocksPruned += sp.blocksPruned;
+        }
+    }
+
+    public static class SegmentProfile {
+        public static final String SCANNED = "scanned";
+        public static final String PRUNED = "pruned";
+        public static final String NOT_VISITED = "not-visited";
+
+        public final String segment;
+        public String status = NOT_VISITED;
+        public String reason;
+        public Long minTs;
+        public Long maxTs;
+        public boolean archived;
+        public int blocksScanned;
+        public int blocksPruned;
+        public long bytesRead;
+        public long recordsRead;
+        public long matches;
+        public long stringsMaterialized;
+        public long cacheHits;
+        public long elapsedMicros;
+
+        public SegmentProfile(String segment) {
+            this.segment = segment;
+        }
+    }
+}
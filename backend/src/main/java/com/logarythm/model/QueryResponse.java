@@ -1,9 +1,33 @@
 package com.logarythm.model;
 
+import com.fasterxml.jackson.annotation.JsonInclude;
+
 import java.util.List;
 
+/**
+ * Response of /query.
+ *
+ * positions → only for positions=true (federation sub-queries): one
+ *             cursor per result, results left in scan order
+ * nodes     → only for federated queries: how every node answered
+ */
+@JsonInclude(JsonInclude.Include.NON_NULL)
 public record QueryResponse(
         long tookMs,
         int count,
-        List<LogEntry> results) {
+        List<LogEntry> results,
+        String nextCursor,
+        Boolean partial,
+        QueryProfile profile,
+        List<String> positions,
+        List<NodeStatus> nodes) {
+
+    public QueryResponse(long tookMs, int count, List<LogEntry> results) {
+        this(tookMs, count, results, null, null, null, null, null);
+    }
+
+    public QueryResponse(long tookMs, int count, List<LogEntry> results, String nextCursor,
+                         Boolean partial, QueryProfile profile) {
+        this(tookMs, count, results, nextCursor, partial, profile, null, null);
+    }
 }
@@ -0,0 +1,29 @@
+package com.logarythm.model;
+
+import java.util.List;
+
+/**
+ * Response of /top.
+ *
+ * segments          → segments whose sketch was merged
+ * segmentsNoSketch  → archived segments sealed before sketches existed (skipped)
+ * exactWindow       → false when a merged segment reaches outside start/end
+ *                     (its rows outside the window are counted too)
+ * total             → entries in the merged segments (exact, repeats of
+ *                     collapsed records included)
+ * distinctMessages  → estimated distinct raw messages (HyperLogLog, ~2% error)
+ * messages          → most frequent templates; the true count lies in
+ *                     [count - maxOverestimate, count]
+ */
+public record TopResponse(
+        long tookMs,
+        int segments,
+        int segmentsNoSketch,
+        boolean exactWindow,
+        long total,
+        long distinctMessages,
+        List<Message> messages) {
+
+    public record Message(String template, long count, long maxOverestimate) {
+    }
+}
@@ -0,0 +1,60 @@
+package com.logarythm.core.ingestion;
+
+import com.logarythm.model.LogEntry;
+import org.junit.jupiter.api.Test;
+
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.Map;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class LogEntryDecoderTest {
+
+    private static LogEntry decode(String json) {
+        byte[] bytes = json.getBytes(StandardCharsets.UTF_8);
+        ByteBuffer direct = ByteBuffer.allocateDirect(bytes.length + 4).put(new byte[2]).put(bytes);
+        return LogEntryDecoder.decode(direct.flip().position(2));
+    }
+
+    @Test
+    void decodesSchemaFields() {
+        LogEntry e = decode("{ \"timestamp\": 1700000000123, \"level\": \"warn\", \"message\": \"disk 91% full\","
+                + " \"labels\": {\"service\": \"api\", \"env\": \"prod\"}, \"extra\": [1, {\"a\": null}] }");
+
+        assertEquals(1700000000123L, e.timestamp());
+        assertSame("WARN", e.level());
+        assertEquals(2, e.levelAsByte());
+        assertEquals("disk 91% full", e.message());
+        assertEquals(Map.of("service", "api", "env", "prod"), e.labels());
+    }
+
+    @Test
+    void unescapesMessageToUtf8() {
+        LogEntry e = decode("{\"level\":\"INFO\",\"message\":\"a\\\"b\\\\c\\n\\u00e9\\ud83d\\ude00 ü\"}");
+
+        assertEquals(0, e.timestamp());
+        assertEquals("a\"b\\c\né\uD83D\uDE00 ü", e.message());
+        assertArrayEquals("a\"b\\c\né\uD83D\uDE00 ü".getBytes(StandardCharsets.UTF_8), e.messageBytes());
+        assertEquals("TRACE", decode("{\"level\":\"TRACE\",\"message\":\"x\"}").level());
+    }
+
+    @Test
+    void rejectsMalformedInput() {
+        assertThrows(IllegalArgumentException.class, () -> decode("{\"level\":\"INFO\"}"));
+        assertThrows(IllegalArgumentException.class, () -> decode("{\"level\":\"INFO\",\"message\":\"x\""));
+        assertThrows(IllegalArgumentException.class, () -> decode("{\"level\":\"INFO\",\"message\":\"x\"} {}"));
+        assertThrows(IllegalArgumentException.class, () -> decode("{\"timestamp\":12a,\"level\":\"INFO\",\"message\":\"x\"}"));
+        assertThrows(IllegalArgumentException.class, () -> decode("{\"level\":\"INFO\",\"message\":\"bad \\q\"}"));
+    }
+
+    @Test
+    void rejectsDeeplyNestedUnknownValues() {
+        String deep = "[".repeat(100_000);
+        assertThrows(IllegalArgumentException.class,
+                () -> decode("{\"level\":\"INFO\",\"message\":\"x\",\"x\":" + deep + "}"));
+
+        String ok = "[".repeat(50) + "]".repeat(50);
+        assertEquals("x", decode("{\"level\":\"INFO\",\"message\":\"x\",\"x\":" + ok + "}").message());
+    }
+}
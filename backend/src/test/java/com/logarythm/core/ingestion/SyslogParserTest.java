@@ -0,0 +1,106 @@
+package com.logarythm.core.ingestion;
+
+import com.logarythm.core.storage.RecordCodec;
+import com.logarythm.model.LogEntry;
+import org.junit.jupiter.api.Test;
+
+import java.nio.charset.StandardCharsets;
+import java.time.Instant;
+import java.util.Map;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class SyslogParserTest {
+
+    private static final long RECEIVED = 1_700_000_000_000L;
+
+    private static LogEntry parse(String line) {
+        return SyslogParser.parse(line, RECEIVED);
+    }
+
+    @Test
+    void parsesRfc5424() {
+        LogEntry e = parse("<165>1 2003-10-11T22:14:15.003Z mymachine.example.com evntslog - ID47 "
+                + "[exampleSDID@32473 iut=\"3\" eventSource=\"Application\"] An application event");
+
+        assertEquals(Instant.parse("2003-10-11T22:14:15.003Z").toEpochMilli(), e.timestamp());
+        assertEquals("INFO", e.level());
+        assertEquals("An application event", e.message());
+        assertEquals(Map.of("host", "mymachine.example.com", "app", "evntslog"), e.labels());
+    }
+
+    @Test
+    void skipsRfc5424StructuredData() {
+        assertEquals("msg", parse("<11>1 - host app 12 - - msg").message());
+        assertEquals("msg", parse("<11>1 - host app - - [id a=\"x\\]y\" b=\"q\\\"z\"][id2 c=\"1\"] msg").message());
+        assertEquals("", parse("<11>1 - host app - - -").message());
+
+        LogEntry nil = parse("<11>1 - - - - - - msg");
+        assertEquals(RECEIVED, nil.timestamp());
+        assertEquals(Map.of(), nil.labels());
+    }
+
+    @Test
+    void fallsBackOnShortOrOddRfc5424Header() {
+        LogEntry truncated = parse("<11>1 2003-10-11T22:14:15Z host");
+        assertEquals("ERROR", truncated.level());
+        assertEquals(RECEIVED, truncated.timestamp());
+        assertEquals("2003-10-11T22:14:15Z host", truncated.message());
+
+        LogEntry badTime = parse("<11>1 yesterday host app - - - msg");
+        assertEquals(RECEIVED, badTime.timestamp());
+        assertEquals("msg", badTime.message());
+    }
+
+    @Test
+    void parsesRfc3164() {
+        LogEntry e = parse("<34>Oct 11 22:14:15 mymachine su[123]: 'su root' failed for lonvick on /dev/pts/8");
+        assertEquals("ERROR", e.level());
+        assertEquals(RECEIVED, e.timestamp());
+        assertEquals("'su root' failed for lonvick on /dev/pts/8", e.message());
+        assertEquals(Map.of("host", "mymachine", "app", "su"), e.labels());
+
+        LogEntry noTag = parse("<13>Feb  5 17:32:18 10.0.0.99 Use the BFG: now");
+        assertEquals("Use the BFG: now", noTag.message());
+        assertEquals(Map.of("host", "10.0.0.99"), noTag.labels());
+
+        assertEquals("cron", parse("<13>Feb  5 17:32:18 h cron: x").labels().get("app"));
+    }
+
+    @Test
+    void fallsBackOnShortOrOddRfc3164Header() {
+        assertEquals("hello", parse("<12>hello").message());
+        assertEquals("WARN", parse("<12>hello").level());
+        assertEquals("Feb  5 17:32:18 onlyhost", parse("<13>Feb  5 17:32:18 onlyhost").message());
+        assertEquals("October 11 22:14:15 x", parse("<13>October 11 22:14:15 x").message());
+    }
+
+    @Test
+    void priBounds() {
+        for (String line : new String[]{"plain line", "<>x", "<1234>x", "<abc>x", "<5", ">5<"}) {
+            LogEntry e = parse(line);
+            assertEquals("INFO", e.level(), line);
+            assertEquals(line, e.message());
+            assertEquals(RECEIVED, e.timestamp());
+        }
+        assertEquals("x", parse("<191>x").message());
+    }
+
+    @Test
+    void mapsSeverityToLevel() {
+        String[] levels = {"ERROR", "ERROR", "ERROR", "ERROR", "WARN", "INFO", "INFO", "DEBUG"};
+        for (int severity = 0; severity < 8; severity++) {
+            assertEquals(levels[severity], parse("<" + severity + ">x").level(), "severity " + severity);
+            assertEquals(levels[severity], parse("<" + (16 * 8 + severity) + ">x").level(), "local0." + severity);
+        }
+    }
+
+    @Test
+    void truncatesMessageToRecordLimit() {
+        LogEntry e = parse("<14>" + "é".repeat(RecordCodec.MAX_MESSAGE_BYTES));
+        byte[] msg = e.messageBytes();
+
+        assertEquals(RecordCodec.MAX_MESSAGE_BYTES, msg.length);
+        assertEquals("é".repeat(RecordCodec.MAX_MESSAGE_BYTES / 2), new String(msg, StandardCharsets.UTF_8));
+    }
+}
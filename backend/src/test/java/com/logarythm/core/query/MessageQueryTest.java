@@ -0,0 +1,96 @@
+package com.logarythm.core.query;
+
+import com.logarythm.core.bloom.BloomFilter;
+import org.junit.jupiter.api.Test;
+
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Random;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class MessageQueryTest {
+
+    private static boolean matches(String query, String message) {
+        byte[] bytes = message.getBytes(StandardCharsets.UTF_8);
+        return MessageQuery.compile(query, null).matcher().matches(bytes, 0, bytes.length);
+    }
+
+    @Test
+    void requiredRegexLiterals() {
+        assertEquals(List.of("status=5"), RegexLiterals.required("status=5\\d\\d"));
+        assertEquals(List.of("GET /api/v", "/users"), RegexLiterals.required("GET /api/v\\d+/users"));
+        assertEquals(List.of("timeou", "after"), RegexLiterals.required("timeout?[ ]+after"));
+        assertEquals(List.of("a.b"), RegexLiterals.required("\\Qa.b\\E"));
+        assertEquals(List.of(), RegexLiterals.required("error|warn"));
+        assertEquals(List.of("user=", "!"), RegexLiterals.required("user=(alice|bob)!"));
+        assertEquals(List.of("took"), RegexLiterals.boundedTokens("request took 5"));
+    }
+
+    @Test
+    void booleanOperatorsAndRegex() {
+        String msg = "GET /api/orders status=503 took 1200ms";
+
+        assertTrue(matches("get orders", msg));
+        assertTrue(matches("ORDERS AND /status=5\\d\\d/", msg));
+        assertFalse(matches("orders AND NOT /took \\d+ms/", msg));
+        assertTrue(matches("missing OR \"status=503 took\"", msg));
+        assertFalse(matches("(missing OR absent) orders", msg));
+        assertFalse(matches("/status=4\\d\\d/", msg));
+        assertTrue(matches("not and or", "and or not"));   // lower-case words are terms
+        assertTrue(matches("café", "Le CAFÉ est fermé"));  // non-ASCII falls back to String folding
+    }
+
+    @Test
+    void bloomPruningUsesOnlyGuaranteedTokens() {
+        BloomFilter filter = new BloomFilter(1 << 12, 3);
+        for (String token : "request took 1200ms".split(" "))
+            filter.add(token);
+
+        assertTrue(MessageQuery.compile("took", null).mightMatch(filter));
+        assertFalse(MessageQuery.compile("timeout", null).mightMatch(filter));
+        assertTrue(MessageQuery.compile("timeout OR took", null).mightMatch(filter));
+        assertTrue(MessageQuery.compile("NOT timeout", null).mightMatch(filter));
+        // "ques" is not a whole token, but regex fragments are only checked when bounded
+        assertTrue(MessageQuery.compile("/ques\\w+ took \\d+/", null).mightMatch(filter));
+        assertFalse(MessageQuery.compile("/ques\\w+ slow \\d+/", null).mightMatch(filter));
+    }
+
+    @Test
+    void keywordScannersAgree() {
+        Random random = new Random(7);
+        byte[] alphabet = "abAB-x é".getBytes(StandardCharsets.UTF_8);
+
+        for (String keyword : List.of("a", "ab", "Ab-x", "bab", "é", "x-A")) {
+            byte[] folded = QueryParser.fold(keyword);
+            KeywordScanner scalar = new ScalarKeywordScanner(folded);
+            KeywordScanner best = KeywordScanner.create(folded); // vector when the module is present
+
+            for (int n = 0; n < 500; n++) {
+                byte[] text = new byte[random.nextInt(200)];
+                for (int i = 0; i < text.length; i++)
+                    text[i] = alphabet[random.nextInt(alphabet.length)];
+
+                int offset = text.length == 0 ? 0 : random.nextInt(text.length);
+                int length = text.length - offset;
+                byte[] lower = Arrays.copyOfRange(text, offset, text.length);
+                for (int i = 0; i < lower.length; i++)
+                    lower[i] = (byte) Character.toLowerCase((char) lower[i]); // only ASCII letters are in range
+                String window = new String(lower, StandardCharsets.ISO_8859_1);
+                boolean expected = window.contains(new String(folded, StandardCharsets.ISO_8859_1));
+
+                assertEquals(expected, scalar.find(text, offset, length), keyword);
+                assertEquals(expected, best.find(text, offset, length), keyword);
+            }
+        }
+    }
+
+    @Test
+    void syntaxErrors() {
+        assertThrows(IllegalArgumentException.class, () -> MessageQuery.compile("(a OR b", null));
+        assertThrows(IllegalArgumentException.class, () -> MessageQuery.compile("/unclosed", null));
+        assertThrows(IllegalArgumentException.class, () -> MessageQuery.compile("/a(/", null));
+        assertNull(MessageQuery.compile(" ", null));
+    }
+}
@@ -0,0 +1,119 @@
+package com.logarythm.core.sketch;
+
+import org.junit.jupiter.api.Test;
+
+import java.nio.charset.StandardCharsets;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class SpaceSavingTest {
+
+    private static void add(SpaceSaving summary, Map<String, Long> exact, String key, long count) {
+        byte[] bytes = key.getBytes(StandardCharsets.UTF_8);
+        summary.add(MessageTemplate.hash(bytes, 0, bytes.length), bytes, 0, bytes.length, count);
+        exact.merge(key, count, Long::sum);
+    }
+
+    private static Map<String, SpaceSaving.Item> byKey(SpaceSaving summary) {
+        Map<String, SpaceSaving.Item> items = new HashMap<>();
+        for (SpaceSaving.Item item : summary.top(summary.capacity()))
+            items.put(item.key(), item);
+        return items;
+    }
+
+    /**
+     * count >= true count >= count - error for every tracked key, and every
+     * key above total / capacity is tracked.
+     */
+    private static void assertBounds(SpaceSaving summary, Map<String, Long> exact) {
+        long total = exact.values().stream().mapToLong(Long::longValue).sum();
+        Map<String, SpaceSaving.Item> items = byKey(summary);
+
+        for (SpaceSaving.Item item : items.values()) {
+            long actual = exact.getOrDefault(item.key(), 0L);
+            assertTrue(item.count() >= actual, item + " below true count " + actual);
+            assertTrue(item.count() - item.error() <= actual, item + " lower bound above true count " + actual);
+        }
+        exact.forEach((key, actual) -> {
+            if (actual > total / summary.capacity())
+                assertTrue(items.containsKey(key), key + " (" + actual + " of " + total + ") not tracked");
+        });
+    }
+
+    @Test
+    void keyMissingFromOneSideGetsItsMinimum() {
+        Map<String, Long> exact = new HashMap<>();
+
+        SpaceSaving a = new SpaceSaving(2);
+        add(a, exact, "x", 6);
+        add(a, exact, "y", 5);
+
+        // b evicts x again when it sees b
+        SpaceSaving b = new SpaceSaving(2);
+        add(b, exact, "x", 3);
+        add(b, exact, "a", 4);
+        add(b, exact, "b", 4);
+
+        a.merge(b);
+
+        SpaceSaving.Item x = byKey(a).get("x");
+        assertNotNull(x);
+        assertEquals(10, x.count()); // 6 + b's minimum 4, true count 9
+        assertEquals(4, x.error());
+        assertBounds(a, exact);
+    }
+
+    @Test
+    void notFullSummaryAddsNothingForMissingKeys() {
+        Map<String, Long> exact = new HashMap<>();
+
+        SpaceSaving a = new SpaceSaving(4);
+        add(a, exact, "x", 5);
+        SpaceSaving b = new SpaceSaving(4);
+        add(b, exact, "y", 2);
+
+        a.merge(b);
+
+        Map<String, SpaceSaving.Item> items = byKey(a);
+        assertEquals(new SpaceSaving.Item("x", 5, 0), items.get("x"));
+        assertEquals(new SpaceSaving.Item("y", 2, 0), items.get("y"));
+    }
+
+    @Test
+    void mergedSummariesKeepBoundsAgainstExactCounts() {
+        Random random = new Random(42);
+        Map<String, Long> exact = new HashMap<>();
+        SpaceSaving merged = new SpaceSaving(16);
+
+        // segments with different heavy hitters over a long tail
+        for (int segment = 0; segment < 20; segment++) {
+            SpaceSaving summary = new SpaceSaving(16);
+            Map<String, Long> segmentExact = new HashMap<>();
+
+            for (int i = 0; i < 2000; i++) {
+                String key;
+                if (random.nextInt(4) == 0)
+                    key = "heavy-" + random.nextInt(3);
+                else if (random.nextInt(3) == 0)
+                    key = "segment-" + segment % 5 + "-" + random.nextInt(2);
+                else
+                    key = "tail-" + random.nextInt(500);
+
+                add(summary, segmentExact, key, 1 + random.nextInt(3));
+            }
+            assertBounds(summary, segmentExact);
+
+            segmentExact.forEach((key, count) -> exact.merge(key, count, Long::sum));
+            merged.merge(summary);
+            assertBounds(merged, exact);
+        }
+
+        List<SpaceSaving.Item> top = merged.top(3);
+        for (SpaceSaving.Item item : top)
+            assertTrue(item.key().startsWith("heavy-"), top.toString());
+    }
+}
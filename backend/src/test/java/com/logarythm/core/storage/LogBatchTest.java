@@ -0,0 +1,124 @@
+package com.logarythm.core.storage;
+
+import com.logarythm.model.LogEntry;
+import org.junit.jupiter.api.Test;
+
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+import java.util.Map;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class LogBatchTest {
+
+    private static LogBatch batch(LogEntry... entries) {
+        LogBatch batch = new LogBatch(2);
+        for (LogEntry e : entries)
+            batch.add(e);
+        return batch;
+    }
+
+    private static String message(LogBatch batch, int row) {
+        return new String(batch.messages(), batch.messageOffset(row), batch.messageLength(row), StandardCharsets.UTF_8);
+    }
+
+    @Test
+    void collapsesRunWithinWindow() {
+        LogBatch b = batch(
+                new LogEntry(100, "ERROR", "db down"),
+                new LogEntry(150, "ERROR", "db down"),
+                new LogEntry(90, "ERROR", "db down"),
+                new LogEntry(200, "ERROR", "db down"));
+
+        assertEquals(3, b.collapseRepeats(1000));
+        assertEquals(1, b.size());
+        assertEquals(4, b.entryCount());
+        assertEquals(4, b.repeats(0));
+        assertEquals(90, b.timestamp(0));
+        assertEquals(200, b.lastTimestamp(0));
+        assertEquals("db down", message(b, 0));
+    }
+
+    @Test
+    void startsNewRunPastWindow() {
+        LogBatch b = batch(
+                new LogEntry(0, "ERROR", "db down"),
+                new LogEntry(600, "ERROR", "db down"),
+                new LogEntry(1200, "ERROR", "db down"),
+                new LogEntry(1300, "ERROR", "db down"));
+
+        assertEquals(2, b.collapseRepeats(1000));
+        assertEquals(2, b.size());
+        assertEquals(2, b.repeats(0));
+        assertEquals(600, b.lastTimestamp(0));
+        assertEquals(2, b.repeats(1));
+        assertEquals(1200, b.timestamp(1));
+        assertEquals(1300, b.lastTimestamp(1));
+        assertEquals(4, b.entryCount());
+    }
+
+    @Test
+    void onlyFoldsConsecutiveIdenticalRows() {
+        LogBatch b = batch(
+                new LogEntry(1, "ERROR", "a"),
+                new LogEntry(2, "ERROR", "b"),
+                new LogEntry(3, "ERROR", "a"),
+                new LogEntry(4, "WARN", "a"),
+                new LogEntry(5, "WARN", "a", Map.of("host", "h1")),
+                new LogEntry(6, "WARN", "a", Map.of("host", "h2")),
+                new LogEntry(7, "WARN", "a", Map.of("host", "h2")),
+                new LogEntry(8, "WARN", "ab"));
+
+        assertEquals(1, b.collapseRepeats(1000));
+        assertEquals(7, b.size());
+        assertEquals(8, b.entryCount());
+        for (int row = 0; row < b.size(); row++)
+            assertEquals(row == 5 ? 2 : 1, b.repeats(row), "row " + row);
+        assertEquals("ab", message(b, 6));
+
+        assertEquals(0, batch(new LogEntry(1, "INFO", "x")).collapseRepeats(1000));
+    }
+
+    @Test
+    void compactsArenaAfterFold() {
+        LogBatch b = batch(
+                new LogEntry(1, "INFO", "aa"),
+                new LogEntry(2, "INFO", "aa"),
+                new LogEntry(3, "INFO", "bbb"),
+                new LogEntry(4, "INFO", "cc"),
+                new LogEntry(5, "INFO", "cc"),
+                new LogEntry(6, "INFO", "cc"),
+                new LogEntry(7, "INFO", "dddd"));
+
+        assertEquals(3, b.collapseRepeats(1000));
+
+        String[] messages = {"aa", "bbb", "cc", "dddd"};
+        int[] repeats = {2, 1, 3, 1};
+        long[] timestamps = {1, 3, 4, 7};
+        int offset = 0;
+        for (int row = 0; row < messages.length; row++) {
+            assertEquals(offset, b.messageOffset(row), "offset of row " + row);
+            assertEquals(messages[row], message(b, row));
+            assertEquals(repeats[row], b.repeats(row));
+            assertEquals(timestamps[row], b.timestamp(row));
+            offset += messages[row].length();
+        }
+
+        // a later row reuses the compacted arena
+        b.add(8, (byte) 1, 0, "e".getBytes(StandardCharsets.UTF_8), 0, 1);
+        assertEquals(offset, b.messageOffset(4));
+        assertEquals("e", message(b, 4));
+    }
+
+    @Test
+    void capsMessagesAtRecordLimit() {
+        byte[] msg = new byte[RecordCodec.MAX_MESSAGE_BYTES + 10];
+        Arrays.fill(msg, (byte) 'x');
+        msg[RecordCodec.MAX_MESSAGE_BYTES - 1] = (byte) 0xC3; // "é" straddling the limit
+        msg[RecordCodec.MAX_MESSAGE_BYTES] = (byte) 0xA9;
+
+        LogBatch b = new LogBatch(1);
+        b.add(1, (byte) 1, 0, msg, 0, msg.length);
+        assertEquals(RecordCodec.MAX_MESSAGE_BYTES - 1, b.messageLength(0));
+    }
+}
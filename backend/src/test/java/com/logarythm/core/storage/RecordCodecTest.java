@@ -0,0 +1,126 @@
+package com.logarythm.core.storage;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.ByteArrayOutputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class RecordCodecTest {
+
+    private record Row(long ts, byte level, int stream, String message, int repeats, long lastTs) {
+    }
+
+    // every combination of the LABELED and REPEATED flags
+    private static final List<Row> ROWS = List.of(
+            new Row(1000, (byte) 1, 0, "plain", 1, 1000),
+            new Row(2000, (byte) 3, 7, "labeled", 1, 2000),
+            new Row(3000, (byte) 3, 0, "repeated", 5, 3900),
+            new Row(4000, (byte) 2, 65535, "labeled and repeated é", 70000, 4999),
+            new Row(5000, (byte) 4, 0, "", 2, 5001));
+
+    private static byte[] encode() throws IOException {
+        ByteArrayOutputStream buffer = new ByteArrayOutputStream();
+        DataOutputStream out = new DataOutputStream(buffer);
+        for (Row r : ROWS) {
+            byte[] msg = r.message().getBytes(StandardCharsets.UTF_8);
+            int written = RecordCodec.write(out, r.ts(), r.level(), r.stream(), msg, r.repeats(), r.lastTs());
+            assertEquals(RecordCodec.recordBytes(r.stream(), r.repeats(), msg.length), written);
+        }
+        return buffer.toByteArray();
+    }
+
+    private static List<Row> scan(ByteBuffer records) throws IOException {
+        List<Row> rows = new ArrayList<>();
+        RecordCodec.scan(records, (ts, level, stream, msg, repeats, lastTs) ->
+                rows.add(new Row(ts, level, stream, new String(msg, StandardCharsets.UTF_8), repeats, lastTs)));
+        return rows;
+    }
+
+    @Test
+    void headerFlags() {
+        assertEquals(RecordCodec.HEADER_BYTES, RecordCodec.headerBytes(3));
+        assertEquals(RecordCodec.HEADER_BYTES + RecordCodec.STREAM_BYTES, RecordCodec.headerBytes(3 | RecordCodec.LABELED));
+        assertEquals(RecordCodec.HEADER_BYTES + RecordCodec.REPEAT_BYTES, RecordCodec.headerBytes(3 | RecordCodec.REPEATED));
+        assertEquals(RecordCodec.HEADER_BYTES + RecordCodec.STREAM_BYTES + RecordCodec.REPEAT_BYTES,
+                RecordCodec.headerBytes((byte) (3 | RecordCodec.LABELED | RecordCodec.REPEATED)));
+        assertEquals("ERROR", RecordCodec.decodeLevel(3 | RecordCodec.LABELED | RecordCodec.REPEATED));
+    }
+
+    @Test
+    void roundTripsThroughBufferAndFile(@TempDir File dir) throws IOException {
+        byte[] records = encode();
+
+        ByteBuffer buffer = ByteBuffer.wrap(records);
+        assertEquals(ROWS, scan(buffer));
+        assertEquals(records.length, buffer.position());
+
+        File file = new File(dir, "segment.bin");
+        Files.write(file.toPath(), records);
+        List<Row> fromFile = new ArrayList<>();
+        RecordCodec.scan(file, (ts, level, stream, msg, repeats, lastTs) ->
+                fromFile.add(new Row(ts, level, stream, new String(msg, StandardCharsets.UTF_8), repeats, lastTs)));
+        assertEquals(ROWS, fromFile);
+    }
+
+    @Test
+    void decodedBlockReadsRepeats() throws IOException {
+        byte[] records = encode();
+        DecodedBlock block = DecodedBlock.decode(records, records.length, 1);
+
+        assertEquals(ROWS.size(), block.size());
+        for (int i = 0; i < ROWS.size(); i++) {
+            Row r = ROWS.get(i);
+            assertEquals(r.ts(), block.timestamp(i));
+            assertEquals(r.level(), block.level(i));
+            assertEquals(r.stream(), block.stream(i));
+            assertEquals(r.message(), block.message(i));
+            assertEquals(r.repeats(), block.repeats(i));
+            assertEquals(r.lastTs(), block.lastTimestamp(i));
+        }
+    }
+
+    @Test
+    void stopsBeforeTruncatedRepeatedRecord() throws IOException {
+        byte[] records = encode();
+        int complete = records.length - RecordCodec.recordBytes(0, 2, 0); // without the last record
+
+        for (int cut = complete; cut < records.length; cut++) {
+            ByteBuffer buffer = ByteBuffer.wrap(records, 0, cut);
+            assertEquals(complete, RecordCodec.scan(buffer, (ts, level, stream, msg, repeats, lastTs) -> { }));
+            assertEquals(ROWS.size() - 1, DecodedBlock.decode(records, cut, 1).size());
+        }
+    }
+
+    @Test
+    void logBatchEncodesCollapsedRows() throws IOException {
+        LogBatch batch = new LogBatch(4);
+        for (int i = 0; i < 3; i++)
+            batch.add(100 + i, (byte) 3, 9, "storm".getBytes(StandardCharsets.UTF_8), 0, 5);
+        batch.add(200, (byte) 1, 0, "calm".getBytes(StandardCharsets.UTF_8), 0, 4);
+
+        assertEquals(2, batch.collapseRepeats(1000));
+        batch.encode(null);
+
+        assertEquals(List.of(
+                        new Row(100, (byte) 3, 9, "storm", 3, 102),
+                        new Row(200, (byte) 1, 0, "calm", 1, 200)),
+                scan(ByteBuffer.wrap(batch.records(), 0, batch.recordsLength())));
+    }
+
+    @Test
+    void rejectsOversizedMessage() {
+        byte[] msg = new byte[RecordCodec.MAX_MESSAGE_BYTES + 1];
+        assertThrows(IllegalArgumentException.class, () ->
+                RecordCodec.write(new DataOutputStream(new ByteArrayOutputStream()), 1, (byte) 1, 0, msg));
+    }
+}
@@ -0,0 +1,179 @@
+package com.logarythm.core.storage;
+
+import com.logarythm.core.bloom.BloomFilterManager;
+import com.logarythm.core.metrics.EngineMetrics;
+import com.logarythm.core.wal.CheckpointManager;
+import com.logarythm.core.wal.WalPosition;
+import com.logarythm.model.LogEntry;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class RetentionManagerTest {
+
+    private static final long HOUR = 3_600_000;
+
+    @TempDir
+    Path dir;
+
+    private final EngineMetrics metrics = new EngineMetrics();
+
+    private SegmentWriter writer; // writer of the last recover(), its active segment is segment-000002
+
+    private String segmentDir() {
+        return dir.resolve("segments").toString();
+    }
+
+    /**
+     * Write the entries into segment-000001 and seal it the way a restart
+     * does (a second writer recovers the directory).
+     */
+    private SegmentCatalog sealedSegment(List<LogEntry> entries) throws IOException {
+        StreamDictionary dictionary = new StreamDictionary(dir.resolve("streams.dict").toString());
+        CheckpointManager checkpoint = new CheckpointManager(dir.resolve("checkpoint").toString());
+
+        new SegmentWriter(segmentDir(), checkpoint, new SegmentCatalog(new BloomFilterManager()), dictionary)
+                .writeBatchToSegment(new WalPosition(1, 0), entries);
+
+        return recover();
+    }
+
+    private SegmentCatalog recover() throws IOException {
+        SegmentCatalog catalog = new SegmentCatalog(new BloomFilterManager());
+        writer = new SegmentWriter(segmentDir(), new CheckpointManager(dir.resolve("checkpoint").toString()), catalog,
+                new StreamDictionary(dir.resolve("streams.dict").toString()));
+        return catalog;
+    }
+
+    private static SegmentCatalog.SegmentInfo sealed(SegmentCatalog catalog) {
+        return catalog.segments().stream().filter(SegmentCatalog.SegmentInfo::sealed).findFirst().orElse(null);
+    }
+
+    private TieredStorage tier(SegmentCatalog catalog) {
+        return new TieredStorage(catalog, metrics, false, "1h", "local", dir.resolve("archive").toString(),
+                "", 1 << 20, "60s");
+    }
+
+    private RetentionManager retention(SegmentCatalog catalog, TieredStorage tier, String maxAge, String levels,
+                                       long maxBytes) {
+        return new RetentionManager(catalog, tier, new BlockCache(1 << 20), metrics, maxAge, levels, maxBytes, "60s");
+    }
+
+    private static List<String> messages(File segment) throws IOException {
+        List<String> messages = new ArrayList<>();
+        RecordCodec.scan(segment, (ts, lvl, stream, msg, repeats, lastTs) ->
+                messages.add(new String(msg, StandardCharsets.UTF_8)));
+        return messages;
+    }
+
+    private List<LogEntry> mixedLevels() {
+        long now = System.currentTimeMillis();
+        return List.of(
+                new LogEntry(now - 3 * HOUR, "DEBUG", "old debug"),
+                new LogEntry(now - 3 * HOUR, "ERROR", "old error"),
+                new LogEntry(now - 10, "DEBUG", "new debug"));
+    }
+
+    @Test
+    void rewriteSwapsInNextGeneration() throws IOException {
+        SegmentCatalog catalog = sealedSegment(mixedLevels());
+        SegmentCatalog.SegmentInfo before = sealed(catalog);
+        assertEquals("segment-000001.bin", before.file().getName());
+
+        retention(catalog, tier(catalog), "", "DEBUG:1h", 0).enforce();
+
+        SegmentCatalog.SegmentInfo after = sealed(catalog);
+        assertEquals("segment-000001.g1.bin", after.file().getName());
+        assertEquals(before.key(), after.key());
+        assertEquals(List.of("old error", "new debug"), messages(after.file()));
+        assertEquals(2, after.index().count(0));
+        assertNotSame(before.index(), after.index());
+
+        // old generation deleted only after the swap, new sidecars in place
+        assertFalse(before.file().exists());
+        assertFalse(SegmentWriter.indexFor(before.file()).exists());
+        assertFalse(SegmentWriter.sidecarFor(before.file()).exists());
+        assertFalse(SegmentWriter.sketchFor(before.file()).exists());
+        assertTrue(SegmentWriter.indexFor(after.file()).exists());
+        assertTrue(SegmentWriter.sidecarFor(after.file()).exists());
+        assertTrue(SegmentWriter.sketchFor(after.file()).exists());
+        assertEquals(0, new File(segmentDir()).listFiles((d, n) -> n.endsWith(".tmp")).length);
+
+        // a second pass has nothing left to drop
+        retention(catalog, tier(catalog), "", "DEBUG:1h", 0).enforce();
+        assertEquals("segment-000001.g1.bin", sealed(catalog).file().getName());
+    }
+
+    @Test
+    void recoveryKeepsNewestCompleteGeneration() throws IOException {
+        SegmentCatalog catalog = sealedSegment(mixedLevels());
+        retention(catalog, tier(catalog), "", "DEBUG:1h", 0).enforce();
+
+        // an unfinished later rewrite: no .idx yet
+        File unfinished = SegmentWriter.segmentFile(segmentDir(), 1, 2);
+        assertTrue(unfinished.createNewFile());
+        assertTrue(SegmentWriter.sidecarFor(unfinished).createNewFile());
+
+        SegmentCatalog recovered = recover();
+        SegmentCatalog.SegmentInfo info = sealed(recovered);
+        assertEquals("segment-000001.g1.bin", info.file().getName());
+        assertNotNull(recovered.bloomFor(info));
+        assertEquals(List.of("old error", "new debug"), messages(info.file()));
+        assertFalse(unfinished.exists());
+        assertFalse(SegmentWriter.sidecarFor(unfinished).exists());
+    }
+
+    @Test
+    void dropRemovesSegmentAndSidecars() throws IOException {
+        SegmentCatalog catalog = sealedSegment(mixedLevels());
+        SegmentCatalog.SegmentInfo before = sealed(catalog);
+
+        // levels without a policy fall back to max-age
+        retention(catalog, tier(catalog), "1ms", "", 0).enforce();
+
+        assertNull(sealed(catalog));
+        assertNull(catalog.bloomFor(before));
+        assertFalse(before.file().exists());
+        assertFalse(SegmentWriter.indexFor(before.file()).exists());
+        assertFalse(SegmentWriter.sidecarFor(before.file()).exists());
+        assertFalse(SegmentWriter.sketchFor(before.file()).exists());
+    }
+
+    @Test
+    void rejectsUnknownLevelInPolicy() {
+        SegmentCatalog catalog = new SegmentCatalog(new BloomFilterManager());
+        TieredStorage tier = tier(catalog);
+
+        IllegalArgumentException e = assertThrows(IllegalArgumentException.class,
+                () -> retention(catalog, tier, "", "ERROR:90d,ERORR:1d", 0));
+        assertTrue(e.getMessage().contains("ERORR"));
+        assertThrows(IllegalArgumentException.class, () -> retention(catalog, tier, "", "ERROR", 0));
+        assertDoesNotThrow(() -> retention(catalog, tier, "", "error:90d, DEBUG:3d", 0));
+    }
+
+    @Test
+    void sizeCapKeepsArchivedSegments() throws IOException {
+        long old = System.currentTimeMillis() - 3 * HOUR;
+        SegmentCatalog catalog = sealedSegment(List.of(new LogEntry(old, "INFO", "archived row")));
+        TieredStorage tier = tier(catalog);
+        tier.archiveColdSegments();
+
+        SegmentCatalog.SegmentInfo archived = sealed(catalog);
+        assertTrue(archived.archived());
+
+        // local bytes (the active segment) are above the cap, the archive would free none of them
+        writer.writeBatchToSegment(new WalPosition(1, 1), List.of(new LogEntry(old + 2 * HOUR, "INFO", "hot row")));
+        retention(catalog, tier, "", "", 1).enforce();
+
+        assertSame(archived, sealed(catalog));
+        assertTrue(new File(archived.key() + ".arc").exists());
+    }
+}